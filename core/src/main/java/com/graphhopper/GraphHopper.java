@@ -18,17 +18,21 @@
 package com.graphhopper;
 
 import com.bedatadriven.jackson.datatype.jts.JtsModule;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.reader.dem.*;
+import com.graphhopper.reader.osm.OSMChangeFile;
 import com.graphhopper.reader.osm.OSMReader;
 import com.graphhopper.reader.osm.RestrictionTagParser;
 import com.graphhopper.reader.osm.conditional.DateRangeParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
@@ -37,6 +41,7 @@ import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks.PrepareJob;
+import com.graphhopper.routing.subnetwork.SnappableEdgeStorage;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
@@ -65,6 +70,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -104,6 +112,8 @@ public class GraphHopper {
     private String ghLocation = "";
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
+    private int loadThreads = 1;
+    private boolean sortGraph = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -111,10 +121,13 @@ public class GraphHopper {
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private ExecutorService viaLegExecutor;
+    private TrafficSpeedOverlay trafficSpeedOverlay;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int indexThreads = 1;
     // subnetworks
     private int minNetworkSize = 200;
     private int subnetworksThreads = 1;
@@ -130,6 +143,15 @@ public class GraphHopper {
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
     private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
     private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private Map<String, SnappableEdgeStorage> snappableEdges = Collections.emptyMap();
+    private Set<String> customizableCHProfiles = Collections.emptySet();
+    private int customizableCHThreads = 1;
+    private int customizableCHCacheSize = 10;
+    private int customizableCHMaxCustomizations = 1;
+    private CustomizableCH customizableCH;
+    // only set while loading with several threads, see loadConcurrently
+    private Map<String, RoutingCHGraph> loadedCHGraphs;
+    private List<LandmarkStorage> loadedLandmarks;
 
     // for data reader
     private String osmFile;
@@ -149,6 +171,39 @@ public class GraphHopper {
         return encodedValuesString;
     }
 
+    /**
+     * Enables speeds that can be changed at runtime and that custom models can use as traffic_speed, see
+     * {@link TrafficSpeedOverlay}.
+     */
+    public GraphHopper setTrafficSpeedOverlay(TrafficSpeedOverlay trafficSpeedOverlay) {
+        this.trafficSpeedOverlay = trafficSpeedOverlay;
+        return this;
+    }
+
+    /**
+     * @return the traffic speeds or null if they are not enabled
+     */
+    public TrafficSpeedOverlay getTrafficSpeedOverlay() {
+        return trafficSpeedOverlay;
+    }
+
+    /**
+     * Requests for these profiles that have a custom model, or all requests if there is no CH preparation for the
+     * profile, use a {@link CustomizableCH} that is calculated when the graph is loaded. The profiles must not use
+     * turn costs.
+     */
+    public GraphHopper setCustomizableCHProfiles(String... profiles) {
+        customizableCHProfiles = new LinkedHashSet<>(Arrays.asList(profiles));
+        return this;
+    }
+
+    /**
+     * @return the customizable CH or null if no profile uses it
+     */
+    public CustomizableCH getCustomizableCH() {
+        return customizableCH;
+    }
+
     public EncodingManager getEncodingManager() {
         if (encodingManager == null)
             throw new IllegalStateException("EncodingManager not yet built");
@@ -200,6 +255,27 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Enables renumbering the nodes and edges along a space-filling curve after the import to improve the memory
+     * locality of the graph searches, see {@link GraphSorter}.
+     */
+    public GraphHopper setSortGraph(boolean sortGraph) {
+        ensureNotLoaded();
+        this.sortGraph = sortGraph;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to load the location index, CH and LM data of an existing graph. Default is 1.
+     */
+    public GraphHopper setLoadThreads(int loadThreads) {
+        ensureNotLoaded();
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("graph.dataaccess.load_threads must be at least 1, but was " + loadThreads);
+        this.loadThreads = loadThreads;
+        return this;
+    }
+
     /**
      * Configures the urban density classification. Each edge will be classified as 'rural','residential' or 'city', {@link UrbanDensity}
      *
@@ -488,14 +564,18 @@ public class GraphHopper {
         customAreasDirectory = ghConfig.getString("custom_areas.directory", customAreasDirectory);
 
         defaultSegmentSize = ghConfig.getInt("graph.dataaccess.segment_size", defaultSegmentSize);
+        setLoadThreads(ghConfig.getInt("graph.dataaccess.load_threads", loadThreads));
+        sortGraph = ghConfig.getBool("graph.sort", sortGraph);
 
         String daTypeString = ghConfig.getString("graph.dataaccess.default_type", ghConfig.getString("graph.dataaccess", "RAM_STORE"));
         dataAccessDefaultType = DAType.fromString(daTypeString);
         for (Map.Entry<String, Object> entry : ghConfig.asPMap().toMap().entrySet()) {
             if (entry.getKey().startsWith("graph.dataaccess.type."))
                 dataAccessConfig.put(entry.getKey().substring("graph.dataaccess.type.".length()), entry.getValue().toString());
-            if (entry.getKey().startsWith("graph.dataaccess.mmap.preload."))
+            if (entry.getKey().startsWith("graph.dataaccess.mmap.preload.") || entry.getKey().startsWith("graph.dataaccess.mmap.heap."))
                 dataAccessConfig.put(entry.getKey().substring("graph.dataaccess.mmap.".length()), entry.getValue().toString());
+            if (entry.getKey().startsWith("graph.dataaccess.statistics."))
+                dataAccessConfig.put(entry.getKey().substring("graph.dataaccess.".length()), entry.getValue().toString());
         }
 
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
@@ -573,6 +653,7 @@ public class GraphHopper {
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = ghConfig.getInt("index.max_region_search", maxRegionSearch);
+        indexThreads = ghConfig.getInt("index.threads", indexThreads);
 
         // urban density calculation
         residentialAreaRadius = ghConfig.getDouble("graph.urban_density.residential_radius", residentialAreaRadius);
@@ -581,12 +662,24 @@ public class GraphHopper {
         cityAreaSensitivity = ghConfig.getDouble("graph.urban_density.city_sensitivity", cityAreaSensitivity);
         urbanDensityCalculationThreads = ghConfig.getInt("graph.urban_density.threads", urbanDensityCalculationThreads);
 
+        String cchProfilesStr = ghConfig.getString("routing.cch.profiles", "");
+        if (!cchProfilesStr.isEmpty())
+            setCustomizableCHProfiles(Arrays.stream(cchProfilesStr.split(",")).map(String::trim).toArray(String[]::new));
+        customizableCHThreads = ghConfig.getInt("routing.cch.threads", customizableCHThreads);
+        customizableCHCacheSize = ghConfig.getInt("routing.cch.cache_size", customizableCHCacheSize);
+        customizableCHMaxCustomizations = ghConfig.getInt("routing.cch.max_customizations", customizableCHMaxCustomizations);
+
+        if (ghConfig.getBool("graph.traffic_speed.enabled", false))
+            trafficSpeedOverlay = new TrafficSpeedOverlay(ghConfig.getDouble("graph.traffic_speed.max_speed", 150));
+
         // routing
         routerConfig.setMaxVisitedNodes(ghConfig.getInt(Routing.INIT_MAX_VISITED_NODES, routerConfig.getMaxVisitedNodes()));
         routerConfig.setTimeoutMillis(ghConfig.getLong(Routing.INIT_TIMEOUT_MS, routerConfig.getTimeoutMillis()));
         routerConfig.setMaxRoundTripRetries(ghConfig.getInt(RoundTrip.INIT_MAX_RETRIES, routerConfig.getMaxRoundTripRetries()));
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setInstructionsEnabled(ghConfig.getBool(Routing.INIT_INSTRUCTIONS, routerConfig.isInstructionsEnabled()));
+        routerConfig.setViaLegThreads(ghConfig.getInt(Routing.INIT_VIA_LEG_THREADS, routerConfig.getViaLegThreads()));
+        routerConfig.setPhastEnabled(ghConfig.getBool(Routing.INIT_PHAST, routerConfig.isPhastEnabled()));
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
@@ -792,6 +885,145 @@ public class GraphHopper {
         close();
     }
 
+    /**
+     * Applies OSM change files (.osc or .osc.gz) to the existing graph instead of running a new import. Only tag
+     * changes of existing ways are supported, see {@link OSMReader#applyChanges}: created or deleted elements and
+     * changes of the way geometry, node tags or relations are ignored. Changed turn restrictions cannot be applied to
+     * the turn cost storage, so change files containing them are rejected if the graph has turn costs.
+     * This requires the {@link OSMWayID} encoded value. For all profiles for which the weight of a changed edge changed
+     * the subnetworks are calculated again and the snappable edges, CH and LM preparations are removed, so they are
+     * prepared again the next time the graph is loaded.
+     */
+    public void applyChangesAndClose(List<String> changeFiles) {
+        ensureNotLoaded();
+        GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType);
+        directory.configure(dataAccessConfig);
+        GHLock lock = null;
+        try {
+            if (directory.getDefaultType().isStoring()) {
+                lockFactory.setLockDir(new File(ghLocation));
+                lock = lockFactory.create(fileLockName, true);
+                if (!lock.tryLock())
+                    throw new RuntimeException("To avoid multiple writers we need to obtain a write lock but it failed. In " + ghLocation, lock.getObtainFailedReason());
+            }
+            ensureWriteAccess();
+            properties = new StorableProperties(directory);
+            if (!properties.loadExisting())
+                throw new IllegalStateException("Cannot apply changes, there is no graph in " + ghLocation);
+            prepareImport(EncodingManager.fromProperties(properties));
+            if (maxSpeedCalculator != null)
+                // the estimated max speeds are only calculated during the import, so we keep them
+                osmParsers.getWayTagParsers().remove(maxSpeedCalculator.getParser());
+            if (!encodingManager.hasEncodedValue(OSMWayID.KEY))
+                throw new IllegalArgumentException("Applying OSM changes requires the encoded value " + OSMWayID.KEY
+                        + " to find the edges of a way. Add it to graph.encoded_values and run a new import");
+            if (!properties.get("profiles").equals(getProfilesString()))
+                throw new IllegalStateException("Profiles do not match:"
+                        + "\nGraphhopper config: " + getProfilesString()
+                        + "\nGraph: " + properties.get("profiles"));
+            baseGraph = new BaseGraph.Builder(encodingManager)
+                    .setDir(directory)
+                    .set3D(hasElevation())
+                    .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                    .setSegmentSize(defaultSegmentSize)
+                    .build();
+            baseGraph.loadExisting();
+            checkProfilesConsistency();
+
+            // values that are not set by a way tag parser are calculated from relations or after the import. the crossing
+            // is only derived from node tags, which are not known for the changed ways
+            List<EncodedValue> keptValues = encodingManager.getEncodedValues().stream().filter(ev -> {
+                ImportUnit importUnit = importRegistry.createImportUnit(ev.getName());
+                return importUnit == null || importUnit.getCreateTagParser() == null || Crossing.KEY.equals(ev.getName());
+            }).collect(Collectors.toList());
+            List<Profile> profiles = new ArrayList<>(profilesByName.values());
+            List<Weighting> weightings = profiles.stream().map(p -> createWeighting(p, new PMap())).toList();
+            // the weights of every changed edge before the first change
+            GHIntObjectHashMap<double[]> oldWeights = new GHIntObjectHashMap<>();
+            OSMReader reader = new OSMReader(baseGraph, osmParsers, osmReaderConfig).
+                    setAreaIndex(createAreaIndex()).
+                    setCountryRuleFactory(countryRuleFactory);
+            // read all files first, so we do not apply some of them if one is rejected
+            List<OSMChangeFile> changeList = new ArrayList<>(changeFiles.size());
+            for (String changeFile : changeFiles) {
+                OSMChangeFile changes = OSMChangeFile.read(new File(changeFile));
+                if (changes.getTurnRestrictionChanges() > 0 && baseGraph.getTurnCostStorage() != null)
+                    throw new IllegalArgumentException("The OSM change file " + changeFile + " contains " + changes.getTurnRestrictionChanges()
+                            + " changed turn restrictions, which cannot be applied to an existing graph with turn costs. Run a new import instead");
+                changeList.add(changes);
+            }
+            for (int i = 0; i < changeFiles.size(); i++) {
+                logger.info("applying OSM changes from " + changeFiles.get(i));
+                OSMChangeFile changes = changeList.get(i);
+                reader.applyChanges(changes, encodingManager.getIntEncodedValue(OSMWayID.KEY), keptValues, edge -> {
+                    if (!oldWeights.containsKey(edge.getEdge()))
+                        oldWeights.put(edge.getEdge(), calcEdgeWeights(weightings, edge));
+                });
+            }
+
+            Set<String> changedProfiles = new LinkedHashSet<>();
+            for (IntObjectCursor<double[]> cursor : oldWeights) {
+                double[] newWeights = calcEdgeWeights(weightings, baseGraph.getEdgeIteratorState(cursor.key, Integer.MIN_VALUE));
+                for (int i = 0; i < profiles.size(); i++)
+                    if (Double.compare(cursor.value[2 * i], newWeights[2 * i]) != 0 || Double.compare(cursor.value[2 * i + 1], newWeights[2 * i + 1]) != 0)
+                        changedProfiles.add(profiles.get(i).getName());
+            }
+            logger.info("edge weights changed for profiles: " + changedProfiles);
+            if (!changedProfiles.isEmpty())
+                // edges that became (in)accessible can connect or split subnetworks
+                new PrepareRoutingSubnetworks(baseGraph, buildSubnetworkRemovalJobs(changedProfiles)).
+                        setMinNetworkSize(minNetworkSize).
+                        setThreads(subnetworksThreads).
+                        doWork();
+            removePreparations(changedProfiles);
+            properties.put("datareader.changes.date", createFormatter().format(new Date()));
+            flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            if (lock != null)
+                lock.release();
+        }
+        close();
+    }
+
+    private static double[] calcEdgeWeights(List<Weighting> weightings, EdgeIteratorState edge) {
+        double[] weights = new double[2 * weightings.size()];
+        for (int i = 0; i < weightings.size(); i++) {
+            weights[2 * i] = weightings.get(i).calcEdgeWeight(edge, false);
+            weights[2 * i + 1] = weightings.get(i).calcEdgeWeight(edge, true);
+        }
+        return weights;
+    }
+
+    /**
+     * Removes all data that depends on the edge weights of the specified profiles
+     */
+    private void removePreparations(Set<String> profiles) {
+        List<String> names = new ArrayList<>();
+        for (String profile : profiles)
+            names.add("snappable_edges_" + profile);
+        for (CHProfile chProfile : chPreparationHandler.getCHProfiles())
+            if (profiles.contains(chProfile.getProfile())) {
+                names.add("nodes_ch_" + chProfile.getProfile());
+                names.add("shortcuts_" + chProfile.getProfile());
+            }
+        for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles())
+            if (profiles.contains(lmProfile.getProfile())) {
+                String preparationProfile = lmProfile.usesOtherPreparation() ? lmProfile.getPreparationProfile() : lmProfile.getProfile();
+                names.add("landmarks_" + preparationProfile);
+                names.add("landmarks_subnetwork_" + preparationProfile);
+            }
+        Directory directory = baseGraph.getDirectory();
+        for (String name : new LinkedHashSet<>(names)) {
+            // the files are not loaded, so we have to create the DataAccess to remove them
+            directory.create(name);
+            directory.remove(name);
+        }
+        if (!names.isEmpty())
+            logger.info("removed " + names + ", they will be prepared again when the graph is loaded");
+    }
+
     /**
      * Creates the graph from OSM data.
      */
@@ -822,6 +1054,8 @@ public class GraphHopper {
 
             importOSM();
             postImportOSM();
+            if (sortGraph)
+                sortGraph();
             cleanUp();
 
             properties.put("profiles", getProfilesString());
@@ -836,12 +1070,23 @@ public class GraphHopper {
     }
 
     protected void prepareImport() {
+        prepareImport(null);
+    }
+
+    /**
+     * @param existingEncodingManager if not null the tag parsers are created for the encoded values of this encoding
+     *                                manager instead of new ones, which requires that both have the same layout
+     */
+    private void prepareImport(EncodingManager existingEncodingManager) {
         Map<String, PMap> encodedValuesWithProps = parseEncodedValueString(encodedValuesString);
-        NameValidator nameValidator = s -> importRegistry.createImportUnit(s) != null;
+        NameValidator nameValidator = s -> importRegistry.createImportUnit(s) != null
+                || trafficSpeedOverlay != null && TrafficSpeedOverlay.KEY.equals(s);
         Set<String> missing = new LinkedHashSet<>();
         profilesByName.values().
                 forEach(profile -> CustomModelParser.findVariablesForEncodedValuesString(profile.getCustomModel(), nameValidator, s -> "").
                         forEach(var -> {
+                            // traffic speeds are not stored in the edge flags, so they do not need to be imported
+                            if (trafficSpeedOverlay != null && TrafficSpeedOverlay.KEY.equals(var)) return;
                             if (!encodedValuesWithProps.containsKey(var)) missing.add(var);
                             encodedValuesWithProps.putIfAbsent(var, new PMap());
                         }));
@@ -881,9 +1126,23 @@ public class GraphHopper {
                 deque.addAll(importUnit.getRequiredImportUnits());
         }
         encodingManager = buildEncodingManager(encodedValuesWithProps, activeImportUnits, restrictionVehicleTypesByProfile);
+        if (existingEncodingManager != null) {
+            if (!getLayoutString(existingEncodingManager).equals(getLayoutString(encodingManager)))
+                throw new IllegalStateException("The encoded values of the graph do not match the configuration, run a new import");
+            encodingManager = existingEncodingManager;
+        }
         osmParsers = buildOSMParsers(encodedValuesWithProps, activeImportUnits, restrictionVehicleTypesByProfile, osmReaderConfig.getIgnoredHighways());
     }
 
+    /**
+     * @return the serialized encoded values without their maximum values, which are determined during the import
+     */
+    private static String getLayoutString(EncodingManager em) {
+        return Stream.concat(em.getEncodedValues().stream(), em.getTurnEncodedValues().stream())
+                .map(ev -> EncodedValueSerializer.serializeEncodedValue(ev).replaceAll("\"max_value\":-?\\d+,", ""))
+                .collect(Collectors.joining(","));
+    }
+
     protected void postImportOSM() {
         // Important note: To deal with via-way turn restrictions we introduce artificial edges in OSMReader (#2689).
         // These are simply copies of real edges. Any further modifications of the graph edges must take care of keeping
@@ -906,21 +1165,7 @@ public class GraphHopper {
             throw new IllegalStateException("Couldn't load from existing folder: " + ghLocation
                     + " but also cannot use file for DataReader as it wasn't specified!");
 
-        List<CustomArea> customAreas = readCountries();
-        if (isEmpty(customAreasDirectory)) {
-            logger.info("No custom areas are used, custom_areas.directory not given");
-        } else {
-            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
-            customAreas.addAll(readCustomAreas());
-        }
-
-        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
-        if (countryRuleFactory == null || countryRuleFactory.getCountryToRuleMap().isEmpty()) {
-            logger.info("No country rules available");
-        } else {
-            logger.info("Applying rules for the following countries: {}", countryRuleFactory.getCountryToRuleMap().keySet());
-        }
-
+        AreaIndex<CustomArea> areaIndex = createAreaIndex();
         logger.info("start creating graph from " + osmFile);
         OSMReader reader = new OSMReader(baseGraph.getBaseGraph(), osmParsers, osmReaderConfig).setFile(_getOSMFile()).
                 setAreaIndex(areaIndex).
@@ -941,6 +1186,24 @@ public class GraphHopper {
             properties.put("datareader.data.date", f.format(reader.getDataDate()));
     }
 
+    private AreaIndex<CustomArea> createAreaIndex() {
+        List<CustomArea> customAreas = readCountries();
+        if (isEmpty(customAreasDirectory)) {
+            logger.info("No custom areas are used, custom_areas.directory not given");
+        } else {
+            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
+            customAreas.addAll(readCustomAreas());
+        }
+
+        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
+        if (countryRuleFactory == null || countryRuleFactory.getCountryToRuleMap().isEmpty()) {
+            logger.info("No country rules available");
+        } else {
+            logger.info("Applying rules for the following countries: {}", countryRuleFactory.getCountryToRuleMap().keySet());
+        }
+        return areaIndex;
+    }
+
     protected void createBaseGraphAndProperties() {
         baseGraph.getDirectory().create();
         baseGraph.create(100);
@@ -1061,8 +1324,11 @@ public class GraphHopper {
                         + "\nChange configuration to match the graph or delete " + baseGraph.getDirectory().getLocation());
             checkProfilesConsistency();
 
+            if (loadThreads > 1)
+                loadConcurrently();
             postProcessing(false);
             directory.loadMMap();
+            logger.info("loading times of the graph files in ms: " + directory.getLoadTimes());
             setFullyLoaded();
             return true;
         } finally {
@@ -1071,6 +1337,27 @@ public class GraphHopper {
         }
     }
 
+    /**
+     * Loads the location index and all existing CH and LM data at the same time, because on servers with many profiles
+     * loading them one after the other takes a lot of time. Anything that cannot be loaded is prepared later on in
+     * {@link #postProcessing(boolean)} as usual.
+     */
+    private void loadConcurrently() {
+        StopWatch sw = StopWatch.started();
+        List<Runnable> runnables = new ArrayList<>();
+        runnables.add(this::initLocationIndex);
+        if (chPreparationHandler.isEnabled())
+            runnables.add(() -> loadedCHGraphs = chPreparationHandler.load(baseGraph.getBaseGraph(),
+                    createCHConfigs(chPreparationHandler.getCHProfiles()), loadThreads));
+        if (lmPreparationHandler.isEnabled())
+            runnables.add(() -> loadedLandmarks = lmPreparationHandler.load(createLMConfigs(lmPreparationHandler.getLMProfiles()),
+                    baseGraph, encodingManager, loadThreads));
+        GHUtility.runConcurrently(runnables.stream(), Math.min(loadThreads, runnables.size()));
+        logger.info("loaded location index, " + (loadedCHGraphs == null ? 0 : loadedCHGraphs.size()) + " CH graphs and "
+                + (loadedLandmarks == null ? 0 : loadedLandmarks.size()) + " landmark storages with " + loadThreads
+                + " threads, took: " + sw.stop().getTimeString());
+    }
+
     private String getProfilesString() {
         return profilesByName.values().stream().map(p -> p.getName() + "|" + p.getVersion()).collect(Collectors.joining(","));
     }
@@ -1103,6 +1390,10 @@ public class GraphHopper {
             if (!profilesByName.containsKey(chProfile.getProfile())) {
                 throw new IllegalArgumentException("CH profile references unknown profile '" + chProfile.getProfile() + "'");
             }
+            CustomModel customModel = profilesByName.get(chProfile.getProfile()).getCustomModel();
+            if (trafficSpeedOverlay != null && customModel != null && CustomModelParser.usesVariable(customModel, TrafficSpeedOverlay.KEY))
+                throw new IllegalArgumentException("CH profile '" + chProfile.getProfile() + "' uses " + TrafficSpeedOverlay.KEY
+                        + ", but CH shortcuts are not updated when the traffic speeds change. Use LM or flexible routing for this profile");
         }
         Map<String, LMProfile> lmProfileMap = new LinkedHashMap<>(lmPreparationHandler.getLMProfiles().size());
         for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles()) {
@@ -1116,6 +1407,10 @@ public class GraphHopper {
             if (lmProfile.usesOtherPreparation() && !profilesByName.containsKey(lmProfile.getPreparationProfile())) {
                 throw new IllegalArgumentException("LM profile references unknown preparation profile '" + lmProfile.getPreparationProfile() + "'");
             }
+            CustomModel customModel = profilesByName.get(lmProfile.getProfile()).getCustomModel();
+            if (trafficSpeedOverlay != null && customModel != null && CustomModelParser.usesVariableOutsideOfLimitTo(customModel, TrafficSpeedOverlay.KEY))
+                throw new IllegalArgumentException("LM profile '" + lmProfile.getProfile() + "' uses " + TrafficSpeedOverlay.KEY
+                        + " outside of limit_to, which can make the weights smaller than the ones of the LM preparation. Use it only as limit_to value or use flexible routing for this profile");
         }
         for (LMProfile lmProfile : lmPreparationHandler.getLMProfiles()) {
             if (lmProfile.usesOtherPreparation() && !lmProfileMap.containsKey(lmProfile.getPreparationProfile())) {
@@ -1172,7 +1467,9 @@ public class GraphHopper {
      */
     protected void postProcessing(boolean closeEarly) {
         calcChecksums();
-        initLocationIndex();
+        loadOrPrepareSnappableEdges();
+        if (locationIndex == null)
+            initLocationIndex();
         importPublicTransit();
 
         if (closeEarly) {
@@ -1192,6 +1489,25 @@ public class GraphHopper {
 
         if (chPreparationHandler.isEnabled())
             loadOrPrepareCH(closeEarly);
+
+        if (!customizableCHProfiles.isEmpty())
+            prepareCustomizableCH(closeEarly);
+    }
+
+    private void prepareCustomizableCH(boolean closeEarly) {
+        for (String name : customizableCHProfiles) {
+            Profile profile = profilesByName.get(name);
+            if (profile == null)
+                throw new IllegalArgumentException("The profile '" + name + "' of routing.cch.profiles does not exist");
+            if (profile.hasTurnCosts())
+                throw new IllegalArgumentException("The profile '" + name + "' of routing.cch.profiles must not use turn costs");
+        }
+        // freeze already during the import, like for the CH preparation, to avoid writing to a loaded graph
+        if (!baseGraph.isFrozen())
+            baseGraph.freeze();
+        // the customizable CH is only kept in memory, so there is no need to calculate it for the import only
+        if (!closeEarly)
+            customizableCH = new CustomizableCH(baseGraph, customizableCHThreads, customizableCHCacheSize, customizableCHMaxCustomizations);
     }
 
     protected void importPublicTransit() {
@@ -1223,7 +1539,7 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager(), trafficSpeedOverlay);
     }
 
     public GHResponse route(GHRequest request) {
@@ -1238,8 +1554,26 @@ public class GraphHopper {
         if (locationIndex == null)
             throw new IllegalStateException("Location index not initialized");
 
-        return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
+        Router router = doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
                 trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+        router.setSnappableEdges(snappableEdges);
+        if (customizableCH != null)
+            router.setCustomizableCH(customizableCH, customizableCHProfiles, trafficSpeedOverlay);
+        if (routerConfig.getViaLegThreads() > 1)
+            router.setViaLegExecutor(getViaLegExecutor());
+        return router;
+    }
+
+    private synchronized ExecutorService getViaLegExecutor() {
+        if (viaLegExecutor == null) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            viaLegExecutor = Executors.newFixedThreadPool(routerConfig.getViaLegThreads(), r -> {
+                Thread thread = new Thread(r, "gh-via-leg-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return viaLegExecutor;
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1254,6 +1588,7 @@ public class GraphHopper {
         LocationIndexTree tmpIndex = new LocationIndexTree(baseGraph, dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
+        tmpIndex.setThreads(indexThreads);
         if (!tmpIndex.loadExisting()) {
             ensureWriteAccess();
             tmpIndex.prepareIndex();
@@ -1293,6 +1628,36 @@ public class GraphHopper {
         logger.info("Calculating checksums took: " + sw.stop().getTimeString());
     }
 
+    /**
+     * Loads or calculates which edges can be snapped to for each profile, so the location lookup does not need to
+     * evaluate the weighting. Graphs that were imported without this data and cannot be written to, as well as profiles
+     * that use traffic speeds, fall back to the snap filter that evaluates the weighting.
+     */
+    private void loadOrPrepareSnappableEdges() {
+        snappableEdges = new LinkedHashMap<>();
+        for (Profile profile : profilesByName.values()) {
+            // traffic speeds of zero make edges inaccessible at any time, so the weighting has to be evaluated
+            if (trafficSpeedOverlay != null && profile.getCustomModel() != null && CustomModelParser.usesVariable(profile.getCustomModel(), TrafficSpeedOverlay.KEY))
+                continue;
+            SnappableEdgeStorage storage = new SnappableEdgeStorage(baseGraph.getDirectory().create("snappable_edges_" + profile.getName()));
+            if (!storage.loadExisting()) {
+                if (!allowWrites) {
+                    logger.warn("No snappable edges found for profile '" + profile.getName() + "', evaluating the weighting during the location lookup");
+                    continue;
+                }
+                StopWatch sw = StopWatch.started();
+                Weighting weighting = createWeighting(profile, new PMap());
+                storage.build(baseGraph, weighting, encodingManager.getBooleanEncodedValue(Subnetwork.key(profile.getName())));
+                storage.flush();
+                logger.info("Calculated snappable edges for profile '" + profile.getName() + "', took: " + sw.stop().getTimeString());
+            } else if (storage.getEdgeCount() != baseGraph.getEdges()) {
+                throw new IllegalStateException("Snappable edges for profile '" + profile.getName() + "' do not match the graph: "
+                        + storage.getEdgeCount() + " vs. " + baseGraph.getEdges() + " edges");
+            }
+            snappableEdges.put(profile.getName(), storage);
+        }
+    }
+
     /**
      * Initializes the location index after the import is done.
      */
@@ -1327,7 +1692,8 @@ public class GraphHopper {
 
         // we load ch graphs that already exist and prepare the other ones
         List<CHConfig> chConfigs = createCHConfigs(chPreparationHandler.getCHProfiles());
-        Map<String, RoutingCHGraph> loaded = chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
+        Map<String, RoutingCHGraph> loaded = loadedCHGraphs != null ? loadedCHGraphs : chPreparationHandler.load(baseGraph.getBaseGraph(), chConfigs);
+        loadedCHGraphs = null;
         List<CHConfig> configsToPrepare = chConfigs.stream().filter(c -> !loaded.containsKey(c.getName())).collect(Collectors.toList());
         Map<String, PrepareContractionHierarchies.Result> prepared = prepareCH(closeEarly, configsToPrepare);
 
@@ -1366,7 +1732,8 @@ public class GraphHopper {
 
         // we load landmark storages that already exist and prepare the other ones
         List<LMConfig> lmConfigs = createLMConfigs(lmPreparationHandler.getLMProfiles());
-        List<LandmarkStorage> loaded = lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+        List<LandmarkStorage> loaded = loadedLandmarks != null ? loadedLandmarks : lmPreparationHandler.load(lmConfigs, baseGraph, encodingManager);
+        loadedLandmarks = null;
         List<LMConfig> loadedConfigs = loaded.stream().map(LandmarkStorage::getLMConfig).collect(Collectors.toList());
         List<LMConfig> configsToPrepare = lmConfigs.stream().filter(c -> !loadedConfigs.contains(c)).collect(Collectors.toList());
         List<PrepareLandmarks> prepared = prepareLM(closeEarly, configsToPrepare);
@@ -1396,20 +1763,27 @@ public class GraphHopper {
         return lmPreparationHandler.prepare(configsToPrepare, baseGraph, encodingManager, properties, locationIndex, closeEarly);
     }
 
+    protected void sortGraph() {
+        StopWatch sw = StopWatch.started();
+        GraphSorter.sortAlongHilbertCurve(baseGraph);
+        logger.info("sorted graph along hilbert curve, took: " + sw.stop().getTimeString());
+    }
+
     /**
      * Internal method to clean up the graph.
      */
     protected void cleanUp() {
-        PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(baseGraph.getBaseGraph(), buildSubnetworkRemovalJobs());
+        PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(baseGraph.getBaseGraph(), buildSubnetworkRemovalJobs(profilesByName.keySet()));
         preparation.setMinNetworkSize(minNetworkSize);
         preparation.setThreads(subnetworksThreads);
         preparation.doWork();
         logger.info("nodes: " + Helper.nf(baseGraph.getNodes()) + ", edges: " + Helper.nf(baseGraph.getEdges()));
     }
 
-    private List<PrepareJob> buildSubnetworkRemovalJobs() {
+    private List<PrepareJob> buildSubnetworkRemovalJobs(Collection<String> profileNames) {
         List<PrepareJob> jobs = new ArrayList<>();
-        for (Profile profile : profilesByName.values()) {
+        for (String profileName : profileNames) {
+            Profile profile = profilesByName.get(profileName);
             // if turn costs are enabled use u-turn costs of zero as we only want to make sure the graph is fully connected assuming finite u-turn costs
             Weighting weighting = createWeighting(profile, new PMap().putObject(Parameters.Routing.U_TURN_COSTS, 0));
             jobs.add(new PrepareJob(encodingManager.getBooleanEncodedValue(Subnetwork.key(profile.getName())), weighting));
@@ -1431,6 +1805,8 @@ public class GraphHopper {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        if (viaLegExecutor != null)
+            viaLegExecutor.shutdownNow();
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
@@ -1438,6 +1814,7 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        snappableEdges.values().forEach(SnappableEdgeStorage::close);
 
         if (locationIndex != null)
             locationIndex.close();
@@ -107,7 +107,7 @@ public class ContourBuilder {
                 rings.add(ring);
             }
         }
-        List<Polygon> isolinePolygons = punchHoles(rings);
+        List<Polygon> isolinePolygons = punchHoles(geometryFactory, rings);
         return geometryFactory.createMultiPolygon(isolinePolygons.toArray(new Polygon[isolinePolygons.size()]));
     }
 
@@ -119,8 +119,11 @@ public class ContourBuilder {
         return new Coordinate(coordinate.x + EPSILON * (distantFrameCoordinate.x - coordinate.x), coordinate.y + EPSILON * (distantFrameCoordinate.y - coordinate.y));
     }
 
+    /**
+     * Creates polygons from the given counter-clockwise shells and clockwise holes
+     */
     @SuppressWarnings("unchecked")
-    private List<Polygon> punchHoles(List<LinearRing> rings) {
+    static List<Polygon> punchHoles(GeometryFactory geometryFactory, List<LinearRing> rings) {
         List<PreparedPolygon> shells = new ArrayList<>(rings.size());
         List<LinearRing> holes = new ArrayList<>(rings.size() / 2);
         // 1. Split the polygon list in two: shells and holes (CCW and CW)
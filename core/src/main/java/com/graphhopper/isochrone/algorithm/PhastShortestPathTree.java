@@ -0,0 +1,235 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Computes a shortest path tree like {@link ShortestPathTree}, but uses a node-based CH graph and the PHAST algorithm
+ * (Delling et al., "PHAST: Hardware-Accelerated Shortest Path Trees"): First there is an upward search from the start
+ * node, followed by a single sweep over all nodes in descending level order that only looks at the edges coming from
+ * higher level nodes. This way the weights to all nodes of the graph are calculated without a priority queue in the
+ * second phase, which is much faster than a Dijkstra for large limits.
+ * <p>
+ * The shortest path tree is then translated back to the original edges so the resulting labels have the same meaning
+ * as the ones of {@link ShortestPathTree}, but they are not passed to the consumer in the order of their weight.
+ * Because every node is visited the memory usage and the running time are linear in the number of nodes of the graph,
+ * even for small limits. Therefore the search is rejected up front if the graph has more nodes than the maximum visited
+ * nodes, and it is aborted once the timeout is exceeded.
+ */
+public class PhastShortestPathTree extends ShortestPathTree {
+    private final RoutingCHGraph chGraph;
+    private final Graph graph;
+    private final boolean reverseFlow;
+    private final int baseNodes;
+    private final GHIntObjectHashMap<IsoLabel> labels = new GHIntObjectHashMap<>(1000);
+    private int visitedNodes;
+
+    /**
+     * @param chGraph the CH graph, usually a {@link com.graphhopper.routing.querygraph.QueryRoutingCHGraph} so the
+     *                search can be started at a virtual node
+     */
+    public PhastShortestPathTree(RoutingCHGraph chGraph, boolean reverseFlow) {
+        // edge-based CH is rejected here already, because its weighting has turn costs
+        super(chGraph.getBaseGraph(), chGraph.getWeighting(), reverseFlow, TraversalMode.NODE_BASED);
+        this.chGraph = chGraph;
+        this.graph = chGraph.getBaseGraph();
+        this.reverseFlow = reverseFlow;
+        this.baseNodes = graph.getBaseGraph().getNodes();
+    }
+
+    @Override
+    public void search(int from, Consumer<IsoLabel> consumer) {
+        checkAlreadyRun();
+        if (chGraph.getNodes() > maxVisitedNodes)
+            throw new MaximumNodesExceededException("PHAST visits all " + chGraph.getNodes() + " nodes of the graph, "
+                    + "but the maximum is " + maxVisitedNodes, maxVisitedNodes);
+        setupFinishTime();
+        double[] weights = new double[chGraph.getNodes()];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        int[] parentEdges = new int[chGraph.getNodes()];
+        Arrays.fill(parentEdges, EdgeIterator.NO_EDGE);
+        weights[from] = 0;
+        searchUpward(from, weights, parentEdges);
+        sweepDownward(weights, parentEdges);
+        createLabels(from, weights, parentEdges, consumer);
+    }
+
+    private void searchUpward(int from, double[] weights, int[] parentEdges) {
+        RoutingCHEdgeExplorer explorer = reverseFlow ? chGraph.createInEdgeExplorer() : chGraph.createOutEdgeExplorer();
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(chGraph.getNodes());
+        heap.push(from, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            visitedNodes++;
+            checkTimeout();
+            int level = chGraph.getLevel(node);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                // virtual edges are always accepted, just like for the CH routing algorithms. using >= instead of >
+                // makes sure the uncontracted core nodes (that all have the same level) are searched completely
+                if (node < baseNodes && adjNode < baseNodes && chGraph.getLevel(adjNode) < level)
+                    continue;
+                if (iter.getEdge() == parentEdges[node])
+                    continue;
+                double weight = weights[node] + iter.getWeight(reverseFlow);
+                if (weight >= weights[adjNode])
+                    continue;
+                weights[adjNode] = weight;
+                parentEdges[adjNode] = iter.getEdge();
+                // the heap uses float values, so a node might be polled a bit too early and we need to allow that it
+                // is added again in case its weight is improved later
+                if (heap.contains(adjNode))
+                    heap.update(adjNode, (float) weight);
+                else
+                    heap.push(adjNode, (float) weight);
+            }
+        }
+    }
+
+    private void sweepDownward(double[] weights, int[] parentEdges) {
+        RoutingCHEdgeExplorer explorer = reverseFlow ? chGraph.createOutEdgeExplorer() : chGraph.createInEdgeExplorer();
+        for (int node : chGraph.getNodesByLevelDescending()) {
+            int level = chGraph.getLevel(node);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (Double.isInfinite(weights[adjNode]) || chGraph.getLevel(adjNode) <= level)
+                    continue;
+                double weight = weights[adjNode] + iter.getWeight(!reverseFlow);
+                if (weight < weights[node]) {
+                    weights[node] = weight;
+                    parentEdges[node] = iter.getEdge();
+                }
+            }
+            visitedNodes++;
+            if ((visitedNodes & 0xFFF) == 0)
+                checkTimeout();
+        }
+    }
+
+    private void checkTimeout() {
+        if (isTimeoutExceeded())
+            throw new IllegalArgumentException("PHAST search aborted due to timeout after " + timeoutMillis + "ms");
+    }
+
+    /**
+     * Builds the shortest path tree on the original edges: the predecessor of a node is the neighbor along the original
+     * edge at the end of its tree (shortcut) edge. The time and distance are calculated along this tree such that
+     * predecessors are always handled before their successors.
+     */
+    private void createLabels(int from, double[] weights, int[] parentEdges, Consumer<IsoLabel> consumer) {
+        long[] times = new long[weights.length];
+        Arrays.fill(times, -1);
+        double[] distances = new double[weights.length];
+        times[from] = 0;
+        IsoLabel root = new IsoLabel(from, EdgeIterator.NO_EDGE, 0, 0, 0, null);
+        labels.put(from, root);
+        if (getExploreValue(root) <= getLimit())
+            consumer.accept(root);
+
+        IntArrayList stackNodes = new IntArrayList();
+        IntArrayList stackEdges = new IntArrayList();
+        LongArrayList stackTimes = new LongArrayList();
+        DoubleArrayList stackDistances = new DoubleArrayList();
+        for (int node = 0; node < weights.length; node++) {
+            int current = node;
+            while (times[current] < 0 && !Double.isInfinite(weights[current])) {
+                if (stackNodes.size() > weights.length)
+                    throw new IllegalStateException("Found a cycle in the shortest path tree at node " + current);
+                EdgeIteratorState edge = findLastOrigEdge(parentEdges[current], current);
+                stackNodes.add(current);
+                stackEdges.add(edge.getEdge());
+                stackTimes.add(weighting.calcEdgeMillis(edge, reverseFlow));
+                stackDistances.add(edge.getDistance());
+                current = edge.getBaseNode();
+            }
+            for (int i = stackNodes.size() - 1; i >= 0; i--) {
+                int child = stackNodes.get(i);
+                times[child] = times[current] + stackTimes.get(i);
+                distances[child] = distances[current] + stackDistances.get(i);
+                IsoLabel parent = labels.get(current);
+                // we only keep the labels within the limit and the ones right behind it, see getIsochroneEdges
+                if (parent != null && getExploreValue(parent) <= getLimit()) {
+                    IsoLabel label = new IsoLabel(child, stackEdges.get(i), weights[child], times[child], distances[child], parent);
+                    labels.put(child, label);
+                    if (getExploreValue(label) <= getLimit())
+                        consumer.accept(label);
+                }
+                current = child;
+            }
+            stackNodes.elementsCount = 0;
+            stackEdges.elementsCount = 0;
+            stackTimes.elementsCount = 0;
+            stackDistances.elementsCount = 0;
+        }
+    }
+
+    /**
+     * @return the original edge of the given CH edge that is adjacent to the given node, pointing towards it
+     */
+    private EdgeIteratorState findLastOrigEdge(int chEdge, int adjNode) {
+        RoutingCHEdgeIteratorState edge = chGraph.getEdgeIteratorState(chEdge, adjNode);
+        while (edge.isShortcut()) {
+            RoutingCHEdgeIteratorState skipped = chGraph.getEdgeIteratorState(edge.getSkippedEdge2(), adjNode);
+            edge = skipped != null ? skipped : chGraph.getEdgeIteratorState(edge.getSkippedEdge1(), adjNode);
+        }
+        return graph.getEdgeIteratorState(edge.getOrigEdge(), adjNode);
+    }
+
+    @Override
+    public ArrayList<IsoLabel> getIsochroneEdges(double z) {
+        ArrayList<IsoLabel> result = new ArrayList<>();
+        for (ObjectCursor<IsoLabel> cursor : labels.values()) {
+            if (cursor.value.parent != null &&
+                    (getExploreValue(cursor.value) > z ^ getExploreValue(cursor.value.parent) > z)) {
+                result.add(cursor.value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "phast";
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
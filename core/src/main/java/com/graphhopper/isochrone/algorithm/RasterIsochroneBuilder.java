@@ -0,0 +1,293 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.cursors.IntDoubleCursor;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import org.locationtech.jts.geom.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds isochrone polygons without a triangulation: all reached edges are drawn into a regular grid, where every grid
+ * point keeps the smallest value (e.g. the time) of the edges passing it. The values are then spread to the neighboring
+ * grid points to close the gaps between the roads and the contour lines are extracted with marching squares. Unlike {@link JTSTriangulator} and {@link ContourBuilder} the costs only depend on the number of
+ * grid points and the grid can be reused for all buckets of a request.
+ */
+public class RasterIsochroneBuilder {
+    private static final int MAX_GRID_POINTS = 4_000_000;
+    // OpenStreetMap has 1E7, see ContourBuilder
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(1E8));
+    private final double cellSizeInMeter;
+    private final int bufferCells;
+    private double minLat, minLon, cellLat, cellLon;
+    private int width, height;
+    private float[] values;
+
+    /**
+     * @param cellSizeInMeter the distance between two grid points, which might be increased for large areas
+     * @param bufferCells     the number of grid points around each road that are considered reached as well
+     */
+    public RasterIsochroneBuilder(double cellSizeInMeter, int bufferCells) {
+        if (cellSizeInMeter <= 0)
+            throw new IllegalArgumentException("cell size must be positive, but was " + cellSizeInMeter);
+        if (bufferCells < 0)
+            throw new IllegalArgumentException("buffer must not be negative, but was " + bufferCells);
+        this.cellSizeInMeter = cellSizeInMeter;
+        this.bufferCells = bufferCells;
+    }
+
+    /**
+     * Runs the search of the given shortest path tree and draws all edges between the reached nodes into the grid, not
+     * only the edges of the tree. The values along an edge are interpolated linearly between its two nodes.
+     */
+    public void rasterize(QueryGraph queryGraph, Weighting weighting, ShortestPathTree shortestPathTree, int from,
+                          ToDoubleFunction<ShortestPathTree.IsoLabel> fz) {
+        IntDoubleHashMap nodeValues = new IntDoubleHashMap();
+        shortestPathTree.search(from, label -> putMin(nodeValues, label.node, fz.applyAsDouble(label)));
+        if (nodeValues.size() < 2)
+            throw new IllegalArgumentException("Too few points found. "
+                    + "Please try a different 'point' or a larger 'time_limit'.");
+        // the nodes right behind the limit are needed so the edges crossing it are drawn as well
+        NodeAccess na = queryGraph.getNodeAccess();
+        BBox bbox = BBox.createInverse(false);
+        for (IntDoubleCursor cursor : nodeValues)
+            bbox.update(na.getLat(cursor.key), na.getLon(cursor.key));
+        for (ShortestPathTree.IsoLabel label : shortestPathTree.getIsochroneEdges())
+            putMin(nodeValues, label.node, fz.applyAsDouble(label));
+        initGrid(bbox);
+
+        EdgeExplorer explorer = queryGraph.createEdgeExplorer();
+        PointList points = new PointList(10, false);
+        for (IntDoubleCursor cursor : nodeValues) {
+            setMin(na.getLat(cursor.key), na.getLon(cursor.key), cursor.value);
+            EdgeIterator iter = explorer.setBaseNode(cursor.key);
+            while (iter.next()) {
+                // every edge is drawn from the node with the smaller id only
+                if (iter.getAdjNode() < cursor.key || !nodeValues.containsKey(iter.getAdjNode())
+                        || Double.isInfinite(weighting.calcEdgeWeight(iter, false)) && Double.isInfinite(weighting.calcEdgeWeight(iter, true)))
+                    continue;
+                points.clear();
+                iter.fetchWayGeometry(FetchMode.ALL, points);
+                drawLine(points, cursor.value, nodeValues.get(iter.getAdjNode()));
+            }
+        }
+        spread();
+    }
+
+    private static void putMin(IntDoubleHashMap nodeValues, int node, double value) {
+        int index = nodeValues.indexOf(node);
+        if (index < 0)
+            nodeValues.indexInsert(index, node, value);
+        else if (value < nodeValues.indexGet(index))
+            nodeValues.indexReplace(index, value);
+    }
+
+    private void initGrid(BBox bbox) {
+        double centerLat = (bbox.minLat + bbox.maxLat) / 2;
+        cellLat = cellSizeInMeter / DistanceCalcEarth.METERS_PER_DEGREE;
+        cellLon = cellLat / Math.cos(Math.toRadians(centerLat));
+        // the grid points at the border must stay unreached so all contour lines are closed
+        int margin = bufferCells + 2;
+        while (true) {
+            width = (int) Math.ceil((bbox.maxLon - bbox.minLon) / cellLon) + 1 + 2 * margin;
+            height = (int) Math.ceil((bbox.maxLat - bbox.minLat) / cellLat) + 1 + 2 * margin;
+            if ((long) width * height <= MAX_GRID_POINTS)
+                break;
+            double factor = Math.sqrt((double) width * height / MAX_GRID_POINTS) * 1.01;
+            cellLat *= factor;
+            cellLon *= factor;
+        }
+        minLat = bbox.minLat - margin * cellLat;
+        minLon = bbox.minLon - margin * cellLon;
+        values = new float[width * height];
+        Arrays.fill(values, Float.POSITIVE_INFINITY);
+    }
+
+    public double getCellSizeInMeter() {
+        return cellLat * DistanceCalcEarth.METERS_PER_DEGREE;
+    }
+
+    /**
+     * Draws the given line by sampling it at least twice per grid cell and interpolates the values linearly.
+     */
+    private void drawLine(PointList points, double zStart, double zEnd) {
+        double length = 0;
+        for (int i = 1; i < points.size(); i++)
+            length += cellDistance(points, i - 1, i);
+        double dz = length > 0 ? (zEnd - zStart) / length : 0;
+        double z = length > 0 ? zStart : zEnd;
+        setMin(points.getLat(0), points.getLon(0), z);
+        for (int i = 1; i < points.size(); i++) {
+            double segment = cellDistance(points, i - 1, i);
+            int steps = (int) Math.ceil(segment * 2);
+            for (int s = 1; s <= steps; s++) {
+                double f = (double) s / steps;
+                setMin(points.getLat(i - 1) + f * (points.getLat(i) - points.getLat(i - 1)),
+                        points.getLon(i - 1) + f * (points.getLon(i) - points.getLon(i - 1)),
+                        z + f * segment * dz);
+            }
+            z += segment * dz;
+        }
+    }
+
+    private double cellDistance(PointList points, int from, int to) {
+        double dx = (points.getLon(to) - points.getLon(from)) / cellLon;
+        double dy = (points.getLat(to) - points.getLat(from)) / cellLat;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void setMin(double lat, double lon, double z) {
+        int x = (int) Math.round((lon - minLon) / cellLon);
+        int y = (int) Math.round((lat - minLat) / cellLat);
+        // pillar nodes can be outside the bounds of the tower nodes, we ignore them when they come close to the border
+        if (x <= bufferCells || y <= bufferCells || x >= width - 1 - bufferCells || y >= height - 1 - bufferCells)
+            return;
+        int index = y * width + x;
+        values[index] = Math.min(values[index], (float) z);
+    }
+
+    /**
+     * Sets every grid point to the minimum value of the grid points within bufferCells, first row- then column-wise.
+     */
+    private void spread() {
+        if (bufferCells == 0)
+            return;
+        float[] tmp = new float[values.length];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++) {
+                float min = Float.POSITIVE_INFINITY;
+                for (int i = Math.max(0, x - bufferCells); i <= Math.min(width - 1, x + bufferCells); i++)
+                    min = Math.min(min, values[y * width + i]);
+                tmp[y * width + x] = min;
+            }
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++) {
+                float min = Float.POSITIVE_INFINITY;
+                for (int i = Math.max(0, y - bufferCells); i <= Math.min(height - 1, y + bufferCells); i++)
+                    min = Math.min(min, tmp[i * width + x]);
+                values[y * width + x] = min;
+            }
+    }
+
+    /**
+     * Extracts the area where the values are less than or equal to z0 using marching squares. The contour lines are
+     * oriented such that the reached area is on their left, i.e. the shells are counter-clockwise and the holes are
+     * clockwise, just like for {@link ContourBuilder}.
+     */
+    public MultiPolygon computeIsoline(double z0) {
+        if (values == null)
+            throw new IllegalStateException("Call rasterize first");
+        // maps the grid edge where the contour line enters a cell to the grid edge where it leaves it
+        IntIntHashMap next = new IntIntHashMap();
+        boolean[] inside = new boolean[4];
+        int[] edges = new int[4];
+        for (int y = 0; y < height - 1; y++) {
+            for (int x = 0; x < width - 1; x++) {
+                // corners and edges in counter-clockwise order starting at the bottom left
+                inside[0] = isInside(x, y, z0);
+                inside[1] = isInside(x + 1, y, z0);
+                inside[2] = isInside(x + 1, y + 1, z0);
+                inside[3] = isInside(x, y + 1, z0);
+                if (inside[0] == inside[1] && inside[1] == inside[2] && inside[2] == inside[3])
+                    continue;
+                edges[0] = horizontalEdge(x, y);
+                edges[1] = verticalEdge(x + 1, y);
+                edges[2] = horizontalEdge(x, y + 1);
+                edges[3] = verticalEdge(x, y);
+                // for the two saddle cases we use the average value to decide whether the inside corners are connected
+                boolean saddle = inside[0] == inside[2] && inside[1] == inside[3];
+                boolean connectInside = saddle && (values[y * width + x] + values[y * width + x + 1]
+                        + values[(y + 1) * width + x + 1] + values[(y + 1) * width + x]) / 4 <= z0;
+                int step = saddle && !connectInside ? 3 : 1;
+                for (int k = 0; k < 4; k++) {
+                    if (!inside[k] || inside[(k + 1) % 4])
+                        continue;
+                    // the line leaves the reached area at edge k, find the edge where it enters it again
+                    int t = (k + step) % 4;
+                    while (inside[t] || !inside[(t + 1) % 4])
+                        t = (t + step) % 4;
+                    next.put(edges[k], edges[t]);
+                }
+            }
+        }
+
+        List<LinearRing> rings = new ArrayList<>();
+        IntHashSet processed = new IntHashSet(next.size());
+        for (IntIntCursor cursor : next) {
+            if (processed.contains(cursor.key))
+                continue;
+            List<Coordinate> coordinates = new ArrayList<>();
+            int edge = cursor.key;
+            do {
+                processed.add(edge);
+                coordinates.add(getCrossing(edge, z0));
+                if (!next.containsKey(edge))
+                    throw new IllegalStateException("Contour line is not closed at grid edge " + edge);
+                edge = next.get(edge);
+            } while (edge != cursor.key);
+            coordinates.add(coordinates.get(0));
+            if (coordinates.size() >= 4)
+                rings.add(geometryFactory.createLinearRing(coordinates.toArray(new Coordinate[0])));
+        }
+        List<Polygon> polygons = ContourBuilder.punchHoles(geometryFactory, rings);
+        return geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[0]));
+    }
+
+    private boolean isInside(int x, int y, double z0) {
+        return values[y * width + x] <= z0;
+    }
+
+    private int horizontalEdge(int x, int y) {
+        return 2 * (y * width + x);
+    }
+
+    private int verticalEdge(int x, int y) {
+        return 2 * (y * width + x) + 1;
+    }
+
+    /**
+     * @return the point on the given grid edge where the interpolated value equals z0
+     */
+    private Coordinate getCrossing(int edge, double z0) {
+        int index = edge / 2;
+        int x = index % width, y = index / width;
+        int otherX = edge % 2 == 0 ? x + 1 : x;
+        int otherY = edge % 2 == 0 ? y : y + 1;
+        double a = values[index], b = values[otherY * width + otherX];
+        // interpolate from the reached to the unreached grid point and stay away from the grid points to avoid
+        // duplicate coordinates
+        boolean reverse = a > z0;
+        double zIn = reverse ? b : a, zOut = reverse ? a : b;
+        double t = Double.isInfinite(zOut) ? 0.5 : Math.max(0.001, Math.min(0.999, (z0 - zIn) / (zOut - zIn)));
+        if (reverse)
+            t = 1 - t;
+        return new Coordinate(minLon + (x + t * (otherX - x)) * cellLon, minLat + (y + t * (otherY - y)) * cellLat);
+    }
+}
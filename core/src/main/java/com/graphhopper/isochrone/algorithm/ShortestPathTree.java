@@ -133,13 +133,14 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
 
     public void search(int from, final Consumer<IsoLabel> consumer) {
         checkAlreadyRun();
+        setupFinishTime();
         IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
         queueByWeighting.add(currentLabel);
         queueByZ.add(currentLabel);
         if (traversalMode == TraversalMode.NODE_BASED) {
             fromMap.put(from, currentLabel);
         }
-        while (!finished()) {
+        while (!finished() && !isMaxVisitedNodesExceeded() && !isTimeoutExceeded()) {
             currentLabel = queueByWeighting.poll();
             if (currentLabel.deleted)
                 continue;
@@ -195,7 +196,7 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         return result;
     }
 
-    private double getExploreValue(IsoLabel label) {
+    protected double getExploreValue(IsoLabel label) {
         if (exploreType == TIME)
             return label.time;
         if (exploreType == WEIGHT)
@@ -203,6 +204,10 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         return label.distance;
     }
 
+    protected double getLimit() {
+        return limit;
+    }
+
     protected boolean finished() {
         while (queueByZ.peek() != null && queueByZ.peek().deleted)
             queueByZ.poll();
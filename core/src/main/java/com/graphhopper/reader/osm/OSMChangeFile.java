@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.coll.GHLongObjectHashMap;
+import com.graphhopper.reader.ReaderWay;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads an OSM change file (.osc or .osc.gz, see https://wiki.openstreetmap.org/wiki/OsmChange). We only keep the
+ * modified ways, because only tag changes of existing ways can be applied to an existing graph. All other changes
+ * (created or deleted elements, modified nodes and relations) are only counted. Changed turn restrictions are counted
+ * separately, so they can be rejected for graphs with turn costs. Note that deleted relations usually have no tags in
+ * change files, so their deletion is not recognized as a turn restriction change.
+ */
+public class OSMChangeFile {
+    private final GHLongObjectHashMap<ReaderWay> modifiedWays = new GHLongObjectHashMap<>();
+    private int ignoredChanges;
+    private int turnRestrictionChanges;
+
+    public static OSMChangeFile read(File file) throws IOException {
+        try (InputStream is = decode(file)) {
+            OSMChangeFile changeFile = new OSMChangeFile();
+            changeFile.read(XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8"));
+            return changeFile;
+        } catch (XMLStreamException ex) {
+            throw new IOException("Cannot read OSM change file " + file, ex);
+        }
+    }
+
+    private static InputStream decode(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), 50000);
+        is.mark(2);
+        boolean gzipped = is.read() == 31 && is.read() == 139;
+        is.reset();
+        return gzipped ? new GZIPInputStream(is, 50000) : is;
+    }
+
+    private void read(XMLStreamReader parser) throws XMLStreamException {
+        int event = parser.nextTag();
+        if (event != XMLStreamConstants.START_ELEMENT || !parser.getLocalName().equals("osmChange"))
+            throw new IllegalArgumentException("File is not a valid OSM change stream");
+
+        String action = "";
+        while (event != XMLStreamConstants.END_DOCUMENT) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = parser.getLocalName();
+                String idStr = parser.getAttributeValue(null, "id");
+                if (name.equals("create") || name.equals("modify") || name.equals("delete")) {
+                    action = name;
+                } else if (idStr != null && (name.equals("node") || name.equals("way") || name.equals("relation"))) {
+                    if (action.equals("modify") && name.equals("way")) {
+                        // the last version of a way wins if it is modified several times
+                        ReaderWay way = OSMXMLHelper.createWay(Long.parseLong(idStr), parser);
+                        modifiedWays.put(way.getId(), way);
+                    } else if (name.equals("relation")
+                            && OSMRestrictionConverter.isTurnRestriction(OSMXMLHelper.createRelation(Long.parseLong(idStr), parser))) {
+                        turnRestrictionChanges++;
+                    } else {
+                        ignoredChanges++;
+                    }
+                }
+            }
+            event = parser.next();
+        }
+        parser.close();
+    }
+
+    /**
+     * @return the last version of all ways contained in a modify block, with their OSM way ID as key
+     */
+    public GHLongObjectHashMap<ReaderWay> getModifiedWays() {
+        return modifiedWays;
+    }
+
+    /**
+     * @return the number of turn restriction relations that were created, deleted or modified
+     */
+    public int getTurnRestrictionChanges() {
+        return turnRestrictionChanges;
+    }
+
+    /**
+     * @return the number of elements that were created, deleted or modified but are neither a modified way nor a turn
+     * restriction
+     */
+    public int getIgnoredChanges() {
+        return ignoredChanges;
+    }
+}
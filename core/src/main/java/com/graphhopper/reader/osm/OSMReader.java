@@ -18,8 +18,12 @@
 package com.graphhopper.reader.osm;
 
 import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
 import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.coll.GHLongObjectHashMap;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
@@ -29,9 +33,8 @@ import com.graphhopper.reader.dem.EdgeElevationSmoothingRamer;
 import com.graphhopper.reader.dem.EdgeSampling;
 import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.routing.OSMReaderConfig;
-import com.graphhopper.routing.ev.Country;
-import com.graphhopper.routing.ev.EdgeIntAccess;
-import com.graphhopper.routing.ev.State;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.CustomArea;
 import com.graphhopper.routing.util.FerrySpeedCalculator;
@@ -39,6 +42,7 @@ import com.graphhopper.routing.util.OSMParsers;
 import com.graphhopper.routing.util.countryrules.CountryRule;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.RestrictionSetter;
+import com.graphhopper.routing.util.parsers.TagParser;
 import com.graphhopper.search.KVStorage;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
@@ -53,6 +57,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -183,6 +188,98 @@ public class OSMReader {
                 osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter));
     }
 
+    /**
+     * Applies the tag changes of the ways that were modified in the given change file to the edges of an existing
+     * graph, without reading the OSM file again. The way tag parsers are run again for every edge of such a way, using
+     * the new way tags and the geometry stored in the graph. Node tags and relations are not known here, so barrier
+     * edges are left unchanged, the parsers get empty node tags and the relation tag parsers are not run. Values that
+     * depend on them have to be kept. Changed turn restrictions are not applied, see
+     * {@link OSMChangeFile#getTurnRestrictionChanges()}.
+     *
+     * @param osmWayIdEnc       is used to find the edges of the modified ways
+     * @param keptValues        the values of these encoded values are kept, because they are not derived from the way
+     *                          tags alone, e.g. route networks, subnetworks or the crossing, which is derived from the
+     *                          node tags
+     * @param beforeEdgeChange  is called for every edge before its flags are changed
+     * @return the number of changed edges
+     */
+    public int applyChanges(OSMChangeFile changeFile, IntEncodedValue osmWayIdEnc, List<EncodedValue> keptValues,
+                            Consumer<EdgeIteratorState> beforeEdgeChange) {
+        GHLongObjectHashMap<ReaderWay> modifiedWays = changeFile.getModifiedWays();
+        GHLongObjectHashMap<IntArrayList> edgesByWay = new GHLongObjectHashMap<>(modifiedWays.size());
+        int modifiedEdges = 0;
+        AllEdgesIterator iter = baseGraph.getAllEdges();
+        while (iter.next()) {
+            long wayId = osmWayIdEnc.getInt(false, iter.getEdge(), edgeIntAccess);
+            if (!modifiedWays.containsKey(wayId))
+                continue;
+            IntArrayList edges = edgesByWay.get(wayId);
+            if (edges == null)
+                edgesByWay.put(wayId, edges = new IntArrayList());
+            edges.add(iter.getEdge());
+            modifiedEdges++;
+        }
+
+        int changedEdges = 0;
+        IntsRef emptyRelFlags = osmParsers.createRelationFlags();
+        for (LongObjectCursor<IntArrayList> cursor : edgesByWay) {
+            ReaderWay way = modifiedWays.get(cursor.key);
+            preprocessWay(way, null, osmNodeId -> Collections.emptyMap());
+            if (isCalculateWayDistance(way)) {
+                double wayDistance = 0;
+                for (IntCursor edge : cursor.value)
+                    wayDistance += baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE).getDistance();
+                setWayDistance(way, wayDistance);
+            }
+            for (IntCursor edgeCursor : cursor.value) {
+                EdgeIteratorState edge = baseGraph.getEdgeIteratorState(edgeCursor.value, Integer.MIN_VALUE);
+                PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+                if (isBarrierEdge(pointList))
+                    continue;
+
+                IntsRef oldFlags = edge.getFlags();
+                IntsRef newFlags = new IntsRef(oldFlags.length);
+                IntsRefEdgeIntAccess oldAccess = new IntsRefEdgeIntAccess(oldFlags);
+                IntsRefEdgeIntAccess newAccess = new IntsRefEdgeIntAccess(newFlags);
+                for (EncodedValue ev : keptValues) {
+                    if (!(ev instanceof IntEncodedValueImpl intEnc))
+                        // the value is not stored in the edge flags
+                        continue;
+                    intEnc.setInt(false, edge.getEdge(), newAccess, intEnc.getInt(false, edge.getEdge(), oldAccess));
+                    if (intEnc.isStoreTwoDirections())
+                        intEnc.setInt(true, edge.getEdge(), newAccess, intEnc.getInt(true, edge.getEdge(), oldAccess));
+                }
+                List<Map<String, Object>> nodeTags = new ArrayList<>(pointList.size());
+                for (int i = 0; i < pointList.size(); i++)
+                    nodeTags.add(Collections.emptyMap());
+                setArtificialWayTags(pointList, way, edge.getDistance(), nodeTags);
+                for (TagParser parser : osmParsers.getWayTagParsers())
+                    parser.handleWayTags(edge.getEdge(), newAccess, way, emptyRelFlags);
+
+                Map<String, KValue> keyValues = way.getTag("key_values", Collections.emptyMap());
+                boolean keyValuesChanged = !keyValues.equals(edge.getKeyValues());
+                if (!keyValuesChanged && Arrays.equals(oldFlags.ints, newFlags.ints))
+                    continue;
+                beforeEdgeChange.accept(edge);
+                edge.setFlags(newFlags);
+                if (keyValuesChanged)
+                    edge.setKeyValues(keyValues);
+                changedEdges++;
+            }
+        }
+        LOGGER.info("Applied changes of {} modified ways to {} edges, {} edges changed, ignored {} ways that are not in the graph and {} other changes",
+                nf(edgesByWay.size()), nf(modifiedEdges), nf(changedEdges),
+                nf(modifiedWays.size() - edgesByWay.size()), nf(changeFile.getIgnoredChanges()));
+        return changedEdges;
+    }
+
+    /**
+     * Barrier edges are artificial edges between two copies of the barrier node, see {@link WaySegmentParser}.
+     */
+    private static boolean isBarrierEdge(PointList pointList) {
+        return pointList.size() == 2 && pointList.getLat(0) == pointList.getLat(1) && pointList.getLon(0) == pointList.getLon(1);
+    }
+
     /**
      * @return the timestamp given in the OSM file header or null if not found
      */
@@ -486,7 +583,8 @@ public class OSMReader {
 
         way.setTag("key_values", map);
 
-        if (!isCalculateWayDistance(way))
+        // without coordinates, i.e. when applying changes, the caller determines the distance itself
+        if (!isCalculateWayDistance(way) || coordinateSupplier == null)
             return;
 
         double distance = calcDistance(way, coordinateSupplier);
@@ -496,6 +594,10 @@ public class OSMReader {
             LOGGER.warn("Could not determine distance for OSM way: " + way.getId());
             return;
         }
+        setWayDistance(way, distance);
+    }
+
+    private void setWayDistance(ReaderWay way, double distance) {
         way.setTag("way_distance", distance);
 
         // For ways with a duration tag we determine the average speed. This is needed for e.g. ferry routes, because
@@ -19,16 +19,20 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntIndexedContainer;
+import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Minimum number-of-moving-parts implementation of alternative route search with
@@ -45,6 +49,8 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
     private final int maxPaths;
     private final List<AlternativeInfo> alternatives = new ArrayList<>();
     private int extraVisitedNodes = 0;
+    private ExecutorService executor;
+    private int parallelism = 1;
 
     public AlternativeRouteCH(RoutingCHGraph graph, PMap hints) {
         super(graph);
@@ -54,6 +60,19 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
         maxPaths = hints.getInt("alternative_route.max_paths", 3);
     }
 
+    /**
+     * @param executor    the executor used to evaluate the via-node candidates concurrently or null to evaluate them
+     *                    one by one
+     * @param parallelism the number of candidates that are evaluated at the same time
+     */
+    public AlternativeRouteCH setExecutor(ExecutorService executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        return this;
+    }
+
     @Override
     public boolean finished() {
         if (finishedFrom && finishedTo)
@@ -108,104 +127,207 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
 
         potentialAlternativeInfos.sort(Comparator.comparingDouble(o -> o.weight));
 
-        for (PotentialAlternativeInfo potentialAlternativeInfo : potentialAlternativeInfos) {
-            int v = potentialAlternativeInfo.v;
-
-            // Okay, now we want the s -> v -> t shortest via-path, so we route s -> v and v -> t
-            // and glue them together.
-            DijkstraBidirectionCH svRouter = new DijkstraBidirectionCH(graph);
-            svRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path svPath = svRouter.calcPath(s, v);
-            extraVisitedNodes += svRouter.getVisitedNodes();
-
-            DijkstraBidirectionCH vtRouter = new DijkstraBidirectionCH(graph);
-            vtRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path vtPath = vtRouter.calcPath(v, t);
-            Path path = concat(graph.getBaseGraph(), svPath, vtPath);
-            extraVisitedNodes += vtRouter.getVisitedNodes();
-
-            double sharedDistanceWithShortest = sharedDistanceWithShortest(path);
-            double detourLength = path.getDistance() - sharedDistanceWithShortest;
-            double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
-            if (detourLength > directLength * maxWeightFactor) {
-                continue;
+        // the search spaces contain the exact upward weights for all nodes up to the weight limit unless the search
+        // was stopped early, so we can use them to find the s -> v and v -> t paths
+        final boolean reuseSearchSpaces = finished();
+        // the via-node candidates are evaluated in batches, possibly concurrently. the result is the same as if we
+        // evaluated them one by one, because only the final share check depends on the previously accepted alternatives
+        final int batchSize = executor == null ? 1 : parallelism;
+        for (int i = 0; i < potentialAlternativeInfos.size() && alternatives.size() < maxPaths; i += batchSize) {
+            List<PotentialAlternativeInfo> batch = potentialAlternativeInfos.subList(i, Math.min(i + batchSize, potentialAlternativeInfos.size()));
+            List<IntIndexedContainer> alternativeNodes = new ArrayList<>(alternatives.size());
+            for (AlternativeInfo alternative : alternatives)
+                alternativeNodes.add(alternative.nodes);
+            for (ViaPath viaPath : evaluate(batch, s, t, bestPath, alternativeNodes, reuseSearchSpaces)) {
+                extraVisitedNodes += viaPath.visitedNodes;
+                if (viaPath.path == null)
+                    continue;
+                double share = calculateShare(viaPath.path);
+                if (share > maxShareFactor)
+                    continue;
+                alternatives.add(new AlternativeInfo(viaPath.path, share));
+                if (alternatives.size() >= maxPaths)
+                    break;
             }
+        }
+        return alternatives;
+    }
 
-            double share = calculateShare(path);
-            if (share > maxShareFactor) {
-                continue;
+    private List<ViaPath> evaluate(List<PotentialAlternativeInfo> batch, int s, int t, Path bestPath,
+                                   List<IntIndexedContainer> alternativeNodes, boolean reuseSearchSpaces) {
+        List<ViaPath> result = new ArrayList<>(batch.size());
+        if (executor == null || batch.size() == 1) {
+            for (PotentialAlternativeInfo info : batch)
+                result.add(evaluate(info.v, s, t, bestPath, alternativeNodes, reuseSearchSpaces));
+            return result;
+        }
+        List<Future<ViaPath>> futures = new ArrayList<>(batch.size());
+        for (int i = 1; i < batch.size(); i++) {
+            int v = batch.get(i).v;
+            futures.add(executor.submit(() -> evaluate(v, s, t, bestPath, alternativeNodes, reuseSearchSpaces)));
+        }
+        try {
+            result.add(evaluate(batch.get(0).v, s, t, bestPath, alternativeNodes, reuseSearchSpaces));
+            for (int i = 0; i < futures.size(); i++) {
+                // if the executor did not start the task yet we do the work ourselves, so we never wait for a task
+                // that is queued behind other requests
+                if (futures.get(i).cancel(false))
+                    result.add(evaluate(batch.get(i + 1).v, s, t, bestPath, alternativeNodes, reuseSearchSpaces));
+                else
+                    result.add(futures.get(i).get());
             }
-
-            // This is the final test we need: Discard paths that are not "locally shortest" around v.
-            // So move a couple of nodes to the left and right from v on our path,
-            // route, and check if v is on the shortest path.
-            final IntIndexedContainer svNodes = svPath.calcNodes();
-            int vIndex = svNodes.size() - 1;
-            if (!tTest(path, vIndex))
-                continue;
-
-            alternatives.add(new AlternativeInfo(path, share));
-            if (alternatives.size() >= maxPaths)
-                break;
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            for (Future<ViaPath> future : futures)
+                future.cancel(true);
         }
-        return alternatives;
     }
 
-    private double calculateShare(final Path path) {
-        double sharedDistance = sharedDistance(path);
-        return sharedDistance / path.getDistance();
+    /**
+     * Calculates the s -> v -> t via-path and checks everything that does not depend on the alternatives that are
+     * accepted later, so this method can be called concurrently.
+     *
+     * @return the via-path, whose path is null if it is not an admissible alternative
+     */
+    private ViaPath evaluate(int v, int s, int t, Path bestPath, List<IntIndexedContainer> alternativeNodes, boolean reuseSearchSpaces) {
+        ViaPath result = new ViaPath();
+        // Okay, now we want the s -> v -> t shortest via-path, so we route s -> v and v -> t
+        // and glue them together.
+        final Path svPath = reuseSearchSpaces ? calcPathFromSearchSpace(v, bestWeightMapFrom, true, result) : calcPath(s, v, result);
+        final Path vtPath = reuseSearchSpaces ? calcPathFromSearchSpace(v, bestWeightMapTo, false, result) : calcPath(v, t, result);
+        if (!svPath.isFound() || !vtPath.isFound())
+            return result;
+        Path path = concat(graph.getBaseGraph(), svPath, vtPath);
+
+        IntIndexedContainer bestNodes = alternativeNodes.get(0);
+        double sharedDistanceWithShortest = sharedDistance(path, Collections.singletonList(bestNodes));
+        double detourLength = path.getDistance() - sharedDistanceWithShortest;
+        double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
+        if (detourLength > directLength * maxWeightFactor)
+            return result;
+
+        // the share can only grow when more alternatives are accepted, so we can already skip the expensive t-test
+        if (sharedDistance(path, alternativeNodes) / path.getDistance() > maxShareFactor)
+            return result;
+
+        // This is the final test we need: Discard paths that are not "locally shortest" around v.
+        // So move a couple of nodes to the left and right from v on our path,
+        // route, and check if v is on the shortest path.
+        final IntIndexedContainer svNodes = svPath.calcNodes();
+        int vIndex = svNodes.size() - 1;
+        if (!tTest(path, vIndex, detourLength, result))
+            return result;
+        result.path = path;
+        return result;
     }
 
-    private double sharedDistance(Path path) {
-        double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
-        for (EdgeIteratorState edge : edges) {
-            if (nodesInCurrentAlternativeSetContains(edge.getBaseNode()) && nodesInCurrentAlternativeSetContains(edge.getAdjNode())) {
-                sharedDistance += edge.getDistance();
+    private Path calcPath(int from, int to, ViaPath viaPath) {
+        DijkstraBidirectionCH router = new DijkstraBidirectionCH(graph);
+        router.setPathExtractorSupplier(this::createPathExtractor);
+        Path path = router.calcPath(from, to);
+        viaPath.visitedNodes += router.getVisitedNodes();
+        return path;
+    }
+
+    /**
+     * Finds the shortest path from s to v (reverse=true) or v to t (reverse=false) using a single upward search
+     * starting at v that meets the given search space of the original search. This is much cheaper than a new
+     * bidirectional search, because the search space around v is usually small and the search can be stopped as soon
+     * as its weight exceeds the best meeting point.
+     */
+    private Path calcPathFromSearchSpace(int v, IntObjectMap<SPTEntry> otherSearchSpace, boolean reverse, ViaPath viaPath) {
+        RoutingCHEdgeExplorer explorer = reverse ? graph.createInEdgeExplorer() : graph.createOutEdgeExplorer();
+        PriorityQueue<SPTEntry> queue = new PriorityQueue<>();
+        IntObjectMap<SPTEntry> searchSpace = new GHIntObjectHashMap<>();
+        SPTEntry start = new SPTEntry(v, 0);
+        queue.add(start);
+        searchSpace.put(v, start);
+        double bestWeight = Double.POSITIVE_INFINITY;
+        SPTEntry bestEntry = null;
+        SPTEntry bestOtherEntry = null;
+        while (!queue.isEmpty()) {
+            SPTEntry curr = queue.poll();
+            if (curr.isDeleted())
+                continue;
+            if (curr.weight >= bestWeight)
+                break;
+            viaPath.visitedNodes++;
+            SPTEntry other = otherSearchSpace.get(curr.adjNode);
+            if (other != null && curr.weight + other.weight < bestWeight) {
+                bestWeight = curr.weight + other.weight;
+                bestEntry = curr;
+                bestOtherEntry = other;
+            }
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                if (iter.getEdge() == curr.edge || !levelEdgeFilter.accept(iter))
+                    continue;
+                double weight = curr.weight + iter.getWeight(reverse);
+                if (Double.isInfinite(weight))
+                    continue;
+                SPTEntry entry = searchSpace.get(iter.getAdjNode());
+                if (entry != null) {
+                    if (entry.weight <= weight)
+                        continue;
+                    entry.setDeleted();
+                }
+                entry = new SPTEntry(iter.getEdge(), iter.getAdjNode(), weight, curr);
+                searchSpace.put(iter.getAdjNode(), entry);
+                queue.add(entry);
             }
         }
-        return sharedDistance;
+        if (bestEntry == null)
+            return createEmptyPath();
+        return reverse
+                ? createPathExtractor().extract(bestOtherEntry, bestEntry, bestWeight)
+                : createPathExtractor().extract(bestEntry, bestOtherEntry, bestWeight);
+    }
+
+    private double calculateShare(final Path path) {
+        List<IntIndexedContainer> alternativeNodes = new ArrayList<>(alternatives.size());
+        for (AlternativeInfo alternative : alternatives)
+            alternativeNodes.add(alternative.nodes);
+        return sharedDistance(path, alternativeNodes) / path.getDistance();
     }
 
-    private double sharedDistanceWithShortest(Path path) {
+    private static double sharedDistance(Path path, List<IntIndexedContainer> alternativeNodes) {
         double sharedDistance = 0.0;
         List<EdgeIteratorState> edges = path.calcEdges();
         for (EdgeIteratorState edge : edges) {
-            if (alternatives.get(0).nodes.contains(edge.getBaseNode()) && alternatives.get(0).nodes.contains(edge.getAdjNode())) {
+            if (containsNode(alternativeNodes, edge.getBaseNode()) && containsNode(alternativeNodes, edge.getAdjNode())) {
                 sharedDistance += edge.getDistance();
             }
         }
         return sharedDistance;
     }
 
-    private boolean nodesInCurrentAlternativeSetContains(int v) {
-        for (AlternativeInfo alternative : alternatives) {
-            if (alternative.nodes.contains(v)) {
+    private static boolean containsNode(List<IntIndexedContainer> alternativeNodes, int v) {
+        for (IntIndexedContainer nodes : alternativeNodes) {
+            if (nodes.contains(v)) {
                 return true;
             }
         }
         return false;
     }
 
-    private boolean tTest(Path path, int vIndex) {
+    private boolean tTest(Path path, int vIndex, double detourDistance, ViaPath viaPath) {
         if (path.getEdgeCount() == 0) return true;
-        double detourDistance = detourDistance(path);
         double T = 0.5 * localOptimalityFactor * detourDistance;
         int fromNode = getPreviousNodeTMetersAway(path, vIndex, T);
         int toNode = getNextNodeTMetersAway(path, vIndex, T);
-        DijkstraBidirectionCH tRouter = new DijkstraBidirectionCH(graph);
-        tRouter.setPathExtractorSupplier(this::createPathExtractor);
-        Path tPath = tRouter.calcPath(fromNode, toNode);
-        extraVisitedNodes += tRouter.getVisitedNodes();
+        Path tPath = calcPath(fromNode, toNode, viaPath);
         IntIndexedContainer tNodes = tPath.calcNodes();
         int v = path.calcNodes().get(vIndex);
         return tNodes.contains(v);
     }
 
-    private double detourDistance(Path path) {
-        return path.getDistance() - sharedDistanceWithShortest(path);
-    }
-
     private int getPreviousNodeTMetersAway(Path path, int vIndex, double T) {
         List<EdgeIteratorState> edges = path.calcEdges();
         double distance = 0.0;
@@ -254,6 +376,11 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
         return paths;
     }
 
+    private static class ViaPath {
+        Path path;
+        int visitedNodes;
+    }
+
     public static class PotentialAlternativeInfo {
         int v;
         double weight;
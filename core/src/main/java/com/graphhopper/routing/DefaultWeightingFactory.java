@@ -21,7 +21,9 @@ package com.graphhopper.routing;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Orientation;
+import com.graphhopper.routing.ev.TrafficSpeedOverlay;
 import com.graphhopper.routing.ev.TurnRestriction;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
@@ -42,10 +44,19 @@ public class DefaultWeightingFactory implements WeightingFactory {
 
     private final BaseGraph graph;
     private final EncodingManager encodingManager;
+    private final EncodedValueLookup customModelLookup;
 
     public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager) {
+        this(graph, encodingManager, null);
+    }
+
+    /**
+     * @param trafficSpeedOverlay if not null custom models can use its speeds, see {@link TrafficSpeedOverlay}
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, TrafficSpeedOverlay trafficSpeedOverlay) {
         this.graph = graph;
         this.encodingManager = encodingManager;
+        this.customModelLookup = trafficSpeedOverlay == null ? encodingManager : trafficSpeedOverlay.extend(encodingManager);
     }
 
     @Override
@@ -82,12 +93,12 @@ public class DefaultWeightingFactory implements WeightingFactory {
             final CustomModel mergedCustomModel = CustomModel.merge(profile.getCustomModel(), queryCustomModel);
             if (requestHints.has(Parameters.Routing.HEADING_PENALTY))
                 mergedCustomModel.setHeadingPenalty(requestHints.getDouble(Parameters.Routing.HEADING_PENALTY, Parameters.Routing.DEFAULT_HEADING_PENALTY));
-            if (hints.has("cm_version")) {
-                if (!hints.getString("cm_version", "").equals("2"))
+            if (hints.has(Parameters.Routing.CM_VERSION)) {
+                if (!hints.getString(Parameters.Routing.CM_VERSION, "").equals("2"))
                     throw new IllegalArgumentException("cm_version: \"2\" is required");
-                weighting = CustomModelParser.createWeighting2(encodingManager, turnCostProvider, mergedCustomModel);
+                weighting = CustomModelParser.createWeighting2(customModelLookup, turnCostProvider, mergedCustomModel);
             } else
-                weighting = CustomModelParser.createWeighting(encodingManager, turnCostProvider, mergedCustomModel);
+                weighting = CustomModelParser.createWeighting(customModelLookup, turnCostProvider, mergedCustomModel);
 
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
             throw new IllegalArgumentException("Instead of weighting=shortest use weighting=custom with a high distance_influence");
@@ -106,4 +117,13 @@ public class DefaultWeightingFactory implements WeightingFactory {
         return weighting;
     }
 
+    /**
+     * @return true if the given request hints lead to a different weighting than the one of the profile alone, i.e. a
+     * CH preparation of the profile cannot be used for such a request
+     */
+    public static boolean changesProfileWeighting(PMap requestHints) {
+        return requestHints.has(CustomModel.KEY) || requestHints.has(Parameters.Routing.HEADING_PENALTY)
+                || requestHints.has(Parameters.Routing.CM_VERSION) || requestHints.has(Parameters.Routing.U_TURN_COSTS);
+    }
+
 }
@@ -101,6 +101,10 @@ public class FlexiblePathCalculator implements PathCalculator {
         return visitedNodes;
     }
 
+    public AlgorithmOptions getAlgoOpts() {
+        return algoOpts;
+    }
+
     public Weighting getWeighting() {
         return weighting;
     }
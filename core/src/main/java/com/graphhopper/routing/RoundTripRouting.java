@@ -18,18 +18,27 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.IntSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.isochrone.algorithm.ShortestPathTree;
+import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.util.tour.MultiPointTour;
 import com.graphhopper.routing.util.tour.TourStrategy;
 import com.graphhopper.routing.weighting.AvoidEdgesWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.ArrayUtil;
 import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters.Algorithms.RoundTrip;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.shapes.GHPoint;
 
@@ -37,6 +46,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
+
 
 /**
  * Implementation of calculating a route with one or more round trip (route with identical start and
@@ -45,6 +56,8 @@ import java.util.Random;
  * @author Peter Karich
  */
 public class RoundTripRouting {
+    // the road distance to the generated points is usually not much longer than the beeline distance
+    private static final double MAX_DETOUR_FACTOR = 1.5;
 
     public static class Params {
         final double distanceInMeter;
@@ -52,6 +65,7 @@ public class RoundTripRouting {
         final double initialHeading;
         final int roundTripPointCount;
         final int maxRetries;
+        final boolean shortestPathTree;
 
         public Params() {
             this(new PMap(), 0, 3);
@@ -61,24 +75,18 @@ public class RoundTripRouting {
             distanceInMeter = hints.getDouble(RoundTrip.DISTANCE, 10_000);
             seed = hints.getLong(RoundTrip.SEED, 0L);
             roundTripPointCount = Math.min(20, hints.getInt(RoundTrip.POINTS, 2 + (int) (distanceInMeter / 50000)));
+            shortestPathTree = hints.getBool(RoundTrip.SHORTEST_PATH_TREE, false);
             this.initialHeading = initialHeading;
             this.maxRetries = maxRetries;
         }
     }
 
     public static List<Snap> lookup(List<GHPoint> points, EdgeFilter edgeFilter, LocationIndex locationIndex, Params params) {
-        // todo: no snap preventions for round trip so far
-        if (points.size() != 1)
-            throw new IllegalArgumentException("For round trip calculation exactly one point is required");
-
         final GHPoint start = points.get(0);
+        Snap startSnap = lookupStart(points, edgeFilter, locationIndex);
 
-        TourStrategy strategy = new MultiPointTour(new Random(params.seed), params.distanceInMeter, params.roundTripPointCount, params.initialHeading);
+        TourStrategy strategy = createTourStrategy(params);
         List<Snap> snaps = new ArrayList<>(2 + strategy.getNumberOfGeneratedPoints());
-        Snap startSnap = locationIndex.findClosest(start.lat, start.lon, edgeFilter);
-        if (!startSnap.isValid())
-            throw new PointNotFoundException("Cannot find point 0: " + start, 0);
-
         snaps.add(startSnap);
 
         GHPoint last = start;
@@ -93,6 +101,22 @@ public class RoundTripRouting {
         return snaps;
     }
 
+    public static Snap lookupStart(List<GHPoint> points, EdgeFilter edgeFilter, LocationIndex locationIndex) {
+        // todo: no snap preventions for round trip so far
+        if (points.size() != 1)
+            throw new IllegalArgumentException("For round trip calculation exactly one point is required");
+
+        final GHPoint start = points.get(0);
+        Snap startSnap = locationIndex.findClosest(start.lat, start.lon, edgeFilter);
+        if (!startSnap.isValid())
+            throw new PointNotFoundException("Cannot find point 0: " + start, 0);
+        return startSnap;
+    }
+
+    private static TourStrategy createTourStrategy(Params params) {
+        return new MultiPointTour(new Random(params.seed), params.distanceInMeter, params.roundTripPointCount, params.initialHeading);
+    }
+
     private static Snap generateValidPoint(GHPoint lastPoint, double distanceInMeters, double heading, EdgeFilter edgeFilter, LocationIndex locationIndex, int maxRetries) {
         int tryCount = 0;
         while (true) {
@@ -136,6 +160,123 @@ public class RoundTripRouting {
         return result;
     }
 
+    /**
+     * Calculates a round trip without snapping the generated points and routing every leg separately: a single
+     * shortest path tree is calculated from the start and bounded by the distance of the generated points. The
+     * waypoints are the reached tower nodes that are closest to the generated points, so they are always reachable and
+     * no retries are needed. The first leg is taken from the tree and only the remaining legs need a point-to-point
+     * search. The tree is bounded by the maximum visited nodes and the timeout of the path calculator.
+     */
+    public static Result calcPathsFromTree(Snap startSnap, QueryGraph queryGraph, LocationIndex locationIndex,
+                                           FlexiblePathCalculator pathCalculator, TraversalMode traversalMode, Params params) {
+        RoundTripCalculator roundTripCalculator = new RoundTripCalculator(pathCalculator);
+        TourStrategy strategy = createTourStrategy(params);
+        int startNode = startSnap.getClosestNode();
+        GHPoint start = startSnap.getSnappedPoint();
+        // the generated points do not depend on the waypoints much, so we can use them to bound the search
+        double maxDistance = 0;
+        GHPoint last = start;
+        for (int i = 0; i < strategy.getNumberOfGeneratedPoints(); i++) {
+            last = DIST_EARTH.projectCoordinate(last.getLat(), last.getLon(), strategy.getDistanceForIteration(i), strategy.getHeadingForIteration(i));
+            maxDistance = Math.max(maxDistance, DIST_EARTH.calcDist(start.getLat(), start.getLon(), last.getLat(), last.getLon()));
+        }
+        strategy = createTourStrategy(params);
+
+        ShortestPathTree tree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(pathCalculator.getWeighting()), false, traversalMode);
+        tree.setDistanceLimit(maxDistance * MAX_DETOUR_FACTOR);
+        AlgorithmOptions algoOpts = pathCalculator.getAlgoOpts();
+        tree.setMaxVisitedNodes(algoOpts.getMaxVisitedNodes());
+        tree.setTimeoutMillis(algoOpts.getTimeoutMillis());
+        int baseNodes = queryGraph.getBaseGraph().getNodes();
+        List<ShortestPathTree.IsoLabel> labels = new ArrayList<>();
+        IntObjectMap<ShortestPathTree.IsoLabel> bestLabels = new GHIntObjectHashMap<>();
+        tree.search(startNode, label -> {
+            if (label.node >= baseNodes)
+                return;
+            ShortestPathTree.IsoLabel best = bestLabels.get(label.node);
+            if (best == null)
+                labels.add(label);
+            if (best == null || label.weight < best.weight)
+                bestLabels.put(label.node, label);
+        });
+        if (tree.getVisitedNodes() >= algoOpts.getMaxVisitedNodes())
+            throw new MaximumNodesExceededException("No round trip found due to maximum nodes exceeded " + algoOpts.getMaxVisitedNodes(), algoOpts.getMaxVisitedNodes());
+        if (tree.isTimeoutExceeded())
+            throw new IllegalArgumentException("No round trip found due to timeout after " + algoOpts.getTimeoutMillis() + "ms");
+        if (labels.isEmpty())
+            throw new IllegalArgumentException("Could not find a valid point for the round trip starting at " + start);
+
+        NodeAccess nodeAccess = queryGraph.getNodeAccess();
+        Result result = new Result(strategy.getNumberOfGeneratedPoints() + 1);
+        result.wayPoints = new PointList(strategy.getNumberOfGeneratedPoints() + 2, nodeAccess.is3D());
+        result.wayPoints.add(nodeAccess, startNode);
+        result.visitedNodes += tree.getVisitedNodes();
+        int prevNode = startNode;
+        last = start;
+        for (int i = 0; i < strategy.getNumberOfGeneratedPoints(); i++) {
+            GHPoint generatedPoint = DIST_EARTH.projectCoordinate(last.getLat(), last.getLon(), strategy.getDistanceForIteration(i), strategy.getHeadingForIteration(i));
+            int node = findClosestNode(locationIndex, bestLabels, labels, nodeAccess, generatedPoint);
+            last = new GHPoint(nodeAccess.getLat(node), nodeAccess.getLon(node));
+            Path path = i == 0
+                    ? roundTripCalculator.addPath(extractPath(queryGraph, bestLabels.get(node), startNode))
+                    : roundTripCalculator.calcPath(prevNode, node);
+            result.visitedNodes += i == 0 ? 0 : pathCalculator.getVisitedNodes();
+            result.wayPoints.add(nodeAccess, node);
+            result.paths.add(path);
+            prevNode = node;
+        }
+        result.paths.add(roundTripCalculator.calcPath(prevNode, startNode));
+        result.visitedNodes += pathCalculator.getVisitedNodes();
+        result.wayPoints.add(nodeAccess, startNode);
+        return result;
+    }
+
+    /**
+     * @return the reached tower node closest to the given point. The location index is used to find the closest edge
+     * with a reached node, only if there is none nearby all labels are scanned.
+     */
+    private static int findClosestNode(LocationIndex locationIndex, IntObjectMap<ShortestPathTree.IsoLabel> bestLabels,
+                                       List<ShortestPathTree.IsoLabel> labels, NodeAccess nodeAccess, GHPoint point) {
+        Snap snap = locationIndex.findClosest(point.getLat(), point.getLon(),
+                edge -> bestLabels.containsKey(edge.getBaseNode()) || bestLabels.containsKey(edge.getAdjNode()));
+        if (snap.isValid()) {
+            int baseNode = snap.getClosestEdge().getBaseNode();
+            int adjNode = snap.getClosestEdge().getAdjNode();
+            if (!bestLabels.containsKey(baseNode))
+                return adjNode;
+            if (!bestLabels.containsKey(adjNode))
+                return baseNode;
+            return calcNormalizedDist(nodeAccess, point, baseNode) <= calcNormalizedDist(nodeAccess, point, adjNode) ? baseNode : adjNode;
+        }
+        int closestNode = -1;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (ShortestPathTree.IsoLabel label : labels) {
+            double distance = calcNormalizedDist(nodeAccess, point, label.node);
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closestNode = label.node;
+            }
+        }
+        return closestNode;
+    }
+
+    private static double calcNormalizedDist(NodeAccess nodeAccess, GHPoint point, int node) {
+        return DIST_EARTH.calcNormalizedDist(point.getLat(), point.getLon(), nodeAccess.getLat(node), nodeAccess.getLon(node));
+    }
+
+    private static Path extractPath(Graph graph, ShortestPathTree.IsoLabel label, int startNode) {
+        Path path = new Path(graph);
+        path.setFromNode(startNode);
+        path.setEndNode(label.node);
+        path.setWeight(label.weight);
+        path.setDistance(label.distance);
+        path.setTime(label.time);
+        for (ShortestPathTree.IsoLabel l = label; l.parent != null; l = l.parent)
+            path.getEdges().add(l.edge);
+        ArrayUtil.reverse(path.getEdges());
+        return path.setFound(true);
+    }
+
     public static class Result {
         public List<Path> paths;
         public PointList wayPoints;
@@ -163,7 +304,10 @@ public class RoundTripRouting {
         }
 
         Path calcPath(int from, int to) {
-            Path path = pathCalculator.calcPaths(from, to, new EdgeRestrictions()).get(0);
+            return addPath(pathCalculator.calcPaths(from, to, new EdgeRestrictions()).get(0));
+        }
+
+        Path addPath(Path path) {
             // add the edges of this path to the set of previous edges so they will be avoided from now, otherwise
             // we do not get a nice 'round trip'. note that for this reason we cannot use CH for round-trips currently
             for (IntCursor c : path.getEdges()) {
@@ -24,14 +24,18 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.ev.TrafficSpeedOverlay;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.subnetwork.SnappableEdgeStorage;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.routing.weighting.custom.FindMinMax;
 import com.graphhopper.storage.BaseGraph;
@@ -48,6 +52,7 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
@@ -68,6 +73,11 @@ public class Router {
     protected final Map<String, LandmarkStorage> landmarks;
     protected final boolean chEnabled;
     protected final boolean lmEnabled;
+    protected ExecutorService viaLegExecutor;
+    protected Map<String, SnappableEdgeStorage> snappableEdges = Collections.emptyMap();
+    protected CustomizableCH customizableCH;
+    protected Set<String> customizableCHProfiles = Collections.emptySet();
+    protected TrafficSpeedOverlay trafficSpeedOverlay;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -94,6 +104,36 @@ public class Router {
         }
     }
 
+    /**
+     * @param viaLegExecutor the executor used to calculate the legs of via routes concurrently or null to calculate
+     *                       them one after the other
+     */
+    public Router setViaLegExecutor(ExecutorService viaLegExecutor) {
+        this.viaLegExecutor = viaLegExecutor;
+        return this;
+    }
+
+    /**
+     * @param snappableEdges the precalculated snap filter results per profile. They are used instead of evaluating
+     *                       the weighting for requests without a custom model.
+     */
+    public Router setSnappableEdges(Map<String, SnappableEdgeStorage> snappableEdges) {
+        this.snappableEdges = snappableEdges;
+        return this;
+    }
+
+    /**
+     * @param profiles the profiles for which requests with a custom model, or all requests if there is no CH
+     *                 preparation for the profile, use the customizable CH instead of LM or flexible routing
+     * @param trafficSpeedOverlay can be null. Custom models that use it are customized again after it was changed.
+     */
+    public Router setCustomizableCH(CustomizableCH customizableCH, Set<String> profiles, TrafficSpeedOverlay trafficSpeedOverlay) {
+        this.customizableCH = customizableCH;
+        this.customizableCHProfiles = profiles;
+        this.trafficSpeedOverlay = trafficSpeedOverlay;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -189,7 +229,17 @@ public class Router {
     protected Solver createSolver(GHRequest request) {
         final boolean disableCH = getDisableCH(request.getHints());
         final boolean disableLM = getDisableLM(request.getHints());
-        if (chEnabled && !disableCH) {
+        if (customizableCH != null && !disableCH && customizableCHProfiles.contains(request.getProfile())
+                && (request.getCustomModel() != null || !chGraphs.containsKey(request.getProfile()))) {
+            CustomizableCHSolver solver = new CustomizableCHSolver(request, profilesByName, routerConfig, encodingManager,
+                    weightingFactory, customizableCH, trafficSpeedOverlay, viaLegExecutor);
+            if (solver.customize())
+                return solver;
+            // too many other custom models are being customized, so we do not wait but use LM or flexible routing
+            if (lmEnabled && !disableLM)
+                return createLMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
+            return createFlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex);
+        } else if (chEnabled && !disableCH) {
             return createCHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
         } else if (lmEnabled && !disableLM) {
             return createLMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
@@ -200,7 +250,7 @@ public class Router {
 
     protected Solver createCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
                                     EncodingManager encodingManager, Map<String, RoutingCHGraph> chGraphs) {
-        return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
+        return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs, viaLegExecutor);
     }
 
     protected Solver createLMSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
@@ -215,25 +265,46 @@ public class Router {
         return new FlexSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, baseGraph, locationIndex);
     }
 
+    protected EdgeFilter createSnapFilter(GHRequest request, Solver solver) {
+        EdgeFilter snapFilter = solver.createSnapFilter();
+        // a custom model in the request can change the accessibility of edges, so the precalculated values cannot be used
+        SnappableEdgeStorage storage = request.getCustomModel() == null ? snappableEdges.get(solver.profile.getName()) : null;
+        return storage == null ? snapFilter : new PrecomputedSnapFilter(storage, snapFilter);
+    }
+
     protected GHResponse routeRoundTrip(GHRequest request, FlexSolver solver) {
         GHResponse ghRsp = new GHResponse();
         StopWatch sw = new StopWatch().start();
         double startHeading = request.getHeadings().isEmpty() ? Double.NaN : request.getHeadings().get(0);
         RoundTripRouting.Params params = new RoundTripRouting.Params(request.getHints(), startHeading, routerConfig.getMaxRoundTripRetries());
-        List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
+        RoundTripRouting.Result result;
+        if (request.getHints().getBool(Parameters.Algorithms.RoundTrip.SHORTEST_PATH_TREE, false)) {
+            Snap startSnap = RoundTripRouting.lookupStart(request.getPoints(), createSnapFilter(request, solver), locationIndex);
+            ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+            QueryGraph queryGraph = QueryGraph.create(graph, startSnap);
+            FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+            result = RoundTripRouting.calcPathsFromTree(startSnap, queryGraph, locationIndex, pathCalculator, solver.getAlgoOpts().getTraversalMode(), params);
+            return createRoundTripResponse(request, solver, queryGraph, result, ghRsp);
+        }
+        List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), createSnapFilter(request, solver), locationIndex, params);
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
 
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
         FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
 
-        RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
+        result = RoundTripRouting.calcPaths(snaps, pathCalculator);
+        return createRoundTripResponse(request, solver, queryGraph, result, ghRsp);
+    }
+
+    private GHResponse createRoundTripResponse(GHRequest request, FlexSolver solver, QueryGraph queryGraph,
+                                               RoundTripRouting.Result result, GHResponse ghRsp) {
         // we merge the different legs of the roundtrip into one response path
         // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
         // to avoid 'unnecessary tails' in the roundtrip algo
         ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
         ghRsp.add(responsePath);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
-        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+        ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / result.paths.size());
         return ghRsp;
     }
 
@@ -243,7 +314,7 @@ public class Router {
         GHResponse ghRsp = new GHResponse();
         StopWatch sw = new StopWatch().start();
         DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
-        List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
+        List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), createSnapFilter(request, solver), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
@@ -276,17 +347,17 @@ public class Router {
         GHResponse ghRsp = new GHResponse();
         StopWatch sw = new StopWatch().start();
         DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
-        List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
+        List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), createSnapFilter(request, solver), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
-        PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
-                pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+                () -> solver.createPathCalculator(queryGraph), viaLegExecutor, request.getCurbsides(), curbsideStrictness,
+                request.getHeadings(), passThrough);
 
         if (request.getPoints().size() != result.paths.size() + 1)
             throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
@@ -446,10 +517,15 @@ public class Router {
 
     private static class CHSolver extends Solver {
         private final Map<String, RoutingCHGraph> chGraphs;
+        private final ExecutorService executor;
+        private final int parallelism;
 
-        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup, Map<String, RoutingCHGraph> chGraphs) {
+        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                 Map<String, RoutingCHGraph> chGraphs, ExecutorService executor) {
             super(request, profilesByName, routerConfig, lookup);
             this.chGraphs = chGraphs;
+            this.executor = executor;
+            this.parallelism = routerConfig.getViaLegThreads();
         }
 
         @Override
@@ -485,7 +561,10 @@ public class Router {
             opts.putObject(ALGORITHM, request.getAlgorithm());
             opts.putObject(MAX_VISITED_NODES, getMaxVisitedNodes(request.getHints()));
             opts.putObject(TIMEOUT_MS, getTimeoutMillis(request.getHints()));
-            return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts);
+            // alternative routes never have via points, so the via leg threads are free to evaluate the via-node candidates
+            CHRoutingAlgorithmFactory algorithmFactory = new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph)
+                    .setExecutor(executor, parallelism);
+            return new CHPathCalculator(algorithmFactory, opts);
         }
 
         private RoutingCHGraph getRoutingCHGraph(String profileName) {
@@ -498,6 +577,83 @@ public class Router {
         }
     }
 
+    private static class CustomizableCHSolver extends Solver {
+        private final WeightingFactory weightingFactory;
+        private final CustomizableCH customizableCH;
+        private final TrafficSpeedOverlay trafficSpeedOverlay;
+        private final ExecutorService executor;
+        private final int parallelism;
+        private RoutingCHGraph chGraph;
+
+        CustomizableCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                             WeightingFactory weightingFactory, CustomizableCH customizableCH, TrafficSpeedOverlay trafficSpeedOverlay,
+                             ExecutorService executor) {
+            super(request, profilesByName, routerConfig, lookup);
+            this.weightingFactory = weightingFactory;
+            this.customizableCH = customizableCH;
+            this.trafficSpeedOverlay = trafficSpeedOverlay;
+            this.executor = executor;
+            this.parallelism = routerConfig.getViaLegThreads();
+        }
+
+        /**
+         * Finds the customized graph for this request, which is customized if necessary.
+         *
+         * @return false if the graph would have to be customized but too many customizations are running already
+         */
+        boolean customize() {
+            // reject invalid requests before we spend time on the customization
+            checkRequest();
+            profile = getProfile();
+            checkProfileCompatibility();
+            // the custom weighting only depends on the profile, the custom model and the traffic speeds, so we can share
+            // the customization of identical custom models. The weighting has to be the one used for the customization.
+            String variant = String.valueOf(request.getCustomModel());
+            if (trafficSpeedOverlay != null && usesTrafficSpeed())
+                variant += "|" + TrafficSpeedOverlay.KEY + ":" + trafficSpeedOverlay.getVersion();
+            chGraph = customizableCH.getOrCustomize(profile.getName(), variant, () -> {
+                PMap requestHints = new PMap(request.getHints());
+                requestHints.putObject(CustomModel.KEY, request.getCustomModel());
+                return weightingFactory.createWeighting(profile, requestHints, false);
+            });
+            return chGraph != null;
+        }
+
+        private boolean usesTrafficSpeed() {
+            return profile.getCustomModel() != null && CustomModelParser.usesVariable(profile.getCustomModel(), TrafficSpeedOverlay.KEY)
+                    || request.getCustomModel() != null && CustomModelParser.usesVariable(request.getCustomModel(), TrafficSpeedOverlay.KEY);
+        }
+
+        @Override
+        protected void checkRequest() {
+            super.checkRequest();
+            if (!request.getHeadings().isEmpty())
+                throw new IllegalArgumentException("The 'heading' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #483");
+
+            if (getPassThrough(request.getHints()))
+                throw new IllegalArgumentException("The '" + Parameters.Routing.PASS_THROUGH + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #1765");
+
+            if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()))
+                throw new IllegalArgumentException("algorithm=round_trip cannot be used with CH");
+        }
+
+        @Override
+        protected Weighting createWeighting() {
+            return chGraph.getWeighting();
+        }
+
+        @Override
+        protected PathCalculator createPathCalculator(QueryGraph queryGraph) {
+            PMap opts = new PMap(request.getHints());
+            opts.putObject(ALGORITHM, request.getAlgorithm());
+            opts.putObject(MAX_VISITED_NODES, getMaxVisitedNodes(request.getHints()));
+            opts.putObject(TIMEOUT_MS, getTimeoutMillis(request.getHints()));
+            CHRoutingAlgorithmFactory algorithmFactory = new CHRoutingAlgorithmFactory(chGraph, queryGraph)
+                    .setExecutor(executor, parallelism);
+            return new CHPathCalculator(algorithmFactory, opts);
+        }
+    }
+
     public static class FlexSolver extends Solver {
         protected final RouterConfig routerConfig;
         private final WeightingFactory weightingFactory;
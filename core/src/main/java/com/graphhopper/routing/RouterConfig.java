@@ -31,6 +31,8 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private int viaLegThreads = 1;
+    private boolean phastEnabled = false;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -112,6 +114,21 @@ public class RouterConfig {
         this.activeLandmarkCount = activeLandmarkCount;
     }
 
+    public int getViaLegThreads() {
+        return viaLegThreads;
+    }
+
+    /**
+     * The legs of a route with via points are calculated concurrently if this is bigger than one. The same threads are
+     * used to evaluate the via-node candidates of node-based CH alternative routes. Note that the threads are shared
+     * between all requests.
+     */
+    public void setViaLegThreads(int viaLegThreads) {
+        if (viaLegThreads < 1)
+            throw new IllegalArgumentException("via leg threads must be at least 1 but was " + viaLegThreads);
+        this.viaLegThreads = viaLegThreads;
+    }
+
     public double getElevationWayPointMaxDistance() {
         return elevationWayPointMaxDistance;
     }
@@ -119,4 +136,15 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public boolean isPhastEnabled() {
+        return phastEnabled;
+    }
+
+    /**
+     * PHAST visits all nodes of the graph for every request, so it is disabled by default.
+     */
+    public void setPhastEnabled(boolean phastEnabled) {
+        this.phastEnabled = phastEnabled;
+    }
 }
@@ -34,6 +34,10 @@ import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
@@ -97,6 +101,24 @@ public class ViaRouting {
     public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
                                    DirectedEdgeFilter directedEdgeFilter, PathCalculator pathCalculator,
                                    List<String> curbsides, String curbsideStrictness, List<Double> headings, boolean passThrough) {
+        return calcPaths(points, queryGraph, snaps, directedEdgeFilter, () -> pathCalculator, null,
+                curbsides, curbsideStrictness, headings, passThrough);
+    }
+
+    /**
+     * Like {@link #calcPaths(List, QueryGraph, List, DirectedEdgeFilter, PathCalculator, List, String, List, boolean)},
+     * but calculates the legs concurrently using the given executor if possible. This is not possible for
+     * pass_through, because the start of a leg depends on the last edge of the previous leg, and if some of the legs
+     * use unfavored edges (headings), because the unfavored edges are marked on the query graph. In these cases or if
+     * the executor is null the legs are calculated one after the other.
+     *
+     * @param pathCalculatorSupplier is called once for every leg that is calculated concurrently, because a
+     *                               PathCalculator is not thread-safe
+     */
+    public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
+                                   DirectedEdgeFilter directedEdgeFilter, Supplier<PathCalculator> pathCalculatorSupplier,
+                                   ExecutorService executor, List<String> curbsides, String curbsideStrictness,
+                                   List<Double> headings, boolean passThrough) {
         if (!curbsides.isEmpty() && curbsides.size() != points.size())
             throw new IllegalArgumentException("If you pass " + CURBSIDE + ", you need to pass exactly one curbside for every point, empty curbsides will be ignored");
         if (!curbsides.isEmpty() && !headings.isEmpty())
@@ -104,18 +126,21 @@ public class ViaRouting {
 
         final int legs = snaps.size() - 1;
         Result result = new Result(legs);
-        for (int leg = 0; leg < legs; ++leg) {
-            Snap fromSnap = snaps.get(leg);
-            Snap toSnap = snaps.get(leg + 1);
-
-            // enforce headings
-            // at via-nodes and the target node the heading parameter is interpreted as the direction we want
-            // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
-            // all for these points (unless using pass through). see this forum discussion:
-            // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
-            double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
-            double toHeading = (snaps.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
+        if (executor != null && legs > 1 && !passThrough) {
+            List<EdgeRestrictions> legRestrictions = new ArrayList<>(legs);
+            boolean unfavoredEdges = false;
+            for (int leg = 0; leg < legs; ++leg) {
+                EdgeRestrictions edgeRestrictions = createEdgeRestrictions(leg, NO_EDGE, queryGraph, snaps, directedEdgeFilter,
+                        curbsides, curbsideStrictness, headings, false);
+                unfavoredEdges |= !edgeRestrictions.getUnfavoredEdges().isEmpty();
+                legRestrictions.add(edgeRestrictions);
+            }
+            if (!unfavoredEdges)
+                return calcPathsConcurrently(snaps, legRestrictions, pathCalculatorSupplier, executor, result);
+        }
 
+        PathCalculator pathCalculator = pathCalculatorSupplier.get();
+        for (int leg = 0; leg < legs; ++leg) {
             // enforce pass-through
             int incomingEdge = NO_EDGE;
             if (leg != 0) {
@@ -124,39 +149,110 @@ public class ViaRouting {
                 if (prevRoute.getEdgeCount() > 0)
                     incomingEdge = prevRoute.getFinalEdge().getEdge();
             }
+            EdgeRestrictions edgeRestrictions = createEdgeRestrictions(leg, incomingEdge, queryGraph, snaps, directedEdgeFilter,
+                    curbsides, curbsideStrictness, headings, passThrough);
 
-            // enforce curbsides
-            final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
-            final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
-
-            EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromSnap, toSnap,
-                    fromHeading, toHeading, incomingEdge, passThrough,
-                    fromCurbside, toCurbside, directedEdgeFilter);
+            // calculate paths
+            List<Path> paths = pathCalculator.calcPaths(snaps.get(leg).getClosestNode(), snaps.get(leg + 1).getClosestNode(), edgeRestrictions);
+            addPaths(result, paths, pathCalculator);
+        }
 
-            edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, curbsideStrictness));
-            edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, curbsideStrictness));
+        return result;
+    }
 
-            // calculate paths
-            List<Path> paths = pathCalculator.calcPaths(fromSnap.getClosestNode(), toSnap.getClosestNode(), edgeRestrictions);
-            result.debug += pathCalculator.getDebugString();
-
-            // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
-            // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
-            // a good method to decide how to combine the different legs
-            for (int i = 0; i < paths.size(); i++) {
-                Path path = paths.get(i);
-                if (path.getTime() < 0)
-                    throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
-
-                result.paths.add(path);
-                result.debug += ", " + path.getDebugInfo();
+    private static Result calcPathsConcurrently(List<Snap> snaps, List<EdgeRestrictions> legRestrictions,
+                                                Supplier<PathCalculator> pathCalculatorSupplier, ExecutorService executor, Result result) {
+        List<Future<LegResult>> futures = new ArrayList<>(legRestrictions.size());
+        for (int leg = 0; leg < legRestrictions.size(); ++leg) {
+            int from = snaps.get(leg).getClosestNode();
+            int to = snaps.get(leg + 1).getClosestNode();
+            EdgeRestrictions edgeRestrictions = legRestrictions.get(leg);
+            futures.add(executor.submit(() -> {
+                PathCalculator pathCalculator = pathCalculatorSupplier.get();
+                List<Path> paths = pathCalculator.calcPaths(from, to, edgeRestrictions);
+                return new LegResult(paths, pathCalculator.getDebugString(), pathCalculator.getVisitedNodes());
+            }));
+        }
+        try {
+            for (Future<LegResult> future : futures) {
+                LegResult legResult = future.get();
+                result.debug += legResult.debug;
+                addPaths(result, legResult.paths, legResult.visitedNodes);
             }
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            // no need to finish the remaining legs if one of them failed
+            for (Future<LegResult> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private static EdgeRestrictions createEdgeRestrictions(int leg, int incomingEdge, QueryGraph queryGraph, List<Snap> snaps,
+                                                           DirectedEdgeFilter directedEdgeFilter, List<String> curbsides,
+                                                           String curbsideStrictness, List<Double> headings, boolean passThrough) {
+        Snap fromSnap = snaps.get(leg);
+        Snap toSnap = snaps.get(leg + 1);
+
+        // enforce headings
+        // at via-nodes and the target node the heading parameter is interpreted as the direction we want
+        // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
+        // all for these points (unless using pass through). see this forum discussion:
+        // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
+        double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
+        double toHeading = (snaps.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
+
+        // enforce curbsides
+        final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
+        final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
+
+        EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromSnap, toSnap,
+                fromHeading, toHeading, incomingEdge, passThrough,
+                fromCurbside, toCurbside, directedEdgeFilter);
+
+        edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, curbsideStrictness));
+        edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, curbsideStrictness));
+        return edgeRestrictions;
+    }
 
-            result.visitedNodes += pathCalculator.getVisitedNodes();
-            result.debug += ", visited nodes sum: " + result.visitedNodes;
+    private static void addPaths(Result result, List<Path> paths, PathCalculator pathCalculator) {
+        result.debug += pathCalculator.getDebugString();
+        addPaths(result, paths, pathCalculator.getVisitedNodes());
+    }
+
+    private static void addPaths(Result result, List<Path> paths, int visitedNodes) {
+        // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
+        // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
+        // a good method to decide how to combine the different legs
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            if (path.getTime() < 0)
+                throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
+
+            result.paths.add(path);
+            result.debug += ", " + path.getDebugInfo();
         }
 
-        return result;
+        result.visitedNodes += visitedNodes;
+        result.debug += ", visited nodes sum: " + result.visitedNodes;
+    }
+
+    private static class LegResult {
+        final List<Path> paths;
+        final String debug;
+        final int visitedNodes;
+
+        LegResult(List<Path> paths, String debug, int visitedNodes) {
+            this.paths = paths;
+            this.debug = debug;
+            this.visitedNodes = visitedNodes;
+        }
     }
 
     public static class Result {
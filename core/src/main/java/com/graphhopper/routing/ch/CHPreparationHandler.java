@@ -96,6 +96,13 @@ public class CHPreparationHandler {
     }
 
     public Map<String, RoutingCHGraph> load(BaseGraph graph, List<CHConfig> chConfigs) {
+        return load(graph, chConfigs, preparationThreads);
+    }
+
+    /**
+     * Same as {@link #load(BaseGraph, List)}, but uses the given number of threads.
+     */
+    public Map<String, RoutingCHGraph> load(BaseGraph graph, List<CHConfig> chConfigs, int threads) {
         Map<String, RoutingCHGraph> loaded = Collections.synchronizedMap(new LinkedHashMap<>());
         Stream<Runnable> runnables = chConfigs.stream()
                 .map(c -> () -> {
@@ -108,7 +115,7 @@ public class CHPreparationHandler {
                         graph.getDirectory().remove("shortcuts_" + c.getName());
                     }
                 });
-        GHUtility.runConcurrently(runnables, preparationThreads);
+        GHUtility.runConcurrently(runnables, threads);
         return loaded;
     }
 
@@ -26,6 +26,8 @@ import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
 
+import java.util.concurrent.ExecutorService;
+
 import static com.graphhopper.util.Parameters.Algorithms.*;
 import static com.graphhopper.util.Parameters.Routing.*;
 
@@ -35,6 +37,8 @@ import static com.graphhopper.util.Parameters.Routing.*;
  */
 public class CHRoutingAlgorithmFactory {
     private final RoutingCHGraph routingCHGraph;
+    private ExecutorService executor;
+    private int parallelism = 1;
 
     public CHRoutingAlgorithmFactory(RoutingCHGraph routingCHGraph, QueryGraph queryGraph) {
         this(new QueryRoutingCHGraph(routingCHGraph, queryGraph));
@@ -44,6 +48,16 @@ public class CHRoutingAlgorithmFactory {
         this.routingCHGraph = routingCHGraph;
     }
 
+    /**
+     * Sets the executor that is used by the algorithms that can make use of multiple threads, which is currently
+     * only the node-based alternative route search.
+     */
+    public CHRoutingAlgorithmFactory setExecutor(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        return this;
+    }
+
     public EdgeToEdgeRoutingAlgorithm createAlgo(PMap opts) {
         EdgeToEdgeRoutingAlgorithm algo = routingCHGraph.isEdgeBased()
                 ? createAlgoEdgeBased(routingCHGraph, opts)
@@ -88,7 +102,7 @@ public class CHRoutingAlgorithmFactory {
                 return new DijkstraBidirectionCHNoSOD(g);
             }
         } else if (ALT_ROUTE.equalsIgnoreCase(algo)) {
-            return new AlternativeRouteCH(g, opts);
+            return new AlternativeRouteCH(g, opts).setExecutor(executor, parallelism);
         } else {
             throw new IllegalArgumentException("Algorithm " + algo + " not supported for node-based Contraction Hierarchies. Try with ch.disable=true");
         }
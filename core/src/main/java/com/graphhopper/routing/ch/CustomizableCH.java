@@ -0,0 +1,407 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Customizable contraction hierarchies (CCH, see Dibbelt, Strasser and Wagner, 2016) for node-based weightings: the
+ * node order ({@link NestedDissection}) and the shortcut topology do not depend on the weighting and are calculated
+ * once for the graph. Every edge of the topology connects a node with a higher ranked node and every triangle of
+ * the topology can replace the edge between its two higher nodes, so no witness searches are necessary. The
+ * customization for a weighting only calculates the weights of the topology edges bottom-up, which is fast and runs
+ * in parallel. Only the topology edges that are shorter than the original edges become shortcuts of a
+ * {@link RoutingCHGraph}, so the usual CH algorithms can be used for the queries.
+ * <p>
+ * The customized graphs are kept in memory and the least recently used ones are removed if there are more than
+ * the cache size. Customizations that are still running are not removed. Only a limited number of customizations run
+ * at the same time, so a burst of requests with different custom models cannot use up all threads and memory.
+ */
+public class CustomizableCH {
+    private static final Logger logger = LoggerFactory.getLogger(CustomizableCH.class);
+    // levels with fewer nodes are customized by the calling thread
+    private static final int MIN_PARALLEL_NODES = 1000;
+    private static final int NO_NODE = -1;
+    private final BaseGraph graph;
+    private final int threads;
+    private final int cacheSize;
+    private final int[] rank;
+    private final int[] nodesByRank;
+    // the topology edges ('arcs') grouped by their lower node and sorted by the rank of their higher node
+    private final int[] firstArc;
+    private final int[] arcTail;
+    private final int[] arcHead;
+    // the arcs grouped by their higher node
+    private final int[] firstInArc;
+    private final int[] inArcs;
+    // the nodes grouped by the order in which they can be customized, all nodes of one level at the same time
+    private final int[][] levels;
+    private final Map<String, CompletableFuture<RoutingCHGraph>> cache;
+    private final Semaphore customizationPermits;
+    private int customizations;
+
+    /**
+     * @param maxCustomizations the maximum number of customizations that run at the same time
+     */
+    public CustomizableCH(BaseGraph graph, int threads, int cacheSize, int maxCustomizations) {
+        if (cacheSize < 1)
+            throw new IllegalArgumentException("cache size must be positive but was " + cacheSize);
+        if (maxCustomizations < 1)
+            throw new IllegalArgumentException("maximum number of customizations must be positive but was " + maxCustomizations);
+        this.graph = graph;
+        this.threads = threads;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.customizationPermits = new Semaphore(maxCustomizations);
+        StopWatch sw = StopWatch.started();
+        nodesByRank = NestedDissection.calcOrder(graph);
+        rank = new int[graph.getNodes()];
+        for (int i = 0; i < nodesByRank.length; i++)
+            rank[nodesByRank[i]] = i;
+        String orderTime = sw.stop().getTimeString();
+
+        sw = StopWatch.started();
+        IntArrayList[] upNeighbors = new IntArrayList[graph.getNodes()];
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            int lower = lowerNode(iter.getBaseNode(), iter.getAdjNode());
+            if (iter.getBaseNode() != iter.getAdjNode())
+                add(upNeighbors, lower, iter.getBaseNode() == lower ? iter.getAdjNode() : iter.getBaseNode());
+        }
+        // eliminating the nodes in the order of their rank connects all higher neighbors of a node. it is sufficient to
+        // add them to the lowest of these neighbors, which passes them on when it is eliminated itself
+        int[][] up = new int[graph.getNodes()][];
+        int arcs = 0;
+        for (int node : nodesByRank) {
+            up[node] = upNeighbors[node] == null ? new int[0] : sortedByRank(upNeighbors[node]);
+            upNeighbors[node] = null;
+            arcs += up[node].length;
+            for (int i = 1; i < up[node].length; i++)
+                add(upNeighbors, up[node][0], up[node][i]);
+        }
+
+        firstArc = new int[graph.getNodes() + 1];
+        arcTail = new int[arcs];
+        arcHead = new int[arcs];
+        int[] inDegree = new int[graph.getNodes()];
+        for (int node = 0, arc = 0; node < graph.getNodes(); node++) {
+            firstArc[node] = arc;
+            for (int head : up[node]) {
+                arcTail[arc] = node;
+                arcHead[arc] = head;
+                inDegree[head]++;
+                arc++;
+            }
+            firstArc[node + 1] = arc;
+        }
+        firstInArc = new int[graph.getNodes() + 1];
+        for (int node = 0; node < graph.getNodes(); node++)
+            firstInArc[node + 1] = firstInArc[node] + inDegree[node];
+        inArcs = new int[arcs];
+        int[] next = Arrays.copyOf(firstInArc, graph.getNodes());
+        for (int arc = 0; arc < arcs; arc++)
+            inArcs[next[arcHead[arc]]++] = arc;
+
+        // the arcs of a node depend on the arcs of its lower neighbors only
+        int[] level = new int[graph.getNodes()];
+        int maxLevel = 0;
+        for (int node : nodesByRank) {
+            for (int i = firstInArc[node]; i < firstInArc[node + 1]; i++)
+                level[node] = Math.max(level[node], level[arcTail[inArcs[i]]] + 1);
+            maxLevel = Math.max(maxLevel, level[node]);
+        }
+        IntArrayList[] nodesByLevel = new IntArrayList[maxLevel + 1];
+        for (int node = 0; node < graph.getNodes(); node++) {
+            if (nodesByLevel[level[node]] == null)
+                nodesByLevel[level[node]] = new IntArrayList();
+            nodesByLevel[level[node]].add(node);
+        }
+        levels = Arrays.stream(nodesByLevel).map(IntArrayList::toArray).toArray(int[][]::new);
+        logger.info("Calculated customizable CH for " + graph.getNodes() + " nodes and " + graph.getEdges() + " edges, "
+                + "arcs: " + arcs + ", levels: " + levels.length + ", node order took: " + orderTime
+                + ", topology took: " + sw.stop().getTimeString());
+    }
+
+    private int lowerNode(int a, int b) {
+        return rank[a] < rank[b] ? a : b;
+    }
+
+    private static void add(IntArrayList[] lists, int index, int value) {
+        if (lists[index] == null)
+            lists[index] = new IntArrayList(4);
+        lists[index].add(value);
+    }
+
+    private int[] sortedByRank(IntArrayList nodes) {
+        return Arrays.stream(nodes.toArray()).map(n -> rank[n]).sorted().distinct().map(r -> nodesByRank[r]).toArray();
+    }
+
+    /**
+     * @return the arc from the lower node tail to the higher node head or -1 if there is no such arc
+     */
+    private int findArc(int tail, int head) {
+        int low = firstArc[tail], high = firstArc[tail + 1] - 1, headRank = rank[head];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midRank = rank[arcHead[mid]];
+            if (midRank < headRank)
+                low = mid + 1;
+            else if (midRank > headRank)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public int getArcs() {
+        return arcHead.length;
+    }
+
+    /**
+     * @return the customized graph for the specified profile and variant, e.g. the custom model of the request. The
+     * weighting is only created and customized if this combination is not in the cache. If it is being customized
+     * already this method waits for the result. Returns null if it would have to be customized but the maximum
+     * number of customizations is already running, so the caller can use a different algorithm instead of waiting.
+     */
+    public RoutingCHGraph getOrCustomize(String profileName, String variant, Supplier<Weighting> weightingSupplier) {
+        String key = profileName + "|" + variant;
+        CompletableFuture<RoutingCHGraph> future, newFuture = new CompletableFuture<>();
+        synchronized (cache) {
+            future = cache.get(key);
+            if (future == null) {
+                if (!customizationPermits.tryAcquire())
+                    return null;
+                cache.put(key, newFuture);
+                evictCompleted();
+            }
+        }
+        if (future != null) {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+            }
+        }
+        try {
+            RoutingCHGraph chGraph = customize(profileName, weightingSupplier.get());
+            newFuture.complete(chGraph);
+            return chGraph;
+        } catch (RuntimeException ex) {
+            synchronized (cache) {
+                cache.remove(key, newFuture);
+            }
+            newFuture.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            customizationPermits.release();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache size is reached. Running customizations are skipped,
+     * because otherwise the next request for them would start a second customization.
+     */
+    private void evictCompleted() {
+        Iterator<CompletableFuture<RoutingCHGraph>> iter = cache.values().iterator();
+        int size = cache.size();
+        while (size > cacheSize && iter.hasNext()) {
+            if (iter.next().isDone()) {
+                iter.remove();
+                size--;
+            }
+        }
+    }
+
+    /**
+     * @return the number of customizations that were done, i.e. the number of cache misses
+     */
+    public synchronized int getCustomizations() {
+        return customizations;
+    }
+
+    /**
+     * Calculates the shortcuts for the specified weighting.
+     */
+    public RoutingCHGraph customize(String name, Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("Customizable CH does not support turn costs, weighting: " + weighting);
+        StopWatch sw = StopWatch.started();
+        Metric metric = new Metric(arcHead.length);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() == iter.getAdjNode())
+                continue;
+            boolean upward = rank[iter.getBaseNode()] < rank[iter.getAdjNode()];
+            int arc = upward ? findArc(iter.getBaseNode(), iter.getAdjNode()) : findArc(iter.getAdjNode(), iter.getBaseNode());
+            if (arc < 0)
+                throw new IllegalStateException("There is no arc for edge " + iter.getEdge() + " (" + iter.getBaseNode()
+                        + "-" + iter.getAdjNode() + "), the graph was changed after the customizable CH was calculated");
+            metric.setEdge(arc, true, iter.getEdge(), weighting.calcEdgeWeight(iter, !upward));
+            metric.setEdge(arc, false, iter.getEdge(), weighting.calcEdgeWeight(iter, upward));
+        }
+        for (int[] level : levels) {
+            if (level.length < MIN_PARALLEL_NODES || threads <= 1) {
+                for (int node : level)
+                    customizeNode(metric, node);
+            } else {
+                int batchSize = Math.max(MIN_PARALLEL_NODES / 10, level.length / (4 * threads));
+                Stream<Runnable> batches = IntStream.range(0, (level.length + batchSize - 1) / batchSize).mapToObj(b -> () -> {
+                    for (int i = b * batchSize; i < Math.min(level.length, (b + 1) * batchSize); i++)
+                        customizeNode(metric, level[i]);
+                });
+                GHUtility.runConcurrently(batches, threads);
+            }
+        }
+        String customizationTime = sw.stop().getTimeString();
+
+        sw = StopWatch.started();
+        CHConfig chConfig = CHConfig.nodeBased(name, weighting);
+        CHStorage chStorage = new CHStorage(new RAMDirectory(), chConfig.getName(), graph.getSegmentSize(), false);
+        chStorage.create(graph.getNodes(), metric.countShortcuts());
+        CHStorageBuilder builder = new CHStorageBuilder(chStorage);
+        for (int node = 0; node < graph.getNodes(); node++)
+            builder.setLevel(node, rank[node]);
+        // shortcuts must be sorted by the level of their lower node, which is also the order in which the shortcuts
+        // they skip have to be added
+        for (int node : nodesByRank) {
+            for (int arc = firstArc[node]; arc < firstArc[node + 1]; arc++) {
+                int upVia = metric.via[2 * arc], downVia = metric.via[2 * arc + 1];
+                if (upVia != NO_NODE && upVia == downVia && metric.weight[2 * arc] == metric.weight[2 * arc + 1]) {
+                    int lower = findArc(upVia, node), upper = findArc(upVia, arcHead[arc]);
+                    int skip1 = chEdge(metric, lower, false), skip2 = chEdge(metric, upper, true);
+                    if (skip1 == chEdge(metric, lower, true) && skip2 == chEdge(metric, upper, false)) {
+                        int shortcut = builder.addShortcutNodeBased(node, arcHead[arc], PrepareEncoder.getScDirMask(), metric.weight[2 * arc], skip1, skip2);
+                        metric.shortcut[2 * arc] = metric.shortcut[2 * arc + 1] = shortcut;
+                        continue;
+                    }
+                }
+                if (upVia != NO_NODE) {
+                    // node -> upVia -> head
+                    int lower = findArc(upVia, node), upper = findArc(upVia, arcHead[arc]);
+                    metric.shortcut[2 * arc] = builder.addShortcutNodeBased(node, arcHead[arc], PrepareEncoder.getScFwdDir(),
+                            metric.weight[2 * arc], chEdge(metric, lower, false), chEdge(metric, upper, true));
+                }
+                if (downVia != NO_NODE) {
+                    // head -> downVia -> node
+                    int lower = findArc(downVia, node), upper = findArc(downVia, arcHead[arc]);
+                    metric.shortcut[2 * arc + 1] = builder.addShortcutNodeBased(node, arcHead[arc], PrepareEncoder.getScBwdDir(),
+                            metric.weight[2 * arc + 1], chEdge(metric, lower, true), chEdge(metric, upper, false));
+                }
+            }
+        }
+        synchronized (this) {
+            customizations++;
+        }
+        logger.info("Customized '" + name + "', shortcuts: " + chStorage.getShortcuts() + ", customization took: "
+                + customizationTime + ", shortcuts took: " + sw.stop().getTimeString());
+        return RoutingCHGraphImpl.fromGraph(graph, chStorage, chConfig);
+    }
+
+    /**
+     * Sets the final weights of all arcs of the specified node from its lower triangles. The arcs of the lower
+     * neighbors must be final already.
+     */
+    private void customizeNode(Metric metric, int node) {
+        for (int arc = firstArc[node]; arc < firstArc[node + 1]; arc++) {
+            int head = arcHead[arc];
+            for (int i = firstInArc[node]; i < firstInArc[node + 1]; i++) {
+                int lower = inArcs[i];
+                int via = arcTail[lower];
+                int upper = findArc(via, head);
+                if (upper < 0)
+                    continue;
+                // node -> via -> head
+                double weight = metric.weight[2 * lower + 1] + metric.weight[2 * upper];
+                if (weight < metric.weight[2 * arc]) {
+                    metric.weight[2 * arc] = weight;
+                    metric.via[2 * arc] = via;
+                }
+                // head -> via -> node
+                weight = metric.weight[2 * upper + 1] + metric.weight[2 * lower];
+                if (weight < metric.weight[2 * arc + 1]) {
+                    metric.weight[2 * arc + 1] = weight;
+                    metric.via[2 * arc + 1] = via;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the id of the edge or shortcut in the RoutingCHGraph that represents the specified arc, upward means from
+     * the lower to the higher node
+     */
+    private int chEdge(Metric metric, int arc, boolean upward) {
+        int index = upward ? 2 * arc : 2 * arc + 1;
+        if (metric.via[index] == NO_NODE)
+            return metric.edge[index];
+        return graph.getEdges() + metric.shortcut[index];
+    }
+
+    /**
+     * The weights of the arcs in both directions: index 2*arc is from the lower to the higher node and 2*arc+1 the
+     * opposite direction. An arc either uses the original edge with the smallest weight or the middle node of a
+     * triangle.
+     */
+    private static class Metric {
+        final double[] weight;
+        final int[] edge;
+        final int[] via;
+        final int[] shortcut;
+
+        Metric(int arcs) {
+            weight = new double[2 * arcs];
+            Arrays.fill(weight, Double.POSITIVE_INFINITY);
+            edge = new int[2 * arcs];
+            Arrays.fill(edge, EdgeIterator.NO_EDGE);
+            via = new int[2 * arcs];
+            Arrays.fill(via, NO_NODE);
+            shortcut = new int[2 * arcs];
+        }
+
+        void setEdge(int arc, boolean upward, int edgeId, double edgeWeight) {
+            int index = upward ? 2 * arc : 2 * arc + 1;
+            if (edgeWeight < weight[index]) {
+                weight[index] = edgeWeight;
+                edge[index] = edgeId;
+            }
+        }
+
+        int countShortcuts() {
+            int count = 0;
+            for (int v : via)
+                if (v != NO_NODE)
+                    count++;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Calculates a metric-independent node order for {@link CustomizableCH} using nested dissection: the nodes are split
+ * into two halves at the median of their longer bounding box side, the nodes of the smaller side that are adjacent to
+ * the other side form the separator, and both halves are ordered recursively before the separator. So the separators
+ * of the large cells get the highest ranks and the upward search spaces stay small regardless of the weighting.
+ * <p>
+ * This is a purely geometric bisection. Flow based partitioners like inertial flow find smaller separators.
+ */
+public class NestedDissection {
+    private static final int LEAF_SIZE = 32;
+    private static final byte LEFT = 1, RIGHT = 2, SEPARATOR = 3;
+    private final NodeAccess nodeAccess;
+    private final EdgeExplorer explorer;
+    // the cell a node currently belongs to, so we only look at edges within the cell
+    private final int[] cell;
+    private final byte[] side;
+    private final IntArrayList order;
+    private int cellCounter;
+
+    private NestedDissection(BaseGraph graph) {
+        this.nodeAccess = graph.getNodeAccess();
+        this.explorer = graph.createEdgeExplorer();
+        this.cell = new int[graph.getNodes()];
+        this.side = new byte[graph.getNodes()];
+        this.order = new IntArrayList(graph.getNodes());
+    }
+
+    /**
+     * @return all nodes of the graph, sorted from the lowest to the highest rank
+     */
+    public static int[] calcOrder(BaseGraph graph) {
+        NestedDissection nd = new NestedDissection(graph);
+        int[] nodes = new int[graph.getNodes()];
+        for (int node = 0; node < nodes.length; node++)
+            nodes[node] = node;
+        nd.dissect(nodes);
+        return nd.order.toArray();
+    }
+
+    private void dissect(int[] nodes) {
+        if (nodes.length <= LEAF_SIZE) {
+            order.add(nodes);
+            return;
+        }
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int node : nodes) {
+            double lat = nodeAccess.getLat(node), lon = nodeAccess.getLon(node);
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+        }
+        boolean splitLat = maxLat - minLat > (maxLon - minLon) * Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        // sort by the coordinate, the node id is in the lower bits
+        long[] keys = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            double coordinate = splitLat ? nodeAccess.getLat(nodes[i]) : nodeAccess.getLon(nodes[i]);
+            keys[i] = ((long) (coordinate * 1e7) << 32) | nodes[i];
+        }
+        Arrays.sort(keys);
+
+        int currentCell = ++cellCounter;
+        int half = nodes.length / 2;
+        for (int i = 0; i < keys.length; i++) {
+            int node = (int) keys[i];
+            cell[node] = currentCell;
+            side[node] = i < half ? LEFT : RIGHT;
+        }
+        IntArrayList leftBoundary = new IntArrayList(), rightBoundary = new IntArrayList();
+        for (long key : keys) {
+            int node = (int) key;
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (cell[adj] == currentCell && side[adj] != side[node]) {
+                    (side[node] == LEFT ? leftBoundary : rightBoundary).add(node);
+                    break;
+                }
+            }
+        }
+        IntArrayList separator = leftBoundary.size() <= rightBoundary.size() ? leftBoundary : rightBoundary;
+        for (int i = 0; i < separator.size(); i++)
+            side[separator.get(i)] = SEPARATOR;
+
+        IntArrayList left = new IntArrayList(half), right = new IntArrayList(nodes.length - half);
+        for (long key : keys) {
+            int node = (int) key;
+            if (side[node] == LEFT)
+                left.add(node);
+            else if (side[node] == RIGHT)
+                right.add(node);
+        }
+        dissect(left.toArray());
+        dissect(right.toArray());
+        order.add(separator.buffer, 0, separator.size());
+    }
+}
@@ -7,4 +7,15 @@ public interface BooleanEncodedValue extends EncodedValue {
     void setBool(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess, boolean value);
 
     boolean getBool(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess);
+
+    /**
+     * Decodes the values of count consecutive edges starting at fromEdge into the given array. The buffer is scratch
+     * space with at least count elements, so repeated scans do not allocate.
+     *
+     * @see IntEncodedValue#getInts
+     */
+    default void getBools(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] buffer, boolean[] values) {
+        for (int i = 0; i < count; i++)
+            values[i] = getBool(reverse, fromEdge + i, edgeIntAccess);
+    }
 }
@@ -19,6 +19,17 @@ public interface DecimalEncodedValue extends EncodedValue {
 
     double getDecimal(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess);
 
+    /**
+     * Decodes the values of count consecutive edges starting at fromEdge into the given array. The buffer is scratch
+     * space with at least count elements, so repeated scans do not allocate.
+     *
+     * @see IntEncodedValue#getInts
+     */
+    default void getDecimals(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] buffer, double[] values) {
+        for (int i = 0; i < count; i++)
+            values[i] = getDecimal(reverse, fromEdge + i, edgeIntAccess);
+    }
+
     /**
      * The maximum double value this EncodedValue accepts for setDecimal without throwing an exception.
      */
@@ -113,6 +113,13 @@ public final class DecimalEncodedValueImpl extends IntEncodedValueImpl implement
         return value * factor;
     }
 
+    @Override
+    public void getDecimals(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] buffer, double[] values) {
+        getInts(reverse, fromEdge, count, edgeIntAccess, buffer);
+        for (int i = 0; i < count; i++)
+            values[i] = useMaximumAsInfinity && buffer[i] == maxStorableValue ? Double.POSITIVE_INFINITY : buffer[i] * factor;
+    }
+
     @Override
     public double getNextStorableValue(double value) {
         if (!useMaximumAsInfinity && value > getMaxStorableDecimal())
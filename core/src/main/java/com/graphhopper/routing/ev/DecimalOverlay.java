@@ -0,0 +1,38 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+/**
+ * A number per edge and direction that is not stored in the edge flags but provided from outside, e.g. the
+ * {@link TrafficSpeedOverlay}. It is not an EncodedValue and cannot be added to the EncodingManager. Custom models can
+ * use it like a DecimalEncodedValue if the lookup passed to the CustomModelParser is a {@link DecimalOverlayLookup}.
+ */
+public interface DecimalOverlay {
+
+    String getName();
+
+    /**
+     * @return the value for the specified edge key of the base graph, see
+     * {@link com.graphhopper.util.GHUtility#createEdgeKey(int, boolean)}
+     */
+    double getDecimal(int edgeKey);
+
+    double getMinDecimal();
+
+    double getMaxDecimal();
+}
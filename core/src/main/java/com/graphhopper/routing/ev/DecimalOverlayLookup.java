@@ -0,0 +1,36 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+/**
+ * An EncodedValueLookup that additionally contains {@link DecimalOverlay}s, see {@link TrafficSpeedOverlay#extend}.
+ */
+public interface DecimalOverlayLookup extends EncodedValueLookup {
+
+    /**
+     * @return the overlay with the specified name or null if there is none
+     */
+    DecimalOverlay getDecimalOverlay(String key);
+
+    /**
+     * @return the overlay with the specified name if the lookup is a DecimalOverlayLookup, otherwise null
+     */
+    static DecimalOverlay getDecimalOverlay(EncodedValueLookup lookup, String key) {
+        return lookup instanceof DecimalOverlayLookup ? ((DecimalOverlayLookup) lookup).getDecimalOverlay(key) : null;
+    }
+}
@@ -24,6 +24,16 @@ public interface EdgeIntAccess {
      */
     int getInt(int edgeId, int index);
 
+    /**
+     * Reads the int values at the given index for the edges fromEdge (inclusive) to fromEdge + count (exclusive) into
+     * the given array, i.e. values[i] = getInt(fromEdge + i, index). Implementations can override this to avoid the
+     * per-edge overhead when scanning large edge ranges.
+     */
+    default void getInts(int index, int fromEdge, int count, int[] values) {
+        for (int i = 0; i < count; i++)
+            values[i] = getInt(fromEdge + i, index);
+    }
+
     /**
      * Sets the int value at the given index for the given edgeId
      */
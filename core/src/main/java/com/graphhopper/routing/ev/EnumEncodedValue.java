@@ -79,4 +79,14 @@ public final class EnumEncodedValue<E extends Enum> extends IntEncodedValueImpl
         return arr[value];
     }
 
+    /**
+     * Decodes the enum values of count consecutive edges starting at fromEdge. For bulk scans it is usually cheaper
+     * to use {@link #getInts} and compare the ordinals directly. The buffer is scratch space with at least count elements.
+     */
+    public final void getEnums(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] buffer, E[] values) {
+        getInts(reverse, fromEdge, count, edgeIntAccess, buffer);
+        for (int i = 0; i < count; i++)
+            values[i] = arr[buffer[i]];
+    }
+
 }
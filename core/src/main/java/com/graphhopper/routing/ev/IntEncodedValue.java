@@ -14,6 +14,15 @@ public interface IntEncodedValue extends EncodedValue {
      */
     int getInt(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess);
 
+    /**
+     * Decodes the values of count consecutive edges starting at fromEdge into the given array, i.e.
+     * values[i] = getInt(reverse, fromEdge + i, edgeIntAccess). Use this for scans over large parts of the graph.
+     */
+    default void getInts(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] values) {
+        for (int i = 0; i < count; i++)
+            values[i] = getInt(reverse, fromEdge + i, edgeIntAccess);
+    }
+
     /**
      * This method stores the specified integer value in the specified IntsRef.
      */
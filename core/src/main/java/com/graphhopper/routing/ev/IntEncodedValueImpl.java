@@ -187,6 +187,26 @@ public class IntEncodedValueImpl implements IntEncodedValue {
         }
     }
 
+    @Override
+    public final void getInts(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] values) {
+        final int mask, shift, sign;
+        if (storeTwoDirections && reverse) {
+            edgeIntAccess.getInts(bwdDataIndex, fromEdge, count, values);
+            mask = bwdMask;
+            shift = bwdShift;
+            sign = 1;
+        } else {
+            edgeIntAccess.getInts(fwdDataIndex, fromEdge, count, values);
+            mask = fwdMask;
+            shift = fwdShift;
+            sign = negateReverseDirection && reverse ? -1 : 1;
+        }
+        // keep this loop free of branches so the JIT can vectorize it
+        final int min = minStorableValue;
+        for (int i = 0; i < count; i++)
+            values[i] = sign * (min + ((values[i] & mask) >>> shift));
+    }
+
     @Override
     public final int getInt(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess) {
         assert fwdShift >= 0 : "incorrect shift " + fwdShift + " for " + getName();
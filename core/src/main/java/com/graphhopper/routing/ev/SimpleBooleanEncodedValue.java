@@ -61,4 +61,11 @@ public final class SimpleBooleanEncodedValue extends IntEncodedValueImpl impleme
     public final boolean getBool(boolean reverse, int edgeId, EdgeIntAccess edgeIntAccess) {
         return getInt(reverse, edgeId, edgeIntAccess) == 1;
     }
+
+    @Override
+    public void getBools(boolean reverse, int fromEdge, int count, EdgeIntAccess edgeIntAccess, int[] buffer, boolean[] values) {
+        getInts(reverse, fromEdge, count, edgeIntAccess, buffer);
+        for (int i = 0; i < count; i++)
+            values[i] = buffer[i] == 1;
+    }
 }
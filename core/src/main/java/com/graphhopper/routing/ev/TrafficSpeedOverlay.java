@@ -0,0 +1,233 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.util.GHUtility;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A speed per edge and direction that can be changed while GraphHopper is running, e.g. to include live traffic
+ * without a new import. The values are not stored in the edge flags but in separate arrays that are replaced
+ * copy-on-write, so a batch of changes becomes visible for new reads at once and no locking is necessary for reading.
+ * <p>
+ * Custom models can use it via its name, e.g. <code>{"if": "true", "limit_to": "traffic_speed"}</code>, if the
+ * CustomModelParser gets the lookup from {@link #extend}. Edges without a value return the maximum speed, so limit_to
+ * does not change them. As limit_to can only decrease speeds, the weights only increase and the landmark
+ * approximations, which are prepared while no traffic speeds are set, stay valid lower bounds. Therefore the custom
+ * models of LM profiles can use it only as limit_to value, which GraphHopper checks when it starts. Custom models in
+ * LM requests can only decrease the speeds anyway. CH shortcuts are not updated, so profiles using traffic speeds need
+ * LM, flexible routing or the customizable CH, which customizes them again after every change, see
+ * {@link #getVersion()}. A speed of zero blocks the edge, so these profiles do not use the precalculated snappable
+ * edges.
+ * <p>
+ * The speeds are set for edge keys, i.e. for the internal edge ids of the graph. These ids are only valid for the
+ * graph they were taken from: a new import or graph.sort assigns different ids.
+ */
+public class TrafficSpeedOverlay implements DecimalOverlay {
+    public static final String KEY = "traffic_speed";
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+    private static final short NO_SPEED = -1;
+    // the speeds are stored in units of 0.1km/h
+    private static final double UNITS_PER_KMH = 10;
+    private final double maxSpeed;
+    // a segment is null if none of its edges has a speed
+    private volatile short[][] segments = new short[0][];
+    private volatile long version;
+
+    public TrafficSpeedOverlay(double maxSpeed) {
+        if (maxSpeed <= 0 || maxSpeed * UNITS_PER_KMH > Short.MAX_VALUE)
+            throw new IllegalArgumentException("maximum speed must be in (0, " + Short.MAX_VALUE / UNITS_PER_KMH + "] but was " + maxSpeed);
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Changes the speeds of the specified edge keys, see {@link GHUtility#createEdgeKey(int, boolean)}. A NaN speed
+     * removes the speed of the edge key. Concurrent reads see either all or none of the changes.
+     */
+    public synchronized void setSpeeds(IntArrayList edgeKeys, DoubleArrayList speeds) {
+        segments = update(segments, edgeKeys, speeds);
+        version++;
+    }
+
+    /**
+     * Like {@link #setSpeeds} but removes all other speeds, e.g. when a new traffic snapshot arrives.
+     */
+    public synchronized void replaceSpeeds(IntArrayList edgeKeys, DoubleArrayList speeds) {
+        segments = update(new short[0][], edgeKeys, speeds);
+        version++;
+    }
+
+    private short[][] update(short[][] old, IntArrayList edgeKeys, DoubleArrayList speeds) {
+        if (edgeKeys.size() != speeds.size())
+            throw new IllegalArgumentException("edge keys and speeds must have the same size, " + edgeKeys.size() + " vs. " + speeds.size());
+        short[][] tmp = old.clone();
+        // only copy the segments that we change, the others are shared with the current version
+        boolean[] copied = new boolean[tmp.length];
+        for (int i = 0; i < edgeKeys.size(); i++) {
+            int edgeKey = edgeKeys.get(i);
+            if (edgeKey < 0)
+                throw new IllegalArgumentException("invalid edge key " + edgeKey);
+            short value = toShort(speeds.get(i));
+            int segment = edgeKey >>> SEGMENT_BITS;
+            if (segment >= tmp.length) {
+                if (value == NO_SPEED)
+                    continue;
+                tmp = Arrays.copyOf(tmp, segment + 1);
+                copied = Arrays.copyOf(copied, segment + 1);
+            }
+            if (!copied[segment]) {
+                if (tmp[segment] == null) {
+                    if (value == NO_SPEED)
+                        continue;
+                    tmp[segment] = new short[1 << SEGMENT_BITS];
+                    Arrays.fill(tmp[segment], NO_SPEED);
+                } else {
+                    tmp[segment] = tmp[segment].clone();
+                }
+                copied[segment] = true;
+            }
+            tmp[segment][edgeKey & SEGMENT_MASK] = value;
+        }
+        return tmp;
+    }
+
+    /**
+     * Removes all speeds.
+     */
+    public synchronized void clear() {
+        segments = new short[0][];
+        version++;
+    }
+
+    /**
+     * @return a number that changes whenever the speeds are changed, e.g. to invalidate results that were calculated
+     * from the previous speeds
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of edge keys that have a speed
+     */
+    public int getSpeedCount() {
+        int count = 0;
+        for (short[] segment : segments)
+            if (segment != null)
+                for (short value : segment)
+                    if (value != NO_SPEED)
+                        count++;
+        return count;
+    }
+
+    private short toShort(double speed) {
+        if (Double.isNaN(speed))
+            return NO_SPEED;
+        if (speed < 0 || speed > maxSpeed)
+            throw new IllegalArgumentException(KEY + " must be in [0, " + maxSpeed + "] but was " + speed);
+        return (short) Math.round(speed * UNITS_PER_KMH);
+    }
+
+    /**
+     * @return a lookup that contains the EncodedValues of the specified lookup and this overlay, which can be passed
+     * to the CustomModelParser
+     */
+    public DecimalOverlayLookup extend(EncodedValueLookup lookup) {
+        return new DecimalOverlayLookup() {
+            @Override
+            public DecimalOverlay getDecimalOverlay(String key) {
+                return KEY.equals(key) ? TrafficSpeedOverlay.this : null;
+            }
+
+            @Override
+            public List<EncodedValue> getEncodedValues() {
+                return lookup.getEncodedValues();
+            }
+
+            @Override
+            public <T extends EncodedValue> T getEncodedValue(String key, Class<T> encodedValueType) {
+                return lookup.getEncodedValue(key, encodedValueType);
+            }
+
+            @Override
+            public BooleanEncodedValue getBooleanEncodedValue(String key) {
+                return lookup.getBooleanEncodedValue(key);
+            }
+
+            @Override
+            public IntEncodedValue getIntEncodedValue(String key) {
+                return lookup.getIntEncodedValue(key);
+            }
+
+            @Override
+            public DecimalEncodedValue getDecimalEncodedValue(String key) {
+                return lookup.getDecimalEncodedValue(key);
+            }
+
+            @Override
+            public <T extends Enum<?>> EnumEncodedValue<T> getEnumEncodedValue(String key, Class<T> enumType) {
+                return lookup.getEnumEncodedValue(key, enumType);
+            }
+
+            @Override
+            public StringEncodedValue getStringEncodedValue(String key) {
+                return lookup.getStringEncodedValue(key);
+            }
+
+            @Override
+            public boolean hasEncodedValue(String key) {
+                return lookup.hasEncodedValue(key);
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return KEY;
+    }
+
+    @Override
+    public double getDecimal(int edgeKey) {
+        short[][] tmp = segments;
+        int segment = edgeKey >>> SEGMENT_BITS;
+        if (segment >= tmp.length || tmp[segment] == null)
+            return maxSpeed;
+        short value = tmp[segment][edgeKey & SEGMENT_MASK];
+        return value == NO_SPEED ? maxSpeed : value / UNITS_PER_KMH;
+    }
+
+    @Override
+    public double getMinDecimal() {
+        return 0;
+    }
+
+    @Override
+    public double getMaxDecimal() {
+        return maxSpeed;
+    }
+
+    @Override
+    public String toString() {
+        return KEY;
+    }
+}
@@ -146,6 +146,13 @@ public class LMPreparationHandler {
      * @return the loaded landmark storages
      */
     public List<LandmarkStorage> load(List<LMConfig> lmConfigs, BaseGraph baseGraph, EncodedValueLookup encodedValueLookup) {
+        return load(lmConfigs, baseGraph, encodedValueLookup, preparationThreads);
+    }
+
+    /**
+     * Same as {@link #load(List, BaseGraph, EncodedValueLookup)}, but uses the given number of threads.
+     */
+    public List<LandmarkStorage> load(List<LMConfig> lmConfigs, BaseGraph baseGraph, EncodedValueLookup encodedValueLookup, int threads) {
         List<LandmarkStorage> loaded = Collections.synchronizedList(new ArrayList<>());
         Stream<Runnable> loadingRunnables = lmConfigs.stream()
                 .map(lmConfig -> () -> {
@@ -165,7 +172,7 @@ public class LMPreparationHandler {
                         baseGraph.getDirectory().remove("landmarks_subnetwork_" + lmConfig.getName());
                     }
                 });
-        GHUtility.runConcurrently(loadingRunnables, preparationThreads);
+        GHUtility.runConcurrently(loadingRunnables, threads);
         return loaded;
     }
 
@@ -20,12 +20,14 @@ package com.graphhopper.routing.lm;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
 import com.graphhopper.coll.MapEntry;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.SPTEntry;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.EdgeIntAccess;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.subnetwork.SubnetworkStorage;
@@ -71,6 +73,8 @@ public class LandmarkStorage {
     private static final int UNSET_SUBNETWORK = -1;
     // This value should only be used if subnetwork is too small to be explicitly stored
     private static final int UNCLEAR_SUBNETWORK = 0;
+    // the number of edges whose subnetwork flags are decoded at once
+    private static final int CHUNK_SIZE = 1 << 16;
     // one node has an associated landmark information ('one landmark row'): the forward and backward weight
     private long LM_ROW_LENGTH;
     private int landmarks;
@@ -254,21 +258,22 @@ public class LandmarkStorage {
                     "currently required (also used in PrepareRoutingSubnetworks). See #2256");
 
         // Exclude edges that we previously marked in PrepareRoutingSubnetworks to avoid problems like "connection not found".
+        // The filters below are called for every explored edge, so we decode the flags only once.
         final BooleanEncodedValue edgeInSubnetworkEnc = encodedValueLookup.getBooleanEncodedValue(snKey);
-        final IntHashSet blockedEdges;
+        final BitSet blockedEdges = findSubnetworkEdges(edgeInSubnetworkEnc);
         // We use the areaIndex to split certain areas from each other but do not permanently change the base graph
         // so that other algorithms still can route through these regions. This is done to increase the density of
         // landmarks for an area like Europe+Asia, which improves the query speed.
         if (areaIndex != null) {
             StopWatch sw = new StopWatch().start();
-            blockedEdges = findBorderEdgeIds(areaIndex);
+            IntHashSet borderEdges = findBorderEdgeIds(areaIndex);
+            for (IntCursor edge : borderEdges)
+                blockedEdges.set(edge.value);
             if (logDetails)
-                LOGGER.info("Made " + blockedEdges.size() + " edges inaccessible. Calculated country cut in " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
-        } else {
-            blockedEdges = new IntHashSet();
+                LOGGER.info("Made " + borderEdges.size() + " edges inaccessible. Calculated country cut in " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
         }
 
-        EdgeFilter accessFilter = edge -> !edge.get(edgeInSubnetworkEnc) && !blockedEdges.contains(edge.getEdge());
+        EdgeFilter accessFilter = edge -> !blockedEdges.get(edge.getEdge());
         EdgeFilter tarjanFilter = edge -> accessFilter.accept(edge) && Double.isFinite(weighting.calcEdgeWeight(edge, false));
 
         StopWatch sw = new StopWatch().start();
@@ -489,6 +494,22 @@ public class LandmarkStorage {
         this.areaIndex = areaIndex;
     }
 
+    private BitSet findSubnetworkEdges(BooleanEncodedValue edgeInSubnetworkEnc) {
+        int edges = graph.getEdges();
+        BitSet subnetworkEdges = new BitSet(edges);
+        EdgeIntAccess edgeIntAccess = graph.getEdgeAccess();
+        int[] buffer = new int[Math.min(edges, CHUNK_SIZE)];
+        boolean[] inSubnetwork = new boolean[buffer.length];
+        for (int fromEdge = 0; fromEdge < edges; fromEdge += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, edges - fromEdge);
+            edgeInSubnetworkEnc.getBools(false, fromEdge, count, edgeIntAccess, buffer, inSubnetwork);
+            for (int i = 0; i < count; i++)
+                if (inSubnetwork[i])
+                    subnetworkEdges.set(fromEdge + i);
+        }
+        return subnetworkEdges;
+    }
+
     /**
      * This method makes edges crossing the specified border inaccessible to split a bigger area into smaller subnetworks.
      * This is important for the world wide use case to limit the maximum distance and also to detect unreasonable routes faster.
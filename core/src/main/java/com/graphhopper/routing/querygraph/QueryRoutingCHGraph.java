@@ -126,6 +126,12 @@ public class QueryRoutingCHGraph implements RoutingCHGraph {
         return routingCHGraph.getLevel(node);
     }
 
+    @Override
+    public int[] getNodesByLevelDescending() {
+        // the virtual nodes are not included
+        return routingCHGraph.getNodesByLevelDescending();
+    }
+
     @Override
     public double getTurnWeight(int inEdge, int viaNode, int outEdge) {
         if (!routingCHGraph.hasTurnCosts())
@@ -25,6 +25,7 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.FetchMode;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.PointVisitor;
 
 import java.util.List;
 import java.util.Map;
@@ -95,6 +96,11 @@ class VirtualEdgeIterator implements EdgeIterator {
         return getCurrentEdge().fetchWayGeometry(mode);
     }
 
+    @Override
+    public void visitWayGeometry(FetchMode mode, PointVisitor visitor) {
+        getCurrentEdge().visitWayGeometry(mode, visitor);
+    }
+
     @Override
     public EdgeIteratorState setWayGeometry(PointList list) {
         return getCurrentEdge().setWayGeometry(list);
@@ -24,6 +24,7 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.FetchMode;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.PointVisitor;
 
 import java.util.Map;
 
@@ -125,6 +126,36 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState {
         throw new UnsupportedOperationException("Illegal mode:" + mode);
     }
 
+    @Override
+    public void visitWayGeometry(FetchMode mode, PointVisitor visitor) {
+        if (pointList.isEmpty())
+            return;
+        if (mode == FetchMode.TOWER_ONLY) {
+            if (pointList.size() < 3) {
+                visitPoints(0, pointList.size(), visitor);
+            } else {
+                visitPoints(0, 1, visitor);
+                visitPoints(pointList.size() - 1, pointList.size(), visitor);
+            }
+        } else if (mode == FetchMode.ALL)
+            visitPoints(0, pointList.size(), visitor);
+        else if (mode == FetchMode.BASE_AND_PILLAR)
+            visitPoints(0, pointList.size() - 1, visitor);
+        else if (mode == FetchMode.PILLAR_AND_ADJ)
+            visitPoints(1, pointList.size(), visitor);
+        else if (mode == FetchMode.PILLAR_ONLY)
+            visitPoints(1, pointList.size() - 1, visitor);
+        else
+            throw new UnsupportedOperationException("Illegal mode:" + mode);
+    }
+
+    private void visitPoints(int from, int end, PointVisitor visitor) {
+        boolean is3D = pointList.is3D();
+        for (int i = from; i < end; i++) {
+            visitor.visit(pointList.getLat(i), pointList.getLon(i), is3D ? pointList.getEle(i) : Double.NaN);
+        }
+    }
+
     @Override
     public EdgeIteratorState setWayGeometry(PointList list) {
         throw new UnsupportedOperationException("Not supported for virtual edge. Set when creating it.");
@@ -22,7 +22,7 @@ import com.carrotsearch.hppc.BitSetIterator;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
-import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.ev.EdgeIntAccess;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.util.GHUtility;
@@ -63,6 +63,8 @@ import static com.graphhopper.util.GHUtility.getEdgeFromEdgeKey;
  * @author easbar
  */
 public class PrepareRoutingSubnetworks {
+    // the number of edges whose subnetwork flags are decoded at once
+    private static final int CHUNK_SIZE = 1 << 16;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final BaseGraph graph;
     private final List<PrepareJob> prepareJobs;
@@ -108,15 +110,37 @@ public class PrepareRoutingSubnetworks {
             total.addAndGet(setSubnetworks(job.weighting, job.subnetworkEnc.getName().replaceAll("_subnetwork", ""), flags.get(i)));
         });
         GHUtility.runConcurrently(runnables, threads);
-        AllEdgesIterator iter = graph.getAllEdges();
-        while (iter.next()) {
-            for (int i = 0; i < prepareJobs.size(); i++) {
-                PrepareJob prepareJob = prepareJobs.get(i);
-                iter.set(prepareJob.subnetworkEnc, flags.get(i).get(iter.getEdge()));
+        int changedFlags = 0;
+        for (int i = 0; i < prepareJobs.size(); i++)
+            changedFlags += updateFlags(prepareJobs.get(i).subnetworkEnc, flags.get(i));
+        logger.info("Finished finding and marking subnetworks for " + prepareJobs.size() + " jobs, changed flags: " + changedFlags
+                + ", took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
+        return total.get();
+    }
+
+    /**
+     * Writes the given flags, but only for the edges where they differ from the stored ones, which are decoded in bulk.
+     * This way re-running the preparation on an already prepared graph, e.g. after applying OSM changes, does not
+     * rewrite all edges.
+     */
+    private int updateFlags(BooleanEncodedValue subnetworkEnc, BitSet subnetworkFlags) {
+        int edges = graph.getEdges();
+        EdgeIntAccess edgeIntAccess = graph.getEdgeAccess();
+        int[] buffer = new int[Math.min(edges, CHUNK_SIZE)];
+        boolean[] storedFlags = new boolean[buffer.length];
+        int changed = 0;
+        for (int fromEdge = 0; fromEdge < edges; fromEdge += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, edges - fromEdge);
+            subnetworkEnc.getBools(false, fromEdge, count, edgeIntAccess, buffer, storedFlags);
+            for (int i = 0; i < count; i++) {
+                boolean flag = subnetworkFlags.get(fromEdge + i);
+                if (storedFlags[i] != flag) {
+                    subnetworkEnc.setBool(false, fromEdge + i, edgeIntAccess, flag);
+                    changed++;
+                }
             }
         }
-        logger.info("Finished finding and marking subnetworks for " + prepareJobs.size() + " jobs, took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
-        return total.get();
+        return changed;
     }
 
     private int setSubnetworks(Weighting weighting, String jobName, BitSet subnetworkFlags) {
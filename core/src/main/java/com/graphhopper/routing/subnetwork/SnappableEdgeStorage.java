@@ -0,0 +1,100 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.subnetwork;
+
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Stores one bit per edge that tells whether the edge is accessible in at least one direction for a profile and not
+ * part of a removed subnetwork, i.e. the result of {@link DefaultSnapFilter} for the weighting of the profile. This
+ * way the location index lookup does not need to evaluate the weighting for every candidate edge.
+ */
+public class SnappableEdgeStorage {
+    private static final int VERSION = 0;
+    private final DataAccess da;
+    private int edgeCount;
+
+    public SnappableEdgeStorage(DataAccess da) {
+        this.da = da;
+    }
+
+    public SnappableEdgeStorage create(int edgeCount) {
+        this.edgeCount = edgeCount;
+        da.create(2000);
+        da.ensureCapacity(4L * ((edgeCount + 31) >>> 5));
+        return this;
+    }
+
+    /**
+     * Evaluates the snap filter for all edges of the given graph. The subnetwork removal must have been done before.
+     */
+    public SnappableEdgeStorage build(BaseGraph graph, Weighting weighting, BooleanEncodedValue inSubnetworkEnc) {
+        create(graph.getEdges());
+        DefaultSnapFilter filter = new DefaultSnapFilter(weighting, inSubnetworkEnc);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (filter.accept(iter)) {
+                long pointer = 4L * (iter.getEdge() >>> 5);
+                da.setInt(pointer, da.getInt(pointer) | (1 << (iter.getEdge() & 31)));
+            }
+        }
+        return this;
+    }
+
+    public boolean isSnappable(int edge) {
+        if (edge < 0 || edge >= edgeCount)
+            throw new IllegalArgumentException("edge " + edge + " out of bounds [0," + edgeCount + ")");
+        return (da.getInt(4L * (edge >>> 5)) & (1 << (edge & 31))) != 0;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), VERSION, da.getHeader(0));
+        edgeCount = da.getHeader(4);
+        return true;
+    }
+
+    public void flush() {
+        da.setHeader(0, VERSION);
+        da.setHeader(4, edgeCount);
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.subnetwork.SnappableEdgeStorage;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Same as {@link DefaultSnapFilter} for the unmodified profile weighting, but reads the precalculated result from a
+ * {@link SnappableEdgeStorage}. Edges that are not covered by the storage are passed to the fallback filter.
+ */
+public class PrecomputedSnapFilter implements EdgeFilter {
+    private final SnappableEdgeStorage storage;
+    private final EdgeFilter fallback;
+
+    public PrecomputedSnapFilter(SnappableEdgeStorage storage, EdgeFilter fallback) {
+        this.storage = storage;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean accept(EdgeIteratorState edgeState) {
+        int edge = edgeState.getEdge();
+        return edge < storage.getEdgeCount() ? storage.isSnappable(edge) : fallback.accept(edgeState);
+    }
+}
@@ -29,6 +29,8 @@ import java.util.function.ToDoubleFunction;
 
 public class UrbanDensityCalculator {
     private static final Logger logger = LoggerFactory.getLogger(UrbanDensityCalculator.class);
+    // number of edges whose encoded values are decoded at once before the road densities are calculated
+    private static final int CHUNK_SIZE = 1 << 16;
 
     /**
      * Calculates the urban density (rural/residential/city) for all edges of the graph.
@@ -62,19 +64,27 @@ public class UrbanDensityCalculator {
     private static void calcResidential(Graph graph, EnumEncodedValue<UrbanDensity> urbanDensityEnc,
                                         EnumEncodedValue<RoadClass> roadClassEnc, BooleanEncodedValue roadClassLinkEnc,
                                         double radius, double sensitivity, int threads) {
-        final ToDoubleFunction<EdgeIteratorState> calcRoadFactor = edge -> {
-            RoadClass roadClass = edge.get(roadClassEnc);
-            // we're interested in the road density of 'urban' roads, so dense road clusters of outdoor
-            // roads like tracks or paths and road class links should not contribute to the residential density
-            if (edge.get(roadClassLinkEnc) ||
-                    roadClass == RoadClass.TRACK ||
-                    roadClass == RoadClass.SERVICE ||
-                    roadClass == RoadClass.PATH ||
-                    roadClass == RoadClass.BRIDLEWAY)
-                return 0;
-            else
-                return 1;
-        };
+        // we're interested in the road density of 'urban' roads, so dense road clusters of outdoor
+        // roads like tracks or paths and road class links should not contribute to the residential density
+        final boolean[] isUrbanRoad = new boolean[graph.getEdges()];
+        EdgeIntAccess edgeIntAccess = graph.getBaseGraph().getEdgeAccess();
+        int[] roadClasses = new int[CHUNK_SIZE];
+        int[] buffer = new int[CHUNK_SIZE];
+        boolean[] links = new boolean[CHUNK_SIZE];
+        for (int fromEdge = 0; fromEdge < isUrbanRoad.length; fromEdge += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, isUrbanRoad.length - fromEdge);
+            roadClassEnc.getInts(false, fromEdge, count, edgeIntAccess, roadClasses);
+            roadClassLinkEnc.getBools(false, fromEdge, count, edgeIntAccess, buffer, links);
+            for (int i = 0; i < count; i++) {
+                int roadClass = roadClasses[i];
+                isUrbanRoad[fromEdge + i] = !links[i] &&
+                        roadClass != RoadClass.TRACK.ordinal() &&
+                        roadClass != RoadClass.SERVICE.ordinal() &&
+                        roadClass != RoadClass.PATH.ordinal() &&
+                        roadClass != RoadClass.BRIDLEWAY.ordinal();
+            }
+        }
+        final ToDoubleFunction<EdgeIteratorState> calcRoadFactor = edge -> isUrbanRoad[edge.getEdge()] ? 1 : 0;
         // temporarily write results to an external array for thread-safety
         boolean[] isResidential = new boolean[graph.getEdges()];
         RoadDensityCalculator.calcRoadDensities(graph, (calculator, edge) -> {
@@ -89,10 +99,12 @@ public class UrbanDensityCalculator {
                                  double radius, double sensitivity, int threads) {
         // do not modify the urban density values as long as we are still reading them -> store city flags in this array first
         boolean[] isCity = new boolean[graph.getEdges()];
-        final ToDoubleFunction<EdgeIteratorState> calcRoadFactor = edge -> edge.get(urbanDensityEnc) == UrbanDensity.RESIDENTIAL ? 1 : 0;
+        final int[] urbanDensities = new int[graph.getEdges()];
+        urbanDensityEnc.getInts(false, 0, urbanDensities.length, graph.getBaseGraph().getEdgeAccess(), urbanDensities);
+        final int residential = UrbanDensity.RESIDENTIAL.ordinal();
+        final ToDoubleFunction<EdgeIteratorState> calcRoadFactor = edge -> urbanDensities[edge.getEdge()] == residential ? 1 : 0;
         RoadDensityCalculator.calcRoadDensities(graph, (calculator, edge) -> {
-            UrbanDensity urbanDensity = edge.get(urbanDensityEnc);
-            if (urbanDensity == UrbanDensity.RURAL)
+            if (urbanDensities[edge.getEdge()] == UrbanDensity.RURAL.ordinal())
                 return;
             double roadDensity = calculator.calcRoadDensity(edge, radius, calcRoadFactor);
             if (roadDensity * sensitivity >= 1.0)
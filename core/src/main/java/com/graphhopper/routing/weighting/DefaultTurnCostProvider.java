@@ -18,9 +18,7 @@
 
 package com.graphhopper.routing.weighting;
 
-import com.graphhopper.routing.ev.BooleanEncodedValue;
-import com.graphhopper.routing.ev.DecimalEncodedValue;
-import com.graphhopper.routing.ev.EdgeIntAccess;
+import com.graphhopper.routing.ev.*;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.TurnCostStorage;
@@ -30,6 +28,7 @@ import com.graphhopper.util.TurnCostsConfig;
 import static com.graphhopper.util.TurnCostsConfig.INFINITE_U_TURN_COSTS;
 
 public class DefaultTurnCostProvider implements TurnCostProvider {
+    private static final int MAX_ORIENTATION_VALUES = 64;
     private final BooleanEncodedValue turnRestrictionEnc;
     private final TurnCostStorage turnCostStorage;
     private final int uTurnCostsInt;
@@ -47,6 +46,11 @@ public class DefaultTurnCostProvider implements TurnCostProvider {
     private final BaseGraph graph;
     private final EdgeIntAccess edgeIntAccess;
     private final DecimalEncodedValue orientationEnc;
+    // the orientation is stored with only a few bits, so we can calculate the costs for all pairs of stored values
+    // upfront and skip the angle calculation for every turn, see calcCostsByOrientation
+    private final IntEncodedValue orientationIntEnc;
+    private final int orientationValues;
+    private final double[] costsByOrientation;
 
     public DefaultTurnCostProvider(BooleanEncodedValue turnRestrictionEnc, DecimalEncodedValue orientationEnc,
                                    Graph graph, TurnCostsConfig tcConfig) {
@@ -88,6 +92,37 @@ public class DefaultTurnCostProvider implements TurnCostProvider {
 
         this.graph = graph.getBaseGraph();
         this.edgeIntAccess = graph.getBaseGraph().getEdgeAccess();
+
+        if (orientationEnc instanceof IntEncodedValue && ((IntEncodedValue) orientationEnc).getMinStorableInt() == 0
+                && ((IntEncodedValue) orientationEnc).getMaxStorableInt() < MAX_ORIENTATION_VALUES) {
+            this.orientationIntEnc = (IntEncodedValue) orientationEnc;
+            this.orientationValues = orientationIntEnc.getMaxStorableInt() + 1;
+            this.costsByOrientation = calcCostsByOrientation();
+        } else {
+            this.orientationIntEnc = null;
+            this.orientationValues = 0;
+            this.costsByOrientation = null;
+        }
+    }
+
+    /**
+     * @return the turn costs for every pair of stored values of the incoming and the outgoing orientation, indexed by
+     * in * orientationValues + out
+     */
+    private double[] calcCostsByOrientation() {
+        // decode the values like they are decoded from the graph
+        EdgeIntAccess scratch = new ArrayEdgeIntAccess(1);
+        double[] azimuths = new double[orientationValues];
+        for (int value = 0; value < orientationValues; value++) {
+            orientationIntEnc.setInt(false, 0, scratch, value);
+            azimuths[value] = orientationEnc.getDecimal(false, 0, scratch);
+        }
+        double[] costs = new double[orientationValues * orientationValues];
+        for (int in = 0; in < orientationValues; in++) {
+            for (int out = 0; out < orientationValues; out++)
+                costs[in * orientationValues + out] = calcAngleCosts(calcChangeAngle(azimuths[in], azimuths[out]));
+        }
+        return costs;
     }
 
     @Override
@@ -104,25 +139,32 @@ public class DefaultTurnCostProvider implements TurnCostProvider {
                 return Double.POSITIVE_INFINITY;
         }
 
-        if (orientationEnc != null) {
-            double changeAngle = calcChangeAngle(inEdge, viaNode, outEdge);
-            if (changeAngle > -minTurnAngle && changeAngle < minTurnAngle)
-                return straightCosts;
-            else if (changeAngle >= minTurnAngle && changeAngle < minSharpTurnAngle)
-                return rightTurnCosts;
-            else if (changeAngle >= minSharpTurnAngle && changeAngle <= minUTurnAngle)
-                return sharpRightTurnCosts;
-            else if (changeAngle <= -minTurnAngle && changeAngle > -minSharpTurnAngle)
-                return leftTurnCosts;
-            else if (changeAngle <= -minSharpTurnAngle && changeAngle >= -minUTurnAngle)
-                return sharpLeftTurnCosts;
-
-            // Too sharp turn is like an u-turn.
-            return uTurnCosts;
+        if (costsByOrientation != null) {
+            int in = orientationIntEnc.getInt(!graph.isAdjNode(inEdge, viaNode), inEdge, edgeIntAccess);
+            int out = orientationIntEnc.getInt(!graph.isAdjNode(outEdge, viaNode), outEdge, edgeIntAccess);
+            return costsByOrientation[in * orientationValues + out];
         }
+        if (orientationEnc != null)
+            return calcAngleCosts(calcChangeAngle(inEdge, viaNode, outEdge));
         return 0;
     }
 
+    double calcAngleCosts(double changeAngle) {
+        if (changeAngle > -minTurnAngle && changeAngle < minTurnAngle)
+            return straightCosts;
+        else if (changeAngle >= minTurnAngle && changeAngle < minSharpTurnAngle)
+            return rightTurnCosts;
+        else if (changeAngle >= minSharpTurnAngle && changeAngle <= minUTurnAngle)
+            return sharpRightTurnCosts;
+        else if (changeAngle <= -minTurnAngle && changeAngle > -minSharpTurnAngle)
+            return leftTurnCosts;
+        else if (changeAngle <= -minSharpTurnAngle && changeAngle >= -minUTurnAngle)
+            return sharpLeftTurnCosts;
+
+        // Too sharp turn is like an u-turn.
+        return uTurnCosts;
+    }
+
     @Override
     public long calcTurnMillis(int inEdge, int viaNode, int outEdge) {
         // Making a proper assumption about the turn time is very hard. Assuming zero is the
@@ -147,7 +189,10 @@ public class DefaultTurnCostProvider implements TurnCostProvider {
 
         boolean outEdgeReverse = !graph.isAdjNode(outEdge, viaNode);
         double azimuth = orientationEnc.getDecimal(outEdgeReverse, outEdge, edgeIntAccess);
+        return calcChangeAngle(prevAzimuth, azimuth);
+    }
 
+    private static double calcChangeAngle(double prevAzimuth, double azimuth) {
         // bring parallel to prevOrientation
         if (azimuth >= 180) azimuth -= 180;
         else azimuth += 180;
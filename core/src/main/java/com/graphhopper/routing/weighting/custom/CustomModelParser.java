@@ -193,6 +193,45 @@ public class CustomModelParser {
         return new ArrayList<>(variables);
     }
 
+    /**
+     * @return true if the custom model uses the specified variable, either directly or with the backward_ prefix
+     */
+    public static boolean usesVariable(CustomModel model, String variable) {
+        Set<String> names = new HashSet<>();
+        NameValidator collector = s -> {
+            names.add(s);
+            return true;
+        };
+        findVariablesForEncodedValuesString(model.getPriority(), collector, s -> "");
+        findVariablesForEncodedValuesString(model.getSpeed(), collector, s -> "");
+        return names.contains(variable) || names.contains(BACKWARD_PREFIX + variable);
+    }
+
+    /**
+     * @return true if the custom model uses the specified variable in a condition or in a value that is not a limit_to
+     * value. Only limit_to values can guarantee that a variable decreases the speed and priority but never increases it.
+     */
+    public static boolean usesVariableOutsideOfLimitTo(CustomModel model, String variable) {
+        Set<String> names = new HashSet<>();
+        NameValidator collector = s -> {
+            names.add(s);
+            return true;
+        };
+        findVariablesOutsideOfLimitTo(model.getPriority(), collector);
+        findVariablesOutsideOfLimitTo(model.getSpeed(), collector);
+        return names.contains(variable) || names.contains(BACKWARD_PREFIX + variable);
+    }
+
+    private static void findVariablesOutsideOfLimitTo(List<Statement> statements, NameValidator collector) {
+        for (Statement statement : statements) {
+            ConditionalExpressionVisitor.parse(statement.condition(), collector, s -> "");
+            if (statement.isBlock())
+                findVariablesOutsideOfLimitTo(statement.doBlock(), collector);
+            else if (statement.operation() != Statement.Op.LIMIT)
+                ValueExpressionVisitor.parse(statement.value(), collector);
+        }
+    }
+
     private static void findVariablesForEncodedValuesString(List<Statement> statements, NameValidator nameValidator, ClassHelper classHelper) {
         List<List<Statement>> groups = CustomModelParser.splitIntoGroup(statements);
         for (List<Statement> group : groups) {
@@ -266,14 +305,18 @@ public class CustomModelParser {
      * or if an area contains the current edge.
      */
     private static String getVariableDeclaration(EncodedValueLookup lookup, final String arg) {
-        if (lookup.hasEncodedValue(arg)) {
+        if (DecimalOverlayLookup.getDecimalOverlay(lookup, arg) != null) {
+            return "double " + arg + " = getDecimal(this." + arg + "_enc, edge, reverse);\n";
+        } else if (lookup.hasEncodedValue(arg)) {
             EncodedValue enc = lookup.getEncodedValue(arg, EncodedValue.class);
             return getReturnType(enc) + " " + arg + " = (" + getReturnType(enc) + ") (reverse ? " +
                     "edge.getReverse((" + getInterface(enc) + ") this." + arg + "_enc) : " +
                     "edge.get((" + getInterface(enc) + ") this." + arg + "_enc));\n";
         } else if (arg.startsWith(BACKWARD_PREFIX)) {
             final String argSubstr = arg.substring(BACKWARD_PREFIX.length());
-            if (lookup.hasEncodedValue(argSubstr)) {
+            if (DecimalOverlayLookup.getDecimalOverlay(lookup, argSubstr) != null) {
+                return "double " + arg + " = getDecimal(this." + argSubstr + "_enc, edge, !reverse);\n";
+            } else if (lookup.hasEncodedValue(argSubstr)) {
                 EncodedValue enc = lookup.getEncodedValue(argSubstr, EncodedValue.class);
                 return getReturnType(enc) + " " + arg + " = (" + getReturnType(enc) + ") (reverse ? " +
                         "edge.get((" + getInterface(enc) + ") this." + argSubstr + "_enc) : " +
@@ -337,7 +380,10 @@ public class CustomModelParser {
             set.add(speedVar.startsWith(BACKWARD_PREFIX) ? speedVar.substring(BACKWARD_PREFIX.length()) : speedVar);
 
         for (String arg : set) {
-            if (lookup.hasEncodedValue(arg)) {
+            if (DecimalOverlayLookup.getDecimalOverlay(lookup, arg) != null) {
+                classSourceCode.append("protected DecimalOverlay " + arg + "_enc;\n");
+                initSourceCode.append("this." + arg + "_enc = ((DecimalOverlayLookup) lookup).getDecimalOverlay(\"" + arg + "\");\n");
+            } else if (lookup.hasEncodedValue(arg)) {
                 EncodedValue enc = lookup.getEncodedValue(arg, EncodedValue.class);
                 classSourceCode.append("protected " + getInterface(enc) + " " + arg + "_enc;\n");
                 initSourceCode.append("this." + arg + "_enc = (" + getInterface(enc)
@@ -409,10 +455,11 @@ public class CustomModelParser {
     private static List<Java.BlockStatement> verifyExpressions(StringBuilder expressions, String info, Set<String> createObjects,
                                                                List<Statement> list, EncodedValueLookup lookup) throws Exception {
         // allow variables, all encoded values, constants and special variables like in_xyarea or backward_car_access
-        NameValidator nameInConditionValidator = name -> lookup.hasEncodedValue(name)
+        NameValidator nameInConditionValidator = name -> ValueExpressionVisitor.hasVariable(lookup, name)
                 || name.toUpperCase(Locale.ROOT).equals(name) || name.startsWith(IN_AREA_PREFIX)
-                || name.startsWith(BACKWARD_PREFIX) && lookup.hasEncodedValue(name.substring(BACKWARD_PREFIX.length()));
-        ClassHelper helper = key -> getReturnType(lookup.getEncodedValue(key, EncodedValue.class));
+                || name.startsWith(BACKWARD_PREFIX) && ValueExpressionVisitor.hasVariable(lookup, name.substring(BACKWARD_PREFIX.length()));
+        ClassHelper helper = key -> DecimalOverlayLookup.getDecimalOverlay(lookup, key) != null
+                ? "double" : getReturnType(lookup.getEncodedValue(key, EncodedValue.class));
 
         parseExpressions(expressions, nameInConditionValidator, info, createObjects, list, helper, "");
         expressions.append("return value;\n");
@@ -19,7 +19,10 @@ package com.graphhopper.routing.weighting.custom;
 
 import com.graphhopper.json.MinMax;
 import com.graphhopper.json.Statement;
+import com.graphhopper.routing.ev.DecimalOverlay;
+import com.graphhopper.routing.ev.DecimalOverlayLookup;
 import com.graphhopper.routing.ev.EncodedValueLookup;
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.Polygon;
@@ -82,6 +85,8 @@ public class CustomWeightingHelper {
             String value = statements.get(0).value();
             if (lookup.hasEncodedValue(value))
                 minMaxPriority.max = lookup.getDecimalEncodedValue(value).getMaxOrMaxStorableDecimal();
+            else if (DecimalOverlayLookup.getDecimalOverlay(lookup, value) != null)
+                minMaxPriority.max = DecimalOverlayLookup.getDecimalOverlay(lookup, value).getMaxDecimal();
         }
         FindMinMax.findMinMax(minMaxPriority, statements, lookup);
         if (minMaxPriority.min < 0)
@@ -91,6 +96,16 @@ public class CustomWeightingHelper {
         return minMaxPriority.max;
     }
 
+    /**
+     * @return the value of the overlay for the direction of the edge or, if reverse is true, for the opposite direction
+     */
+    protected static double getDecimal(DecimalOverlay overlay, EdgeIteratorState edge, boolean reverse) {
+        // virtual edges use the value of their original edge
+        int edgeKey = edge instanceof VirtualEdgeIteratorState
+                ? ((VirtualEdgeIteratorState) edge).getOriginalEdgeKey() : edge.getEdgeKey();
+        return overlay.getDecimal(reverse ? GHUtility.reverseEdgeKey(edgeKey) : edgeKey);
+    }
+
     public static boolean in(Polygon p, EdgeIteratorState edge) {
         BBox edgeBBox = GHUtility.createBBox(edge);
         BBox polyBBOX = p.getBounds();
@@ -20,6 +20,8 @@ package com.graphhopper.routing.weighting.custom;
 import com.graphhopper.json.MinMax;
 import com.graphhopper.json.Statement;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalOverlay;
+import com.graphhopper.routing.ev.DecimalOverlayLookup;
 import com.graphhopper.routing.ev.EncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.IntEncodedValue;
@@ -185,7 +187,7 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
     }
 
     static Set<String> findVariables(String valueExpression, EncodedValueLookup lookup) {
-        ParseResult result = parse(valueExpression, lookup::hasEncodedValue);
+        ParseResult result = parse(valueExpression, name -> hasVariable(lookup, name));
         if (!result.ok)
             throw new IllegalArgumentException(result.invalidMessage);
         if (result.guessedVariables.size() > 1)
@@ -204,18 +206,17 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
                     ExpressionEvaluator ee = new ExpressionEvaluator();
                     ee.cook(valueExpression);
                     value = ((Number) ee.evaluate()).doubleValue();
-                } else if (lookup.hasEncodedValue(valueExpression)) { // speed up for common case that complete right-hand side is the encoded value
-                    EncodedValue enc = lookup.getEncodedValue(valueExpression, EncodedValue.class);
-                    value = Math.min(getMin(enc), getMax(enc));
+                } else if (hasVariable(lookup, valueExpression)) { // speed up for common case that complete right-hand side is the encoded value
+                    value = Math.min(getMin(lookup, valueExpression), getMax(lookup, valueExpression));
                 } else {
                     // single encoded value
                     ExpressionEvaluator ee = new ExpressionEvaluator();
                     String var = result.guessedVariables.iterator().next();
                     ee.setParameters(new String[]{var}, new Class[]{double.class});
                     ee.cook(valueExpression);
-                    double max = getMax(lookup.getEncodedValue(var, EncodedValue.class));
+                    double max = getMax(lookup, var);
                     Number val1 = (Number) ee.evaluate(max);
-                    double min = getMin(lookup.getEncodedValue(var, EncodedValue.class));
+                    double min = getMin(lookup, var);
                     Number val2 = (Number) ee.evaluate(min);
                     value = Math.min(val1.doubleValue(), val2.doubleValue());
                 }
@@ -230,7 +231,7 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
     }
 
     static MinMax findMinMax(String valueExpression, EncodedValueLookup lookup) {
-        ParseResult result = parse(valueExpression, lookup::hasEncodedValue);
+        ParseResult result = parse(valueExpression, name -> hasVariable(lookup, name));
         if (!result.ok)
             throw new IllegalArgumentException(result.invalidMessage);
         if (result.guessedVariables.size() > 1)
@@ -254,9 +255,8 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
                 return new MinMax(val, val);
             }
 
-            if (lookup.hasEncodedValue(valueExpression)) { // speed up for common case that complete right-hand side is the encoded value
-                EncodedValue enc = lookup.getEncodedValue(valueExpression, EncodedValue.class);
-                double min = getMin(enc), max = getMax(enc);
+            if (hasVariable(lookup, valueExpression)) { // speed up for common case that complete right-hand side is the encoded value
+                double min = getMin(lookup, valueExpression), max = getMax(lookup, valueExpression);
                 return new MinMax(min, max);
             }
 
@@ -264,9 +264,9 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
             String var = result.guessedVariables.iterator().next();
             ee.setParameters(new String[]{var}, new Class[]{double.class});
             ee.cook(valueExpression);
-            double max = getMax(lookup.getEncodedValue(var, EncodedValue.class));
+            double max = getMax(lookup, var);
             Number val1 = (Number) ee.evaluate(max);
-            double min = getMin(lookup.getEncodedValue(var, EncodedValue.class));
+            double min = getMin(lookup, var);
             Number val2 = (Number) ee.evaluate(min);
             return new MinMax(Math.min(val1.doubleValue(), val2.doubleValue()), Math.max(val1.doubleValue(), val2.doubleValue()));
         } catch (CompileException | InvocationTargetException ex) {
@@ -274,6 +274,23 @@ public class ValueExpressionVisitor implements Visitor.AtomVisitor<Boolean, Exce
         }
     }
 
+    /**
+     * @return true if the name is an encoded value or a {@link DecimalOverlay} of the lookup
+     */
+    static boolean hasVariable(EncodedValueLookup lookup, String name) {
+        return lookup.hasEncodedValue(name) || DecimalOverlayLookup.getDecimalOverlay(lookup, name) != null;
+    }
+
+    static double getMin(EncodedValueLookup lookup, String name) {
+        DecimalOverlay overlay = DecimalOverlayLookup.getDecimalOverlay(lookup, name);
+        return overlay == null ? getMin(lookup.getEncodedValue(name, EncodedValue.class)) : overlay.getMinDecimal();
+    }
+
+    static double getMax(EncodedValueLookup lookup, String name) {
+        DecimalOverlay overlay = DecimalOverlayLookup.getDecimalOverlay(lookup, name);
+        return overlay == null ? getMax(lookup.getEncodedValue(name, EncodedValue.class)) : overlay.getMaxDecimal();
+    }
+
     static double getMin(EncodedValue enc) {
         if (enc instanceof DecimalEncodedValue) return ((DecimalEncodedValue) enc).getMinStorableDecimal();
         else if (enc instanceof IntEncodedValue) return ((IntEncodedValue) enc).getMinStorableInt();
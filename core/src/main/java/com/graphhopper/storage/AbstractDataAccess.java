@@ -22,7 +22,9 @@ import com.graphhopper.util.Helper;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
  * @author Peter Karich
@@ -42,6 +44,7 @@ public abstract class AbstractDataAccess implements DataAccess {
     protected int segmentSizePower;
     protected int indexDivisor;
     protected boolean closed = false;
+    private long loadTimeMillis = -1;
 
     public AbstractDataAccess(String name, String location, int segmentSize) {
         this.name = name;
@@ -73,6 +76,32 @@ public abstract class AbstractDataAccess implements DataAccess {
         return closed;
     }
 
+    /**
+     * @return the time in milliseconds it took to load this DataAccess in loadExisting or -1 if it was not loaded
+     */
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    protected void setLoadTime(long startNanos) {
+        loadTimeMillis = (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Reads from the channel starting at the specified file position until the buffer is full or the end of the file
+     * is reached.
+     *
+     * @return the number of bytes read
+     */
+    protected static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0)
+                break;
+        }
+        return buffer.position() - start;
+    }
+
     @Override
     public void setHeader(int bytePos, int value) {
         bytePos >>= 2;
@@ -164,6 +164,8 @@ public class BaseGraph implements Graph, Closeable {
     public synchronized void freeze() {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
+        if (supportsTurnCosts())
+            turnCostStorage.sortEntries();
         store.setFrozen(true);
     }
 
@@ -171,6 +173,17 @@ public class BaseGraph implements Graph, Closeable {
         return store.getFrozen();
     }
 
+    /**
+     * Changes the id of every node to newNodeIds[node] and the id of every edge to newEdgeIds[edge]. All data stored
+     * for nodes and edges including the turn cost entries is kept consistent. This can only be done before the graph
+     * is frozen, i.e. before any data that depends on the ids like CH or LM is created.
+     */
+    synchronized void relabel(int[] newNodeIds, int[] newEdgeIds) {
+        store.relabel(newNodeIds, newEdgeIds);
+        if (supportsTurnCosts())
+            turnCostStorage.relabelEdges(newEdgeIds);
+    }
+
     public BaseGraph create(long initSize) {
         checkNotInitialized();
         dir.create();
@@ -508,54 +521,51 @@ public class BaseGraph implements Graph, Closeable {
     }
 
     private PointList fetchWayGeometry_(long edgePointer, boolean reverse, FetchMode mode, int baseNode, int adjNode) {
+        long geoRef = mode == FetchMode.TOWER_ONLY ? 0 : store.getGeoRef(edgePointer);
+        int count = geoRef > 0 ? getPillarCount(geoRef) : 0;
+        if (geoRef <= 0 && mode == FetchMode.PILLAR_ONLY)
+            return PointList.EMPTY;
+        PointList pillarNodes = new PointList(getPointListLength(count, mode), nodeAccess.is3D());
+        visitWayGeometry_(edgePointer, reverse, mode, baseNode, adjNode, PointVisitor.appendTo(pillarNodes));
+        return pillarNodes;
+    }
+
+    /**
+     * Reads the pillar nodes directly from the geometry storage, i.e. without a temporary byte array. The
+     * pillar nodes are stored in the direction of the edge in storage, so for reverse we iterate them backwards.
+     */
+    private void visitWayGeometry_(long edgePointer, boolean reverse, FetchMode mode, int baseNode, int adjNode, PointVisitor visitor) {
         if (mode == FetchMode.TOWER_ONLY) {
             // no reverse handling required as adjNode and baseNode is already properly switched
-            PointList pillarNodes = new PointList(2, nodeAccess.is3D());
-            pillarNodes.add(nodeAccess, baseNode);
-            pillarNodes.add(nodeAccess, adjNode);
-            return pillarNodes;
+            visitTowerNode(baseNode, visitor);
+            visitTowerNode(adjNode, visitor);
+            return;
         }
+        if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
+            visitTowerNode(baseNode, visitor);
+
         long geoRef = store.getGeoRef(edgePointer);
-        int count = 0;
-        byte[] bytes = null;
         if (geoRef > 0) {
-            count = getPillarCount(geoRef);
-            geoRef += 3L;
-            bytes = new byte[count * (8 + eleBytesPerCoord)];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        } else if (mode == FetchMode.PILLAR_ONLY)
-            return PointList.EMPTY;
-
-        PointList pillarNodes = new PointList(getPointListLength(count, mode), nodeAccess.is3D());
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-                pillarNodes.add(nodeAccess, adjNode);
-        } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
-            pillarNodes.add(nodeAccess, baseNode);
-
-        int index = 0;
-        for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.uIntToEle(bitUtil.toUInt3(bytes, index)));
-                index += 3;
-            } else {
-                pillarNodes.add(lat, lon);
+            int count = getPillarCount(geoRef);
+            int bytesPerPoint = 8 + eleBytesPerCoord;
+            long firstPointer = geoRef + 3L;
+            for (int i = 0; i < count; i++) {
+                long pointer = firstPointer + (long) (reverse ? count - 1 - i : i) * bytesPerPoint;
+                double lat = Helper.intToDegree(wayGeometry.getInt(pointer));
+                double lon = Helper.intToDegree(wayGeometry.getInt(pointer + 4));
+                double ele = Double.NaN;
+                if (eleBytesPerCoord > 0)
+                    ele = Helper.uIntToEle((wayGeometry.getByte(pointer + 10) & 0xFF) << 16 | (wayGeometry.getShort(pointer + 8) & 0xFFFF));
+                visitor.visit(lat, lon, ele);
             }
         }
 
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
-                pillarNodes.add(nodeAccess, baseNode);
-
-            pillarNodes.reverse();
-        } else if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-            pillarNodes.add(nodeAccess, adjNode);
+        if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
+            visitTowerNode(adjNode, visitor);
+    }
 
-        return pillarNodes;
+    private void visitTowerNode(int node, PointVisitor visitor) {
+        visitor.visit(nodeAccess.getLat(node), nodeAccess.getLon(node), nodeAccess.is3D() ? nodeAccess.getEle(node) : Double.NaN);
     }
 
     static int getPointListLength(int pillarNodes, FetchMode mode) {
@@ -1011,6 +1021,11 @@ public class BaseGraph implements Graph, Closeable {
             return baseGraph.fetchWayGeometry_(edgePointer, reverse, mode, getBaseNode(), getAdjNode());
         }
 
+        @Override
+        public void visitWayGeometry(FetchMode mode, PointVisitor visitor) {
+            baseGraph.visitWayGeometry_(edgePointer, reverse, mode, getBaseNode(), getAdjNode(), visitor);
+        }
+
         @Override
         public int getEdge() {
             return edgeId;
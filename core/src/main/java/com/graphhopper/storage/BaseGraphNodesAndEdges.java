@@ -18,6 +18,7 @@
 
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.BitSet;
 import com.graphhopper.routing.ev.EdgeIntAccess;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
@@ -297,6 +298,23 @@ class BaseGraphNodesAndEdges implements EdgeIntAccess {
         return getFlagInt(toEdgePointer(edgeId), index * 4);
     }
 
+    @Override
+    public void getInts(int index, int fromEdge, int count, int[] values) {
+        int byteOffset = index * 4;
+        if (count == 0)
+            return;
+        if (count < 0 || fromEdge < 0 || fromEdge > edgeCount - count)
+            throw new IllegalArgumentException("edges [" + fromEdge + "," + (fromEdge + count) + "[ out of bounds [0," + edgeCount + "[");
+        if (byteOffset + 4 > bytesForFlags) {
+            // the last flag int is stored in less than four bytes
+            EdgeIntAccess.super.getInts(index, fromEdge, count, values);
+            return;
+        }
+        long pointer = (long) fromEdge * edgeEntryBytes + E_FLAGS + byteOffset;
+        for (int i = 0; i < count; i++, pointer += edgeEntryBytes)
+            values[i] = edges.getInt(pointer);
+    }
+
     @Override
     public void setInt(int edgeId, int index, int value) {
         setFlagInt(toEdgePointer(edgeId), index * 4, value);
@@ -417,6 +435,99 @@ class BaseGraphNodesAndEdges implements EdgeIntAccess {
         return frozen;
     }
 
+    /**
+     * Moves every node to newNodeIds[node] and every edge to newEdgeIds[edge] and updates all references between them.
+     * Everything that is stored inside the node and edge entries (coordinates, flags, geometry and key-value references,
+     * turn cost references) moves along with the entries. Both arrays must be permutations.
+     */
+    void relabel(int[] newNodeIds, int[] newEdgeIds) {
+        if (frozen)
+            throw new IllegalStateException("Cannot relabel a frozen graph");
+        if (newNodeIds.length != nodeCount || newEdgeIds.length != edgeCount)
+            throw new IllegalArgumentException("Expected " + nodeCount + " node ids and " + edgeCount + " edge ids, but got "
+                    + newNodeIds.length + " and " + newEdgeIds.length);
+
+        // nodes might be stored in an int-based DataAccess, so we need to move them int by int
+        int[][] nodeBuffers = new int[2][nodeEntryBytes / 4];
+        permute(newNodeIds, new EntryMover() {
+            @Override
+            public void load(int node, int buffer) {
+                long pointer = toNodePointer(node);
+                for (int i = 0; i < nodeBuffers[buffer].length; i++)
+                    nodeBuffers[buffer][i] = nodes.getInt(pointer + 4L * i);
+            }
+
+            @Override
+            public void store(int node, int buffer) {
+                long pointer = toNodePointer(node);
+                for (int i = 0; i < nodeBuffers[buffer].length; i++)
+                    nodes.setInt(pointer + 4L * i, nodeBuffers[buffer][i]);
+            }
+        });
+        byte[][] edgeBuffers = new byte[2][edgeEntryBytes];
+        permute(newEdgeIds, new EntryMover() {
+            @Override
+            public void load(int edge, int buffer) {
+                edges.getBytes(toEdgePointer(edge), edgeBuffers[buffer], edgeEntryBytes);
+            }
+
+            @Override
+            public void store(int edge, int buffer) {
+                edges.setBytes(toEdgePointer(edge), edgeBuffers[buffer], edgeEntryBytes);
+            }
+        });
+
+        for (int node = 0; node < nodeCount; node++) {
+            long pointer = toNodePointer(node);
+            setEdgeRef(pointer, relabelEdge(getEdgeRef(pointer), newEdgeIds));
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            long pointer = toEdgePointer(edge);
+            setNodeA(pointer, newNodeIds[getNodeA(pointer)]);
+            setNodeB(pointer, newNodeIds[getNodeB(pointer)]);
+            setLinkA(pointer, relabelEdge(getLinkA(pointer), newEdgeIds));
+            setLinkB(pointer, relabelEdge(getLinkB(pointer), newEdgeIds));
+        }
+    }
+
+    private static int relabelEdge(int edge, int[] newEdgeIds) {
+        return edge == NO_EDGE ? NO_EDGE : newEdgeIds[edge];
+    }
+
+    private interface EntryMover {
+        void load(int index, int buffer);
+
+        void store(int index, int buffer);
+    }
+
+    /**
+     * Applies the permutation in place by following its cycles, so we only ever need two entries in memory.
+     */
+    private static void permute(int[] newIds, EntryMover mover) {
+        BitSet moved = new BitSet(newIds.length);
+        for (int start = 0; start < newIds.length; start++) {
+            if (moved.get(start))
+                continue;
+            mover.load(start, 0);
+            int current = start;
+            int buffer = 0;
+            while (true) {
+                int target = newIds[current];
+                if (moved.get(target))
+                    throw new IllegalArgumentException("The new ids are not a permutation, " + target + " is used twice");
+                moved.set(target);
+                if (target == start) {
+                    mover.store(target, buffer);
+                    break;
+                }
+                mover.load(target, 1 - buffer);
+                mover.store(target, buffer);
+                buffer = 1 - buffer;
+                current = target;
+            }
+        }
+    }
+
     public void debugPrint() {
         final int printMax = 100;
         System.out.println("nodes:");
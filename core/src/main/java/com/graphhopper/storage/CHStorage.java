@@ -61,6 +61,8 @@ public class CHStorage {
     private final int N_LEVEL, N_LAST_SC;
     private int nodeCHEntryBytes;
     private int nodeCount = -1;
+    // lazily created from the levels
+    private volatile int[] nodesByLevelDescending;
 
     private boolean edgeBased;
     // some shortcuts exceed the maximum storable weight, and we count them here
@@ -262,6 +264,7 @@ public class CHStorage {
 
     public void setLevel(long nodePointer, int level) {
         nodesCH.setInt(nodePointer + N_LEVEL, level);
+        nodesByLevelDescending = null;
     }
 
     private void setNodesAB(long shortcutPointer, int nodeA, int nodeB, int accessFlags) {
@@ -340,6 +343,30 @@ public class CHStorage {
         return NodeOrderingProvider.fromArray(nodeOrdering);
     }
 
+    /**
+     * @return all nodes sorted by descending level. The array is calculated only once, so it must not be modified.
+     */
+    public int[] getNodesByLevelDescending() {
+        int[] result = nodesByLevelDescending;
+        if (result != null)
+            return result;
+        // counting sort, the uncontracted core nodes all have the same level
+        int numNodes = getNodes();
+        int maxLevel = 0;
+        for (int node = 0; node < numNodes; node++)
+            maxLevel = Math.max(maxLevel, getLevel(toNodePointer(node)));
+        int[] offsets = new int[maxLevel + 2];
+        for (int node = 0; node < numNodes; node++)
+            offsets[maxLevel - getLevel(toNodePointer(node)) + 1]++;
+        for (int i = 1; i < offsets.length; i++)
+            offsets[i] += offsets[i - 1];
+        result = new int[numNodes];
+        for (int node = 0; node < numNodes; node++)
+            result[offsets[maxLevel - getLevel(toNodePointer(node))]++] = node;
+        nodesByLevelDescending = result;
+        return result;
+    }
+
     public void debugPrint() {
         final int printMax = 100;
         System.out.println("nodesCH:");
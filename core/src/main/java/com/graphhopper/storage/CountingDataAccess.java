@@ -0,0 +1,227 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A DataAccess that counts the reads and writes per segment of the wrapped DataAccess, e.g. to find out which parts
+ * of a file are actually used and should be kept in memory, see {@link GHDirectory#loadMMap()}. The counters are
+ * striped by thread to reduce contention, so counting is cheap but not free.
+ *
+ * @see GHDirectory#configure
+ */
+public class CountingDataAccess implements DataAccess {
+    // must be a power of two
+    private static final int STRIPES = 8;
+    private final DataAccess delegate;
+    private volatile AtomicLongArray[] counters = createCounters(0);
+    private volatile int segmentSizePower;
+
+    public CountingDataAccess(DataAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    public DataAccess getDelegate() {
+        return delegate;
+    }
+
+    private static AtomicLongArray[] createCounters(int segments) {
+        AtomicLongArray[] counters = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            counters[i] = new AtomicLongArray(segments);
+        return counters;
+    }
+
+    /**
+     * Grows the counters to the current number of segments. Counts that are recorded concurrently might get lost, but
+     * this only happens while the DataAccess is growing.
+     */
+    private synchronized void initCounters() {
+        segmentSizePower = Integer.numberOfTrailingZeros(delegate.getSegmentSize());
+        AtomicLongArray[] old = counters;
+        if (old[0].length() >= delegate.getSegments())
+            return;
+        AtomicLongArray[] tmp = createCounters(delegate.getSegments());
+        for (int s = 0; s < STRIPES; s++)
+            for (int i = 0; i < old[s].length(); i++)
+                tmp[s].set(i, old[s].get(i));
+        counters = tmp;
+    }
+
+    private void count(long bytePos) {
+        AtomicLongArray stripe = counters[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        int segment = (int) (bytePos >>> segmentSizePower);
+        if (segment < stripe.length())
+            stripe.incrementAndGet(segment);
+    }
+
+    /**
+     * Counts the access of the specified number of bytes, an access that spans two segments is counted for both.
+     */
+    private void count(long bytePos, int length) {
+        count(bytePos);
+        long lastPos = bytePos + Math.max(length, 1) - 1;
+        if (lastPos >>> segmentSizePower != bytePos >>> segmentSizePower)
+            count(lastPos);
+    }
+
+    /**
+     * @return the number of accesses for every segment since the creation or the last {@link #resetAccessCounts()}
+     */
+    public long[] getAccessCounts() {
+        AtomicLongArray[] tmp = counters;
+        long[] result = new long[delegate.getSegments()];
+        for (AtomicLongArray stripe : tmp)
+            for (int i = 0; i < Math.min(result.length, stripe.length()); i++)
+                result[i] += stripe.get(i);
+        return result;
+    }
+
+    public void resetAccessCounts() {
+        for (AtomicLongArray stripe : counters)
+            for (int i = 0; i < stripe.length(); i++)
+                stripe.set(i, 0);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void setInt(long bytePos, int value) {
+        count(bytePos, 4);
+        delegate.setInt(bytePos, value);
+    }
+
+    @Override
+    public int getInt(long bytePos) {
+        count(bytePos, 4);
+        return delegate.getInt(bytePos);
+    }
+
+    @Override
+    public void setShort(long bytePos, short value) {
+        count(bytePos, 2);
+        delegate.setShort(bytePos, value);
+    }
+
+    @Override
+    public short getShort(long bytePos) {
+        count(bytePos, 2);
+        return delegate.getShort(bytePos);
+    }
+
+    @Override
+    public void setBytes(long bytePos, byte[] values, int length) {
+        count(bytePos, length);
+        delegate.setBytes(bytePos, values, length);
+    }
+
+    @Override
+    public void getBytes(long bytePos, byte[] values, int length) {
+        count(bytePos, length);
+        delegate.getBytes(bytePos, values, length);
+    }
+
+    @Override
+    public void setByte(long bytePos, byte value) {
+        count(bytePos);
+        delegate.setByte(bytePos, value);
+    }
+
+    @Override
+    public byte getByte(long bytePos) {
+        count(bytePos);
+        return delegate.getByte(bytePos);
+    }
+
+    @Override
+    public void setHeader(int bytePos, int value) {
+        delegate.setHeader(bytePos, value);
+    }
+
+    @Override
+    public int getHeader(int bytePos) {
+        return delegate.getHeader(bytePos);
+    }
+
+    @Override
+    public DataAccess create(long bytes) {
+        delegate.create(bytes);
+        initCounters();
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public boolean loadExisting() {
+        boolean loaded = delegate.loadExisting();
+        if (loaded)
+            initCounters();
+        return loaded;
+    }
+
+    @Override
+    public long getCapacity() {
+        return delegate.getCapacity();
+    }
+
+    @Override
+    public boolean ensureCapacity(long bytes) {
+        boolean increased = delegate.ensureCapacity(bytes);
+        if (increased)
+            initCounters();
+        return increased;
+    }
+
+    @Override
+    public int getSegmentSize() {
+        return delegate.getSegmentSize();
+    }
+
+    @Override
+    public int getSegments() {
+        return delegate.getSegments();
+    }
+
+    @Override
+    public DAType getType() {
+        return delegate.getType();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -17,8 +17,9 @@
  */
 package com.graphhopper.storage;
 
-import java.io.File;
+import java.io.*;
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.storage.DAType.RAM_INT;
 import static com.graphhopper.storage.DAType.RAM_INT_STORE;
@@ -35,6 +36,8 @@ public class GHDirectory implements Directory {
     // first rule matches => LinkedHashMap
     private final Map<String, DAType> defaultTypes = new LinkedHashMap<>();
     private final Map<String, Integer> mmapPreloads = new LinkedHashMap<>();
+    private final Map<String, Integer> mmapHeapPercentages = new LinkedHashMap<>();
+    private final List<String> countedPatterns = new ArrayList<>();
     private final Map<String, DataAccess> map = Collections.synchronizedMap(new HashMap<>());
 
     public GHDirectory(String _location, DAType defaultType) {
@@ -54,19 +57,22 @@ public class GHDirectory implements Directory {
     /**
      * Configure the DAType (specified by the value) of a single DataAccess object (specified by the key). For "MMAP" you
      * can prepend "preload." to the name and specify a percentage which preloads the DataAccess into physical memory of
-     * the specified percentage (only applied for load, not for import).
+     * the specified percentage (only applied for load, not for import). Similarly "heap." followed by a percentage copies
+     * this share of the segments of an MMAP DataAccess to the heap, see {@link #loadMMap()}. With "statistics." and
+     * the value true the accesses per segment of the DataAccess objects are counted, see {@link CountingDataAccess}.
      * As keys can be patterns the order is important and the LinkedHashMap is forced as type.
      */
     public Directory configure(LinkedHashMap<String, String> config) {
         for (Map.Entry<String, String> kv : config.entrySet()) {
             String value = kv.getValue().trim();
             if (kv.getKey().startsWith("preload."))
-                try {
-                    String pattern = kv.getKey().substring("preload.".length());
-                    mmapPreloads.put(pattern, Integer.parseInt(value));
-                } catch (NumberFormatException ex) {
-                    throw new IllegalArgumentException("DataAccess " + kv.getKey() + " has an incorrect preload value: " + value);
-                }
+                mmapPreloads.put(kv.getKey().substring("preload.".length()), parsePercentage(kv.getKey(), value));
+            else if (kv.getKey().startsWith("heap."))
+                mmapHeapPercentages.put(kv.getKey().substring("heap.".length()), parsePercentage(kv.getKey(), value));
+            else if (kv.getKey().startsWith("statistics.")) {
+                if (Boolean.parseBoolean(value))
+                    countedPatterns.add(kv.getKey().substring("statistics.".length()));
+            }
             else {
                 String pattern = kv.getKey();
                 defaultTypes.put(pattern, DAType.fromString(value));
@@ -75,24 +81,160 @@ public class GHDirectory implements Directory {
         return this;
     }
 
+    private static int parsePercentage(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("DataAccess " + key + " has an incorrect percentage value: " + value);
+        }
+    }
+
     /**
      * Returns the preload value or 0 if no patterns match.
      * See {@link #configure(LinkedHashMap)}
      */
     int getPreload(String name) {
-        for (Map.Entry<String, Integer> entry : mmapPreloads.entrySet())
+        return getPercentage(mmapPreloads, name);
+    }
+
+    /**
+     * Returns the percentage of segments that shall be kept on the heap or 0 if no patterns match.
+     * See {@link #configure(LinkedHashMap)}
+     */
+    int getHeapPercentage(String name) {
+        return getPercentage(mmapHeapPercentages, name);
+    }
+
+    private static int getPercentage(Map<String, Integer> percentages, String name) {
+        for (Map.Entry<String, Integer> entry : percentages.entrySet())
             if (name.matches(entry.getKey())) return entry.getValue();
         return 0;
     }
 
+    /**
+     * Preloads the MMAP DataAccess objects and copies their hottest segments to the heap as configured. The hottest
+     * segments are determined by the access counts stored via {@link #writeAccessCounts}. Without such counts the
+     * segments that the operating system currently holds in physical memory are preferred, which after a restart
+     * usually are the ones the previous process accessed most.
+     */
     public void loadMMap() {
         for (DataAccess da : map.values()) {
+            da = unwrap(da);
             if (!(da instanceof MMapDataAccess))
                 continue;
+            MMapDataAccess mmap = (MMapDataAccess) da;
+            int heapPercentage = getHeapPercentage(da.getName());
+            if (heapPercentage > 0)
+                keepOnHeap(mmap, heapPercentage);
             int preload = getPreload(da.getName());
             if (preload > 0)
-                ((MMapDataAccess) da).load(preload);
+                mmap.load(preload);
+        }
+    }
+
+    private void keepOnHeap(MMapDataAccess da, int percentage) {
+        if (percentage > 100)
+            throw new IllegalArgumentException("Heap percentage for " + da.getName() + " must be in [0,100] but was " + percentage);
+        int segments = da.getSegments();
+        long[] counts = readAccessCounts(da.getName());
+        if (counts == null || counts.length != segments) {
+            counts = new long[segments];
+            for (int i = 0; i < segments; i++)
+                counts[i] = da.isResident(i) ? 1 : 0;
         }
+        final long[] finalCounts = counts;
+        int max = Math.round(segments * percentage / 100f);
+        IntStream.range(0, segments).boxed()
+                .sorted(Comparator.comparingLong((Integer s) -> finalCounts[s]).reversed())
+                .limit(max)
+                .forEach(da::keepOnHeap);
+    }
+
+    private static DataAccess unwrap(DataAccess da) {
+        return da instanceof CountingDataAccess ? ((CountingDataAccess) da).getDelegate() : da;
+    }
+
+    boolean isCounted(String name) {
+        for (String pattern : countedPatterns)
+            if (name.matches(pattern)) return true;
+        return false;
+    }
+
+    /**
+     * @return the access counts per segment of all DataAccess objects that are configured to be counted, see
+     * {@link #configure(LinkedHashMap)}
+     */
+    public Map<String, long[]> getAccessCounts() {
+        Map<String, long[]> result = new TreeMap<>();
+        synchronized (map) {
+            for (DataAccess da : map.values())
+                if (da instanceof CountingDataAccess)
+                    result.put(da.getName(), ((CountingDataAccess) da).getAccessCounts());
+        }
+        return result;
+    }
+
+    public void resetAccessCounts() {
+        synchronized (map) {
+            for (DataAccess da : map.values())
+                if (da instanceof CountingDataAccess)
+                    ((CountingDataAccess) da).resetAccessCounts();
+        }
+    }
+
+    private File getAccessCountsFile(String name) {
+        return new File(location + name + ".access");
+    }
+
+    /**
+     * Stores the number of accesses per segment of the specified DataAccess. This is used to decide which segments
+     * are kept on the heap when the DataAccess is loaded the next time, see {@link #loadMMap()}.
+     */
+    public void writeAccessCounts(String name, long[] counts) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getAccessCountsFile(name))))) {
+            out.writeInt(counts.length);
+            for (long count : counts)
+                out.writeLong(count);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write access counts of " + name, ex);
+        }
+    }
+
+    /**
+     * @return the access counts per segment stored via {@link #writeAccessCounts} or null if there are none
+     */
+    public long[] readAccessCounts(String name) {
+        File file = getAccessCountsFile(name);
+        if (!file.exists())
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long[] counts = new long[in.readInt()];
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = in.readLong();
+            return counts;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read access counts of " + name, ex);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds it took to load each DataAccess of this directory from disk, slowest first.
+     * DataAccess objects that were created instead of loaded are not included.
+     */
+    public Map<String, Long> getLoadTimes() {
+        List<AbstractDataAccess> loaded = new ArrayList<>();
+        synchronized (map) {
+            for (DataAccess da : map.values()) {
+                da = unwrap(da);
+                if (da instanceof AbstractDataAccess && ((AbstractDataAccess) da).getLoadTimeMillis() >= 0)
+                    loaded.add((AbstractDataAccess) da);
+            }
+        }
+        loaded.sort(Comparator.comparingLong(AbstractDataAccess::getLoadTimeMillis).reversed());
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (AbstractDataAccess da : loaded)
+            result.put(da.getName(), da.getLoadTimeMillis());
+        return result;
     }
 
     @Override
@@ -142,6 +284,8 @@ public class GHDirectory implements Directory {
         } else {
             throw new IllegalArgumentException("DAType not supported " + type);
         }
+        if (isCounted(name))
+            da = new CountingDataAccess(da);
 
         map.put(name, da);
         return da;
@@ -175,8 +319,10 @@ public class GHDirectory implements Directory {
     }
 
     private void removeBackingFile(DataAccess da, String name) {
-        if (da.getType().isStoring())
+        if (da.getType().isStoring()) {
             removeDir(new File(location + name));
+            removeDir(getAccessCountsFile(name));
+        }
     }
 
     @Override
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.shapes.BBox;
+
+import java.util.Arrays;
+
+/**
+ * Renumbers the nodes of a graph along a Hilbert curve and the edges by their smaller node id, so that nodes and
+ * edges that are close to each other geographically are also close to each other in memory. This improves the cache
+ * and page locality of all graph searches. It has to be done before the graph is frozen.
+ */
+public class GraphSorter {
+    private static final int HILBERT_ORDER = 16;
+
+    public static void sortAlongHilbertCurve(BaseGraph graph) {
+        int[] newNodeIds = calcHilbertNodeOrder(graph);
+        int[] newEdgeIds = calcEdgeOrder(graph, newNodeIds);
+        graph.relabel(newNodeIds, newEdgeIds);
+    }
+
+    /**
+     * @return the new node ids indexed by the current node ids
+     */
+    static int[] calcHilbertNodeOrder(BaseGraph graph) {
+        NodeAccess na = graph.getNodeAccess();
+        BBox bounds = graph.getBounds();
+        int maxCell = (1 << HILBERT_ORDER) - 1;
+        double latFactor = bounds.maxLat > bounds.minLat ? maxCell / (bounds.maxLat - bounds.minLat) : 0;
+        double lonFactor = bounds.maxLon > bounds.minLon ? maxCell / (bounds.maxLon - bounds.minLon) : 0;
+        // the hilbert index has 2 * HILBERT_ORDER = 32 bits and the node id needs 31 bits
+        long[] keys = new long[graph.getNodes()];
+        for (int node = 0; node < keys.length; node++) {
+            int x = clamp((int) ((na.getLon(node) - bounds.minLon) * lonFactor), maxCell);
+            int y = clamp((int) ((na.getLat(node) - bounds.minLat) * latFactor), maxCell);
+            keys[node] = (hilbertIndex(x, y) << 31) | node;
+        }
+        return toNewIds(keys);
+    }
+
+    /**
+     * @return the new edge ids indexed by the current edge ids, edges are sorted by the smaller of their new node ids
+     */
+    static int[] calcEdgeOrder(BaseGraph graph, int[] newNodeIds) {
+        long[] keys = new long[graph.getEdges()];
+        for (int edge = 0; edge < keys.length; edge++) {
+            long pointer = graph.store.toEdgePointer(edge);
+            int node = Math.min(newNodeIds[graph.store.getNodeA(pointer)], newNodeIds[graph.store.getNodeB(pointer)]);
+            keys[edge] = ((long) node << 31) | edge;
+        }
+        return toNewIds(keys);
+    }
+
+    private static int[] toNewIds(long[] keys) {
+        Arrays.sort(keys);
+        int[] newIds = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            newIds[(int) (keys[i] & Integer.MAX_VALUE)] = i;
+        return newIds;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    /**
+     * Calculates the position of the given cell on the Hilbert curve that covers the 2^16 x 2^16 grid.
+     */
+    static long hilbertIndex(int x, int y) {
+        final int n = 1 << HILBERT_ORDER;
+        long index = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+}
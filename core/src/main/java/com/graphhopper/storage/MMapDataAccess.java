@@ -42,6 +42,9 @@ import java.util.List;
  * implementations are.
  * <p>
  * The exact behavior of memory-mapping is reported to be wildly platform-dependent.
+ * <p>
+ * Single segments can be copied to the heap via {@link #keepOnHeap(int)} so that frequently accessed data stays in
+ * memory while the rest of the file is paged in and out by the operating system.
  *
  * @author Peter Karich
  * @author Michael Zilske
@@ -50,7 +53,10 @@ public final class MMapDataAccess extends AbstractDataAccess {
 
     private final boolean allowWrites;
     private RandomAccessFile raFile;
-    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<>();
+    // the buffers used for reading and writing: either the mapped segment itself or a copy on the heap
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int heapSegments;
 
     MMapDataAccess(String name, String location, boolean allowWrites, int segmentSize) {
         super(name, location, segmentSize);
@@ -138,7 +144,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
             // rely on automatically increasing when mapping
             // raFile.setLength(newFileLength);
             for (; i < newSegments; i++) {
-                segments.add(newByteBuffer(bufferStart, longSegmentSize));
+                MappedByteBuffer buf = newByteBuffer(bufferStart, longSegmentSize);
+                mappedSegments.add(buf);
+                segments.add(buf);
                 bufferStart += longSegmentSize;
             }
             return true;
@@ -197,6 +205,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
         if (!file.exists() || file.length() == 0)
             return false;
 
+        long start = System.nanoTime();
         initRandomAccessFile();
         try {
             long byteCount = readHeader(raFile);
@@ -204,6 +213,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
                 return false;
 
             mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET);
+            setLoadTime(start);
             return true;
         } catch (IOException ex) {
             throw new RuntimeException("Problem while loading " + getFullName(), ex);
@@ -216,7 +226,11 @@ public final class MMapDataAccess extends AbstractDataAccess {
             throw new IllegalStateException("already closed");
 
         try {
-            for (MappedByteBuffer bb : segments) {
+            for (int i = 0; i < segments.size(); i++) {
+                MappedByteBuffer bb = mappedSegments.get(i);
+                if (allowWrites && segments.get(i) != bb)
+                    // write back the heap copy
+                    bb.duplicate().put(segments.get(i).duplicate().clear());
                 bb.force();
             }
             writeHeader(raFile, raFile.length(), segmentSizeInBytes);
@@ -238,15 +252,58 @@ public final class MMapDataAccess extends AbstractDataAccess {
             throw new IllegalArgumentException("Percentage for MMapDataAccess.load for " + getName() + " must be in [0,100] but was " + percentage);
         int max = Math.round(segments.size() * percentage / 100f);
         for (int i = 0; i < max; i++) {
-            segments.get(i).load();
+            mappedSegments.get(i).load();
         }
     }
 
+    /**
+     * Copies the specified segment to the heap. All further reads and writes of this segment use the copy, which
+     * cannot be evicted by the operating system. Modifications are written back to the file on flush.
+     *
+     * @return false if the segment already was on the heap
+     */
+    public boolean keepOnHeap(int segment) {
+        if (isOnHeap(segment))
+            return false;
+        MappedByteBuffer mapped = mappedSegments.get(segment);
+        ByteBuffer copy = ByteBuffer.allocate(mapped.capacity());
+        copy.put(mapped.duplicate().clear());
+        copy.clear();
+        if (!allowWrites)
+            copy = copy.asReadOnlyBuffer();
+        copy.order(byteOrder);
+        segments.set(segment, copy);
+        heapSegments++;
+        return true;
+    }
+
+    /**
+     * @return the number of segments that were copied to the heap via {@link #keepOnHeap(int)}
+     */
+    public int getHeapSegments() {
+        return heapSegments;
+    }
+
+    /**
+     * @return true if the operating system reports the specified mapped segment to be resident in physical memory,
+     * e.g. because it was accessed recently, possibly even by a previous process. Segments kept on the heap are
+     * always considered resident. See {@link MappedByteBuffer#isLoaded()}
+     */
+    public boolean isResident(int segment) {
+        return isOnHeap(segment) || mappedSegments.get(segment).isLoaded();
+    }
+
+    public boolean isOnHeap(int segment) {
+        return segments.get(segment) != mappedSegments.get(segment);
+    }
+
     @Override
     public void close() {
         super.close();
-        clean(0, segments.size());
+        clean(0, mappedSegments.size());
+        mappedSegments.clear();
         segments.clear();
+        heapSegments = 0;
         Helper.close(raFile);
     }
 
@@ -397,9 +454,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
      */
     private void clean(int from, int to) {
         for (int i = from; i < to; i++) {
-            ByteBuffer bb = segments.get(i);
+            ByteBuffer bb = mappedSegments.get(i);
             cleanMappedByteBuffer(bb);
-            segments.set(i, null);
+            mappedSegments.set(i, null);
         }
     }
 
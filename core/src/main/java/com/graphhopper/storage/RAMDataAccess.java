@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -109,27 +111,31 @@ public class RAMDataAccess extends AbstractDataAccess {
         if (!file.exists() || file.length() == 0)
             return false;
 
+        long start = System.nanoTime();
         try {
             try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r")) {
                 long byteCount = readHeader(raFile) - HEADER_OFFSET;
                 if (byteCount < 0)
                     return false;
 
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow
                 int segmentCount = (int) (byteCount / segmentSizeInBytes);
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
+                // read whole segments through the channel instead of going through the RandomAccessFile buffers
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
                 segments = new byte[segmentCount][];
                 for (int s = 0; s < segmentCount; s++) {
                     byte[] bytes = new byte[segmentSizeInBytes];
-                    int read = raFile.read(bytes);
+                    int read = readFully(channel, ByteBuffer.wrap(bytes), position);
                     if (read <= 0)
                         throw new IllegalStateException("segment " + s + " is empty? " + toString());
 
+                    position += read;
                     segments[s] = bytes;
                 }
+                setLoadTime(start);
                 return true;
             }
         } catch (IOException ex) {
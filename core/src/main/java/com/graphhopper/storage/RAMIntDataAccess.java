@@ -20,6 +20,8 @@ package com.graphhopper.storage;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -105,28 +107,32 @@ class RAMIntDataAccess extends AbstractDataAccess {
         if (!file.exists() || file.length() == 0) {
             return false;
         }
+        long start = System.nanoTime();
         try {
             try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r")) {
                 long byteCount = readHeader(raFile) - HEADER_OFFSET;
                 if (byteCount < 0) {
                     return false;
                 }
-                byte[] bytes = new byte[segmentSizeInBytes];
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow
                 int segmentCount = (int) (byteCount / segmentSizeInBytes);
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
+                // read whole segments through the channel and convert them in bulk instead of int by int
+                FileChannel channel = raFile.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(segmentSizeInBytes).order(byteOrder);
+                long position = HEADER_OFFSET;
                 segments = new int[segmentCount][];
                 for (int s = 0; s < segmentCount; s++) {
-                    int read = raFile.read(bytes) / 4;
-                    int[] area = new int[read];
-                    for (int j = 0; j < read; j++) {
-                        area[j] = bitUtil.toInt(bytes, j * 4);
-                    }
+                    buffer.clear();
+                    int read = readFully(channel, buffer, position);
+                    position += read;
+                    buffer.flip();
+                    int[] area = new int[read / 4];
+                    buffer.asIntBuffer().get(area);
                     segments[s] = area;
                 }
+                setLoadTime(start);
                 return true;
             }
         } catch (IOException ex) {
@@ -43,6 +43,11 @@ public interface RoutingCHGraph {
 
     int getLevel(int node);
 
+    /**
+     * @return the nodes of the base graph sorted by descending level. The array is shared and must not be modified.
+     */
+    int[] getNodesByLevelDescending();
+
     double getTurnWeight(int inEdge, int viaNode, int outEdge);
 
     /**
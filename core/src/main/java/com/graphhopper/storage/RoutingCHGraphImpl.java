@@ -77,6 +77,11 @@ public class RoutingCHGraphImpl implements RoutingCHGraph {
         return chStorage.getLevel(chStorage.toNodePointer(node));
     }
 
+    @Override
+    public int[] getNodesByLevelDescending() {
+        return chStorage.getNodesByLevelDescending();
+    }
+
     @Override
     public Graph getBaseGraph() {
         return baseGraph;
@@ -25,9 +25,15 @@ import com.graphhopper.util.Constants;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 
+import java.util.Arrays;
+
 /**
  * A key/value store, where the unique keys are triples (fromEdge, viaNode, toEdge) and the values
  * are integers that can be used to store encoded values.
+ * <p>
+ * The entries of a via node form a linked list. When the graph is frozen the entries are sorted by via node and by
+ * from and to edge, so the entries of a node are consecutive in memory and a lookup scans them sequentially and stops
+ * at the first larger entry instead of chasing pointers. Entries that are added later are prepended to the lists.
  *
  * @author Karl Hübner
  * @author Peter Karich
@@ -46,6 +52,8 @@ public class TurnCostStorage {
     private final DataAccess turnCosts;
     private final EdgeIntAccess edgeIntAccess = createEdgeIntAccess();
     private int turnCostsCount;
+    // the entries below this index are sorted, see sortEntries
+    private int sortedCount;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -61,6 +69,7 @@ public class TurnCostStorage {
         turnCosts.setHeader(0, Constants.VERSION_TURN_COSTS);
         turnCosts.setHeader(4, BYTES_PER_ENTRY);
         turnCosts.setHeader(2 * 4, turnCostsCount);
+        turnCosts.setHeader(3 * 4, sortedCount);
         turnCosts.flush();
     }
 
@@ -81,6 +90,7 @@ public class TurnCostStorage {
             throw new IllegalStateException("Number of bytes per turn cost entry does not match the current configuration: " + turnCosts.getHeader(0) + " vs. " + BYTES_PER_ENTRY);
         }
         turnCostsCount = turnCosts.getHeader(8);
+        sortedCount = turnCosts.getHeader(3 * 4);
         return true;
     }
 
@@ -160,6 +170,8 @@ public class TurnCostStorage {
         int index = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
         for (int i = 0; i < maxEntries; ++i) {
             if (index == NO_TURN_ENTRY) return -1;
+            if (index < sortedCount)
+                return findSortedIndex(index, fromEdge, toEdge);
             long pointer = (long) index * BYTES_PER_ENTRY;
             if (fromEdge == turnCosts.getInt(pointer + TC_FROM) && toEdge == turnCosts.getInt(pointer + TC_TO))
                 return index;
@@ -168,6 +180,90 @@ public class TurnCostStorage {
         throw new IllegalStateException("Turn cost list for node: " + viaNode + " is longer than expected, max: " + maxEntries);
     }
 
+    /**
+     * Searches the consecutive entries starting at index, which are sorted by from and to edge.
+     */
+    private int findSortedIndex(int index, int fromEdge, int toEdge) {
+        for (long pointer = (long) index * BYTES_PER_ENTRY; ; pointer += BYTES_PER_ENTRY, index++) {
+            int from = turnCosts.getInt(pointer + TC_FROM);
+            if (from == fromEdge) {
+                int to = turnCosts.getInt(pointer + TC_TO);
+                if (to == toEdge)
+                    return index;
+                if (to > toEdge)
+                    return -1;
+            } else if (from > fromEdge) {
+                return -1;
+            }
+            if (turnCosts.getInt(pointer + TC_NEXT) == NO_TURN_ENTRY)
+                return -1;
+        }
+    }
+
+    /**
+     * Rewrites all entries so that the entries of every via node are consecutive and sorted by from and to edge. The
+     * lists of the nodes stay valid, every entry points to the entry after it.
+     */
+    void sortEntries() {
+        int[] from = new int[turnCostsCount], to = new int[turnCostsCount], flags = new int[turnCostsCount], next = new int[turnCostsCount];
+        NodeAccess nodeAccess = baseGraph.getNodeAccess();
+        int[] nodeEntries = new int[16];
+        int count = 0;
+        for (int node = 0; node < baseGraph.getNodes(); node++) {
+            int nodeCount = 0;
+            for (int index = nodeAccess.getTurnCostIndex(node); index != NO_TURN_ENTRY; index = turnCosts.getInt((long) index * BYTES_PER_ENTRY + TC_NEXT)) {
+                if (nodeCount == nodeEntries.length)
+                    nodeEntries = Arrays.copyOf(nodeEntries, 2 * nodeCount);
+                nodeEntries[nodeCount++] = index;
+            }
+            if (nodeCount == 0)
+                continue;
+            nodeAccess.setTurnCostIndex(node, count);
+            // insertion sort, because there are only a few entries per node
+            for (int i = 0; i < nodeCount; i++) {
+                long pointer = (long) nodeEntries[i] * BYTES_PER_ENTRY;
+                int f = turnCosts.getInt(pointer + TC_FROM), t = turnCosts.getInt(pointer + TC_TO);
+                int j = count + i;
+                for (; j > count && (from[j - 1] > f || from[j - 1] == f && to[j - 1] > t); j--) {
+                    from[j] = from[j - 1];
+                    to[j] = to[j - 1];
+                    flags[j] = flags[j - 1];
+                }
+                from[j] = f;
+                to[j] = t;
+                flags[j] = turnCosts.getInt(pointer + TC_FLAGS);
+            }
+            for (int i = count; i < count + nodeCount - 1; i++)
+                next[i] = i + 1;
+            next[count + nodeCount - 1] = NO_TURN_ENTRY;
+            count += nodeCount;
+        }
+        if (count != turnCostsCount)
+            throw new IllegalStateException("Found " + count + " turn cost entries, expected: " + turnCostsCount);
+
+        for (int index = 0; index < count; index++) {
+            long pointer = (long) index * BYTES_PER_ENTRY;
+            turnCosts.setInt(pointer + TC_FROM, from[index]);
+            turnCosts.setInt(pointer + TC_TO, to[index]);
+            turnCosts.setInt(pointer + TC_FLAGS, flags[index]);
+            turnCosts.setInt(pointer + TC_NEXT, next[index]);
+        }
+        sortedCount = count;
+    }
+
+    /**
+     * Replaces the from and to edge of every turn cost entry with newEdgeIds[edge], see {@link BaseGraph#relabel}.
+     */
+    void relabelEdges(int[] newEdgeIds) {
+        // the new edge ids change the order of the entries
+        sortedCount = 0;
+        for (int index = 0; index < turnCostsCount; index++) {
+            long pointer = (long) index * BYTES_PER_ENTRY;
+            turnCosts.setInt(pointer + TC_FROM, newEdgeIds[turnCosts.getInt(pointer + TC_FROM)]);
+            turnCosts.setInt(pointer + TC_TO, newEdgeIds[turnCosts.getInt(pointer + TC_TO)]);
+        }
+    }
+
     public int getTurnCostsCount() {
         return turnCostsCount;
     }
@@ -25,10 +25,13 @@ import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.util.Constants;
+import com.graphhopper.util.DistancePlaneProjection;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
 
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.function.IntConsumer;
 
 public class LineIntIndex {
@@ -88,6 +91,73 @@ public class LineIntIndex {
         initialized = true;
     }
 
+    /**
+     * Stores the index directly from (tile, edge) pairs instead of an {@link InMemConstructionIndex}. cells[i] holds the
+     * pairs of the i-th cell of the top level, each encoded as (spatial key within this cell << edgeBits) | edge. The
+     * pairs of every cell must be sorted and free of duplicates, which means the tiles are visited in the same order
+     * as the tree is stored.
+     */
+    void store(long[][] cells, int edgeBits) {
+        indexStructureInfo = IndexStructureInfo.create(bounds, minResolutionInMeter);
+        keyAlgo = indexStructureInfo.getKeyAlgo();
+        entries = indexStructureInfo.getEntries();
+        shifts = indexStructureInfo.getShifts();
+        if (cells.length != entries[0])
+            throw new IllegalArgumentException("expected " + entries[0] + " cells but was " + cells.length);
+        dataAccess.create(64 * 1024);
+        try {
+            int keyBits = keyAlgo.getBits() - shifts[0];
+            int intPointer = START_POINTER + entries[0];
+            dataAccess.ensureCapacity((long) (intPointer + 1) * 4);
+            for (int cell = 0; cell < cells.length; cell++) {
+                if (cells[cell].length == 0)
+                    continue;
+                dataAccess.setInt((long) (START_POINTER + cell) * 4, intPointer);
+                intPointer = store(cells[cell], 0, cells[cell].length, 1, keyBits, edgeBits, intPointer);
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
+        }
+        initialized = true;
+    }
+
+    private int store(long[] pairs, int from, int to, int depth, int keyBits, int edgeBits, int intPointer) {
+        long pointer = (long) intPointer * 4;
+        if (depth == entries.length) {
+            int edgeMask = (int) ((1L << edgeBits) - 1);
+            int len = to - from;
+            size += len;
+            leafs++;
+            dataAccess.ensureCapacity((long) (intPointer + len + 1) * 4);
+            if (len == 1) {
+                // less disc space for single entries
+                dataAccess.setInt(pointer, -((int) pairs[from] & edgeMask) - 1);
+                return intPointer + 1;
+            }
+            intPointer++;
+            for (int i = from; i < to; i++, intPointer++) {
+                dataAccess.setInt((long) intPointer * 4, (int) pairs[i] & edgeMask);
+            }
+            dataAccess.setInt(pointer, intPointer);
+            return intPointer;
+        }
+        keyBits -= shifts[depth];
+        int shift = keyBits + edgeBits;
+        int mask = entries[depth] - 1;
+        intPointer += entries[depth];
+        dataAccess.ensureCapacity((long) (intPointer + 1) * 4);
+        for (int start = from; start < to; ) {
+            int index = (int) (pairs[start] >>> shift) & mask;
+            int end = start + 1;
+            while (end < to && ((int) (pairs[end] >>> shift) & mask) == index)
+                end++;
+            dataAccess.setInt(pointer + index * 4L, intPointer);
+            intPointer = store(pairs, start, end, depth + 1, keyBits, edgeBits, intPointer);
+            start = end;
+        }
+        return intPointer;
+    }
+
     private int store(InMemConstructionIndex.InMemEntry entry, int intPointer) {
         long pointer = (long) intPointer * 4;
         if (entry.isLeaf()) {
@@ -229,6 +299,100 @@ public class LineIntIndex {
         }
     }
 
+    /**
+     * @return the leaf tiles sorted by their distance to the query point. Only the subtrees that are actually polled are
+     * decoded, so this is cheap even for big indices.
+     */
+    public NearestTiles findNearestTiles(double queryLat, double queryLon) {
+        return new NearestTiles(queryLat, queryLon);
+    }
+
+    /**
+     * Best-first traversal of the tree: a tile is ordered by the normalized distance (see {@link DistancePlaneProjection})
+     * from the query point to its bounding box, which is a lower bound of the distance to all edges stored in the tile.
+     */
+    public class NearestTiles {
+        private final double queryLat, queryLon;
+        private final PriorityQueue<Tile> queue = new PriorityQueue<>(Comparator.comparingDouble(t -> t.normedDist));
+
+        private NearestTiles(double queryLat, double queryLon) {
+            this.queryLat = queryLat;
+            this.queryLon = queryLon;
+            queue.add(new Tile(START_POINTER, 0, bounds.minLat, bounds.minLon, bounds.maxLat - bounds.minLat, bounds.maxLon - bounds.minLon, 0));
+        }
+
+        /**
+         * @return the normalized distance to the next leaf tile or infinity if all tiles were polled
+         */
+        public double nextNormedDist() {
+            while (!queue.isEmpty() && queue.peek().depth < entries.length)
+                expand(queue.poll());
+            return queue.isEmpty() ? Double.POSITIVE_INFINITY : queue.peek().normedDist;
+        }
+
+        /**
+         * Removes the next leaf tile and passes its edges to the consumer. The same edge can be passed again for a
+         * later tile.
+         */
+        public void pollEdges(IntConsumer consumer) {
+            if (Double.isInfinite(nextNormedDist()))
+                throw new IllegalStateException("No more tiles");
+            long pointer = (long) queue.poll().intPointer * 4;
+            int data = dataAccess.getInt(pointer);
+            if (data < 0) {
+                consumer.accept(-(data + 1));
+            } else {
+                long maxPointer = (long) data * 4;
+                for (long leafPointer = pointer + 4; leafPointer < maxPointer; leafPointer += 4)
+                    consumer.accept(dataAccess.getInt(leafPointer));
+            }
+        }
+
+        private void expand(Tile tile) {
+            long pointer = (long) tile.intPointer * 4;
+            int max = (1 << shifts[tile.depth]);
+            int factor = max == 4 ? 2 : 4;
+            double deltaLat = tile.deltaLat / factor;
+            double deltaLon = tile.deltaLon / factor;
+            for (int cellIndex = 0; cellIndex < max; cellIndex++) {
+                int nextIntPointer = dataAccess.getInt(pointer + cellIndex * 4);
+                if (nextIntPointer <= 0)
+                    continue;
+                int[] pixelXY = keyAlgo.decode(cellIndex);
+                double minLon = tile.minLon + deltaLon * pixelXY[0];
+                double minLat = tile.minLat + deltaLat * pixelXY[1];
+                queue.add(new Tile(nextIntPointer, tile.depth + 1, minLat, minLon, deltaLat, deltaLon,
+                        calcNormalizedDist(minLat, minLon, minLat + deltaLat, minLon + deltaLon)));
+            }
+        }
+
+        private double calcNormalizedDist(double minLat, double minLon, double maxLat, double maxLon) {
+            double dLat = Math.toRadians(Math.max(0, Math.max(minLat - queryLat, queryLat - maxLat)));
+            double dLon = Math.toRadians(Math.max(0, Math.max(minLon - queryLon, queryLon - maxLon)));
+            // use the smallest shrink factor between the query point and the tile to get a lower bound
+            double maxAbsLat = Math.max(Math.abs(Math.min(queryLat, minLat)), Math.abs(Math.max(queryLat, maxLat)));
+            double left = Math.cos(Math.toRadians(maxAbsLat)) * dLon;
+            return dLat * dLat + left * left;
+        }
+    }
+
+    private static class Tile {
+        final int intPointer;
+        final int depth;
+        final double minLat, minLon, deltaLat, deltaLon;
+        final double normedDist;
+
+        Tile(int intPointer, int depth, double minLat, double minLon, double deltaLat, double deltaLon, double normedDist) {
+            this.intPointer = intPointer;
+            this.depth = depth;
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.deltaLat = deltaLat;
+            this.deltaLon = deltaLon;
+            this.normedDist = normedDist;
+        }
+    }
+
     /**
      * This method collects edge ids from the neighborhood of a point and puts them into foundEntries.
      * <p>
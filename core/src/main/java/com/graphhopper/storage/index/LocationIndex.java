@@ -17,9 +17,17 @@
  */
 package com.graphhopper.storage.index;
 
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.shapes.BBox;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Provides a way to map real world data "lat,lon" to internal ids/indices of a memory efficient graph
  * - often just implemented as an array.
@@ -46,6 +54,50 @@ public interface LocationIndex {
      */
     Snap findClosest(double lat, double lon, EdgeFilter edgeFilter);
 
+    /**
+     * This method returns the Snaps for the k closest edges accepted by the filter, sorted by their distance to the
+     * specified location. There is one Snap per edge, so different Snaps can share the same tower node. The snapped
+     * points are already calculated.
+     * <p>
+     * The default implementation searches growing radii with {@link #findWithinRadius}, implementations should
+     * override it with a best-first search.
+     */
+    default List<Snap> findKNearest(double lat, double lon, int k, EdgeFilter edgeFilter) {
+        if (k <= 0)
+            return Collections.emptyList();
+        if (k == 1) {
+            Snap snap = findClosest(lat, lon, edgeFilter);
+            return snap.isValid() ? Collections.singletonList(snap) : Collections.emptyList();
+        }
+        for (double radius = 100; radius < DistanceCalcEarth.DIST_EARTH.calcCircumference(0); radius *= 4) {
+            List<Snap> snaps = findWithinRadius(lat, lon, radius, edgeFilter);
+            if (snaps.size() >= k)
+                return snaps.subList(0, k);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * This method returns the Snaps for all edges accepted by the filter that are not further away from the specified
+     * location than radiusInMeter, sorted by their distance. See {@link #findKNearest}.
+     * <p>
+     * The default implementation queries the edges in the bounding box of the circle and snaps to every edge
+     * separately with {@link #findClosest}, so it only finds the edges that findClosest can reach. Implementations
+     * should override it.
+     */
+    default List<Snap> findWithinRadius(double lat, double lon, double radiusInMeter, EdgeFilter edgeFilter) {
+        IntHashSet edges = new IntHashSet();
+        query(DistanceCalcEarth.DIST_EARTH.createBBox(lat, lon, radiusInMeter), edges::add);
+        List<Snap> snaps = new ArrayList<>();
+        for (IntCursor edge : edges) {
+            Snap snap = findClosest(lat, lon, e -> e.getEdge() == edge.value && edgeFilter.accept(e));
+            if (snap.isValid() && snap.getQueryDistance() <= radiusInMeter)
+                snaps.add(snap);
+        }
+        snaps.sort(Comparator.comparingDouble(Snap::getQueryDistance));
+        return snaps;
+    }
+
     /**
      * This method explores the LocationIndex with the specified Visitor. It visits only the stored edges (and only once)
      * and limited by the queryBBox. Also (a few) more edges slightly outside of queryBBox could be
@@ -18,6 +18,8 @@
 package com.graphhopper.storage.index;
 
 import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Directory;
@@ -25,10 +27,17 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import org.locationtech.jts.geom.Coordinate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
 
@@ -58,6 +67,7 @@ public class LocationIndexTree implements LocationIndex {
     private final NodeAccess nodeAccess;
     private int maxRegionSearch = 4;
     private int minResolutionInMeter = 300;
+    private int threads = 1;
     private boolean initialized = false;
 
     LineIntIndex lineIntIndex;
@@ -119,6 +129,16 @@ public class LocationIndexTree implements LocationIndex {
     }
 
 
+    /**
+     * Sets the number of threads used to find the tiles of all edges in prepareIndex. Default is 1.
+     */
+    public LocationIndexTree setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1 but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public LocationIndex setResolution(int minResolutionInMeter) {
         if (minResolutionInMeter <= 0)
             throw new IllegalStateException("Negative precision is not allowed!");
@@ -164,10 +184,15 @@ public class LocationIndexTree implements LocationIndex {
         if (!bounds.isValid())
             bounds = new BBox(-10.0, 10.0, -10.0, 10.0);
 
-        InMemConstructionIndex inMemConstructionIndex = prepareInMemConstructionIndex(bounds, edgeFilter);
-
+        indexStructureInfo = IndexStructureInfo.create(bounds, minResolutionInMeter);
         lineIntIndex.setMinResolutionInMeter(minResolutionInMeter);
-        lineIntIndex.store(inMemConstructionIndex);
+        int edgeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(graph.getEdges()));
+        int keyBits = indexStructureInfo.getKeyAlgo().getBits() - indexStructureInfo.getShifts()[0];
+        if (keyBits + edgeBits < 64)
+            lineIntIndex.store(collectTileEdgePairs(edgeFilter, edgeBits), edgeBits);
+        else
+            // the pairs cannot be packed into a long, use the slower object tree instead
+            lineIntIndex.store(prepareInMemConstructionIndex(bounds, edgeFilter));
         lineIntIndex.setChecksum(checksum());
         flush();
         logger.info("location index created in " + sw.stop().getSeconds()
@@ -217,6 +242,91 @@ public class LocationIndexTree implements LocationIndex {
         return inMem;
     }
 
+    /**
+     * Finds the tiles of all accepted edges concurrently and returns the (tile, edge) pairs for every cell of the top
+     * level of the tree, sorted and without duplicates, see {@link LineIntIndex#store(long[][], int)}. Compared to the
+     * {@link InMemConstructionIndex} this needs much less memory, as no objects are created for the tiles.
+     */
+    long[][] collectTileEdgePairs(EdgeFilter edgeFilter, int edgeBits) {
+        int cells = indexStructureInfo.getEntries()[0];
+        int edges = graph.getEdges();
+        int chunkSize = Math.max(10_000, edges / (threads * 8) + 1);
+        int chunks = (edges + chunkSize - 1) / chunkSize;
+        LongArrayList[][] pairsByChunk = new LongArrayList[chunks][];
+        GHUtility.runConcurrently(IntStream.range(0, chunks).mapToObj(chunk -> () -> {
+            TileCollector collector = new TileCollector(edgeBits);
+            int toEdge = Math.min(edges, (chunk + 1) * chunkSize);
+            for (int edge = chunk * chunkSize; edge < toEdge; edge++) {
+                EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                if (edgeFilter.accept(edgeState))
+                    collector.collect(edgeState);
+            }
+            pairsByChunk[chunk] = collector.pairs;
+        }), threads);
+
+        long[][] result = new long[cells][];
+        GHUtility.runConcurrently(IntStream.range(0, cells).mapToObj(cell -> () -> {
+            int size = 0;
+            for (LongArrayList[] pairs : pairsByChunk)
+                size += pairs[cell].size();
+            long[] cellPairs = new long[size];
+            size = 0;
+            for (LongArrayList[] pairs : pairsByChunk) {
+                System.arraycopy(pairs[cell].buffer, 0, cellPairs, size, pairs[cell].size());
+                size += pairs[cell].size();
+                pairs[cell] = null;
+            }
+            Arrays.sort(cellPairs);
+            // remove duplicates, e.g. from edges that leave a tile and come back later
+            int unique = 0;
+            for (int i = 0; i < cellPairs.length; i++)
+                if (i == 0 || cellPairs[i] != cellPairs[i - 1])
+                    cellPairs[unique++] = cellPairs[i];
+            result[cell] = unique == cellPairs.length ? cellPairs : Arrays.copyOf(cellPairs, unique);
+        }), threads);
+        return result;
+    }
+
+    private class TileCollector implements Consumer<Coordinate> {
+        final SpatialKeyAlgo keyAlgo = indexStructureInfo.getKeyAlgo();
+        final int keyBits = keyAlgo.getBits() - indexStructureInfo.getShifts()[0];
+        final int cellMask = indexStructureInfo.getEntries()[0] - 1;
+        final long keyMask = (1L << keyBits) - 1;
+        final int edgeBits;
+        final LongArrayList[] pairs;
+        int edge;
+        long lastKey;
+
+        TileCollector(int edgeBits) {
+            this.edgeBits = edgeBits;
+            pairs = new LongArrayList[indexStructureInfo.getEntries()[0]];
+            for (int i = 0; i < pairs.length; i++)
+                pairs[i] = new LongArrayList();
+        }
+
+        void collect(EdgeIteratorState edgeState) {
+            edge = edgeState.getEdge();
+            lastKey = Long.MIN_VALUE;
+            PointList points = edgeState.fetchWayGeometry(FetchMode.ALL);
+            for (int i = 1; i < points.size(); i++) {
+                double lon1 = points.getLon(i - 1), lon2 = points.getLon(i);
+                if (!DIST_PLANE.isCrossBoundary(lon1, lon2))
+                    indexStructureInfo.getPixelGridTraversal().traverse(new Coordinate(lon1, points.getLat(i - 1)), new Coordinate(lon2, points.getLat(i)), this);
+            }
+        }
+
+        @Override
+        public void accept(Coordinate tile) {
+            long key = keyAlgo.encode((int) tile.x, (int) tile.y);
+            // consecutive segments of an edge often touch the same tile
+            if (key == lastKey)
+                return;
+            lastKey = key;
+            int cell = (int) (key >>> keyBits) & cellMask;
+            pairs[cell].add((key & keyMask) << edgeBits | edge);
+        }
+    }
+
     int checksum() {
         return graph.getNodes() ^ graph.getAllEdges().length();
     }
@@ -308,6 +418,67 @@ public class LocationIndexTree implements LocationIndex {
         return closestMatch;
     }
 
+    @Override
+    public List<Snap> findKNearest(double queryLat, double queryLon, int k, EdgeFilter edgeFilter) {
+        return findNearest(queryLat, queryLon, k, Double.POSITIVE_INFINITY, edgeFilter);
+    }
+
+    @Override
+    public List<Snap> findWithinRadius(double queryLat, double queryLon, double radiusInMeter, EdgeFilter edgeFilter) {
+        return findNearest(queryLat, queryLon, Integer.MAX_VALUE, DIST_PLANE.calcNormalizedDist(radiusInMeter), edgeFilter);
+    }
+
+    /**
+     * Visits the tiles in the order of their distance to the query point and keeps the Snaps of their edges in a
+     * priority queue. A Snap is final once it is closer than the next tile, because all edges of the remaining tiles
+     * are further away. So unlike with {@link #query} only the tiles close to the result have to be read.
+     */
+    private List<Snap> findNearest(double queryLat, double queryLon, int k, double maxNormedDist, EdgeFilter edgeFilter) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        List<Snap> result = new ArrayList<>();
+        // until a Snap is added to the result its query distance is the normalized one
+        PriorityQueue<Snap> candidates = new PriorityQueue<>(Comparator.comparingDouble(Snap::getQueryDistance));
+        IntHashSet seenEdges = new IntHashSet();
+        LineIntIndex.NearestTiles tiles = lineIntIndex.findNearestTiles(queryLat, queryLon);
+        while (result.size() < k) {
+            double tileDist = tiles.nextNormedDist();
+            if (!candidates.isEmpty() && candidates.peek().getQueryDistance() <= tileDist) {
+                Snap snap = candidates.poll();
+                if (snap.getQueryDistance() > maxNormedDist)
+                    break;
+                snap.calcSnappedPoint(DIST_PLANE);
+                snap.setQueryDistance(DIST_PLANE.calcDist(snap.getSnappedPoint().lat, snap.getSnappedPoint().lon, queryLat, queryLon));
+                result.add(snap);
+            } else if (tileDist > maxNormedDist) {
+                break;
+            } else {
+                tiles.pollEdges(edgeId -> {
+                    if (!seenEdges.add(edgeId))
+                        return;
+                    EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
+                    if (!edgeFilter.accept(edgeIteratorState))
+                        return;
+                    Snap snap = new Snap(queryLat, queryLon);
+                    traverseEdge(queryLat, queryLon, edgeIteratorState, (node, normedDist, wayIndex, pos) -> {
+                        if (normedDist < snap.getQueryDistance()) {
+                            snap.setQueryDistance(normedDist);
+                            snap.setClosestNode(node);
+                            snap.setWayIndex(wayIndex);
+                            snap.setSnappedPosition(pos);
+                        }
+                    });
+                    if (snap.isValid()) {
+                        snap.setClosestEdge(edgeIteratorState);
+                        candidates.add(snap);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
     @Override
     public void query(TileFilter tileFilter, Visitor function) {
         lineIntIndex.query(tileFilter, function);
@@ -144,6 +144,26 @@ public interface EdgeIteratorState {
      */
     PointList fetchWayGeometry(FetchMode mode);
 
+    /**
+     * Like {@link #fetchWayGeometry(FetchMode)}, but passes the points in the same order to the given visitor
+     * instead of returning them as a new PointList. Implementations backed by the graph storage read the
+     * coordinates directly and do not allocate any temporary objects.
+     */
+    default void visitWayGeometry(FetchMode mode, PointVisitor visitor) {
+        PointList pointList = fetchWayGeometry(mode);
+        for (int i = 0; i < pointList.size(); i++) {
+            visitor.visit(pointList.getLat(i), pointList.getLon(i), pointList.is3D() ? pointList.getEle(i) : Double.NaN);
+        }
+    }
+
+    /**
+     * Appends the points of {@link #fetchWayGeometry(FetchMode)} to the given list. Use this to collect the
+     * geometry of many edges into one list without creating a PointList for every edge.
+     */
+    default void fetchWayGeometry(FetchMode mode, PointList pointList) {
+        visitWayGeometry(mode, PointVisitor.appendTo(pointList));
+    }
+
     /**
      * @param list is a sorted collection of coordinates between the base node and the current adjacent node. Specify
      *             the list without the adjacent and base node. This method can be called multiple times, unless the
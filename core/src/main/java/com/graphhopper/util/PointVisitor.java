@@ -0,0 +1,40 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+/**
+ * Receives the points of a way geometry one by one, see
+ * {@link EdgeIteratorState#visitWayGeometry(FetchMode, PointVisitor)}. This avoids creating a
+ * PointList for every edge when the points are only needed temporarily.
+ */
+@FunctionalInterface
+public interface PointVisitor {
+    /**
+     * @param ele the elevation or Double.NaN if the graph has no elevation data
+     */
+    void visit(double lat, double lon, double ele);
+
+    /**
+     * @return a visitor that appends all visited points to the given list
+     */
+    static PointVisitor appendTo(PointList pointList) {
+        if (pointList.is3D())
+            return pointList::add;
+        return (lat, lon, ele) -> pointList.add(lat, lon);
+    }
+}
@@ -20,20 +20,24 @@ package com.graphhopper.util.details;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.GHUtility;
 
 import static com.graphhopper.util.Parameters.Details.AVERAGE_SPEED;
 
 public class AverageSpeedDetails extends AbstractPathDetailsBuilder {
 
-    private final Weighting weighting;
+    private static final double DEFAULT_PRECISION = 0.1;
+    private final EdgeValuesCache cache;
     private final double precision;
     private Double decimalValue;
     // will include the turn time penalty
     private int prevEdgeId = EdgeIterator.NO_EDGE;
 
     public AverageSpeedDetails(Weighting weighting) {
-        this(weighting, 0.1);
+        this(weighting, DEFAULT_PRECISION);
+    }
+
+    public AverageSpeedDetails(EdgeValuesCache cache) {
+        this(cache, DEFAULT_PRECISION);
     }
 
     /**
@@ -41,8 +45,12 @@ public class AverageSpeedDetails extends AbstractPathDetailsBuilder {
      *                  before detecting a change.
      */
     public AverageSpeedDetails(Weighting weighting, double precision) {
+        this(new EdgeValuesCache(weighting), precision);
+    }
+
+    public AverageSpeedDetails(EdgeValuesCache cache, double precision) {
         super(AVERAGE_SPEED);
-        this.weighting = weighting;
+        this.cache = cache;
         this.precision = precision;
     }
 
@@ -56,7 +64,7 @@ public class AverageSpeedDetails extends AbstractPathDetailsBuilder {
         // For very short edges we might not be able to calculate a proper value for speed. dividing by calcMillis can
         // even lead to an infinity speed. So, just ignore these edges, see #1848 and #2620 and #2636.
         final double distance = edge.getDistance();
-        long time = GHUtility.calcMillisWithTurnMillis(weighting, edge, false, prevEdgeId);
+        long time = cache.getTime(edge, prevEdgeId);
         if (distance < 0.01 || time < 1) {
             prevEdgeId = edge.getEdge();
             if (decimalValue != null) return false;
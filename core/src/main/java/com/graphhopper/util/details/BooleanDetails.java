@@ -23,16 +23,23 @@ import com.graphhopper.util.EdgeIteratorState;
 public class BooleanDetails extends AbstractPathDetailsBuilder {
 
     private final BooleanEncodedValue boolEnc;
+    private final EdgeValuesCache cache;
     private Boolean boolValue;
 
     public BooleanDetails(String name, BooleanEncodedValue boolEnc) {
+        this(name, boolEnc, new EdgeValuesCache(null));
+    }
+
+    public BooleanDetails(String name, BooleanEncodedValue boolEnc, EdgeValuesCache cache) {
         super(name);
         this.boolEnc = boolEnc;
+        this.cache = cache;
+        cache.addEncodedValue();
     }
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        boolean tmpVal = edge.get(boolEnc);
+        boolean tmpVal = cache.get(edge, boolEnc);
         if (boolValue == null || tmpVal != boolValue) {
             this.boolValue = tmpVal;
             return true;
@@ -23,6 +23,7 @@ import com.graphhopper.util.EdgeIteratorState;
 public class DecimalDetails extends AbstractPathDetailsBuilder {
 
     private final DecimalEncodedValue ev;
+    private final EdgeValuesCache cache;
     private Double decimalValue;
     private final String infinityJsonValue;
     private final double precision;
@@ -31,6 +32,10 @@ public class DecimalDetails extends AbstractPathDetailsBuilder {
         this(name, ev, null, 0.001);
     }
 
+    public DecimalDetails(String name, DecimalEncodedValue ev, EdgeValuesCache cache) {
+        this(name, ev, null, 0.001, cache);
+    }
+
     /**
      * @param infinityJsonValue DecimalEncodedValue can return infinity as default value, but JSON cannot include this
      *                          https://stackoverflow.com/a/9218955/194609 so we need a special string to handle this or null.
@@ -38,8 +43,14 @@ public class DecimalDetails extends AbstractPathDetailsBuilder {
      *                          *                  before detecting a change.
      */
     public DecimalDetails(String name, DecimalEncodedValue ev, String infinityJsonValue, double precision) {
+        this(name, ev, infinityJsonValue, precision, new EdgeValuesCache(null));
+    }
+
+    public DecimalDetails(String name, DecimalEncodedValue ev, String infinityJsonValue, double precision, EdgeValuesCache cache) {
         super(name);
         this.ev = ev;
+        this.cache = cache;
+        cache.addEncodedValue();
         this.infinityJsonValue = infinityJsonValue;
         this.precision = precision;
     }
@@ -54,7 +65,7 @@ public class DecimalDetails extends AbstractPathDetailsBuilder {
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        double tmpVal = edge.get(ev);
+        double tmpVal = cache.get(edge, ev);
         if (decimalValue == null || Math.abs(tmpVal - decimalValue) >= precision) {
             this.decimalValue = Double.isInfinite(tmpVal) ? tmpVal : Math.round(tmpVal / precision) * precision;
             return true;
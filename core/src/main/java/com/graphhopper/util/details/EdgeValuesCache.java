@@ -0,0 +1,175 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util.details;
+
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.search.KVStorage;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Several PathDetailsBuilders need the same values of an edge, e.g. the time is used for the time and the
+ * average_speed details, every key value detail reads the key value entry of the edge and every encoded value detail
+ * reads the edge flags. This class is shared between the builders of one path and remembers these values for the
+ * current edge, so that they are calculated only once per edge no matter how many path details are requested.
+ * <p>
+ * The values are a function of the edge key (and the previous edge for the time), so this cache does not need to be
+ * informed when the next edge is visited.
+ */
+public class EdgeValuesCache {
+    private final Weighting weighting;
+    private final Set<String> keys = new HashSet<>();
+
+    private int timeEdgeKey = -1;
+    private int timePrevEdgeId = EdgeIterator.NO_EDGE;
+    private long time;
+
+    private int weightEdgeKey = -1;
+    private int weightPrevEdgeId = EdgeIterator.NO_EDGE;
+    private double weight;
+
+    private int encodedValues;
+    private int flagsEdgeKey = -1;
+    private EdgeIntAccess flags;
+    private boolean flagsReverse;
+
+    private int kvEdgeKey = -1;
+    private Map<String, KVStorage.KValue> keyValues;
+    private boolean reverse;
+
+    public EdgeValuesCache(Weighting weighting) {
+        this.weighting = weighting;
+    }
+
+    /**
+     * Announces that a builder will request the specified key via {@link #getValue(EdgeIteratorState, String)}. If
+     * only a single key is requested we read it directly instead of decoding all key values of the edge.
+     */
+    void addKey(String key) {
+        keys.add(key);
+    }
+
+    /**
+     * Announces that a builder will read an encoded value via this cache. If only a single encoded value is read we
+     * read it directly from the edge instead of copying the edge flags.
+     */
+    void addEncodedValue() {
+        encodedValues++;
+    }
+
+    /**
+     * @return the time of the specified edge including the turn time from prevEdgeId
+     * @see GHUtility#calcMillisWithTurnMillis
+     */
+    public long getTime(EdgeIteratorState edge, int prevEdgeId) {
+        if (weighting == null)
+            throw new IllegalStateException("The time cannot be calculated without a weighting");
+        int edgeKey = edge.getEdgeKey();
+        if (edgeKey != timeEdgeKey || prevEdgeId != timePrevEdgeId) {
+            time = GHUtility.calcMillisWithTurnMillis(weighting, edge, false, prevEdgeId);
+            timeEdgeKey = edgeKey;
+            timePrevEdgeId = prevEdgeId;
+        }
+        return time;
+    }
+
+    /**
+     * @return the weight of the specified edge including the turn weight from prevEdgeId
+     * @see GHUtility#calcWeightWithTurnWeight
+     */
+    public double getWeight(EdgeIteratorState edge, int prevEdgeId) {
+        if (weighting == null)
+            throw new IllegalStateException("The weight cannot be calculated without a weighting");
+        int edgeKey = edge.getEdgeKey();
+        if (edgeKey != weightEdgeKey || prevEdgeId != weightPrevEdgeId) {
+            weight = GHUtility.calcWeightWithTurnWeight(weighting, edge, false, prevEdgeId);
+            weightEdgeKey = edgeKey;
+            weightPrevEdgeId = prevEdgeId;
+        }
+        return weight;
+    }
+
+    public boolean get(EdgeIteratorState edge, BooleanEncodedValue enc) {
+        if (encodedValues < 2)
+            return edge.get(enc);
+        loadFlags(edge);
+        return enc.getBool(flagsReverse, edge.getEdge(), flags);
+    }
+
+    public int get(EdgeIteratorState edge, IntEncodedValue enc) {
+        if (encodedValues < 2)
+            return edge.get(enc);
+        loadFlags(edge);
+        return enc.getInt(flagsReverse, edge.getEdge(), flags);
+    }
+
+    public double get(EdgeIteratorState edge, DecimalEncodedValue enc) {
+        if (encodedValues < 2)
+            return edge.get(enc);
+        loadFlags(edge);
+        return enc.getDecimal(flagsReverse, edge.getEdge(), flags);
+    }
+
+    public <T extends Enum<?>> T get(EdgeIteratorState edge, EnumEncodedValue<T> enc) {
+        if (encodedValues < 2)
+            return edge.get(enc);
+        loadFlags(edge);
+        return enc.getEnum(flagsReverse, edge.getEdge(), flags);
+    }
+
+    public String get(EdgeIteratorState edge, StringEncodedValue enc) {
+        if (encodedValues < 2)
+            return edge.get(enc);
+        loadFlags(edge);
+        return enc.getString(flagsReverse, edge.getEdge(), flags);
+    }
+
+    private void loadFlags(EdgeIteratorState edge) {
+        int edgeKey = edge.getEdgeKey();
+        if (edgeKey != flagsEdgeKey) {
+            flags = new IntsRefEdgeIntAccess(edge.getFlags());
+            flagsReverse = edge.get(EdgeIteratorState.REVERSE_STATE);
+            flagsEdgeKey = edgeKey;
+        }
+    }
+
+    /**
+     * @return the same as {@link EdgeIteratorState#getValue(String)}
+     */
+    public Object getValue(EdgeIteratorState edge, String key) {
+        if (keys.size() < 2)
+            return edge.getValue(key);
+
+        int edgeKey = edge.getEdgeKey();
+        if (edgeKey != kvEdgeKey) {
+            keyValues = edge.getKeyValues();
+            reverse = edge.get(EdgeIteratorState.REVERSE_STATE);
+            kvEdgeKey = edgeKey;
+        }
+        KVStorage.KValue value = keyValues.get(key);
+        if (value == null)
+            return null;
+        return reverse ? value.getBwd() : value.getFwd();
+    }
+}
@@ -23,11 +23,18 @@ import com.graphhopper.util.EdgeIteratorState;
 public class EnumDetails<E extends Enum> extends AbstractPathDetailsBuilder {
 
     private final EnumEncodedValue<E> ev;
+    private final EdgeValuesCache cache;
     private E objVal;
 
     public EnumDetails(String name, EnumEncodedValue<E> ev) {
+        this(name, ev, new EdgeValuesCache(null));
+    }
+
+    public EnumDetails(String name, EnumEncodedValue<E> ev, EdgeValuesCache cache) {
         super(name);
         this.ev = ev;
+        this.cache = cache;
+        cache.addEncodedValue();
     }
 
     @Override
@@ -37,7 +44,7 @@ public class EnumDetails<E extends Enum> extends AbstractPathDetailsBuilder {
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        E val = edge.get(ev);
+        E val = (E) cache.get(edge, (EnumEncodedValue) ev);
         // we can use the reference equality here
         if (val != objVal) {
             this.objVal = val;
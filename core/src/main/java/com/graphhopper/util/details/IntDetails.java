@@ -23,11 +23,18 @@ import com.graphhopper.util.EdgeIteratorState;
 public class IntDetails extends AbstractPathDetailsBuilder {
 
     private final IntEncodedValue ev;
+    private final EdgeValuesCache cache;
     private Integer intVal;
 
     public IntDetails(String name, IntEncodedValue ev) {
+        this(name, ev, new EdgeValuesCache(null));
+    }
+
+    public IntDetails(String name, IntEncodedValue ev, EdgeValuesCache cache) {
         super(name);
         this.ev = ev;
+        this.cache = cache;
+        cache.addEncodedValue();
     }
 
     @Override
@@ -37,7 +44,7 @@ public class IntDetails extends AbstractPathDetailsBuilder {
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        int val = edge.get(ev);
+        int val = cache.get(edge, ev);
         if (intVal == null || val != intVal) {
             this.intVal = val;
             return true;
@@ -29,13 +29,21 @@ public class KVStringDetails extends AbstractPathDetailsBuilder {
     private String curString;
     private boolean initial = true;
 
+    private final EdgeValuesCache cache;
+
     public KVStringDetails(String name) {
+        this(name, new EdgeValuesCache(null));
+    }
+
+    public KVStringDetails(String name, EdgeValuesCache cache) {
         super(name);
+        this.cache = cache;
+        cache.addKey(name);
     }
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        String value = (String) edge.getValue(getName());
+        String value = (String) cache.getValue(edge, getName());
         if (initial) {
             curString = value;
             initial = false;
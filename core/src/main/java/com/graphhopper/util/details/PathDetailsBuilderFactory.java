@@ -36,6 +36,8 @@ public class PathDetailsBuilderFactory {
 
     public List<PathDetailsBuilder> createPathDetailsBuilders(List<String> requestedPathDetails, Path path, EncodedValueLookup evl, Weighting weighting, Graph graph) {
         List<PathDetailsBuilder> builders = new ArrayList<>();
+        // shared between the builders to avoid decoding the same values of an edge multiple times
+        EdgeValuesCache cache = new EdgeValuesCache(weighting);
 
         if (requestedPathDetails.contains(LEG_TIME))
             builders.add(new ConstantDetailsBuilder(LEG_TIME, path.getTime()));
@@ -46,20 +48,20 @@ public class PathDetailsBuilderFactory {
 
         for (String key : requestedPathDetails) {
             if (key.endsWith("_conditional"))
-                builders.add(new KVStringDetails(key));
+                builders.add(new KVStringDetails(key, cache));
         }
 
         if (requestedPathDetails.contains(MOTORWAY_JUNCTION))
-            builders.add(new KVStringDetails(MOTORWAY_JUNCTION));
+            builders.add(new KVStringDetails(MOTORWAY_JUNCTION, cache));
         if (requestedPathDetails.contains(STREET_NAME))
-            builders.add(new KVStringDetails(STREET_NAME));
+            builders.add(new KVStringDetails(STREET_NAME, cache));
         if (requestedPathDetails.contains(STREET_REF))
-            builders.add(new KVStringDetails(STREET_REF));
+            builders.add(new KVStringDetails(STREET_REF, cache));
         if (requestedPathDetails.contains(STREET_DESTINATION))
-            builders.add(new KVStringDetails(STREET_DESTINATION));
+            builders.add(new KVStringDetails(STREET_DESTINATION, cache));
 
         if (requestedPathDetails.contains(AVERAGE_SPEED))
-            builders.add(new AverageSpeedDetails(weighting));
+            builders.add(new AverageSpeedDetails(cache));
 
         if (requestedPathDetails.contains(EDGE_ID))
             builders.add(new EdgeIdDetails());
@@ -68,10 +70,10 @@ public class PathDetailsBuilderFactory {
             builders.add(new EdgeKeyDetails());
 
         if (requestedPathDetails.contains(TIME))
-            builders.add(new TimeDetails(weighting));
+            builders.add(new TimeDetails(cache));
 
         if (requestedPathDetails.contains(WEIGHT))
-            builders.add(new WeightDetails(weighting));
+            builders.add(new WeightDetails(cache));
 
         if (requestedPathDetails.contains(DISTANCE))
             builders.add(new DistanceDetails());
@@ -85,15 +87,15 @@ public class PathDetailsBuilderFactory {
 
             EncodedValue ev = evl.getEncodedValue(pathDetail, EncodedValue.class);
             if (ev instanceof DecimalEncodedValue)
-                builders.add(new DecimalDetails(pathDetail, (DecimalEncodedValue) ev));
+                builders.add(new DecimalDetails(pathDetail, (DecimalEncodedValue) ev, cache));
             else if (ev instanceof BooleanEncodedValue)
-                builders.add(new BooleanDetails(pathDetail, (BooleanEncodedValue) ev));
+                builders.add(new BooleanDetails(pathDetail, (BooleanEncodedValue) ev, cache));
             else if (ev instanceof EnumEncodedValue)
-                builders.add(new EnumDetails<>(pathDetail, (EnumEncodedValue) ev));
+                builders.add(new EnumDetails<>(pathDetail, (EnumEncodedValue) ev, cache));
             else if (ev instanceof StringEncodedValue)
-                builders.add(new StringDetails(pathDetail, (StringEncodedValue) ev));
+                builders.add(new StringDetails(pathDetail, (StringEncodedValue) ev, cache));
             else if (ev instanceof IntEncodedValue)
-                builders.add(new IntDetails(pathDetail, (IntEncodedValue) ev));
+                builders.add(new IntDetails(pathDetail, (IntEncodedValue) ev, cache));
             else
                 throw new IllegalArgumentException("unknown EncodedValue class " + ev.getClass().getName());
         }
@@ -23,6 +23,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointVisitor;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -41,6 +42,9 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
 
     private final List<PathDetailsBuilder> calculators;
     private int lastIndex = 0;
+    private int pointCount;
+    // counts the points of an edge without creating a PointList
+    private final PointVisitor pointCounter = (lat, lon, ele) -> pointCount++;
 
     public PathDetailsFromEdges(List<PathDetailsBuilder> calculators, int previousIndex) {
         this.calculators = calculators;
@@ -88,7 +92,9 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
                 calc.startInterval(lastIndex);
             }
         }
-        lastIndex += edge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ).size();
+        pointCount = 0;
+        edge.visitWayGeometry(FetchMode.PILLAR_AND_ADJ, pointCounter);
+        lastIndex += pointCount;
     }
 
     @Override
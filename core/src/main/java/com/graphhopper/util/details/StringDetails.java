@@ -23,11 +23,18 @@ import com.graphhopper.util.EdgeIteratorState;
 public class StringDetails extends AbstractPathDetailsBuilder {
 
     private final StringEncodedValue ev;
+    private final EdgeValuesCache cache;
     private String currentVal;
 
     public StringDetails(String name, StringEncodedValue ev) {
+        this(name, ev, new EdgeValuesCache(null));
+    }
+
+    public StringDetails(String name, StringEncodedValue ev, EdgeValuesCache cache) {
         super(name);
         this.ev = ev;
+        this.cache = cache;
+        cache.addEncodedValue();
     }
 
     @Override
@@ -37,7 +44,7 @@ public class StringDetails extends AbstractPathDetailsBuilder {
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        String val = edge.get(ev);
+        String val = cache.get(edge, ev);
         // we can use the reference equality here
         if (!val.equals(currentVal)) {
             this.currentVal = val;
@@ -20,7 +20,6 @@ package com.graphhopper.util.details;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.GHUtility;
 
 import static com.graphhopper.util.Parameters.Details.TIME;
 
@@ -31,19 +30,23 @@ import static com.graphhopper.util.Parameters.Details.TIME;
  */
 public class TimeDetails extends AbstractPathDetailsBuilder {
 
-    private final Weighting weighting;
+    private final EdgeValuesCache cache;
     private int prevEdgeId = EdgeIterator.NO_EDGE;
     // will include the turn time penalty
     private long time = 0;
 
     public TimeDetails(Weighting weighting) {
+        this(new EdgeValuesCache(weighting));
+    }
+
+    public TimeDetails(EdgeValuesCache cache) {
         super(TIME);
-        this.weighting = weighting;
+        this.cache = cache;
     }
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        time = GHUtility.calcMillisWithTurnMillis(weighting, edge, false, prevEdgeId);
+        time = cache.getTime(edge, prevEdgeId);
         prevEdgeId = edge.getEdge();
         return true;
     }
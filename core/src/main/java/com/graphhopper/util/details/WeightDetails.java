@@ -20,7 +20,6 @@ package com.graphhopper.util.details;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.GHUtility;
 
 import static com.graphhopper.util.Parameters.Details.WEIGHT;
 
@@ -31,20 +30,24 @@ import static com.graphhopper.util.Parameters.Details.WEIGHT;
  */
 public class WeightDetails extends AbstractPathDetailsBuilder {
 
-    private final Weighting weighting;
+    private final EdgeValuesCache cache;
     private int edgeId = EdgeIterator.NO_EDGE;
     private Double weight;
 
     public WeightDetails(Weighting weighting) {
+        this(new EdgeValuesCache(weighting));
+    }
+
+    public WeightDetails(EdgeValuesCache cache) {
         super(WEIGHT);
-        this.weighting = weighting;
+        this.cache = cache;
     }
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
         if (edge.getEdge() != edgeId) {
             edgeId = edge.getEdge();
-            weight = GHUtility.calcWeightWithTurnWeight(weighting, edge, false, edgeId);
+            weight = cache.getWeight(edge, edgeId);
             return true;
         }
         return false;
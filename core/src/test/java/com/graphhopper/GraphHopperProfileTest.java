@@ -24,12 +24,15 @@ import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.ev.TrafficSpeedOverlay;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GraphHopperProfileTest {
@@ -89,6 +92,28 @@ public class GraphHopperProfileTest {
         assertIllegalArgument(hopper::importOrLoad, "Duplicate CH reference to profile 'profile'");
     }
 
+    @Test
+    public void chProfileWithTrafficSpeed_error() {
+        final GraphHopper hopper = createHopper();
+        hopper.setTrafficSpeedOverlay(new TrafficSpeedOverlay(150));
+        Profile profile = TestProfiles.constantSpeed("profile");
+        profile.getCustomModel().addToPriority(If("backward_" + TrafficSpeedOverlay.KEY + " < 30", MULTIPLY, "0.5"));
+        hopper.setProfiles(profile);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        assertIllegalArgument(hopper::importOrLoad, "CH profile 'profile' uses traffic_speed");
+    }
+
+    @Test
+    public void lmProfileWithTrafficSpeedCondition_error() {
+        final GraphHopper hopper = createHopper();
+        hopper.setTrafficSpeedOverlay(new TrafficSpeedOverlay(150));
+        Profile profile = TestProfiles.constantSpeed("profile");
+        profile.getCustomModel().addToPriority(If("backward_" + TrafficSpeedOverlay.KEY + " < 30", MULTIPLY, "0.5"));
+        hopper.setProfiles(profile);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("profile"));
+        assertIllegalArgument(hopper::importOrLoad, "LM profile 'profile' uses traffic_speed outside of limit_to");
+    }
+
     @Test
     public void lmProfileDoesNotExist_error() {
         final GraphHopper hopper = createHopper();
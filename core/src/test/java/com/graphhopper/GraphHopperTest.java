@@ -17,6 +17,8 @@
  */
 package com.graphhopper;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
@@ -32,6 +34,7 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
@@ -57,8 +60,10 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static com.graphhopper.json.Statement.If;
 import static com.graphhopper.json.Statement.Op.LIMIT;
@@ -582,6 +587,54 @@ public class GraphHopperTest {
         assertEquals(550, rsp.getBest().getDistance(), 1);
     }
 
+    @Test
+    public void testCustomizableCH() {
+        final String profile = "profile";
+
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(BAYREUTH).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car")).
+                setCustomizableCHProfiles(profile);
+        TrafficSpeedOverlay trafficSpeedOverlay = new TrafficSpeedOverlay(150);
+        hopper.setTrafficSpeedOverlay(trafficSpeedOverlay);
+        hopper.importOrLoad();
+        assertNotNull(hopper.getCustomizableCH());
+
+        CustomModel customModel = new CustomModel().addToPriority(If("in_blocked_area", MULTIPLY, "0"));
+        customModel.getAreas().getFeatures().add(createRectangle("blocked_area", 49.97986, 11.472902, 50.003946, 11.534357));
+        for (CustomModel model : Arrays.asList(null, customModel)) {
+            GHRequest req = new GHRequest(49.975845, 11.522598, 50.026821, 11.497364).
+                    setProfile(profile).setCustomModel(model);
+            GHResponse cchRsp = hopper.route(req);
+            assertFalse(cchRsp.hasErrors(), cchRsp.getErrors().toString());
+            req.putHint(CH.DISABLE, true);
+            GHResponse flexRsp = hopper.route(req);
+            assertFalse(flexRsp.hasErrors(), flexRsp.getErrors().toString());
+            assertEquals(flexRsp.getBest().getRouteWeight(), cchRsp.getBest().getRouteWeight(), 0.1);
+            assertEquals(flexRsp.getBest().getDistance(), cchRsp.getBest().getDistance(), 1);
+            assertTrue(cchRsp.getHints().getInt("visited_nodes.sum", 0) < flexRsp.getHints().getInt("visited_nodes.sum", 0));
+        }
+        assertEquals(13988, hopper.route(new GHRequest(49.975845, 11.522598, 50.026821, 11.497364).
+                setProfile(profile).setCustomModel(customModel)).getBest().getDistance(), 1);
+        // the same custom model uses the cached customization
+        assertEquals(2, hopper.getCustomizableCH().getCustomizations());
+
+        // custom models that use the traffic speeds are customized again after the speeds changed, the others are not
+        GHRequest trafficReq = new GHRequest(49.975845, 11.522598, 50.026821, 11.497364).setProfile(profile).
+                setCustomModel(new CustomModel().addToSpeed(If("true", LIMIT, TrafficSpeedOverlay.KEY)));
+        assertFalse(hopper.route(trafficReq).hasErrors());
+        assertFalse(hopper.route(trafficReq).hasErrors());
+        assertEquals(3, hopper.getCustomizableCH().getCustomizations());
+        trafficSpeedOverlay.setSpeeds(IntArrayList.from(0), DoubleArrayList.from(10));
+        assertFalse(hopper.route(trafficReq).hasErrors());
+        assertFalse(hopper.route(new GHRequest(49.975845, 11.522598, 50.026821, 11.497364).
+                setProfile(profile).setCustomModel(customModel)).hasErrors());
+        assertEquals(4, hopper.getCustomizableCH().getCustomizations());
+        hopper.close();
+    }
+
     @Test
     public void testNorthBayreuthBlockedEdges() {
         final String profile = "profile";
@@ -740,6 +793,47 @@ public class GraphHopperTest {
         assertEquals(expectedDistance, rsp.getBest().getDistance(), 1);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testMonacoViaLegThreads(boolean withCH) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler()
+                .setCHProfiles(new CHProfile("profile"));
+        hopper.importOrLoad();
+        GHRequest req = new GHRequest().
+                addPoint(new GHPoint(43.727687, 7.418737)).
+                addPoint(new GHPoint(43.74958, 7.436566)).
+                addPoint(new GHPoint(43.739213, 7.427806)).
+                addPoint(new GHPoint(43.731129, 7.422137)).
+                addPoint(new GHPoint(43.744033, 7.432355)).
+                setProfile("profile");
+        req.putHint(CH.DISABLE, !withCH);
+        GHResponse sequential = hopper.route(req);
+        assertFalse(sequential.hasErrors(), sequential.getErrors().toString());
+
+        hopper.getRouterConfig().setViaLegThreads(3);
+        GHResponse concurrent = hopper.route(req);
+        assertFalse(concurrent.hasErrors(), concurrent.getErrors().toString());
+        assertEquals(sequential.getBest().getDistance(), concurrent.getBest().getDistance(), 1.e-6);
+        assertEquals(sequential.getBest().getTime(), concurrent.getBest().getTime());
+        assertEquals(sequential.getBest().getPoints(), concurrent.getBest().getPoints());
+        assertEquals(sequential.getHints().getLong("visited_nodes.sum", 0), concurrent.getHints().getLong("visited_nodes.sum", 0));
+
+        if (!withCH) {
+            // pass_through requires the previous leg, so it still works but is calculated sequentially
+            req.putHint(Routing.PASS_THROUGH, true);
+            GHResponse passThrough = hopper.route(req);
+            assertFalse(passThrough.hasErrors(), passThrough.getErrors().toString());
+            assertEquals(5, passThrough.getBest().getWaypoints().size());
+        }
+        hopper.close();
+    }
+
     @Test
     public void testMonacoVia() {
         final String profile = "profile";
@@ -1500,6 +1594,36 @@ public class GraphHopperTest {
         assertEquals(68, res.getPoints().size());
     }
 
+    @Test
+    public void testRoundTourFromShortestPathTree() {
+        final String profile = "profile";
+
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("foot_access, foot_priority, foot_average_speed").
+                setProfiles(TestProfiles.accessSpeedAndPriority(profile, "foot")).
+                setStoreOnFlush(true).
+                importOrLoad();
+
+        GHRequest rq = new GHRequest().
+                addPoint(new GHPoint(43.741069, 7.426854)).
+                setHeadings(Collections.singletonList(50.)).
+                setProfile(profile).
+                setAlgorithm(ROUND_TRIP);
+        rq.putHint(RoundTrip.DISTANCE, 1000);
+        rq.putHint(RoundTrip.SEED, 0);
+        rq.putHint(RoundTrip.SHORTEST_PATH_TREE, true);
+
+        GHResponse rsp = hopper.route(rq);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        ResponsePath res = rsp.getBest();
+        assertEquals(3, res.getWaypoints().size());
+        assertEquals(res.getWaypoints().getLat(0), res.getWaypoints().getLat(2), 1.e-6);
+        assertEquals(res.getWaypoints().getLon(0), res.getWaypoints().getLon(2), 1.e-6);
+        assertEquals(1.2, res.getDistance() / 1000f, 0.5);
+    }
+
     @Test
     public void testPathDetails1216() {
         final String profile = "profile";
@@ -2817,6 +2941,170 @@ public class GraphHopperTest {
         }
     }
 
+    @Test
+    void testLoadConcurrently() {
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566);
+        GHResponse[] responses = new GHResponse[2];
+        for (int loadThreads : new int[]{1, 4}) {
+            GraphHopper hopper = new GraphHopper()
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO)
+                    .setEncodedValuesString("car_access, car_average_speed")
+                    .setProfiles(TestProfiles.accessAndSpeed("car"), TestProfiles.constantSpeed("fast", 120))
+                    .setLoadThreads(loadThreads);
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"), new CHProfile("fast"));
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("car"), new LMProfile("fast"));
+            hopper.importOrLoad();
+            assertEquals(2, hopper.getCHGraphs().size());
+            assertEquals(2, hopper.getLandmarks().size());
+            GHResponse chRsp = hopper.route(new GHRequest(request.getPoints()).setProfile("car"));
+            GHResponse lmRsp = hopper.route(new GHRequest(request.getPoints()).setProfile("fast").putHint(CH.DISABLE, true));
+            assertFalse(chRsp.hasErrors(), chRsp.getErrors().toString());
+            assertFalse(lmRsp.hasErrors(), lmRsp.getErrors().toString());
+            if (loadThreads > 1) {
+                assertEquals(responses[0].getBest().getDistance(), chRsp.getBest().getDistance(), 1.e-6);
+                assertEquals(responses[1].getBest().getDistance(), lmRsp.getBest().getDistance(), 1.e-6);
+                Map<String, Long> loadTimes = ((GHDirectory) hopper.getBaseGraph().getDirectory()).getLoadTimes();
+                assertTrue(loadTimes.containsKey("edges"), loadTimes.toString());
+                assertTrue(loadTimes.containsKey("shortcuts_fast"), loadTimes.toString());
+                assertTrue(loadTimes.containsKey("landmarks_car"), loadTimes.toString());
+            }
+            responses[0] = chRsp;
+            responses[1] = lmRsp;
+            hopper.close();
+        }
+    }
+
+    @Test
+    void testApplyChanges() throws Exception {
+        Supplier<GraphHopper> createHopper = () -> {
+            GraphHopper hopper = new GraphHopper()
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO)
+                    .setEncodedValuesString("car_access, car_average_speed, osm_way_id, crossing")
+                    .setProfiles(TestProfiles.accessAndSpeed("car"), TestProfiles.constantSpeed("constant"));
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"), new CHProfile("constant"));
+            return hopper;
+        };
+        GraphHopper hopper = createHopper.get().importOrLoad();
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getBooleanEncodedValue(VehicleAccess.key("car"));
+        BooleanEncodedValue subnetworkEnc = hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key("car"));
+        IntEncodedValue wayIdEnc = hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY);
+        // block the only way to a dead end, so the dead end becomes a subnetwork
+        int wayId = -1;
+        int deadEnd = -1;
+        EdgeExplorer explorer = hopper.getBaseGraph().createEdgeExplorer();
+        AllEdgesIterator iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next() && wayId < 0) {
+            if (!iter.get(accessEnc) || !iter.getReverse(accessEnc) || iter.get(subnetworkEnc)
+                    || GHUtility.count(explorer.setBaseNode(iter.getAdjNode())) != 1)
+                continue;
+            EdgeIterator other = explorer.setBaseNode(iter.getBaseNode());
+            if (GHUtility.count(other) != 2)
+                continue;
+            other = explorer.setBaseNode(iter.getBaseNode());
+            while (other.next())
+                if (other.getEdge() != iter.getEdge() && other.get(accessEnc) && other.getReverse(accessEnc)
+                        && other.get(wayIdEnc) != iter.get(wayIdEnc)) {
+                    wayId = other.get(wayIdEnc);
+                    deadEnd = iter.getEdge();
+                }
+        }
+        assertTrue(wayId >= 0);
+        // the crossing is derived from node tags and must survive the changes
+        EnumEncodedValue<Crossing> crossingEnc = hopper.getEncodingManager().getEnumEncodedValue(Crossing.KEY, Crossing.class);
+        int crossingEdge = -1;
+        iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next() && crossingEdge < 0)
+            if (iter.get(crossingEnc) != Crossing.MISSING)
+                crossingEdge = iter.getEdge();
+        assertTrue(crossingEdge >= 0);
+        int crossingWayId = hopper.getBaseGraph().getEdgeIteratorState(crossingEdge, Integer.MIN_VALUE).get(wayIdEnc);
+        Crossing crossing = hopper.getBaseGraph().getEdgeIteratorState(crossingEdge, Integer.MIN_VALUE).get(crossingEnc);
+        hopper.close();
+
+        File changeFile = new File(GH_LOCATION, "changes.osc");
+        Files.writeString(changeFile.toPath(), "<osmChange version=\"0.6\">\n" +
+                "<modify><way id=\"" + wayId + "\"><nd ref=\"1\"/><nd ref=\"2\"/>" +
+                "<tag k=\"highway\" v=\"residential\"/><tag k=\"motor_vehicle\" v=\"no\"/></way>\n" +
+                "<way id=\"" + crossingWayId + "\"><nd ref=\"1\"/><nd ref=\"2\"/><tag k=\"highway\" v=\"footway\"/></way></modify>\n" +
+                "<delete><node id=\"3\"/></delete>\n" +
+                // the graph has no turn costs, so the restriction is ignored
+                "<create><relation id=\"4\"><member type=\"way\" ref=\"" + wayId + "\" role=\"from\"/>" +
+                "<tag k=\"type\" v=\"restriction\"/><tag k=\"restriction\" v=\"no_left_turn\"/></relation></create>\n" +
+                "</osmChange>");
+        createHopper.get().applyChangesAndClose(List.of(changeFile.getPath()));
+        // only the preparation of the profile whose weights changed is removed
+        assertFalse(new File(GH_LOCATION, "nodes_ch_car").exists());
+        assertFalse(new File(GH_LOCATION, "snappable_edges_car").exists());
+        assertTrue(new File(GH_LOCATION, "nodes_ch_constant").exists());
+        assertTrue(new File(GH_LOCATION, "snappable_edges_constant").exists());
+
+        hopper = createHopper.get().importOrLoad();
+        int edges = 0;
+        iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next())
+            if (iter.get(wayIdEnc) == wayId) {
+                assertFalse(iter.get(accessEnc) || iter.getReverse(accessEnc));
+                edges++;
+            }
+        assertTrue(edges > 0);
+        assertTrue(hopper.getBaseGraph().getEdgeIteratorState(deadEnd, Integer.MIN_VALUE).get(subnetworkEnc));
+        assertEquals(crossing, hopper.getBaseGraph().getEdgeIteratorState(crossingEdge, Integer.MIN_VALUE).get(crossingEnc));
+        assertTrue(new File(GH_LOCATION, "nodes_ch_car").exists());
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        hopper.close();
+    }
+
+    @Test
+    void testApplyChanges_turnRestrictions() throws Exception {
+        Supplier<GraphHopper> createHopper = () -> new GraphHopper()
+                .setGraphHopperLocation(GH_LOCATION)
+                .setOSMFile(MONACO)
+                .setEncodedValuesString("car_access, car_average_speed, osm_way_id")
+                .setProfiles(TestProfiles.accessAndSpeed("car").setTurnCostsConfig(TurnCostsConfig.car()));
+        createHopper.get().importOrLoad().close();
+        File changeFile = new File(GH_LOCATION, "changes.osc");
+        Files.writeString(changeFile.toPath(), "<osmChange version=\"0.6\">\n" +
+                "<modify><relation id=\"4\"><tag k=\"type\" v=\"restriction\"/>" +
+                "<tag k=\"restriction\" v=\"no_left_turn\"/></relation></modify>\n" +
+                "</osmChange>");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> createHopper.get().applyChangesAndClose(List.of(changeFile.getPath())));
+        assertTrue(e.getMessage().contains("1 changed turn restrictions"), e.getMessage());
+    }
+
+    @Test
+    void testSortGraph() {
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566);
+        GHResponse[] responses = new GHResponse[2];
+        for (boolean sortGraph : new boolean[]{false, true}) {
+            Helper.removeDir(new File(GH_LOCATION));
+            GraphHopper hopper = new GraphHopper()
+                    .setGraphHopperLocation(GH_LOCATION)
+                    .setOSMFile(MONACO)
+                    .setEncodedValuesString("car_access, car_average_speed")
+                    .setProfiles(TestProfiles.accessAndSpeed("car"))
+                    .setSortGraph(sortGraph);
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+            hopper.importOrLoad();
+            GHResponse chRsp = hopper.route(new GHRequest(request.getPoints()).setProfile("car"));
+            GHResponse flexRsp = hopper.route(new GHRequest(request.getPoints()).setProfile("car").putHint(CH.DISABLE, true));
+            assertFalse(chRsp.hasErrors(), chRsp.getErrors().toString());
+            assertFalse(flexRsp.hasErrors(), flexRsp.getErrors().toString());
+            assertEquals(chRsp.getBest().getDistance(), flexRsp.getBest().getDistance(), 1.e-6);
+            if (sortGraph) {
+                assertEquals(responses[0].getBest().getDistance(), chRsp.getBest().getDistance(), 1.e-6);
+                assertEquals(responses[0].getBest().getTime(), chRsp.getBest().getTime());
+                assertEquals(responses[0].getBest().getPoints(), chRsp.getBest().getPoints());
+            }
+            responses[0] = chRsp;
+            responses[1] = flexRsp;
+            hopper.close();
+        }
+    }
+
     @ParameterizedTest()
     @ValueSource(booleans = {true, false})
     void legDistanceWithDuplicateEndpoint(boolean simplifyResponse) {
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhastShortestPathTreeTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final EncodingManager encodingManager = EncodingManager.start().add(speedEnc).build();
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void compareWithDijkstra(boolean reverseFlow) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.5, false, speedEnc, null, 0.8, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("car", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        for (int i = 0; i < 10; i++) {
+            List<Snap> snaps = GHUtility.createRandomSnaps(graph.getBounds(), locationIndex, rnd, 1, true, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            int from = snaps.get(0).getClosestNode();
+            Weighting weighting = queryGraph.wrapWeighting(chConfig.getWeighting());
+            double limit = rnd.nextInt(2) == 0 ? Double.MAX_VALUE : 1_000_000 * rnd.nextDouble();
+
+            ShortestPathTree dijkstra = new ShortestPathTree(queryGraph, weighting, reverseFlow, TraversalMode.NODE_BASED);
+            dijkstra.setTimeLimit(limit);
+            Map<Integer, ShortestPathTree.IsoLabel> expected = new HashMap<>();
+            dijkstra.search(from, l -> expected.put(l.node, l));
+
+            PhastShortestPathTree phast = new PhastShortestPathTree(new QueryRoutingCHGraph(chGraph, queryGraph), reverseFlow);
+            phast.setTimeLimit(limit);
+            Map<Integer, ShortestPathTree.IsoLabel> given = new HashMap<>();
+            phast.search(from, l -> {
+                assertNull(given.put(l.node, l), "duplicate label for node " + l.node);
+                if (l.parent != null) {
+                    assertSame(given.get(l.parent.node), l.parent, "parent must be passed to the consumer first");
+                    EdgeIteratorState edge = queryGraph.getEdgeIteratorState(l.edge, l.node);
+                    assertEquals(l.parent.node, edge.getBaseNode());
+                    assertEquals(l.parent.distance + edge.getDistance(), l.distance, 1.e-6);
+                    assertEquals(l.parent.time + weighting.calcEdgeMillis(edge, reverseFlow), l.time);
+                }
+            });
+
+            // labels very close to the limit might be included or not depending on the time rounding along the tree
+            Set<Integer> nodes = new HashSet<>(expected.keySet());
+            nodes.addAll(given.keySet());
+            for (int node : nodes) {
+                ShortestPathTree.IsoLabel e = expected.get(node);
+                ShortestPathTree.IsoLabel g = given.get(node);
+                if (e == null || g == null) {
+                    assertEquals(limit, (e == null ? g : e).time, 1_000, "seed: " + seed + ", node: " + node);
+                    continue;
+                }
+                assertEquals(e.weight, g.weight, 1.e-2, "seed: " + seed + ", node: " + node);
+            }
+            assertTrue(expected.size() > 1);
+        }
+    }
+
+    @Test
+    public void maxVisitedNodes() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("car", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        // PHAST visits all nodes even for a small limit, so it must not be started at all
+        PhastShortestPathTree phast = new PhastShortestPathTree(chGraph, false);
+        phast.setDistanceLimit(10);
+        phast.setMaxVisitedNodes(2);
+        assertThrows(MaximumNodesExceededException.class, () -> phast.search(0, l -> {
+        }));
+
+        PhastShortestPathTree phast2 = new PhastShortestPathTree(chGraph, false);
+        phast2.setDistanceLimit(150);
+        phast2.setMaxVisitedNodes(3);
+        List<Integer> nodes = new ArrayList<>();
+        phast2.search(0, l -> nodes.add(l.node));
+        assertEquals(Arrays.asList(0, 1), nodes);
+    }
+
+    @Test
+    public void edgeBasedIsNotSupported() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 1);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        CHConfig chConfig = CHConfig.edgeBased("car", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), 0));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        assertThrows(IllegalStateException.class, () -> new PhastShortestPathTree(chGraph, false));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalcEarth;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RasterIsochroneBuilderTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final EncodingManager encodingManager = EncodingManager.start().add(speedEnc).build();
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    public void grid() {
+        // 11x11 nodes, roughly 110m apart, i.e. 11s for every edge
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        int size = 11;
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                graph.getNodeAccess().setNode(node, 50 + y * 0.001, 10 + x * 0.0015);
+                if (x > 0)
+                    connect(graph, node - 1, node);
+                if (y > 0)
+                    connect(graph, node - size, node);
+            }
+        graph.freeze();
+        int center = 5 * size + 5;
+        RasterIsochroneBuilder builder = rasterize(graph, center, 20);
+
+        MultiPolygon small = builder.computeIsoline(15_000);
+        MultiPolygon large = builder.computeIsoline(50_000);
+        MultiPolygon all = builder.computeIsoline(Double.MAX_VALUE);
+        assertTrue(small.isValid());
+        assertTrue(large.isValid());
+        assertTrue(all.isValid());
+        assertEquals(1, all.getNumGeometries());
+        assertTrue(small.getArea() > 0);
+        assertTrue(small.getArea() < large.getArea());
+        assertTrue(large.covers(small));
+        assertTrue(all.covers(large));
+        assertFalse(large.covers(all));
+
+        NodeAccess na = graph.getNodeAccess();
+        assertTrue(small.contains(point(na, center)));
+        // the neighbors are reached within 11s, the corners only after 110s
+        assertTrue(small.contains(point(na, center + 1)));
+        assertTrue(small.contains(point(na, center - size)));
+        assertFalse(large.contains(point(na, 0)));
+        for (int node = 0; node < graph.getNodes(); node++)
+            assertTrue(all.contains(point(na, node)), "node " + node);
+    }
+
+    @Test
+    public void ringHasHole() {
+        // a square of roughly 1.1km, nothing is reachable in its interior
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50.00, 10.000);
+        na.setNode(1, 50.00, 10.015);
+        na.setNode(2, 50.01, 10.015);
+        na.setNode(3, 50.01, 10.000);
+        connect(graph, 0, 1);
+        connect(graph, 1, 2);
+        connect(graph, 2, 3);
+        connect(graph, 3, 0);
+        graph.freeze();
+        RasterIsochroneBuilder builder = rasterize(graph, 0, 20);
+        MultiPolygon all = builder.computeIsoline(Double.MAX_VALUE);
+        assertTrue(all.isValid());
+        assertEquals(1, all.getNumGeometries());
+        assertEquals(1, ((Polygon) all.getGeometryN(0)).getNumInteriorRing());
+        assertFalse(all.contains(geometryFactory.createPoint(new Coordinate(10.0075, 50.005))));
+        for (int node = 0; node < graph.getNodes(); node++)
+            assertTrue(all.contains(point(na, node)), "node " + node);
+    }
+
+    @Test
+    public void coarsenLargeGrids() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        graph.getNodeAccess().setNode(0, 50, 10);
+        graph.getNodeAccess().setNode(1, 51, 11);
+        connect(graph, 0, 1);
+        graph.freeze();
+        RasterIsochroneBuilder builder = rasterize(graph, 0, 1);
+        assertTrue(builder.getCellSizeInMeter() > 10, "cell size: " + builder.getCellSizeInMeter());
+        assertTrue(builder.computeIsoline(Double.MAX_VALUE).isValid());
+    }
+
+    private RasterIsochroneBuilder rasterize(BaseGraph graph, int from, double cellSize) {
+        QueryGraph queryGraph = QueryGraph.create(graph, Collections.emptyList());
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        ShortestPathTree tree = new ShortestPathTree(queryGraph, weighting, false, TraversalMode.NODE_BASED);
+        tree.setTimeLimit(Double.MAX_VALUE);
+        RasterIsochroneBuilder builder = new RasterIsochroneBuilder(cellSize, 2);
+        builder.rasterize(queryGraph, weighting, tree, from, l -> l.time);
+        return builder;
+    }
+
+    private void connect(BaseGraph graph, int a, int b) {
+        NodeAccess na = graph.getNodeAccess();
+        double distance = DistanceCalcEarth.DIST_EARTH.calcDist(na.getLat(a), na.getLon(a), na.getLat(b), na.getLon(b));
+        graph.edge(a, b).setDistance(distance).set(speedEnc, 10, 10);
+    }
+
+    private Point point(NodeAccess na, int node) {
+        return geometryFactory.createPoint(new Coordinate(na.getLon(node), na.getLat(node)));
+    }
+}
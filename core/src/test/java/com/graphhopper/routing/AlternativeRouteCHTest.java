@@ -31,6 +31,8 @@ import com.graphhopper.util.PMap;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -116,4 +118,29 @@ public class AlternativeRouteCHTest {
         // 4 -> 11 -> 12 -> 10 is not too long compared to 4 -> 10
     }
 
+    @Test
+    public void testConcurrentEvaluationYieldsSameAlternatives() {
+        BaseGraph g = createTestGraph(em);
+        PMap hints = new PMap();
+        hints.putObject("alternative_route.max_weight_factor", 4);
+        hints.putObject("alternative_route.local_optimality_factor", 0.5);
+        hints.putObject("alternative_route.max_paths", 4);
+        RoutingCHGraph routingCHGraph = prepareCH(g);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<AlternativeRouteCH.AlternativeInfo> expected = new AlternativeRouteCH(routingCHGraph, hints).calcAlternatives(5, 10);
+            for (int parallelism : new int[]{1, 2, 5}) {
+                List<AlternativeRouteCH.AlternativeInfo> given = new AlternativeRouteCH(routingCHGraph, hints)
+                        .setExecutor(executor, parallelism).calcAlternatives(5, 10);
+                assertEquals(expected.size(), given.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).nodes, given.get(i).nodes);
+                    assertEquals(expected.get(i).getPath().getWeight(), given.get(i).getPath().getWeight(), 1.e-6);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
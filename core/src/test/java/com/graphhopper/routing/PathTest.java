@@ -357,6 +357,46 @@ public class PathTest {
         assertEquals(4, streetNameDetails.get(3).getLast());
     }
 
+    @Test
+    public void testCalcDetailsWithSharedEdgeValues() {
+        BaseGraph graph = new BaseGraph.Builder(carManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(1, 52.514, 13.348);
+        na.setNode(2, 52.514, 13.349);
+        na.setNode(3, 52.514, 13.350);
+        na.setNode(4, 52.515, 13.349);
+        graph.edge(1, 2).set(carAvSpeedEnc, 45, 45).setDistance(5).setKeyValues(Map.of(STREET_NAME, new KValue("1-2"), STREET_REF, new KValue("A", "B")));
+        graph.edge(3, 2).set(carAvSpeedEnc, 90, 90).setDistance(5).setKeyValues(Map.of(STREET_NAME, new KValue("2-3"), STREET_REF, new KValue(null, "C")));
+        graph.edge(3, 4).set(carAvSpeedEnc, 9, 9).setDistance(10).setKeyValues(Map.of(STREET_REF, new KValue(null, "D")))
+                .set(carManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class), RoadClass.PRIMARY)
+                .set(carManager.getBooleanEncodedValue(RoadClassLink.KEY), true);
+
+        Weighting weighting = new SpeedWeighting(carAvSpeedEnc);
+        for (int[] fromTo : new int[][]{{1, 4}, {4, 1}}) {
+            Path p = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(fromTo[0], fromTo[1]);
+            assertTrue(p.isFound());
+            List<String> requested = List.of(STREET_NAME, STREET_REF, TIME, AVERAGE_SPEED, WEIGHT,
+                    carAvSpeedEnc.getName(), RoadClass.KEY, RoadClassLink.KEY);
+            Map<String, List<PathDetail>> details = PathDetailsFromEdges.calcDetails(p, carManager, weighting,
+                    requested, new PathDetailsBuilderFactory(), 0, graph);
+            assertEquals(requested.size(), details.size());
+            // requesting the details together must give the same result as requesting them one by one
+            for (String detail : requested) {
+                List<PathDetail> single = PathDetailsFromEdges.calcDetails(p, carManager, weighting,
+                        List.of(detail), new PathDetailsBuilderFactory(), 0, graph).get(detail);
+                assertEquals(single.toString(), details.get(detail).toString(), detail);
+            }
+        }
+
+        Path p = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(4, 1);
+        List<PathDetail> refDetails = PathDetailsFromEdges.calcDetails(p, carManager, weighting,
+                List.of(STREET_NAME, STREET_REF), new PathDetailsBuilderFactory(), 0, graph).get(STREET_REF);
+        assertEquals(3, refDetails.size());
+        assertEquals("D", refDetails.get(0).getValue());
+        assertNull(refDetails.get(1).getValue());
+        assertEquals("B", refDetails.get(2).getValue());
+    }
+
     @Test
     public void testCalcEdgeIdDetails() {
         Weighting weighting = new SpeedWeighting(carAvSpeedEnc);
@@ -34,6 +34,7 @@ import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.shapes.GHPoint;
 import org.junit.jupiter.api.Test;
 
@@ -94,6 +95,53 @@ public class RoundTripRoutingTest {
         assertEquals(IntArrayList.from(5, 4, 3, 2, 1, 0), paths.get(1).calcNodes());
     }
 
+    @Test
+    public void testCalcPathsFromTree_simpleSquareGraph() {
+        BaseGraph g = createSquareGraph();
+        GHPoint start = new GHPoint(1, -1);
+        PMap hints = new PMap();
+        hints.putObject(Parameters.Algorithms.RoundTrip.POINTS, 2);
+        hints.putObject(Parameters.Algorithms.RoundTrip.DISTANCE, 670000);
+        LocationIndex locationIndex = new LocationIndexTree(g, new RAMDirectory()).prepareIndex();
+        Snap startSnap = RoundTripRouting.lookupStart(Collections.singletonList(start), new FiniteWeightFilter(weighting), locationIndex);
+        assertEquals(0, startSnap.getClosestNode());
+
+        QueryGraph queryGraph = QueryGraph.create(g, startSnap);
+        FlexiblePathCalculator pathCalculator = new FlexiblePathCalculator(queryGraph, new RoutingAlgorithmFactorySimple(),
+                weighting, new AlgorithmOptions().setAlgorithm(DIJKSTRA_BI).setTraversalMode(tMode));
+        RoundTripRouting.Result result = RoundTripRouting.calcPathsFromTree(startSnap, queryGraph, locationIndex, pathCalculator, tMode,
+                new RoundTripRouting.Params(hints, 180, 3));
+        // the waypoint is the reached node closest to the generated point south of the start and the first leg is
+        // taken from the shortest path tree
+        List<Path> paths = result.paths;
+        assertEquals(2, paths.size());
+        assertEquals(IntArrayList.from(0, 7, 6), paths.get(0).calcNodes());
+        assertEquals(IntArrayList.from(6, 5, 4, 3, 2, 1, 0), paths.get(1).calcNodes());
+        assertEquals(3, result.wayPoints.size());
+        assertEquals(-1, result.wayPoints.getLat(1), 1.e-6);
+        assertEquals(-1, result.wayPoints.getLon(1), 1.e-6);
+
+        Path expected = new DijkstraBidirectionRef(queryGraph, weighting, tMode).calcPath(0, 6);
+        assertEquals(expected.getWeight(), paths.get(0).getWeight(), 1.e-6);
+        assertEquals(expected.getDistance(), paths.get(0).getDistance(), 1.e-6);
+        assertEquals(expected.getTime(), paths.get(0).getTime());
+    }
+
+    @Test
+    public void testCalcPathsFromTree_maxVisitedNodes() {
+        BaseGraph g = createSquareGraph();
+        PMap hints = new PMap();
+        hints.putObject(Parameters.Algorithms.RoundTrip.POINTS, 2);
+        hints.putObject(Parameters.Algorithms.RoundTrip.DISTANCE, 670000);
+        LocationIndex locationIndex = new LocationIndexTree(g, new RAMDirectory()).prepareIndex();
+        Snap startSnap = RoundTripRouting.lookupStart(Collections.singletonList(new GHPoint(1, -1)), new FiniteWeightFilter(weighting), locationIndex);
+        QueryGraph queryGraph = QueryGraph.create(g, startSnap);
+        FlexiblePathCalculator pathCalculator = new FlexiblePathCalculator(queryGraph, new RoutingAlgorithmFactorySimple(),
+                weighting, new AlgorithmOptions().setAlgorithm(DIJKSTRA_BI).setTraversalMode(tMode).setMaxVisitedNodes(3));
+        assertThrows(MaximumNodesExceededException.class, () -> RoundTripRouting.calcPathsFromTree(startSnap, queryGraph,
+                locationIndex, pathCalculator, tMode, new RoundTripRouting.Params(hints, 180, 3)));
+    }
+
     @Test
     public void testCalcRoundTrip() {
         BaseGraph g = createTestGraph();
@@ -0,0 +1,199 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CustomizableCHTest {
+    private final DecimalEncodedValue car1SpeedEnc = new DecimalEncodedValueImpl("car1_speed", 5, 5, true);
+    private final DecimalEncodedValue car2SpeedEnc = new DecimalEncodedValueImpl("car2_speed", 5, 5, true);
+    private final DecimalEncodedValue turnCostEnc = TurnCost.create("car1", 1);
+    private final EncodingManager em = EncodingManager.start().add(car1SpeedEnc).add(car2SpeedEnc)
+            .addTurnCostEncodedValue(turnCostEnc).build();
+
+    /**
+     * Road networks have small separators, unlike the graphs of GHUtility.buildRandomGraph, so we use a grid with
+     * random gaps and diagonals.
+     */
+    private BaseGraph createRandomGrid(Random rnd, int size) {
+        BaseGraph graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++)
+                graph.getNodeAccess().setNode(row * size + col, 49.4 + (row + rnd.nextDouble() * 0.5) * 0.001, 9.7 + (col + rnd.nextDouble() * 0.5) * 0.001);
+        }
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                if (col + 1 < size && rnd.nextDouble() < 0.9)
+                    graph.edge(node, node + 1);
+                if (row + 1 < size && rnd.nextDouble() < 0.9)
+                    graph.edge(node, node + size);
+                if (col + 1 < size && row + 1 < size && rnd.nextDouble() < 0.1)
+                    graph.edge(node, node + size + 1);
+            }
+        }
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            iter.setDistance(GHUtility.getDistance(iter.getBaseNode(), iter.getAdjNode(), graph.getNodeAccess()));
+            // some edges are blocked in one or both directions
+            iter.set(car1SpeedEnc, rnd.nextDouble() < 0.05 ? 0 : 5 + rnd.nextDouble() * 100, rnd.nextDouble() < 0.1 ? 0 : 5 + rnd.nextDouble() * 100);
+            iter.set(car2SpeedEnc, rnd.nextDouble() < 0.05 ? 0 : 5 + rnd.nextDouble() * 100, rnd.nextDouble() < 0.1 ? 0 : 5 + rnd.nextDouble() * 100);
+        }
+        graph.freeze();
+        return graph;
+    }
+
+    @Test
+    public void nodeOrderIsPermutation() {
+        BaseGraph graph = createRandomGrid(new Random(123), 30);
+        int[] order = NestedDissection.calcOrder(graph);
+        assertArrayEquals(IntStream.range(0, graph.getNodes()).toArray(), Arrays.stream(order).sorted().toArray());
+    }
+
+    @Test
+    public void compareWithDijkstra() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph graph = createRandomGrid(rnd, 70);
+        int numNodes = graph.getNodes();
+        CustomizableCH cch = new CustomizableCH(graph, 2, 2, 1);
+        assertTrue(cch.getArcs() >= graph.getEdges() / 2, "seed: " + seed);
+
+        // both weightings use the same topology
+        for (DecimalEncodedValue speedEnc : new DecimalEncodedValue[]{car1SpeedEnc, car2SpeedEnc}) {
+            Weighting weighting = new SpeedWeighting(speedEnc);
+            RoutingCHGraph chGraph = cch.customize(speedEnc.getName(), weighting);
+            for (int i = 0; i < 200; i++) {
+                int from = rnd.nextInt(numNodes);
+                int to = rnd.nextInt(numNodes);
+                Path dijkstraPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+                RoutingAlgorithm chAlgo = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap());
+                Path chPath = chAlgo.calcPath(from, to);
+                String msg = "seed: " + seed + ", " + from + "->" + to;
+                assertEquals(dijkstraPath.isFound(), chPath.isFound(), msg);
+                if (!dijkstraPath.isFound())
+                    continue;
+                // the weights of the shortcuts are rounded
+                assertEquals(dijkstraPath.getWeight(), chPath.getWeight(), 1.e-1, msg);
+            }
+        }
+    }
+
+    @Test
+    public void cache() {
+        BaseGraph graph = createRandomGrid(new Random(42), 10);
+        CustomizableCH cch = new CustomizableCH(graph, 1, 1, 1);
+        RoutingCHGraph chGraph = cch.getOrCustomize("car1", "", () -> new SpeedWeighting(car1SpeedEnc));
+        assertSame(chGraph, cch.getOrCustomize("car1", "", () -> fail("must be cached")));
+        assertEquals(1, cch.getCustomizations());
+        cch.getOrCustomize("car2", "", () -> new SpeedWeighting(car2SpeedEnc));
+        // car1 was removed from the cache
+        assertNotSame(chGraph, cch.getOrCustomize("car1", "", () -> new SpeedWeighting(car1SpeedEnc)));
+        assertEquals(3, cch.getCustomizations());
+
+        Weighting turnCostWeighting = new SpeedWeighting(car1SpeedEnc, turnCostEnc, graph.getTurnCostStorage(), 40);
+        assertThrows(IllegalArgumentException.class, () -> cch.getOrCustomize("turn", "", () -> turnCostWeighting));
+    }
+
+    @Test
+    public void runningCustomizations() throws Exception {
+        BaseGraph graph = createRandomGrid(new Random(42), 10);
+        CustomizableCH cch = new CustomizableCH(graph, 1, 1, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Weighting> blockingSupplier = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new SpeedWeighting(car1SpeedEnc);
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<RoutingCHGraph> car1 = executor.submit(() -> cch.getOrCustomize("car1", "", blockingSupplier));
+            started.await();
+            // car1 is still running and must not be removed from the cache
+            RoutingCHGraph car2 = cch.getOrCustomize("car2", "", () -> new SpeedWeighting(car2SpeedEnc));
+            release.countDown();
+            assertSame(car1.get(), cch.getOrCustomize("car1", "", () -> fail("must be cached")));
+            assertEquals(2, cch.getCustomizations());
+            // now the cache size applies again, car2 is the least recently used one
+            cch.getOrCustomize("car3", "", () -> new SpeedWeighting(car1SpeedEnc));
+            assertNotSame(car2, cch.getOrCustomize("car2", "", () -> new SpeedWeighting(car2SpeedEnc)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void maxCustomizations() throws Exception {
+        BaseGraph graph = createRandomGrid(new Random(42), 10);
+        CustomizableCH cch = new CustomizableCH(graph, 1, 10, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<RoutingCHGraph> car1 = executor.submit(() -> cch.getOrCustomize("car1", "", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return new SpeedWeighting(car1SpeedEnc);
+            }));
+            started.await();
+            // the only permit is used, so we get no graph instead of waiting
+            assertNull(cch.getOrCustomize("car2", "", () -> fail("must not be customized")));
+            release.countDown();
+            assertNotNull(car1.get());
+            assertNotNull(cch.getOrCustomize("car2", "", () -> new SpeedWeighting(car2SpeedEnc)));
+            assertEquals(2, cch.getCustomizations());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
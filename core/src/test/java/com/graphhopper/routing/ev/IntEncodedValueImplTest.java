@@ -1,8 +1,12 @@
 package com.graphhopper.routing.ev;
 
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIteratorState;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static com.graphhopper.routing.ev.IntEncodedValueImpl.isValidEncodedValue;
 import static org.junit.jupiter.api.Assertions.*;
@@ -132,6 +136,53 @@ public class IntEncodedValueImplTest {
         }
     }
 
+    @Test
+    public void bulkDecoding() {
+        IntEncodedValue intEnc = new IntEncodedValueImpl("some_int", 20, true);
+        IntEncodedValue signedEnc = new IntEncodedValueImpl("signed", 6, 0, true, false);
+        IntEncodedValue offsetEnc = new IntEncodedValueImpl("offset", 6, -20, false, false);
+        DecimalEncodedValue decimalEnc = new DecimalEncodedValueImpl("decimal", 5, 0, 5, false, true, true);
+        BooleanEncodedValue boolEnc = new SimpleBooleanEncodedValue("bool", true);
+        EncodingManager em = EncodingManager.start().add(intEnc).add(signedEnc).add(offsetEnc).add(decimalEnc).add(boolEnc).build();
+        // the last flag int only uses some of its bytes, so both the fast and the fallback path are tested
+        assertNotEquals(0, em.getBytesForFlags() % 4);
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            EdgeIteratorState edge = graph.edge(i, i + 1);
+            edge.set(intEnc, rnd.nextInt(intEnc.getMaxStorableInt() + 1), rnd.nextInt(intEnc.getMaxStorableInt() + 1));
+            edge.set(signedEnc, rnd.nextInt(signedEnc.getMaxStorableInt() + 1));
+            edge.set(offsetEnc, rnd.nextInt(offsetEnc.getMaxStorableInt() + 21) - 20);
+            edge.set(decimalEnc, rnd.nextInt(32) * 5, rnd.nextBoolean() ? Double.POSITIVE_INFINITY : 10);
+            edge.set(boolEnc, rnd.nextBoolean(), rnd.nextBoolean());
+        }
+        EdgeIntAccess edgeIntAccess = graph.getEdgeAccess();
+        int fromEdge = 7, count = 80;
+        int[] ints = new int[count];
+        // the buffer may be larger than count
+        int[] buffer = new int[count + 5];
+        double[] decimals = new double[count];
+        boolean[] bools = new boolean[count];
+        for (boolean reverse : new boolean[]{false, true}) {
+            intEnc.getInts(reverse, fromEdge, count, edgeIntAccess, ints);
+            for (int i = 0; i < count; i++)
+                assertEquals(intEnc.getInt(reverse, fromEdge + i, edgeIntAccess), ints[i]);
+            signedEnc.getInts(reverse, fromEdge, count, edgeIntAccess, ints);
+            for (int i = 0; i < count; i++)
+                assertEquals(signedEnc.getInt(reverse, fromEdge + i, edgeIntAccess), ints[i]);
+            offsetEnc.getInts(reverse, fromEdge, count, edgeIntAccess, ints);
+            for (int i = 0; i < count; i++)
+                assertEquals(offsetEnc.getInt(reverse, fromEdge + i, edgeIntAccess), ints[i]);
+            decimalEnc.getDecimals(reverse, fromEdge, count, edgeIntAccess, buffer, decimals);
+            for (int i = 0; i < count; i++)
+                assertEquals(decimalEnc.getDecimal(reverse, fromEdge + i, edgeIntAccess), decimals[i]);
+            boolEnc.getBools(reverse, fromEdge, count, edgeIntAccess, buffer, bools);
+            for (int i = 0; i < count; i++)
+                assertEquals(boolEnc.getBool(reverse, fromEdge + i, edgeIntAccess), bools[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> intEnc.getInts(false, 90, 20, edgeIntAccess, new int[20]));
+    }
+
     private static ArrayEdgeIntAccess createIntAccess(int ints) {
         return new ArrayEdgeIntAccess(ints);
     }
@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.EncodingManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficSpeedOverlayTest {
+
+    @Test
+    public void setAndRemoveSpeeds() {
+        TrafficSpeedOverlay overlay = new TrafficSpeedOverlay(150);
+        assertEquals(150, overlay.getDecimal(6));
+        // edge keys in different segments
+        overlay.setSpeeds(IntArrayList.from(6, 7, 200_001), DoubleArrayList.from(30.55, 0, 80));
+        assertEquals(30.6, overlay.getDecimal(6), 1.e-9);
+        assertEquals(0, overlay.getDecimal(7));
+        assertEquals(80, overlay.getDecimal(200_001));
+        assertEquals(150, overlay.getDecimal(200_000));
+        assertEquals(150, overlay.getDecimal(2_000_000));
+        assertEquals(3, overlay.getSpeedCount());
+
+        overlay.setSpeeds(IntArrayList.from(7), DoubleArrayList.from(Double.NaN));
+        assertEquals(150, overlay.getDecimal(7));
+        assertEquals(2, overlay.getSpeedCount());
+
+        assertThrows(IllegalArgumentException.class, () -> overlay.setSpeeds(IntArrayList.from(6), DoubleArrayList.from(151)));
+        overlay.replaceSpeeds(IntArrayList.from(8), DoubleArrayList.from(20));
+        assertEquals(150, overlay.getDecimal(6));
+        assertEquals(20, overlay.getDecimal(8));
+        assertEquals(1, overlay.getSpeedCount());
+        overlay.clear();
+        assertEquals(0, overlay.getSpeedCount());
+        assertEquals(150, overlay.getDecimal(6));
+    }
+
+    @Test
+    public void lookup() {
+        TrafficSpeedOverlay overlay = new TrafficSpeedOverlay(150);
+        DecimalOverlayLookup lookup = overlay.extend(new EncodingManager.Builder().add(MaxSpeed.create()).build());
+        assertTrue(lookup.hasEncodedValue(MaxSpeed.KEY));
+        // the overlay is not an encoded value
+        assertFalse(lookup.hasEncodedValue(TrafficSpeedOverlay.KEY));
+        assertEquals(1, lookup.getEncodedValues().size());
+        assertSame(overlay, lookup.getDecimalOverlay(TrafficSpeedOverlay.KEY));
+        assertSame(overlay, DecimalOverlayLookup.getDecimalOverlay(lookup, TrafficSpeedOverlay.KEY));
+        assertNull(lookup.getDecimalOverlay(MaxSpeed.KEY));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.subnetwork;
+
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.PrecomputedSnapFilter;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnappableEdgeStorageTest {
+
+    @Test
+    public void testBuild() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BooleanEncodedValue subnetworkEnc = Subnetwork.create("car");
+        EncodingManager em = EncodingManager.start().add(speedEnc).add(subnetworkEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        // more than 32 edges so the bits of several ints are used
+        for (int i = 0; i < 70; i++) {
+            EdgeIteratorState edge = graph.edge(i, i + 1).setDistance(100);
+            if (i % 3 == 0)
+                edge.set(speedEnc, 10, 0);
+            else if (i % 3 == 1)
+                edge.set(speedEnc, 0, 10);
+            if (i % 7 == 0)
+                edge.set(subnetworkEnc, true);
+        }
+        SpeedWeighting weighting = new SpeedWeighting(speedEnc);
+        DefaultSnapFilter defaultFilter = new DefaultSnapFilter(weighting, subnetworkEnc);
+        SnappableEdgeStorage storage = new SnappableEdgeStorage(new RAMDirectory().create("test")).build(graph, weighting, subnetworkEnc);
+        assertEquals(70, storage.getEdgeCount());
+        PrecomputedSnapFilter filter = new PrecomputedSnapFilter(storage, defaultFilter);
+        for (int i = 0; i < 70; i++) {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(i, Integer.MIN_VALUE);
+            assertEquals(defaultFilter.accept(edge), filter.accept(edge), "edge " + i);
+            assertEquals(i % 3 != 2 && i % 7 != 0, storage.isSnappable(i), "edge " + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> storage.isSnappable(70));
+        storage.close();
+    }
+
+    @Test
+    public void testLoadExisting() {
+        String location = "./target/snappable-edges-test";
+        Helper.removeDir(new File(location));
+        new File(location).mkdirs();
+        SnappableEdgeStorage storage = new SnappableEdgeStorage(new RAMDirectory(location, true).create("test")).create(40);
+        storage.flush();
+        storage.close();
+
+        storage = new SnappableEdgeStorage(new RAMDirectory(location, true).create("test"));
+        assertTrue(storage.loadExisting());
+        assertEquals(40, storage.getEdgeCount());
+        assertFalse(storage.isSnappable(39));
+        storage.close();
+        Helper.removeDir(new File(location));
+    }
+}
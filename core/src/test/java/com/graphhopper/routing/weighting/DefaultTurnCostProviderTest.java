@@ -10,8 +10,7 @@ import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.util.*;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 import static com.graphhopper.json.Statement.If;
 import static com.graphhopper.json.Statement.Op.LIMIT;
@@ -111,6 +110,38 @@ public class DefaultTurnCostProviderTest {
         assertEquals(1, weighting.calcTurnWeight(edge25.getEdge(), 2, edge12.getEdge()), 0.01);
     }
 
+    @Test
+    public void precalculatedCostsMatchAngles() {
+        EncodingManager encodingManager = new EncodingManager.Builder().add(Orientation.create()).build();
+        DecimalEncodedValue orientationEnc = encodingManager.getDecimalEncodedValue(Orientation.KEY);
+        OrientationCalculator calc = new OrientationCalculator(orientationEnc);
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).withTurnCosts(true).create();
+        // a star with edges in all directions, every other edge points to the center
+        int edges = 72;
+        graph.getNodeAccess().setNode(0, 50, 10);
+        for (int i = 1; i <= edges; i++) {
+            double angle = Math.toRadians(i * 5);
+            graph.getNodeAccess().setNode(i, 50 + 0.01 * Math.sin(angle), 10 + 0.01 * Math.cos(angle));
+            handleWayTags(graph.getEdgeAccess(), calc, i % 2 == 0 ? graph.edge(0, i) : graph.edge(i, 0));
+        }
+        TurnCostsConfig tcConfig = new TurnCostsConfig().setUTurnCosts(40).
+                setRightTurnCosts(0.5).setSharpRightTurnCosts(1).
+                setLeftTurnCosts(6).setSharpLeftTurnCosts(12).setStraightCosts(0.1).setMinUTurnAngle(170);
+        DefaultTurnCostProvider tcp = new DefaultTurnCostProvider(null, orientationEnc, graph, tcConfig);
+        Set<Double> costs = new HashSet<>();
+        for (int in = 0; in < edges; in++) {
+            for (int out = 0; out < edges; out++) {
+                if (in == out)
+                    continue;
+                double expected = tcp.calcAngleCosts(tcp.calcChangeAngle(in, 0, out));
+                assertEquals(expected, tcp.calcTurnWeight(in, 0, out), in + "->" + out);
+                costs.add(expected);
+            }
+        }
+        // all turn classes occur
+        assertEquals(Set.of(0.1, 0.5, 1.0, 6.0, 12.0, 40.0), costs);
+    }
+
     EdgeIteratorState handleWayTags(EdgeIntAccess edgeIntAccess, OrientationCalculator calc, EdgeIteratorState edge) {
         return handleWayTags(edgeIntAccess, calc, edge, List.of());
     }
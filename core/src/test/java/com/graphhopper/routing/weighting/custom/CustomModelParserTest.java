@@ -350,4 +350,24 @@ class CustomModelParserTest {
         variables = findVariablesForEncodedValuesString(customModel, s -> new DefaultImportRegistry().createImportUnit(s) != null, s -> "");
         assertEquals(List.of("foot_access", "hike_rating", "road_access"), variables);
     }
+
+    @Test
+    public void usesVariableOutsideOfLimitTo() {
+        CustomModel customModel = new CustomModel();
+        customModel.addToSpeed(If("true", LIMIT, "traffic_speed"));
+        customModel.addToSpeed(If("road_class == PRIMARY", LIMIT, "0.9 * backward_traffic_speed"));
+        assertTrue(CustomModelParser.usesVariable(customModel, "traffic_speed"));
+        assertFalse(CustomModelParser.usesVariableOutsideOfLimitTo(customModel, "traffic_speed"));
+
+        customModel.addToPriority(If("traffic_speed < 30", MULTIPLY, "0.5"));
+        assertTrue(CustomModelParser.usesVariableOutsideOfLimitTo(customModel, "traffic_speed"));
+
+        customModel = new CustomModel();
+        customModel.addToSpeed(If("true", MULTIPLY, "0.01 * traffic_speed"));
+        assertTrue(CustomModelParser.usesVariableOutsideOfLimitTo(customModel, "traffic_speed"));
+
+        customModel = new CustomModel();
+        customModel.addToSpeed(If("backward_traffic_speed > 30", List.of(If("true", LIMIT, "100"))));
+        assertTrue(CustomModelParser.usesVariableOutsideOfLimitTo(customModel, "traffic_speed"));
+    }
 }
@@ -1,6 +1,8 @@
 package com.graphhopper.routing.weighting.custom;
 
 import com.bedatadriven.jackson.datatype.jts.JtsModule;
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.json.Statement;
 import com.graphhopper.reader.ReaderWay;
@@ -76,6 +78,32 @@ class CustomWeightingTest {
         assertEquals(36, weighting.calcEdgeWeight(edge, true), 1.e-6);
     }
 
+    @Test
+    public void trafficSpeed() {
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(1000).set(avSpeedEnc, 50, 100);
+        TrafficSpeedOverlay overlay = new TrafficSpeedOverlay(150);
+        CustomModel customModel = createSpeedCustomModel(avSpeedEnc).setDistanceInfluence(0d);
+        customModel.addToSpeed(If("true", LIMIT, TrafficSpeedOverlay.KEY));
+        Weighting weighting = CustomModelParser.createWeighting(overlay.extend(encodingManager), NO_TURN_COST_PROVIDER, customModel);
+        assertEquals(72, weighting.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(36, weighting.calcEdgeWeight(edge, true), 1.e-6);
+
+        // the weighting picks up the changed speeds without being created again
+        overlay.setSpeeds(IntArrayList.from(GHUtility.createEdgeKey(edge.getEdge(), true)), DoubleArrayList.from(25));
+        assertEquals(72, weighting.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(144, weighting.calcEdgeWeight(edge, true), 1.e-6);
+        overlay.clear();
+        assertEquals(36, weighting.calcEdgeWeight(edge, true), 1.e-6);
+
+        // conditions can use the speed of both directions
+        customModel = createSpeedCustomModel(avSpeedEnc).setDistanceInfluence(0d);
+        customModel.addToPriority(If("backward_" + TrafficSpeedOverlay.KEY + " < 30", MULTIPLY, "0.5"));
+        weighting = CustomModelParser.createWeighting(overlay.extend(encodingManager), NO_TURN_COST_PROVIDER, customModel);
+        overlay.setSpeeds(IntArrayList.from(edge.getEdgeKey()), DoubleArrayList.from(25));
+        assertEquals(72, weighting.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(72, weighting.calcEdgeWeight(edge, true), 1.e-6);
+    }
+
     @Test
     public void withPriority() {
         // 25km/h -> 144s per km, 50km/h -> 72s per km, 100km/h -> 36s per km
@@ -407,4 +407,36 @@ public class BaseGraphTest extends AbstractGraphStorageTester {
         assertThrows(IllegalArgumentException.class, () -> ne.setGeoRef(0, 1L << 39));
         graph.close();
     }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testVisitWayGeometry(boolean enabled3D) {
+        BaseGraph graph = createGHStorage(defaultGraphLoc, enabled3D);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0.01, 0.01, 10);
+        na.setNode(1, 0.02, 0.02, 20);
+        PointList pillars = new PointList(3, enabled3D);
+        for (int i = 0; i < 3; i++) {
+            if (enabled3D)
+                pillars.add(0.011 + i * 0.001, 0.012 + i * 0.001, 11 + i);
+            else
+                pillars.add(0.011 + i * 0.001, 0.012 + i * 0.001);
+        }
+        EdgeIteratorState edge = graph.edge(0, 1).setWayGeometry(pillars);
+        graph.edge(1, 0);
+        for (EdgeIteratorState state : new EdgeIteratorState[]{edge, edge.detach(true), graph.getEdgeIteratorState(1, 0)}) {
+            for (FetchMode mode : FetchMode.values()) {
+                PointList visited = new PointList(5, enabled3D);
+                state.visitWayGeometry(mode, PointVisitor.appendTo(visited));
+                assertEquals(state.fetchWayGeometry(mode), visited);
+
+                // appending keeps what is already in the list
+                PointList appended = new PointList(5, enabled3D);
+                appended.add(na, 1);
+                state.fetchWayGeometry(mode, appended);
+                assertEquals(visited.size() + 1, appended.size());
+            }
+        }
+        graph.close();
+    }
 }
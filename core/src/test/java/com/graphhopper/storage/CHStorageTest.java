@@ -6,8 +6,7 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Path;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class CHStorageTest {
 
@@ -23,6 +22,21 @@ class CHStorageTest {
         assertEquals(300, store.getLevel(store.toNodePointer(29)));
     }
 
+    @Test
+    void nodesByLevelDescending() {
+        CHStorage store = new CHStorage(new RAMDirectory(), "ch1", -1, false);
+        store.create(5, 0);
+        int[] levels = {2, 4, 0, 2, 1};
+        for (int node = 0; node < levels.length; node++)
+            store.setLevel(store.toNodePointer(node), levels[node]);
+        int[] nodes = store.getNodesByLevelDescending();
+        assertArrayEquals(new int[]{1, 0, 3, 4, 2}, nodes);
+        assertSame(nodes, store.getNodesByLevelDescending());
+        // changing a level invalidates the order
+        store.setLevel(store.toNodePointer(2), 5);
+        assertArrayEquals(new int[]{2, 1, 0, 3, 4}, store.getNodesByLevelDescending());
+    }
+
     @Test
     void createAndLoad(@TempDir Path path) {
         {
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountingDataAccessTest extends DataAccessTest {
+    @Override
+    public DataAccess createDataAccess(String name, int segmentSize) {
+        return new CountingDataAccess(new RAMDataAccess(name, directory, true, segmentSize));
+    }
+
+    @Test
+    public void testCountAccesses() {
+        CountingDataAccess da = (CountingDataAccess) createDataAccess(name);
+        da.create(128);
+        da.setInt(0, 1);
+        da.getInt(4);
+        assertArrayEquals(new long[]{2}, da.getAccessCounts());
+
+        da.ensureCapacity(3 * 128);
+        da.setShort(2 * 128 + 10, (short) 5);
+        da.getByte(2 * 128);
+        da.getInt(8);
+        assertArrayEquals(new long[]{3, 0, 2}, da.getAccessCounts());
+
+        // accesses from other threads are counted, too
+        Thread thread = new Thread(() -> da.getInt(128));
+        thread.start();
+        assertDoesNotThrow(() -> thread.join());
+        assertArrayEquals(new long[]{3, 1, 2}, da.getAccessCounts());
+
+        da.resetAccessCounts();
+        assertArrayEquals(new long[3], da.getAccessCounts());
+
+        // accesses that span two segments are counted for both
+        da.getInt(128 - 2);
+        da.setBytes(2 * 128 - 1, new byte[4], 4);
+        da.getBytes(10, new byte[4], 4);
+        assertArrayEquals(new long[]{2, 2, 1}, da.getAccessCounts());
+        da.close();
+    }
+
+    @Test
+    public void testConfigureInDirectory() {
+        GHDirectory dir = new GHDirectory(directory, DAType.RAM);
+        LinkedHashMap<String, String> map = new LinkedHashMap<>();
+        map.put("statistics.edges|geometry", "true");
+        map.put("statistics.nodes", "false");
+        dir.configure(map);
+        DataAccess edges = dir.create("edges").create(100);
+        DataAccess nodes = dir.create("nodes").create(100);
+        assertTrue(edges instanceof CountingDataAccess);
+        assertFalse(nodes instanceof CountingDataAccess);
+        edges.getInt(0);
+        assertEquals(1, dir.getAccessCounts().size());
+        assertArrayEquals(new long[]{1}, dir.getAccessCounts().get("edges"));
+        dir.close();
+    }
+}
@@ -1,10 +1,12 @@
 package com.graphhopper.storage;
 
+import com.graphhopper.util.Helper;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.LinkedHashMap;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class GHDirectoryTest {
 
@@ -33,4 +35,42 @@ class GHDirectoryTest {
         assertEquals(DAType.MMAP, dir.getDefaultType("nodes_ch_car", false));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testKeepHottestSegmentsOnHeap() {
+        File folder = new File("./target/tmp/ghdirectory");
+        Helper.removeDir(folder);
+        try {
+            GHDirectory dir = new GHDirectory(folder.getAbsolutePath(), DAType.MMAP);
+            dir.create();
+            DataAccess da = dir.create("edges", 128);
+            da.create(128 * 4);
+            for (int i = 0; i < 128; i++)
+                da.setInt(i * 4L, i);
+            da.flush();
+            dir.writeAccessCounts("edges", new long[]{5, 100, 0, 50});
+            dir.close();
+
+            dir = new GHDirectory(folder.getAbsolutePath(), DAType.MMAP);
+            LinkedHashMap<String, String> map = new LinkedHashMap<>();
+            map.put("heap.edges", "50");
+            dir.configure(map);
+            assertEquals(50, dir.getHeapPercentage("edges"));
+            assertEquals(0, dir.getHeapPercentage("nodes"));
+            MMapDataAccess loaded = (MMapDataAccess) dir.create("edges", 128);
+            assertTrue(loaded.loadExisting());
+            dir.loadMMap();
+            assertEquals(2, loaded.getHeapSegments());
+            assertTrue(loaded.isOnHeap(1));
+            assertTrue(loaded.isOnHeap(3));
+            assertFalse(loaded.isOnHeap(0));
+            for (int i = 0; i < 128; i++)
+                assertEquals(i, loaded.getInt(i * 4L));
+
+            dir.clear();
+            assertNull(dir.readAccessCounts("edges"));
+        } finally {
+            Helper.removeDir(folder);
+        }
+    }
+}
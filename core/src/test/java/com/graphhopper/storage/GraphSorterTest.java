@@ -0,0 +1,152 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.search.KVStorage.KValue;
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.graphhopper.util.Parameters.Details.STREET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphSorterTest {
+
+    @Test
+    public void testHilbertIndex() {
+        // the first level of the curve visits the quadrants in the order lower left, upper left, upper right, lower right
+        int half = 1 << 15;
+        assertEquals(0, GraphSorter.hilbertIndex(0, 0));
+        assertTrue(GraphSorter.hilbertIndex(0, 0) < GraphSorter.hilbertIndex(0, half));
+        assertTrue(GraphSorter.hilbertIndex(0, half) < GraphSorter.hilbertIndex(half, half));
+        assertTrue(GraphSorter.hilbertIndex(half, half) < GraphSorter.hilbertIndex(half, 0));
+        assertEquals((1L << 32) - 1, GraphSorter.hilbertIndex((1 << 16) - 1, 0));
+        // neighbouring cells on the curve are neighbours in the grid
+        for (int x = 0; x < 8; x++)
+            for (int y = 0; y < 8; y++) {
+                long index = GraphSorter.hilbertIndex(x, y);
+                if (index > 0) {
+                    boolean found = false;
+                    for (int[] d : new int[][]{{-1, 0}, {1, 0}, {0, -1}, {0, 1}})
+                        found |= x + d[0] >= 0 && y + d[1] >= 0 && GraphSorter.hilbertIndex(x + d[0], y + d[1]) == index - 1;
+                    assertTrue(found, x + "," + y);
+                }
+            }
+    }
+
+    @Test
+    public void testSort() {
+        BooleanEncodedValue accessEnc = new SimpleBooleanEncodedValue("access", true);
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 7);
+        EncodingManager em = EncodingManager.start().add(accessEnc).add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).set3D(true).withTurnCosts(true).create();
+        Random random = new Random(123);
+        int nodes = 200;
+        NodeAccess na = graph.getNodeAccess();
+        for (int node = 0; node < nodes; node++)
+            na.setNode(node, 50 + random.nextDouble(), 10 + random.nextDouble(), random.nextInt(1000));
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(nodes);
+            int to = random.nextInt(nodes);
+            if (from == to)
+                continue;
+            EdgeIteratorState edge = graph.edge(from, to).setDistance(random.nextInt(10_000))
+                    .set(accessEnc, random.nextBoolean(), random.nextBoolean())
+                    .set(speedEnc, random.nextInt(30), random.nextInt(30));
+            if (random.nextBoolean())
+                edge.setWayGeometry(Helper.createPointList3D(50 + random.nextDouble(), 10 + random.nextDouble(), 1,
+                        50 + random.nextDouble(), 10 + random.nextDouble(), 2));
+            if (random.nextBoolean())
+                edge.setKeyValues(Map.of(STREET_NAME, new KValue("street " + i)));
+        }
+        List<int[]> turnCosts = new ArrayList<>();
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator in = graph.createEdgeExplorer().setBaseNode(node);
+            while (in.next()) {
+                EdgeIterator out = graph.createEdgeExplorer().setBaseNode(node);
+                while (out.next()) {
+                    if (random.nextInt(4) == 0) {
+                        int cost = random.nextInt(7);
+                        graph.getTurnCostStorage().set(turnCostEnc, in.getEdge(), node, out.getEdge(), cost);
+                        turnCosts.add(new int[]{in.getEdge(), node, out.getEdge(), cost});
+                    }
+                }
+            }
+        }
+        List<String> edgesBefore = new ArrayList<>();
+        for (int edge = 0; edge < graph.getEdges(); edge++)
+            edgesBefore.add(toString(graph.getEdgeIteratorState(edge, Integer.MIN_VALUE), accessEnc, speedEnc));
+        List<String> nodesBefore = new ArrayList<>();
+        for (int node = 0; node < nodes; node++)
+            nodesBefore.add(na.getLat(node) + "," + na.getLon(node) + "," + na.getEle(node));
+        List<Set<Integer>> adjacencyBefore = getAdjacency(graph);
+
+        int[] newNodeIds = GraphSorter.calcHilbertNodeOrder(graph);
+        int[] newEdgeIds = GraphSorter.calcEdgeOrder(graph, newNodeIds);
+        graph.relabel(newNodeIds, newEdgeIds);
+
+        for (int node = 0; node < nodes; node++)
+            assertEquals(nodesBefore.get(node), na.getLat(newNodeIds[node]) + "," + na.getLon(newNodeIds[node]) + "," + na.getEle(newNodeIds[node]));
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(newEdgeIds[edge], Integer.MIN_VALUE);
+            assertEquals(edgesBefore.get(edge).replaceFirst("^\\d+-\\d+", ""), toString(state, accessEnc, speedEnc).replaceFirst("^\\d+-\\d+", ""));
+            assertEquals(newEdgeIds[edge], state.getEdge());
+        }
+        List<Set<Integer>> adjacencyAfter = getAdjacency(graph);
+        for (int node = 0; node < nodes; node++) {
+            Set<Integer> expected = new HashSet<>();
+            for (int edge : adjacencyBefore.get(node))
+                expected.add(newEdgeIds[edge]);
+            assertEquals(expected, adjacencyAfter.get(newNodeIds[node]));
+        }
+        for (int[] tc : turnCosts)
+            assertEquals(tc[3], graph.getTurnCostStorage().get(turnCostEnc, newEdgeIds[tc[0]], newNodeIds[tc[1]], newEdgeIds[tc[2]]), 1.e-6);
+        // the edges are sorted by their smaller node
+        int prevNode = -1;
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            int node = Math.min(state.getBaseNode(), state.getAdjNode());
+            assertTrue(node >= prevNode);
+            prevNode = node;
+        }
+    }
+
+    private static String toString(EdgeIteratorState edge, BooleanEncodedValue accessEnc, DecimalEncodedValue speedEnc) {
+        return edge.getBaseNode() + "-" + edge.getAdjNode() + " " + edge.getDistance() + " " + edge.get(accessEnc) + " "
+                + edge.getReverse(accessEnc) + " " + edge.get(speedEnc) + " " + edge.getReverse(speedEnc) + " "
+                + edge.fetchWayGeometry(FetchMode.ALL) + " " + edge.getName();
+    }
+
+    private static List<Set<Integer>> getAdjacency(BaseGraph graph) {
+        List<Set<Integer>> result = new ArrayList<>();
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            Set<Integer> edges = new HashSet<>();
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+                edges.add(iter.getEdge());
+            result.add(edges);
+        }
+        return result;
+    }
+}
@@ -59,4 +59,36 @@ public class MMapDataAccessTest extends DataAccessTest {
         assertEquals(123, da.getInt(7 * 4));
         da.close();
     }
+
+    @Test
+    public void testKeepOnHeap() {
+        MMapDataAccess da = (MMapDataAccess) createDataAccess(name);
+        da.create(300);
+        for (int i = 0; i < 75; i++)
+            da.setInt(i * 4L, i);
+        assertEquals(3, da.getSegments());
+        assertTrue(da.keepOnHeap(1));
+        assertFalse(da.keepOnHeap(1));
+        assertTrue(da.isOnHeap(1));
+        assertFalse(da.isOnHeap(0));
+        assertEquals(1, da.getHeapSegments());
+        for (int i = 0; i < 75; i++)
+            assertEquals(i, da.getInt(i * 4L));
+
+        // writes go to the heap copy, also across segment borders, and are written back on flush
+        da.setInt(40 * 4L, -40);
+        da.setInt(126, 12345678);
+        assertEquals(-40, da.getInt(40 * 4L));
+        assertEquals(12345678, da.getInt(126));
+        da.flush();
+        da.close();
+
+        da = new MMapDataAccess(name, directory, false, 128);
+        assertTrue(da.loadExisting());
+        assertTrue(da.keepOnHeap(1));
+        assertEquals(-40, da.getInt(40 * 4L));
+        assertEquals(12345678, da.getInt(126));
+        assertEquals(70, da.getInt(70 * 4L));
+        da.close();
+    }
 }
@@ -24,10 +24,7 @@ import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.IntStream;
 
 import static com.graphhopper.util.GHUtility.getEdge;
@@ -175,6 +172,44 @@ public class TurnCostStorageTest {
         assertEquals(0, turnCostStorage.get(carEnc, edge32, 2, edge20));
     }
 
+    @Test
+    public void lookupAfterFreeze() {
+        BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
+        // a star with many turn cost entries at node 0 and a few at the other nodes
+        int edges = 20;
+        for (int i = 1; i <= edges; i++)
+            g.edge(0, i).setDistance(1);
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        Random rnd = new Random(123);
+        Map<List<Integer>, Double> expected = new HashMap<>();
+        for (int i = 0; i < 150; i++) {
+            int from = rnd.nextInt(edges), to = rnd.nextInt(edges);
+            int via = rnd.nextDouble() < 0.8 ? 0 : from + 1;
+            double cost = rnd.nextInt(3);
+            turnCostStorage.set(carTurnCostEnc, from, via, to, cost);
+            expected.put(Arrays.asList(from, via, to), cost);
+        }
+        g.freeze();
+        assertEquals(expected.size(), turnCostStorage.getTurnCostsCount());
+        // entries that are added after the freeze are prepended to the sorted entries
+        turnCostStorage.set(carTurnCostEnc, 3, 0, 3, 2);
+        expected.put(Arrays.asList(3, 0, 3), 2.0);
+        turnCostStorage.set(carTurnCostEnc, 7, 8, 7, 1);
+        expected.put(Arrays.asList(7, 8, 7), 1.0);
+
+        for (int via = 0; via <= edges; via++) {
+            for (int from = 0; from < edges; from++) {
+                for (int to = 0; to < edges; to++)
+                    assertEquals(expected.getOrDefault(Arrays.asList(from, via, to), 0.0), turnCostStorage.get(carTurnCostEnc, from, via, to), from + "-" + via + "-" + to);
+            }
+        }
+        Map<List<Integer>, Double> iterated = new HashMap<>();
+        TurnCostStorage.Iterator iterator = turnCostStorage.getAllTurnCosts();
+        while (iterator.next())
+            iterated.put(Arrays.asList(iterator.getFromEdge(), iterator.getViaNode(), iterator.getToEdge()), iterator.getCost(carTurnCostEnc));
+        assertEquals(expected, iterated);
+    }
+
     @Test
     public void testIterateEmptyStore() {
         BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
@@ -35,6 +35,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -679,4 +680,139 @@ public class LocationIndexTreeTest {
                     "1, 78, 1, PILLAR"), output);
         }
     }
+
+    @Test
+    public void parallelConstructionMatchesObjectTree() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.5, false, speedEnc, 60.0, 0.7, 0.0);
+        // some edges get a geometry that leaves their tiles and comes back
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (rnd.nextBoolean()) {
+                NodeAccess na = graph.getNodeAccess();
+                double lat = na.getLat(iter.getBaseNode()), lon = na.getLon(iter.getBaseNode());
+                iter.setWayGeometry(Helper.createPointList(lat + 0.003, lon, lat + 0.003, lon + 0.003, lat, lon + 0.0005));
+            }
+        }
+        graph.freeze();
+
+        LocationIndexTree parallel = createIndexNoPrepare(graph, 50).setThreads(4);
+        parallel.prepareIndex();
+        LocationIndexTree objectTree = createIndexNoPrepare(graph, 50);
+        objectTree.lineIntIndex.setMinResolutionInMeter(50);
+        objectTree.lineIntIndex.store(objectTree.prepareInMemConstructionIndex(graph.getBounds(), EdgeFilter.ALL_EDGES));
+        assertTrue(parallel.lineIntIndex.getLeafs() > 10);
+        assertEquals(objectTree.lineIntIndex.getLeafs(), parallel.lineIntIndex.getLeafs());
+
+        BBox bounds = graph.getBounds();
+        for (int i = 0; i < 100; i++) {
+            double lat = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+            BBox query = new BBox(lon, lon + 0.002, lat, lat + 0.002);
+            assertEquals(queryEdges(objectTree, query), queryEdges(parallel, query));
+            Snap expected = objectTree.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            Snap snap = parallel.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            assertEquals(expected.getClosestEdge().getEdge(), snap.getClosestEdge().getEdge());
+            assertEquals(expected.getQueryDistance(), snap.getQueryDistance(), 1.e-6);
+        }
+    }
+
+    @Test
+    public void nearestEdgesMatchBruteForce() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(graph, rnd, 300, 2.5, false, speedEnc, 60.0, 0.7, 0.7);
+        graph.freeze();
+        LocationIndexTree index = createIndexNoPrepare(graph, 50);
+        index.prepareIndex();
+
+        BBox bounds = graph.getBounds();
+        for (int i = 0; i < 50; i++) {
+            double lat = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+            List<Double> expected = new ArrayList<>();
+            AllEdgesIterator iter = graph.getAllEdges();
+            while (iter.next()) {
+                Snap snap = new Snap(lat, lon);
+                EdgeIteratorState edge = graph.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode());
+                index.traverseEdge(lat, lon, edge, (node, normedDist, wayIndex, pos) -> {
+                    if (normedDist < snap.getQueryDistance()) {
+                        snap.setQueryDistance(normedDist);
+                        snap.setClosestNode(node);
+                        snap.setWayIndex(wayIndex);
+                        snap.setSnappedPosition(pos);
+                    }
+                });
+                snap.setClosestEdge(edge);
+                snap.calcSnappedPoint(DistancePlaneProjection.DIST_PLANE);
+                expected.add(DistancePlaneProjection.DIST_PLANE.calcDist(lat, lon, snap.getSnappedPoint().lat, snap.getSnappedPoint().lon));
+            }
+            Collections.sort(expected);
+
+            List<Snap> nearest = index.findKNearest(lat, lon, 5, EdgeFilter.ALL_EDGES);
+            assertEquals(5, nearest.size());
+            for (int k = 0; k < 5; k++)
+                assertEquals(expected.get(k), nearest.get(k).getQueryDistance(), 1.e-6);
+
+            List<Snap> withinRadius = index.findWithinRadius(lat, lon, 300, EdgeFilter.ALL_EDGES);
+            assertEquals(expected.stream().filter(d -> d <= 300).count(), withinRadius.size());
+            for (int k = 0; k < withinRadius.size(); k++)
+                assertEquals(expected.get(k), withinRadius.get(k).getQueryDistance(), 1.e-6);
+        }
+    }
+
+    @Test
+    public void defaultNearestEdgeQueries() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(graph, rnd, 300, 2.5, false, speedEnc, 60.0, 0.7, 0.7);
+        graph.freeze();
+        LocationIndexTree tree = createIndexNoPrepare(graph, 50);
+        // the default methods snap with findClosest, which only searches the tiles around the query point
+        tree.setMaxRegionSearch(10);
+        tree.prepareIndex();
+        // only implements the abstract methods, so the default implementations are used
+        LocationIndex index = new LocationIndex() {
+            @Override
+            public Snap findClosest(double lat, double lon, EdgeFilter edgeFilter) {
+                return tree.findClosest(lat, lon, edgeFilter);
+            }
+
+            @Override
+            public void query(TileFilter tileFilter, Visitor function) {
+                tree.query(tileFilter, function);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        BBox bounds = graph.getBounds();
+        for (int i = 0; i < 20; i++) {
+            double lat = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+            // the k-th edge is not unique when several edges snap to the same tower node
+            assertEquals(distances(tree.findKNearest(lat, lon, 5, EdgeFilter.ALL_EDGES)),
+                    distances(index.findKNearest(lat, lon, 5, EdgeFilter.ALL_EDGES)));
+            assertEquals(edgesAndDistances(tree.findWithinRadius(lat, lon, 300, EdgeFilter.ALL_EDGES)),
+                    edgesAndDistances(index.findWithinRadius(lat, lon, 300, EdgeFilter.ALL_EDGES)));
+        }
+    }
+
+    private static List<Long> distances(List<Snap> snaps) {
+        return snaps.stream().map(s -> Math.round(s.getQueryDistance() * 100)).collect(Collectors.toList());
+    }
+
+    private static List<String> edgesAndDistances(List<Snap> snaps) {
+        // edges with the same distance can be returned in any order
+        return snaps.stream().map(s -> Math.round(s.getQueryDistance() * 100) + ":" + s.getClosestEdge().getEdge()).sorted().collect(Collectors.toList());
+    }
+
+    private static Set<Integer> queryEdges(LocationIndex index, BBox bbox) {
+        Set<Integer> edges = new TreeSet<>();
+        index.query(bbox, edges::add);
+        return edges;
+    }
 }
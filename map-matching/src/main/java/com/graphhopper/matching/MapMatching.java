@@ -45,8 +45,6 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
-
 /**
  * This class matches real world GPX entries to the digital road network stored
  * in GraphHopper. The Viterbi algorithm is used to compute the most likely
@@ -276,49 +274,35 @@ public class MapMatching {
     }
 
     public List<Snap> findCandidateSnaps(final double queryLat, final double queryLon) {
+        // The candidates are the snaps within the smallest square around the query point (growing by sigma per step)
+        // that contains any snap. The largest square (50 steps) fits into a circle with radius 50 * sigma * sqrt(2),
+        // so a single radius query finds all snaps that can be candidates.
+        List<Snap> snaps = locationIndex.findWithinRadius(queryLat, queryLon, 50 * measurementErrorSigma * Math.sqrt(2), router.getSnapFilter());
+        if (snaps.isEmpty())
+            return Collections.emptyList();
         double rLon = (measurementErrorSigma * 360.0 / DistanceCalcEarth.DIST_EARTH.calcCircumference(queryLat));
         double rLat = measurementErrorSigma / DistanceCalcEarth.METERS_PER_DEGREE;
-        Envelope envelope = new Envelope(queryLon, queryLon, queryLat, queryLat);
-        for (int i = 0; i < 50; i++) {
-            envelope.expandBy(rLon, rLat);
-            List<Snap> snaps = findCandidateSnapsInBBox(queryLat, queryLon, BBox.fromEnvelope(envelope));
-            if (!snaps.isEmpty()) {
-                return snaps;
+        for (int i = 1; i <= 50; i++) {
+            Envelope envelope = new Envelope(queryLon, queryLon, queryLat, queryLat);
+            envelope.expandBy(i * rLon, i * rLat);
+            List<Snap> snapsInBBox = filterSnapsInBBox(snaps, BBox.fromEnvelope(envelope));
+            if (!snapsInBBox.isEmpty()) {
+                return snapsInBBox;
             }
         }
         return Collections.emptyList();
     }
 
-    private List<Snap> findCandidateSnapsInBBox(double queryLat, double queryLon, BBox queryShape) {
-        EdgeFilter edgeFilter = router.getSnapFilter();
-        List<Snap> snaps = new ArrayList<>();
-        IntHashSet seenEdges = new IntHashSet();
+    private static List<Snap> filterSnapsInBBox(List<Snap> snaps, BBox queryShape) {
+        List<Snap> result = new ArrayList<>();
         IntHashSet seenNodes = new IntHashSet();
-        locationIndex.query(queryShape, edgeId -> {
-            EdgeIteratorState edge = graph.getEdgeIteratorStateForKey(edgeId * 2);
-            if (seenEdges.add(edgeId) && edgeFilter.accept(edge)) {
-                Snap snap = new Snap(queryLat, queryLon);
-                locationIndex.traverseEdge(queryLat, queryLon, edge, (node, normedDist, wayIndex, pos) -> {
-                    if (normedDist < snap.getQueryDistance()) {
-                        snap.setQueryDistance(normedDist);
-                        snap.setClosestNode(node);
-                        snap.setWayIndex(wayIndex);
-                        snap.setSnappedPosition(pos);
-                    }
-                });
-                double dist = DIST_PLANE.calcDenormalizedDist(snap.getQueryDistance());
-                snap.setClosestEdge(edge);
-                snap.setQueryDistance(dist);
-                if (snap.isValid() && (snap.getSnappedPosition() != Snap.Position.TOWER || seenNodes.add(snap.getClosestNode()))) {
-                    snap.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
-                    if (queryShape.contains(snap.getSnappedPoint().lat, snap.getSnappedPoint().lon)) {
-                        snaps.add(snap);
-                    }
-                }
+        for (Snap snap : snaps) {
+            if (queryShape.contains(snap.getSnappedPoint().lat, snap.getSnappedPoint().lon)
+                    && (snap.getSnappedPosition() != Snap.Position.TOWER || seenNodes.add(snap.getClosestNode()))) {
+                result.add(snap);
             }
-        });
-        snaps.sort(Comparator.comparingDouble(Snap::getQueryDistance));
-        return snaps;
+        }
+        return result;
     }
 
     /**
@@ -18,14 +18,19 @@
 
 package com.graphhopper.jackson;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Locale;
@@ -41,30 +46,80 @@ import java.util.Locale;
  * @author Peter Karich
  */
 public class ResponsePathSerializer {
+    private static final ObjectMapper OBJECT_MAPPER = Jackson.newObjectMapper();
 
     public static String encodePolyline(PointList poly, boolean includeElevation, double multiplier) {
-        if (multiplier < 1)
-            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
-
+        PolylineReader reader = new PolylineReader(poly, includeElevation, multiplier);
         StringBuilder sb = new StringBuilder(Math.max(20, poly.size() * 3));
-        int size = poly.size();
-        int prevLat = 0;
-        int prevLon = 0;
-        int prevEle = 0;
-        for (int i = 0; i < size; i++) {
-            int num = (int) Math.round(poly.getLat(i) * multiplier);
+        for (int i = 0; i < poly.size(); i++)
+            reader.encodeNextPoint(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Encodes the polyline point by point while it is read, which avoids creating the String for long routes, see
+     * {@link JsonGenerator#writeString(Reader, int)}.
+     */
+    static class PolylineReader extends Reader {
+        private final PointList poly;
+        private final boolean includeElevation;
+        private final double multiplier;
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingIndex;
+        private int pointIndex;
+        private int prevLat;
+        private int prevLon;
+        private int prevEle;
+
+        PolylineReader(PointList poly, boolean includeElevation, double multiplier) {
+            if (multiplier < 1)
+                throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
+            this.poly = poly;
+            this.includeElevation = includeElevation;
+            this.multiplier = multiplier;
+        }
+
+        /**
+         * Appends the next point to the given StringBuilder.
+         *
+         * @return false if all points were already encoded
+         */
+        boolean encodeNextPoint(StringBuilder sb) {
+            if (pointIndex == poly.size())
+                return false;
+            int num = (int) Math.round(poly.getLat(pointIndex) * multiplier);
             encodeNumber(sb, num - prevLat);
             prevLat = num;
-            num = (int) Math.round(poly.getLon(i) * multiplier);
+            num = (int) Math.round(poly.getLon(pointIndex) * multiplier);
             encodeNumber(sb, num - prevLon);
             prevLon = num;
             if (includeElevation) {
-                num = (int) Math.round(poly.getEle(i) * 100);
+                num = (int) Math.round(poly.getEle(pointIndex) * 100);
                 encodeNumber(sb, num - prevEle);
                 prevEle = num;
             }
+            pointIndex++;
+            return true;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int count = 0;
+            while (count < length) {
+                if (pendingIndex == pending.length()) {
+                    pending.setLength(0);
+                    pendingIndex = 0;
+                    if (!encodeNextPoint(pending))
+                        break;
+                }
+                buffer[offset + count++] = pending.charAt(pendingIndex++);
+            }
+            return count == 0 && length > 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
         }
-        return sb.toString();
     }
 
     private static void encodeNumber(StringBuilder sb, int num) {
@@ -84,42 +139,95 @@ public class ResponsePathSerializer {
     public record Info(List<String> copyrights, long took, String roadDataTimestamp) {
     }
 
+    /**
+     * @return the same JSON as {@link #jsonResponse} as a tree, so it can be modified before it is serialized
+     */
     public static ObjectNode jsonObject(GHResponse ghRsp, Info info, boolean enableInstructions,
                                         boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-        json.putPOJO("hints", ghRsp.getHints().toMap());
-        json.putPOJO("info", info);
-        ArrayNode jsonPathList = json.putArray("paths");
-        for (ResponsePath p : ghRsp.getAll()) {
-            ObjectNode jsonPath = jsonPathList.addObject();
-            jsonPath.put("distance", Helper.round(p.getDistance(), 3));
-            jsonPath.put("weight", Helper.round6(p.getRouteWeight()));
-            jsonPath.put("time", p.getTime());
-            jsonPath.put("transfers", p.getNumChanges());
-            if (!p.getDescription().isEmpty()) {
-                jsonPath.putPOJO("description", p.getDescription());
-            }
+        return OBJECT_MAPPER.valueToTree(jsonResponse(ghRsp, info, enableInstructions, calcPoints, enableElevation, pointsEncoded, pointsMultiplier));
+    }
+
+    /**
+     * @return an object that Jackson serializes to the JSON response of the routing API. It writes directly to the
+     * JsonGenerator instead of creating a tree first, which is much cheaper for long routes.
+     */
+    public static JsonResponse jsonResponse(GHResponse ghRsp, Info info, boolean enableInstructions,
+                                            boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
+        return new JsonResponse(ghRsp, info, enableInstructions, calcPoints, enableElevation, pointsEncoded, pointsMultiplier);
+    }
+
+    @JsonSerialize(using = JsonResponseSerializer.class)
+    public record JsonResponse(GHResponse ghRsp, Info info, boolean enableInstructions, boolean calcPoints,
+                               boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
+    }
+
+    public static class JsonResponseSerializer extends JsonSerializer<JsonResponse> {
+        @Override
+        public void serialize(JsonResponse rsp, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            provider.defaultSerializeField("hints", rsp.ghRsp().getHints().toMap(), gen);
+            provider.defaultSerializeField("info", rsp.info(), gen);
+            gen.writeArrayFieldStart("paths");
+            for (ResponsePath p : rsp.ghRsp().getAll()) {
+                gen.writeStartObject();
+                gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+                gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+                gen.writeNumberField("time", p.getTime());
+                gen.writeNumberField("transfers", p.getNumChanges());
+                if (!p.getDescription().isEmpty())
+                    provider.defaultSerializeField("description", p.getDescription(), gen);
 
-            // for points and snapped_waypoints:
-            jsonPath.put("points_encoded", pointsEncoded);
-            if (pointsEncoded) jsonPath.put("points_encoded_multiplier", pointsMultiplier);
+                // for points and snapped_waypoints:
+                gen.writeBooleanField("points_encoded", rsp.pointsEncoded());
+                if (rsp.pointsEncoded())
+                    gen.writeNumberField("points_encoded_multiplier", rsp.pointsMultiplier());
 
-            if (calcPoints) {
-                jsonPath.putPOJO("bbox", p.calcBBox2D());
-                jsonPath.putPOJO("points", pointsEncoded ? encodePolyline(p.getPoints(), enableElevation, pointsMultiplier) : p.getPoints().toLineString(enableElevation));
-                if (enableInstructions) {
-                    jsonPath.putPOJO("instructions", p.getInstructions());
+                if (rsp.calcPoints()) {
+                    provider.defaultSerializeField("bbox", p.calcBBox2D(), gen);
+                    gen.writeFieldName("points");
+                    writePoints(gen, p.getPoints(), rsp);
+                    if (rsp.enableInstructions())
+                        provider.defaultSerializeField("instructions", p.getInstructions(), gen);
+                    provider.defaultSerializeField("legs", p.getLegs(), gen);
+                    provider.defaultSerializeField("details", p.getPathDetails(), gen);
+                    gen.writeNumberField("ascend", p.getAscend());
+                    gen.writeNumberField("descend", p.getDescend());
                 }
-                jsonPath.putPOJO("legs", p.getLegs());
-                jsonPath.putPOJO("details", p.getPathDetails());
-                jsonPath.put("ascend", p.getAscend());
-                jsonPath.put("descend", p.getDescend());
+                gen.writeFieldName("snapped_waypoints");
+                writePoints(gen, p.getWaypoints(), rsp);
+                if (p.getFare() != null)
+                    gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+                gen.writeEndObject();
             }
-            jsonPath.putPOJO("snapped_waypoints", pointsEncoded ? encodePolyline(p.getWaypoints(), enableElevation, pointsMultiplier) : p.getWaypoints().toLineString(enableElevation));
-            if (p.getFare() != null) {
-                jsonPath.put("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+
+        private static void writePoints(JsonGenerator gen, PointList points, JsonResponse rsp) throws IOException {
+            if (rsp.pointsEncoded()) {
+                gen.writeString(new PolylineReader(points, rsp.enableElevation(), rsp.pointsMultiplier()), -1);
+                return;
             }
+            // the same as serializing PointList.toLineString, but without creating the coordinates
+            gen.writeStartObject();
+            gen.writeStringField("type", "LineString");
+            gen.writeArrayFieldStart("coordinates");
+            for (int i = 0; i < points.size(); i++)
+                writeCoordinate(gen, points, i, rsp.enableElevation());
+            // special case as just 1 point is not supported in the specification #1412
+            if (points.size() == 1)
+                writeCoordinate(gen, points, 0, rsp.enableElevation());
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+
+        private static void writeCoordinate(JsonGenerator gen, PointList points, int index, boolean includeElevation) throws IOException {
+            gen.writeStartArray();
+            gen.writeNumber(Helper.round6(points.getLon(index)));
+            gen.writeNumber(Helper.round6(points.getLat(index)));
+            if (includeElevation)
+                gen.writeNumber(Helper.round2(points.getEle(index)));
+            gen.writeEndArray();
         }
-        return json;
     }
 }
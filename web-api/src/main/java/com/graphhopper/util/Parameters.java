@@ -83,6 +83,7 @@ public class Parameters {
             public static final String DISTANCE = ROUND_TRIP + ".distance";
             public static final String SEED = ROUND_TRIP + ".seed";
             public static final String POINTS = ROUND_TRIP + ".points";
+            public static final String SHORTEST_PATH_TREE = ROUND_TRIP + ".shortest_path_tree";
             public static final String INIT_MAX_RETRIES = ROUTING_INIT_PREFIX + ROUND_TRIP + ".max_retries";
         }
     }
@@ -99,6 +100,15 @@ public class Parameters {
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
         public static final String TIMEOUT_MS = "timeout_ms";
         public static final String INIT_TIMEOUT_MS = ROUTING_INIT_PREFIX + "timeout_ms";
+        /**
+         * if true the shortest path trees of isochrone and spt requests can be calculated with algorithm=phast
+         */
+        public static final String INIT_PHAST = ROUTING_INIT_PREFIX + "phast";
+        public static final String CM_VERSION = "cm_version";
+        /**
+         * the number of threads used to calculate the legs of a route with via points concurrently
+         */
+        public static final String INIT_VIA_LEG_THREADS = ROUTING_INIT_PREFIX + "via_leg_threads";
         /**
          * if true the response will contain turn instructions
          */
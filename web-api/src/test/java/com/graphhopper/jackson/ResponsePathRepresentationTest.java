@@ -17,10 +17,21 @@
  */
 package com.graphhopper.jackson;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.details.PathDetail;
 import org.junit.jupiter.api.Test;
 
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -79,4 +90,64 @@ public class ResponsePathRepresentationTest {
     public void testEncode1e6() {
         assertEquals("ohdfzAgt}bVoEL", ResponsePathSerializer.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testPolylineReader() throws Exception {
+        Random rnd = new Random(1);
+        PointList points = new PointList(1000, true);
+        for (int i = 0; i < 1000; i++)
+            points.add(50 + rnd.nextDouble(), 10 + rnd.nextDouble(), rnd.nextDouble() * 100);
+        for (boolean elevation : new boolean[]{true, false}) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[7];
+            try (Reader reader = new ResponsePathSerializer.PolylineReader(points, elevation, 1e6)) {
+                for (int count; (count = reader.read(buffer, 0, buffer.length)) >= 0; )
+                    sb.append(buffer, 0, count);
+            }
+            assertEquals(ResponsePathSerializer.encodePolyline(points, elevation, 1e6), sb.toString());
+        }
+    }
+
+    @Test
+    public void testJsonResponse() throws Exception {
+        ResponsePath path = new ResponsePath().setPoints(Helper.createPointList3D(50, 10, 1, 50.5, 10.5, 2)).setWaypoints(Helper.createPointList3D(50, 10, 1, 51, 11, Double.NaN));
+        path.setDistance(1234.5678).setTime(123456).setRouteWeight(1.2345678).setAscend(12.5).setDescend(3);
+        path.setDescription(List.of("a", "b"));
+        PathDetail detail = new PathDetail(12.5);
+        detail.setFirst(0);
+        detail.setLast(1);
+        path.addPathDetails(Collections.singletonMap("max_speed", List.of(detail)));
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().putObject("some_hint", 3);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of("GraphHopper"), 12, "2024-01-01");
+
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonResponse(rsp, info, false, true, false, true, 1e6)));
+        assertEquals("{\"some_hint\":3}", json.get("hints").toString());
+        assertEquals("{\"copyrights\":[\"GraphHopper\"],\"took\":12,\"road_data_timestamp\":\"2024-01-01\"}", json.get("info").toString());
+        JsonNode jsonPath = json.get("paths").get(0);
+        assertEquals(List.of("distance", "weight", "time", "transfers", "description", "points_encoded", "points_encoded_multiplier",
+                "bbox", "points", "legs", "details", "ascend", "descend", "snapped_waypoints"), fieldNames(jsonPath));
+        assertEquals(1234.568, jsonPath.get("distance").asDouble(), 1.e-6);
+        assertEquals(1.234568, jsonPath.get("weight").asDouble(), 1.e-6);
+        assertEquals("[10.0,50.0,10.5,50.5]", jsonPath.get("bbox").toString());
+        assertEquals(ResponsePathSerializer.encodePolyline(path.getPoints(), false, 1e6), jsonPath.get("points").asText());
+        assertEquals("{\"max_speed\":[[0,1,12.5]]}", jsonPath.get("details").toString());
+
+        // jsonObject is built from the same writer
+        assertEquals(json, objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonObject(rsp, info, false, true, false, true, 1e6))));
+
+        json = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonResponse(rsp, info, false, true, true, false, 1e6)));
+        jsonPath = json.get("paths").get(0);
+        assertEquals("{\"type\":\"LineString\",\"coordinates\":[[10.0,50.0,1.0],[10.5,50.5,2.0]]}", jsonPath.get("points").toString());
+        assertEquals(List.of("distance", "weight", "time", "transfers", "description", "points_encoded", "snapped_waypoints"),
+                fieldNames(objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonResponse(rsp, info, false, false, false, false, 1e6))).get("paths").get(0)));
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
 }
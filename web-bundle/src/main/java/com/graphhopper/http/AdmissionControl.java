@@ -0,0 +1,230 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.util.PMap;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.graphhopper.util.Parameters.Routing.INIT_TIMEOUT_MS;
+import static com.graphhopper.util.Parameters.Routing.TIMEOUT_MS;
+
+/**
+ * Runs the requests of expensive endpoints in separate lanes, so a burst of e.g. isochrone or flexible route requests
+ * cannot occupy all Jetty threads and starve the cheap CH requests. Every lane has its own fixed number of threads
+ * (admission.&lt;lane&gt;.threads) and the waiting requests are rejected with 503 and a Retry-After header if the
+ * expected waiting time, estimated from the current queue and the average request duration, exceeds the budget of the
+ * lane (admission.&lt;lane&gt;.max_wait_ms) or the timeout_ms of the request. The time a request waited is subtracted
+ * from its timeout_ms, which defaults to routing.timeout_ms, so the routing stops at the same deadline as without
+ * waiting. A lane without threads runs the requests on the Jetty thread like before.
+ */
+public class AdmissionControl implements Managed {
+    public static final String ROUTE = "route";
+    public static final String ROUTE_FLEX = "route_flex";
+    public static final String ISOCHRONE = "isochrone";
+    public static final String MATCH = "match";
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+    private final GraphHopperConfig config;
+    private final long serverTimeoutMillis;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    public AdmissionControl(GraphHopperConfig config) {
+        this.config = config;
+        this.serverTimeoutMillis = config.getLong(INIT_TIMEOUT_MS, Long.MAX_VALUE);
+    }
+
+    /**
+     * Resumes the specified AsyncResponse with the result of the task or with the exception it throws. The task can
+     * read the remaining timeout from the hints.
+     */
+    public void submit(String laneName, PMap hints, AsyncResponse asyncResponse, Supplier<Response> task) {
+        Lane lane = lanes.computeIfAbsent(laneName, this::createLane);
+        if (lane.executor == null) {
+            run(asyncResponse, task);
+            return;
+        }
+
+        long timeoutMillis = Math.min(serverTimeoutMillis, hints.getLong(TIMEOUT_MS, serverTimeoutMillis));
+        long budgetMillis = Math.min(lane.maxWaitMillis, timeoutMillis);
+        // reserve the place in the lane first, so concurrent requests cannot exceed max_queue
+        int waiting = lane.pending.incrementAndGet() - lane.threads;
+        double expectedWaitMillis = lane.expectedWaitMillis(waiting - 1);
+        if (waiting > lane.maxQueue || expectedWaitMillis > budgetMillis) {
+            lane.pending.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            asyncResponse.resume(unavailable(laneName, expectedWaitMillis));
+            return;
+        }
+
+        long enqueued = System.nanoTime();
+        try {
+            lane.executor.execute(new Request(asyncResponse, () -> {
+                try {
+                    long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueued);
+                    if (waitedMillis > budgetMillis) {
+                        // the estimate was too optimistic and the client likely gave up already
+                        lane.rejected.incrementAndGet();
+                        asyncResponse.resume(unavailable(laneName, lane.expectedWaitMillis()));
+                        return;
+                    }
+                    if (timeoutMillis < Long.MAX_VALUE)
+                        hints.putObject(TIMEOUT_MS, timeoutMillis - waitedMillis);
+                    long start = System.nanoTime();
+                    try {
+                        run(asyncResponse, task);
+                    } finally {
+                        lane.addDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                } finally {
+                    lane.pending.decrementAndGet();
+                }
+            }));
+        } catch (RejectedExecutionException ex) {
+            // the lane was stopped
+            lane.pending.decrementAndGet();
+            asyncResponse.resume(unavailable(laneName, 0));
+        }
+    }
+
+    private static void run(AsyncResponse asyncResponse, Supplier<Response> task) {
+        try {
+            asyncResponse.resume(task.get());
+        } catch (Throwable t) {
+            asyncResponse.resume(t);
+        }
+    }
+
+    private static Response unavailable(String laneName, double expectedWaitMillis) {
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(expectedWaitMillis / 1000));
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).
+                header("Retry-After", retryAfterSeconds).
+                entity(new MultiException(new IllegalStateException("Too many " + laneName + " requests, try again in " + retryAfterSeconds + "s"))).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    private Lane createLane(String name) {
+        String prefix = "admission." + name + ".";
+        int threads = config.getInt(prefix + "threads", 0);
+        Lane lane = new Lane(threads, config.getLong(prefix + "max_wait_ms", 1000), config.getInt(prefix + "max_queue", 10 * threads));
+        if (threads > 0) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            lane.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "gh-" + name + "-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("admission control for " + name + ": threads=" + threads + ", max_wait_ms=" + lane.maxWaitMillis + ", max_queue=" + lane.maxQueue);
+        }
+        return lane;
+    }
+
+    /**
+     * @return the number of rejected requests of the specified lane
+     */
+    public int getRejected(String laneName) {
+        Lane lane = lanes.get(laneName);
+        return lane == null ? 0 : lane.rejected.get();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+            if (entry.getValue().executor == null)
+                continue;
+            // the clients of the requests that did not start yet would otherwise wait forever
+            for (Runnable request : entry.getValue().executor.shutdownNow())
+                ((Request) request).asyncResponse.resume(unavailable(entry.getKey(), 0));
+        }
+    }
+
+    private static class Request implements Runnable {
+        final AsyncResponse asyncResponse;
+        final Runnable runnable;
+
+        Request(AsyncResponse asyncResponse, Runnable runnable) {
+            this.asyncResponse = asyncResponse;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+
+    private static class Lane {
+        // the weight of the last request for the moving average of the request duration
+        private static final double ALPHA = 0.1;
+        final int threads;
+        final long maxWaitMillis;
+        final int maxQueue;
+        final AtomicInteger rejected = new AtomicInteger();
+        // the number of admitted requests that are queued or running
+        final AtomicInteger pending = new AtomicInteger();
+        ThreadPoolExecutor executor;
+        private double averageMillis;
+
+        Lane(int threads, long maxWaitMillis, int maxQueue) {
+            this.threads = threads;
+            this.maxWaitMillis = maxWaitMillis;
+            this.maxQueue = maxQueue;
+        }
+
+        synchronized void addDuration(long millis) {
+            averageMillis = averageMillis == 0 ? millis : ALPHA * millis + (1 - ALPHA) * averageMillis;
+        }
+
+        synchronized double getAverageMillis() {
+            return averageMillis;
+        }
+
+        double expectedWaitMillis() {
+            return expectedWaitMillis(pending.get() - threads);
+        }
+
+        /**
+         * @param waiting the number of requests that wait for a free thread, or a negative number if threads are idle
+         */
+        double expectedWaitMillis(int waiting) {
+            if (waiting < 0)
+                return 0;
+            // every thread has to finish (waiting + 1) / threads requests before a new request starts
+            return (waiting + 1) * getAverageMillis() / threads;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.CountingDataAccess;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Reports the accesses per segment of the DataAccess objects configured via graph.dataaccess.statistics.* as admin
+ * task (POST /tasks/dataaccess-statistics) and as metrics. Use the parameter store=true to write the current counts
+ * next to the graph files, which makes the next start keep the hottest segments on the heap (see
+ * graph.dataaccess.mmap.heap.*), and reset=true to start counting from zero.
+ */
+public class DataAccessStatisticsTask extends Task implements Managed {
+    private final GraphHopper graphHopper;
+    private final MetricRegistry metrics;
+    private final ObjectMapper objectMapper;
+
+    public DataAccessStatisticsTask(GraphHopper graphHopper, MetricRegistry metrics, ObjectMapper objectMapper) {
+        super("dataaccess-statistics");
+        this.graphHopper = graphHopper;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registers the metrics once the graph is loaded, because only then we know the DataAccess objects.
+     */
+    @Override
+    public void start() {
+        for (String name : getDirectory().getAccessCounts().keySet()) {
+            String prefix = MetricRegistry.name("graphhopper", "dataaccess", name);
+            metrics.register(MetricRegistry.name(prefix, "accesses"), (Gauge<Long>) () -> sum(getAccessCounts(name)));
+            metrics.register(MetricRegistry.name(prefix, "hot_segments"), (Gauge<Integer>) () -> countHotSegments(getAccessCounts(name), 0.9));
+        }
+    }
+
+    @Override
+    public void stop() {
+        metrics.removeMatching((name, metric) -> name.startsWith("graphhopper.dataaccess."));
+    }
+
+    @Override
+    public Optional<String> getResponseContentType() {
+        return Optional.of("application/json");
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) throws Exception {
+        GHDirectory directory = getDirectory();
+        Map<String, long[]> accessCounts = directory.getAccessCounts();
+        ObjectNode json = objectMapper.createObjectNode();
+        for (Map.Entry<String, long[]> entry : accessCounts.entrySet()) {
+            ObjectNode file = json.putObject(entry.getKey());
+            file.put("segment_size", directory.getDAs().get(entry.getKey()).getSegmentSize());
+            file.put("accesses", sum(entry.getValue()));
+            file.put("hot_segments", countHotSegments(entry.getValue(), 0.9));
+            file.putPOJO("segments", entry.getValue());
+        }
+        if (parameters.getOrDefault("store", Collections.emptyList()).contains("true"))
+            for (Map.Entry<String, long[]> entry : accessCounts.entrySet())
+                directory.writeAccessCounts(entry.getKey(), entry.getValue());
+        if (parameters.getOrDefault("reset", Collections.emptyList()).contains("true"))
+            directory.resetAccessCounts();
+        objectMapper.writeValue(output, json);
+    }
+
+    private GHDirectory getDirectory() {
+        Directory directory = graphHopper.getBaseGraph().getDirectory();
+        if (!(directory instanceof GHDirectory))
+            throw new IllegalStateException("Access statistics are not supported for " + directory.getClass().getSimpleName());
+        return (GHDirectory) directory;
+    }
+
+    private long[] getAccessCounts(String name) {
+        DataAccess da = getDirectory().getDAs().get(name);
+        return da instanceof CountingDataAccess ? ((CountingDataAccess) da).getAccessCounts() : new long[0];
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts)
+            sum += count;
+        return sum;
+    }
+
+    /**
+     * @return the smallest number of segments that together received the specified share of all accesses
+     */
+    static int countHotSegments(long[] counts, double share) {
+        long[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        long threshold = (long) Math.ceil(sum(counts) * share);
+        long accumulated = 0;
+        int segments = 0;
+        for (int i = sorted.length - 1; i >= 0 && accumulated < threshold; i--, segments++)
+            accumulated += sorted[i];
+        return segments;
+    }
+}
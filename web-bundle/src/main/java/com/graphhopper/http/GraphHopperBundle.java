@@ -25,6 +25,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gtfs.*;
 import com.graphhopper.http.health.GraphHopperHealthCheck;
+import com.graphhopper.http.health.WarmUpHealthCheck;
 import com.graphhopper.isochrone.algorithm.JTSTriangulator;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.Jackson;
@@ -257,11 +258,16 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        final AdmissionControl admissionControl = new AdmissionControl(configuration.getGraphHopperConfiguration());
+        environment.lifecycle().manage(admissionControl);
+        final RequestCoalescer requestCoalescer = new RequestCoalescer(configuration.getGraphHopperConfiguration().getBool("routing.coalesce_requests", false));
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
                 bind(graphHopper).to(GraphHopper.class);
+                bind(admissionControl).to(AdmissionControl.class);
+                bind(requestCoalescer).to(RequestCoalescer.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
@@ -305,6 +311,16 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
         environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        GraphHopperWarmUp warmUp = new GraphHopperWarmUp(graphHopper, configuration.getGraphHopperConfiguration());
+        // managed objects are started in the order they were added, so the warm-up starts after the graph was loaded
+        environment.lifecycle().manage(warmUp);
+        environment.healthChecks().register("warmup", new WarmUpHealthCheck(warmUp));
+        DataAccessStatisticsTask dataAccessStatistics = new DataAccessStatisticsTask(graphHopper, environment.metrics(), environment.getObjectMapper());
+        environment.lifecycle().manage(dataAccessStatistics);
+        environment.admin().addTask(dataAccessStatistics);
+        TrafficSpeedTask trafficSpeeds = new TrafficSpeedTask(graphHopper, configuration.getGraphHopperConfiguration());
+        environment.lifecycle().manage(trafficSpeeds);
+        environment.admin().addTask(trafficSpeeds);
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
     }
@@ -0,0 +1,212 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.isochrone.algorithm.ShortestPathTree;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
+import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
+
+/**
+ * Sends generated queries to GraphHopper after the graph was loaded, so the JIT compiler, the memory mapped pages and
+ * the custom weighting classes are warm before the first real requests arrive. For every profile the queries are
+ * calculated with CH, LM and the flexible mode (as far as available), as isochrone (shortest path tree) and as map
+ * matching of the calculated route. Until this is finished the health check reports unhealthy.
+ * <p>
+ * The query start points are randomly picked nodes of the graph and the destinations are close to them. Queries that
+ * fail, e.g. because a point could not be found, are ignored.
+ */
+public class GraphHopperWarmUp implements Managed {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphHopperWarmUp.class);
+    private final GraphHopper graphHopper;
+    private final int queries;
+    private final int threads;
+    private volatile boolean finished;
+    private volatile ExecutorService executorService;
+
+    public GraphHopperWarmUp(GraphHopper graphHopper, GraphHopperConfig config) {
+        this(graphHopper, config.getInt("warmup.queries", 0), config.getInt("warmup.threads", 1));
+    }
+
+    /**
+     * @param queries the number of queries per profile, zero disables the warm-up
+     * @param threads the number of threads used to send the queries
+     */
+    public GraphHopperWarmUp(GraphHopper graphHopper, int queries, int threads) {
+        if (queries < 0)
+            throw new IllegalArgumentException("warmup.queries must not be negative, but was " + queries);
+        if (threads < 1)
+            throw new IllegalArgumentException("warmup.threads must be at least 1, but was " + threads);
+        this.graphHopper = graphHopper;
+        this.queries = queries;
+        this.threads = threads;
+        this.finished = queries == 0;
+    }
+
+    @Override
+    public void start() {
+        if (finished)
+            return;
+        // do not block the server start, the health check tells when we are done
+        Thread thread = new Thread(this::run, "gh-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends all warm-up queries and blocks until they are finished.
+     */
+    public void run() {
+        StopWatch sw = StopWatch.started();
+        AtomicInteger threadCounter = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "gh-warmup-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            int seed = 0;
+            for (Profile profile : graphHopper.getProfiles()) {
+                for (int i = 0; i < queries; i++) {
+                    final Random random = new Random(seed++);
+                    futures.add(executorService.submit(() -> {
+                        if (!warmUp(profile, random))
+                            failures.incrementAndGet();
+                    }));
+                }
+            }
+            for (Future<?> future : futures)
+                future.get();
+            logger.info("warm-up finished: " + futures.size() + " queries (" + failures.get() + " without result) with "
+                    + threads + " threads, took: " + sw.stop().getTimeString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("warm-up was interrupted");
+        } catch (Exception e) {
+            logger.warn("warm-up failed", e);
+        } finally {
+            executorService.shutdown();
+            finished = true;
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private boolean warmUp(Profile profile, Random random) {
+        BaseGraph graph = graphHopper.getBaseGraph();
+        NodeAccess na = graph.getNodeAccess();
+        int node = random.nextInt(graph.getNodes());
+        double fromLat = na.getLat(node), fromLon = na.getLon(node);
+        boolean success = true;
+        try {
+            GHResponse routeRsp = null;
+            if (graphHopper.getCHGraphs().containsKey(profile.getName()))
+                routeRsp = route(profile, fromLat, fromLon, random, 0.1, false, true);
+            if (graphHopper.getLandmarks().containsKey(profile.getName()))
+                routeRsp = pick(routeRsp, route(profile, fromLat, fromLon, random, 0.05, true, false));
+            routeRsp = pick(routeRsp, route(profile, fromLat, fromLon, random, 0.01, true, true));
+            success = !routeRsp.hasErrors();
+            if (success)
+                mapMatch(profile, routeRsp.getBest().getPoints());
+            isochrone(profile, fromLat, fromLon);
+        } catch (Exception e) {
+            success = false;
+        }
+        return success;
+    }
+
+    private GHResponse route(Profile profile, double fromLat, double fromLon, Random random, double maxOffset,
+                             boolean disableCH, boolean disableLM) {
+        double toLat = fromLat + (random.nextDouble() * 2 - 1) * maxOffset;
+        double toLon = fromLon + (random.nextDouble() * 2 - 1) * maxOffset;
+        GHRequest request = new GHRequest(fromLat, fromLon, toLat, toLon).setProfile(profile.getName());
+        request.putHint(Parameters.CH.DISABLE, disableCH);
+        request.putHint(Parameters.Landmark.DISABLE, disableLM);
+        return graphHopper.route(request);
+    }
+
+    private static GHResponse pick(GHResponse previous, GHResponse current) {
+        return previous != null && !previous.hasErrors() ? previous : current;
+    }
+
+    private void mapMatch(Profile profile, PointList points) {
+        List<Observation> observations = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++)
+            observations.add(new Observation(points.get(i)));
+        MapMatching mapMatching = MapMatching.fromGraphHopper(graphHopper, new PMap().putObject("profile", profile.getName()));
+        mapMatching.match(observations);
+    }
+
+    private void isochrone(Profile profile, double lat, double lon) {
+        PMap hints = new PMap().putObject(Parameters.CH.DISABLE, true).putObject(Parameters.Landmark.DISABLE, true);
+        Weighting weighting = graphHopper.createWeighting(profile, hints);
+        Snap snap = graphHopper.getLocationIndex().findClosest(lat, lon, new DefaultSnapFilter(weighting,
+                graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profile.getName()))));
+        if (!snap.isValid())
+            return;
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), snap);
+        ShortestPathTree tree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), false,
+                profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED);
+        tree.setTimeLimit(10 * 60_000);
+        tree.search(snap.getClosestNode(), label -> {
+        });
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
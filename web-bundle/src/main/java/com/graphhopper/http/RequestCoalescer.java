@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.util.PMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.graphhopper.util.Parameters.Routing.TIMEOUT_MS;
+
+/**
+ * Lets identical requests that arrive while the same calculation is still running wait for this calculation instead
+ * of starting their own, e.g. for retries of clients or several UI components that send the same request. Only
+ * running calculations are shared, the results are not cached. Enable it via routing.coalesce_requests: true.
+ */
+public class RequestCoalescer {
+    private final boolean enabled;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public RequestCoalescer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Runs the task or waits for the running task with the same key and returns its result. Exceptions of the task
+     * are thrown for all requests that waited for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> task) {
+        if (!enabled)
+            return task.get();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw ex;
+            }
+        }
+
+        try {
+            T result = task.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of requests that used the result of another request
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Creates the key of a route request from everything that can change the GHResponse. The points are used before
+     * snapping. The timeout is ignored, because it is reduced by the waiting time of the admission control.
+     */
+    public static String createKey(GHRequest request) {
+        PMap hints = new PMap(request.getHints());
+        hints.remove(TIMEOUT_MS);
+        return "route " + request.getProfile() + " " + request.getPoints() + " " + request.getHeadings()
+                + " " + request.getPointHints() + " " + request.getCurbsides() + " " + request.getSnapPreventions()
+                + " " + request.getPathDetails() + " " + request.getAlgorithm() + " " + request.getLocale()
+                + " " + new TreeMap<>(hints.toMap()) + " " + request.getCustomModel();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.ev.TrafficSpeedOverlay;
+import com.graphhopper.util.GHUtility;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.servlets.tasks.PostBodyTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the traffic speeds (graph.traffic_speed.enabled) while the server is running. The speeds are sent as CSV
+ * to the admin task (POST /tasks/traffic-speeds) or are read from the file graph.traffic_speed.file, which is reloaded
+ * when it changes. Every line has the format edge,speed[,backward_speed] where the speeds are in km/h, the backward
+ * speed defaults to the speed and an empty speed removes the speed. Use the parameter replace=true to remove all
+ * speeds that are not sent.
+ * <p>
+ * The edge is the internal edge id, which is only valid for the graph it was taken from, e.g. via the edge_id path
+ * detail. A new import or graph.sort assigns different ids.
+ */
+public class TrafficSpeedTask extends PostBodyTask implements Managed {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficSpeedTask.class);
+    private final GraphHopper graphHopper;
+    private final Path file;
+    private final long fileCheckIntervalSeconds;
+    private ScheduledExecutorService executor;
+    private long fileLastModified = -1;
+
+    public TrafficSpeedTask(GraphHopper graphHopper, GraphHopperConfig config) {
+        super("traffic-speeds");
+        this.graphHopper = graphHopper;
+        String fileString = config.getString("graph.traffic_speed.file", "");
+        this.file = fileString.isEmpty() ? null : Paths.get(fileString);
+        this.fileCheckIntervalSeconds = config.getLong("graph.traffic_speed.file_check_interval", 10);
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (file == null)
+            return;
+        if (graphHopper.getTrafficSpeedOverlay() == null)
+            throw new IllegalArgumentException("graph.traffic_speed.file requires graph.traffic_speed.enabled: true");
+        checkFile();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "traffic-speed-file");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                checkFile();
+            } catch (Exception ex) {
+                logger.error("Could not read traffic speeds from " + file, ex);
+            }
+        }, fileCheckIntervalSeconds, fileCheckIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    void checkFile() throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        if (lastModified == fileLastModified)
+            return;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            int count = update(reader, true);
+            logger.info("Read " + count + " traffic speeds from " + file);
+        }
+        fileLastModified = lastModified;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, String body, PrintWriter output) throws Exception {
+        boolean replace = parameters.getOrDefault("replace", Collections.emptyList()).contains("true");
+        int count = update(new BufferedReader(new StringReader(body)), replace);
+        output.println("updated " + count + " edges, " + getOverlay().getSpeedCount() + " speeds are set");
+    }
+
+    /**
+     * Reads all lines before the overlay is changed, so that readers see either the old or the new speeds.
+     *
+     * @return the number of edges
+     */
+    int update(BufferedReader reader, boolean replace) throws IOException {
+        TrafficSpeedOverlay overlay = getOverlay();
+        int edges = graphHopper.getBaseGraph().getEdges();
+        IntArrayList edgeKeys = new IntArrayList();
+        DoubleArrayList speeds = new DoubleArrayList();
+        String line;
+        int lineNumber = 0, count = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] columns = line.split(",", -1);
+            if (columns.length < 2 || columns.length > 3)
+                throw new IllegalArgumentException("Expected edge,speed[,backward_speed] in line " + lineNumber + " but was: " + line);
+            int edge = Integer.parseInt(columns[0].trim());
+            if (edge < 0 || edge >= edges)
+                throw new IllegalArgumentException("Invalid edge " + edge + " in line " + lineNumber);
+            double speed = parseSpeed(columns[1]);
+            edgeKeys.add(GHUtility.createEdgeKey(edge, false));
+            speeds.add(speed);
+            edgeKeys.add(GHUtility.createEdgeKey(edge, true));
+            speeds.add(columns.length == 3 ? parseSpeed(columns[2]) : speed);
+            count++;
+        }
+        if (replace)
+            overlay.replaceSpeeds(edgeKeys, speeds);
+        else
+            overlay.setSpeeds(edgeKeys, speeds);
+        return count;
+    }
+
+    private static double parseSpeed(String str) {
+        str = str.trim();
+        return str.isEmpty() ? Double.NaN : Double.parseDouble(str);
+    }
+
+    private TrafficSpeedOverlay getOverlay() {
+        TrafficSpeedOverlay overlay = graphHopper.getTrafficSpeedOverlay();
+        if (overlay == null)
+            throw new IllegalStateException("Traffic speeds are not enabled, see graph.traffic_speed.enabled");
+        return overlay;
+    }
+}
@@ -5,19 +5,27 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
+import com.graphhopper.http.AdmissionControl;
 import com.graphhopper.http.GHPointParam;
+import com.graphhopper.http.RequestCoalescer;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.PhastShortestPathTree;
+import com.graphhopper.isochrone.algorithm.RasterIsochroneBuilder;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.routing.DefaultWeightingFactory;
+import com.graphhopper.routing.RouterConfig;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -29,14 +37,14 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.OptionalInt;
-import java.util.OptionalLong;
+import java.util.*;
+import java.util.function.Function;
 import java.util.function.ToDoubleFunction;
 
 import static com.graphhopper.resources.IsochroneResource.ResponseType.geojson;
@@ -48,27 +56,36 @@ import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
 public class IsochroneResource {
 
     private static final Logger logger = LoggerFactory.getLogger(IsochroneResource.class);
+    private static final double DEFAULT_RASTER_CELL_SIZE = 50;
+    private static final String PHAST = "phast";
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
     private final Triangulator triangulator;
     private final ProfileResolver profileResolver;
+    private final AdmissionControl admissionControl;
+    private final RequestCoalescer requestCoalescer;
     private final String osmDate;
 
     @Inject
-    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver) {
+    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver, AdmissionControl admissionControl, RequestCoalescer requestCoalescer) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.triangulator = triangulator;
         this.profileResolver = profileResolver;
+        this.admissionControl = admissionControl;
+        this.requestCoalescer = requestCoalescer;
         this.osmDate = graphHopper.getProperties().get("datareader.data.date");
     }
 
     public enum ResponseType {json, geojson}
 
+    public enum PolygonBuilder {triangulation, raster}
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response doGet(
+    public void doGet(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
             @QueryParam("buckets") @Range(min = 1, max = 20) @DefaultValue("1") OptionalInt nBuckets,
@@ -79,99 +96,141 @@ public class IsochroneResource {
             @QueryParam("weight_limit") @DefaultValue("-1") OptionalLong weightLimit,
             @QueryParam("type") @DefaultValue("json") ResponseType respType,
             @QueryParam("tolerance") @DefaultValue("0") double toleranceInMeter,
-            @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry) {
+            @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry,
+            @QueryParam("polygon_builder") @DefaultValue("triangulation") PolygonBuilder polygonBuilder) {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
-        hintsMap.putObject(Parameters.CH.DISABLE, true);
-        hintsMap.putObject(Parameters.Landmark.DISABLE, true);
-
-        PMap profileResolverHints = new PMap(hintsMap);
-        profileResolverHints.putObject("profile", profileName);
-        profileName = profileResolver.resolveProfile(profileResolverHints);
-        removeLegacyParameters(hintsMap);
-
-        Profile profile = graphHopper.getProfile(profileName);
-        if (profile == null)
-            throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
-        LocationIndex locationIndex = graphHopper.getLocationIndex();
-        BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
-        BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
-        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
-        if (!snap.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-        QueryGraph queryGraph = QueryGraph.create(graph, snap);
-        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
-
-        double limit;
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
-        if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
-            limit = weightLimit.getAsLong();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
-            fz = l -> l.weight;
-        } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
-            limit = distanceLimitInMeter.getAsLong();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
-            fz = l -> l.distance;
-        } else {
-            limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
-            fz = l -> l.time;
-        }
-        ArrayList<Double> zs = new ArrayList<>();
-        double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
-        for (int i = 0; i < nBuckets.getAsInt(); i++) {
-            zs.add((i + 1) * delta);
-        }
+        admissionControl.submit(AdmissionControl.ISOCHRONE, hintsMap, asyncResponse, () -> {
+            boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
+            hintsMap.putObject(Parameters.CH.DISABLE, true);
+            hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+            PMap profileResolverHints = new PMap(hintsMap);
+            profileResolverHints.putObject("profile", profileName);
+            String resolvedProfile = profileResolver.resolveProfile(profileResolverHints);
+            removeLegacyParameters(hintsMap);
 
-        ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
-        ArrayList<Geometry> isochrones = new ArrayList<>();
-        for (Double z : zs) {
-            logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
-            if (fullGeometry) {
-                isochrones.add(isochrone);
-            } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+            Profile profile = graphHopper.getProfile(resolvedProfile);
+            if (profile == null)
+                throw new IllegalArgumentException("The requested profile '" + resolvedProfile + "' does not exist");
+            // identical requests that arrive while the isochrones are calculated share the result
+            String key = "isochrone " + resolvedProfile + " " + new TreeMap<>(uriInfo.getQueryParameters());
+            List<Geometry> isochrones = requestCoalescer.execute(key, () -> {
+                LocationIndex locationIndex = graphHopper.getLocationIndex();
+                BaseGraph graph = graphHopper.getBaseGraph();
+                Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+                BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(resolvedProfile));
+                Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
+                if (!snap.isValid())
+                    throw new IllegalArgumentException("Point not found:" + point);
+                QueryGraph queryGraph = QueryGraph.create(graph, snap);
+                ShortestPathTree shortestPathTree = createShortestPathTree(graphHopper, profile, disableCH, hintsMap, queryGraph, weighting, reverseFlow);
+
+                double limit;
+                ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+                if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
+                    limit = weightLimit.getAsLong();
+                    shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
+                    fz = l -> l.weight;
+                } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
+                    limit = distanceLimitInMeter.getAsLong();
+                    shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
+                    fz = l -> l.distance;
+                } else {
+                    limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
+                    shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
+                    fz = l -> l.time;
+                }
+                ArrayList<Double> zs = new ArrayList<>();
+                double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
+                for (int i = 0; i < nBuckets.getAsInt(); i++) {
+                    zs.add((i + 1) * delta);
+                }
+
+                Function<Double, MultiPolygon> isolineFunction;
+                if (polygonBuilder == PolygonBuilder.raster) {
+                    // the tolerance is used as grid resolution
+                    RasterIsochroneBuilder rasterBuilder = new RasterIsochroneBuilder(toleranceInMeter > 0 ? toleranceInMeter : DEFAULT_RASTER_CELL_SIZE, 2);
+                    rasterBuilder.rasterize(queryGraph, weighting, shortestPathTree, snap.getClosestNode(), fz);
+                    isolineFunction = rasterBuilder::computeIsoline;
+                } else {
+                    Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+                    ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+                    isolineFunction = z -> contourBuilder.computeIsoline(z, result.seedEdges);
+                }
+
+                ArrayList<Geometry> result = new ArrayList<>();
+                for (Double z : zs) {
+                    logger.info("Building contour z={}", z);
+                    MultiPolygon isochrone = isolineFunction.apply(z);
+                    if (fullGeometry) {
+                        result.add(isochrone);
+                    } else {
+                        Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
+                        result.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                    }
+                }
+                logger.info("visited nodes: " + shortestPathTree.getVisitedNodes());
+                return result;
+            });
+            ArrayList<JsonFeature> features = new ArrayList<>();
+            for (Geometry isochrone : isochrones) {
+                JsonFeature feature = new JsonFeature();
+                HashMap<String, Object> properties = new HashMap<>();
+                properties.put("bucket", features.size());
+                if (respType == geojson) {
+                    properties.put("copyrights", config.getCopyrights());
+                }
+                feature.setProperties(properties);
+                feature.setGeometry(isochrone);
+                features.add(feature);
             }
-        }
-        ArrayList<JsonFeature> features = new ArrayList<>();
-        for (Geometry isochrone : isochrones) {
-            JsonFeature feature = new JsonFeature();
-            HashMap<String, Object> properties = new HashMap<>();
-            properties.put("bucket", features.size());
+            ObjectNode json = JsonNodeFactory.instance.objectNode();
+
+            sw.stop();
+            ObjectNode finalJson = null;
             if (respType == geojson) {
-                properties.put("copyrights", config.getCopyrights());
+                json.put("type", "FeatureCollection");
+                json.putPOJO("features", features);
+                finalJson = json;
+            } else {
+                json.putPOJO("polygons", features);
+                final ObjectNode info = json.putObject("info");
+                info.putPOJO("copyrights", config.getCopyrights());
+                info.put("took", Math.round((float) sw.getMillis()));
+                if (!osmDate.isEmpty()) info.put("road_data_timestamp", osmDate);
+                finalJson = json;
             }
-            feature.setProperties(properties);
-            feature.setGeometry(isochrone);
-            features.add(feature);
-        }
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-
-        sw.stop();
-        ObjectNode finalJson = null;
-        if (respType == geojson) {
-            json.put("type", "FeatureCollection");
-            json.putPOJO("features", features);
-            finalJson = json;
-        } else {
-            json.putPOJO("polygons", features);
-            final ObjectNode info = json.putObject("info");
-            info.putPOJO("copyrights", config.getCopyrights());
-            info.put("took", Math.round((float) sw.getMillis()));
-            if (!osmDate.isEmpty()) info.put("road_data_timestamp", osmDate);
-            finalJson = json;
-        }
 
-        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
-        return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
-                build();
+            logger.info("took: " + sw.getSeconds());
+            return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
+                    build();
+        });
+    }
+
+    /**
+     * Uses the PHAST algorithm for algorithm=phast if it is enabled via routing.phast, there is a node-based CH
+     * preparation for the profile and the request does not change its weighting. PHAST visits all nodes of the graph, so
+     * it only pays off for large limits and is not the default. It is bounded by max_visited_nodes and timeout_ms like
+     * the routing algorithms. Otherwise a Dijkstra on the query graph is used.
+     */
+    static ShortestPathTree createShortestPathTree(GraphHopper graphHopper, Profile profile, boolean disableCH, PMap hints,
+                                                   QueryGraph queryGraph, Weighting weighting, boolean reverseFlow) {
+        if (PHAST.equals(hints.getString(Parameters.Routing.ALGORITHM, ""))) {
+            RouterConfig routerConfig = graphHopper.getRouterConfig();
+            if (!routerConfig.isPhastEnabled())
+                throw new IllegalArgumentException("algorithm=phast is not enabled, see " + Parameters.Routing.INIT_PHAST);
+            RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(profile.getName());
+            if (!disableCH && chGraph != null && !chGraph.isEdgeBased() && !DefaultWeightingFactory.changesProfileWeighting(hints)) {
+                PhastShortestPathTree phast = new PhastShortestPathTree(new QueryRoutingCHGraph(chGraph, queryGraph), reverseFlow);
+                phast.setMaxVisitedNodes(hints.getInt(Parameters.Routing.MAX_VISITED_NODES, routerConfig.getMaxVisitedNodes()));
+                phast.setTimeoutMillis(Math.min(routerConfig.getTimeoutMillis(), hints.getLong(Parameters.Routing.TIMEOUT_MS, routerConfig.getTimeoutMillis())));
+                return phast;
+            }
+        }
+        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
+        return new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
     }
 
     private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
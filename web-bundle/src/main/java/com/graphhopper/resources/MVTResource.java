@@ -91,16 +91,20 @@ public class MVTResource {
         // if performance of the vector tile encoding becomes an issue it might be worth to get rid of the simplification
         // and clipping in the no.ecc code? https://github.com/graphhopper/graphhopper/commit/0f96c2deddb24efa97109e35e0c05f1c91221f59#r90830001
         VectorTileEncoder vectorTileEncoder = new VectorTileEncoder();
+        // reused for every edge, toLineString copies the coordinates
+        final PointList pl = new PointList(10, false);
         locationIndex.query(bbox, edgeId -> {
             EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
             LineString lineString;
             if (renderAll) {
-                PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+                pl.clear();
+                edge.fetchWayGeometry(FetchMode.ALL, pl);
                 lineString = pl.toLineString(false);
             } else {
                 RoadClass rc = edge.get(roadClassEnc);
                 if (zInfo >= 14) {
-                    PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+                    pl.clear();
+                    edge.fetchWayGeometry(FetchMode.ALL, pl);
                     lineString = pl.toLineString(false);
                 } else if (rc == RoadClass.MOTORWAY
                         || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
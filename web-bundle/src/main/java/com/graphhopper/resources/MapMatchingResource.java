@@ -27,6 +27,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.AdmissionControl;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.Jackson;
@@ -40,6 +41,8 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -69,23 +72,26 @@ public class MapMatchingResource {
     private final ProfileResolver profileResolver;
     private final TranslationMap trMap;
     private final MapMatchingRouterFactory mapMatchingRouterFactory;
+    private final AdmissionControl admissionControl;
     private final ObjectMapper objectMapper = Jackson.newObjectMapper();
     private final String osmDate;
 
     @Inject
-    public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap, MapMatchingRouterFactory mapMatchingRouterFactory) {
+    public MapMatchingResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap, MapMatchingRouterFactory mapMatchingRouterFactory, AdmissionControl admissionControl) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.trMap = trMap;
         this.mapMatchingRouterFactory = mapMatchingRouterFactory;
+        this.admissionControl = admissionControl;
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
     }
 
     @POST
     @Consumes({MediaType.APPLICATION_XML, "application/gpx+xml"})
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
-    public Response match(
+    public void match(
+            @Suspended AsyncResponse asyncResponse,
             @NotNull Gpx gpx,
             @Context UriInfo uriInfo,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
@@ -110,7 +116,7 @@ public class MapMatchingResource {
             throw new IllegalArgumentException("GPX documents with multiple tracks not supported yet.");
         }
 
-        instructions = writeGPX || instructions;
+        boolean withInstructions = writeGPX || instructions;
 
         StopWatch sw = new StopWatch().start();
 
@@ -122,75 +128,77 @@ public class MapMatchingResource {
         PMap profileResolverHints = new PMap(hints);
         profileResolverHints.putObject("profile", profile);
         profileResolverHints.putObject(Parameters.CH.DISABLE, true);
-        profile = profileResolver.resolveProfile(profileResolverHints);
-        hints.putObject("profile", profile);
+        String resolvedProfile = profileResolver.resolveProfile(profileResolverHints);
+        hints.putObject("profile", resolvedProfile);
         removeLegacyParameters(hints);
 
-        MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
-        matching.setMeasurementErrorSigma(gpsAccuracy);
-
-        List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
-        MatchResult matchResult = matching.match(measurements);
-
-        sw.stop();
-        logger.info(objectMapper.createObjectNode()
-                .put("duration", sw.getNanos())
-                .put("profile", profile)
-                .put("observations", measurements.size())
-                .putPOJO("mapmatching", matching.getStatistics()).toString());
-
-        if ("extended_json".equals(outType)) {
-            return Response.ok(convertToTree(matchResult, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                    header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
-                    build();
-        } else {
-            Translation tr = trMap.getWithFallBack(Helper.getLocale(localeStr));
-            RamerDouglasPeucker simplifyAlgo = new RamerDouglasPeucker().setMaxDistance(minPathPrecision);
-            PathMerger pathMerger = new PathMerger(matchResult.getGraph(), matchResult.getWeighting()).
-                    setEnableInstructions(instructions).
-                    setPathDetailsBuilders(graphHopper.getPathDetailsBuilderFactory(), pathDetails).
-                    setRamerDouglasPeucker(simplifyAlgo).
-                    setSimplifyResponse(minPathPrecision > 0);
-            ResponsePath responsePath = pathMerger.doWork(PointList.EMPTY, Collections.singletonList(matchResult.getMergedPath()),
-                    graphHopper.getEncodingManager(), tr);
-
-            // GraphHopper thinks an empty path is an invalid path, and further that an invalid path is still a path but
-            // marked with a non-empty list of Exception objects. I disagree, so I clear it.
-            responsePath.getErrors().clear();
-            GHResponse rsp = new GHResponse();
-            rsp.add(responsePath);
-
-            if (writeGPX) {
-                long time = gpx.trk.get(0).getStartTime()
-                        .map(Date::getTime)
-                        .orElse(System.currentTimeMillis());
-                return Response.ok(GpxConversions.createGPX(rsp.getBest().getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, enableElevation, withRoute, withTrack, false, Constants.VERSION, tr), "application/gpx+xml").
+        admissionControl.submit(AdmissionControl.MATCH, hints, asyncResponse, () -> {
+            MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
+            matching.setMeasurementErrorSigma(gpsAccuracy);
+
+            List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
+            MatchResult matchResult = matching.match(measurements);
+
+            sw.stop();
+            logger.info(objectMapper.createObjectNode()
+                    .put("duration", sw.getNanos())
+                    .put("profile", resolvedProfile)
+                    .put("observations", measurements.size())
+                    .putPOJO("mapmatching", matching.getStatistics()).toString());
+
+            if ("extended_json".equals(outType)) {
+                return Response.ok(convertToTree(matchResult, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
                         header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
                         build();
             } else {
-                ObjectNode map = ResponsePathSerializer.jsonObject(rsp, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getMillisDouble()), osmDate), instructions,
-                        calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
-
-                Map<String, Object> matchStatistics = new HashMap<>();
-                matchStatistics.put("distance", matchResult.getMatchLength());
-                matchStatistics.put("time", matchResult.getMatchMillis());
-                matchStatistics.put("original_distance", matchResult.getGpxEntriesLength());
-                map.putPOJO("map_matching", matchStatistics);
-
-                if (enableTraversalKeys) {
-                    List<Integer> traversalKeylist = new ArrayList<>();
-                    for (EdgeMatch em : matchResult.getEdgeMatches()) {
-                        EdgeIteratorState edge = em.getEdgeState();
-                        // encode edges as traversal keys which includes orientation, decode simply by multiplying with 0.5
-                        traversalKeylist.add(edge.getEdgeKey());
+                Translation tr = trMap.getWithFallBack(Helper.getLocale(localeStr));
+                RamerDouglasPeucker simplifyAlgo = new RamerDouglasPeucker().setMaxDistance(minPathPrecision);
+                PathMerger pathMerger = new PathMerger(matchResult.getGraph(), matchResult.getWeighting()).
+                        setEnableInstructions(withInstructions).
+                        setPathDetailsBuilders(graphHopper.getPathDetailsBuilderFactory(), pathDetails).
+                        setRamerDouglasPeucker(simplifyAlgo).
+                        setSimplifyResponse(minPathPrecision > 0);
+                ResponsePath responsePath = pathMerger.doWork(PointList.EMPTY, Collections.singletonList(matchResult.getMergedPath()),
+                        graphHopper.getEncodingManager(), tr);
+
+                // GraphHopper thinks an empty path is an invalid path, and further that an invalid path is still a path but
+                // marked with a non-empty list of Exception objects. I disagree, so I clear it.
+                responsePath.getErrors().clear();
+                GHResponse rsp = new GHResponse();
+                rsp.add(responsePath);
+
+                if (writeGPX) {
+                    long time = gpx.trk.get(0).getStartTime()
+                            .map(Date::getTime)
+                            .orElse(System.currentTimeMillis());
+                    return Response.ok(GpxConversions.createGPX(rsp.getBest().getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, enableElevation, withRoute, withTrack, false, Constants.VERSION, tr), "application/gpx+xml").
+                            header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
+                            build();
+                } else {
+                    ObjectNode map = ResponsePathSerializer.jsonObject(rsp, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getMillisDouble()), osmDate), withInstructions,
+                            calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+
+                    Map<String, Object> matchStatistics = new HashMap<>();
+                    matchStatistics.put("distance", matchResult.getMatchLength());
+                    matchStatistics.put("time", matchResult.getMatchMillis());
+                    matchStatistics.put("original_distance", matchResult.getGpxEntriesLength());
+                    map.putPOJO("map_matching", matchStatistics);
+
+                    if (enableTraversalKeys) {
+                        List<Integer> traversalKeylist = new ArrayList<>();
+                        for (EdgeMatch em : matchResult.getEdgeMatches()) {
+                            EdgeIteratorState edge = em.getEdgeState();
+                            // encode edges as traversal keys which includes orientation, decode simply by multiplying with 0.5
+                            traversalKeylist.add(edge.getEdgeKey());
+                        }
+                        map.putPOJO("traversal_keys", traversalKeylist);
                     }
-                    map.putPOJO("traversal_keys", traversalKeylist);
+                    return Response.ok(map).
+                            header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
+                            build();
                 }
-                return Response.ok(map).
-                        header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
-                        build();
             }
-        }
+        });
     }
 
     public static JsonNode convertToTree(MatchResult result, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
@@ -22,9 +22,11 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.AdmissionControl;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.GHRequestTransformer;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.RequestCoalescer;
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.util.*;
@@ -38,6 +40,8 @@ import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
 import java.util.Arrays;
 import java.util.List;
@@ -64,16 +68,20 @@ public class RouteResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final GHRequestTransformer ghRequestTransformer;
+    private final AdmissionControl admissionControl;
+    private final RequestCoalescer requestCoalescer;
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
 
     @Inject
-    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, AdmissionControl admissionControl, RequestCoalescer requestCoalescer, @Named("hasElevation") Boolean hasElevation) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.ghRequestTransformer = ghRequestTransformer;
+        this.admissionControl = admissionControl;
+        this.requestCoalescer = requestCoalescer;
         this.hasElevation = hasElevation;
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
         this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
@@ -82,7 +90,8 @@ public class RouteResource {
 
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
-    public Response doGet(
+    public void doGet(
+            @Suspended AsyncResponse asyncResponse,
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
@@ -110,17 +119,17 @@ public class RouteResource {
         StopWatch sw = new StopWatch().start();
         List<GHPoint> points = pointParams.stream().map(AbstractParam::get).collect(toList());
         boolean writeGPX = "gpx".equalsIgnoreCase(type);
-        instructions = writeGPX || instructions;
+        boolean withInstructions = writeGPX || instructions;
         if (enableElevation && !hasElevation)
             throw new IllegalArgumentException("Elevation not supported!");
 
-        GHRequest request = new GHRequest();
-        initHints(request.getHints(), uriInfo.getQueryParameters());
+        GHRequest ghRequest = new GHRequest();
+        initHints(ghRequest.getHints(), uriInfo.getQueryParameters());
 
         if (minPathElevationPrecision != null)
-            request.getHints().putObject(ELEVATION_WAY_POINT_MAX_DISTANCE, minPathElevationPrecision);
+            ghRequest.getHints().putObject(ELEVATION_WAY_POINT_MAX_DISTANCE, minPathElevationPrecision);
 
-        request.setPoints(points).
+        ghRequest.setPoints(points).
                 setProfile(profileName).
                 setAlgorithm(algoStr).
                 setLocale(localeStr).
@@ -130,67 +139,69 @@ public class RouteResource {
                 setPathDetails(pathDetails).
                 getHints().
                 putObject(CALC_POINTS, calcPoints).
-                putObject(INSTRUCTIONS, instructions).
+                putObject(INSTRUCTIONS, withInstructions).
                 putObject(WAY_POINT_MAX_DISTANCE, minPathPrecision);
 
         if (uriInfo.getQueryParameters().containsKey(SNAP_PREVENTION)) {
             if (snapPreventions.size() == 1 && snapPreventions.contains(""))
-                request.setSnapPreventions(List.of()); // e.g. "&snap_prevention=&" to force empty list
+                ghRequest.setSnapPreventions(List.of()); // e.g. "&snap_prevention=&" to force empty list
             else
-                request.setSnapPreventions(snapPreventions);
+                ghRequest.setSnapPreventions(snapPreventions);
         } else {
             // no "snap_prevention" was specified
-            request.setSnapPreventions(snapPreventionsDefault);
+            ghRequest.setSnapPreventions(snapPreventionsDefault);
         }
 
-        request = ghRequestTransformer.transformRequest(request);
+        GHRequest request = ghRequestTransformer.transformRequest(ghRequest);
 
         PMap profileResolverHints = new PMap(request.getHints());
         profileResolverHints.putObject("profile", profileName);
         profileResolverHints.putObject("has_curbsides", !curbsides.isEmpty());
-        profileName = profileResolver.resolveProfile(profileResolverHints);
+        String resolvedProfile = profileResolver.resolveProfile(profileResolverHints);
         removeLegacyParameters(request.getHints());
-        request.setProfile(profileName);
+        request.setProfile(resolvedProfile);
 
-        GHResponse ghResponse = graphHopper.route(request);
+        admissionControl.submit(getLane(request), request.getHints(), asyncResponse, () -> {
+            GHResponse ghResponse = requestCoalescer.execute(RequestCoalescer.createKey(request), () -> graphHopper.route(request));
 
-        double took = sw.stop().getMillisDouble();
-        String logStr = (httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")) + " " + points + ", took: " + String.format("%.1f", took) + "ms, algo: " + algoStr + ", profile: " + profileName;
+            double took = sw.stop().getMillisDouble();
+            String logStr = (httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")) + " " + points + ", took: " + String.format("%.1f", took) + "ms, algo: " + algoStr + ", profile: " + resolvedProfile;
 
-        if (ghResponse.hasErrors()) {
-            logger.info(logStr + " " + ghResponse);
-            return Response.status(Response.Status.BAD_REQUEST).
-                    entity(new MultiException(ghResponse.getErrors())).
-                    type(writeGPX ? "application/gpx+xml" : MediaType.APPLICATION_JSON).
-                    build();
-        } else {
-            logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
-                    + ", distance0: " + ghResponse.getBest().getDistance()
-                    + ", weight0: " + ghResponse.getBest().getRouteWeight()
-                    + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
-                    + ", points0: " + ghResponse.getBest().getPoints().size()
-                    + ", debugInfo: " + ghResponse.getDebugInfo());
-            return writeGPX ?
-                    gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            build()
-                    :
-                    Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            type(MediaType.APPLICATION_JSON).
-                            build();
-        }
+            if (ghResponse.hasErrors()) {
+                logger.info(logStr + " " + ghResponse);
+                return Response.status(Response.Status.BAD_REQUEST).
+                        entity(new MultiException(ghResponse.getErrors())).
+                        type(writeGPX ? "application/gpx+xml" : MediaType.APPLICATION_JSON).
+                        build();
+            } else {
+                logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                        + ", distance0: " + ghResponse.getBest().getDistance()
+                        + ", weight0: " + ghResponse.getBest().getRouteWeight()
+                        + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                        + ", points0: " + ghResponse.getBest().getPoints().size()
+                        + ", debugInfo: " + ghResponse.getDebugInfo());
+                return writeGPX ?
+                        gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
+                                header("X-GH-Took", "" + Math.round(took)).
+                                build()
+                        :
+                        Response.ok(ResponsePathSerializer.jsonResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), withInstructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
+                                header("X-GH-Took", "" + Math.round(took)).
+                                type(MediaType.APPLICATION_JSON).
+                                build();
+            }
+        });
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
-        if (!request.hasSnapPreventions())
-            request.setSnapPreventions(snapPreventionsDefault);
+    public void doPost(@Suspended AsyncResponse asyncResponse, @NotNull GHRequest ghRequest, @Context HttpServletRequest httpReq) {
+        if (!ghRequest.hasSnapPreventions())
+            ghRequest.setSnapPreventions(snapPreventionsDefault);
 
         StopWatch sw = new StopWatch().start();
-        request = ghRequestTransformer.transformRequest(request);
+        GHRequest request = ghRequestTransformer.transformRequest(ghRequest);
 
         if (Helper.isEmpty(request.getProfile()) && request.getCustomModel() != null)
             // throw a dedicated exception here, otherwise a missing profile is still caught in Router
@@ -202,33 +213,44 @@ public class RouteResource {
         request.setProfile(profileResolver.resolveProfile(profileResolverHints));
         removeLegacyParameters(request.getHints());
 
-        GHResponse ghResponse = graphHopper.route(request);
-        boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
-        boolean enableElevation = request.getHints().getBool("elevation", false);
-        boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
-        boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
-        double pointsEncodedMultiplier = request.getHints().getDouble("points_encoded_multiplier", 1e5);
+        admissionControl.submit(getLane(request), request.getHints(), asyncResponse, () -> {
+            GHResponse ghResponse = requestCoalescer.execute(RequestCoalescer.createKey(request), () -> graphHopper.route(request));
+            boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
+            boolean enableElevation = request.getHints().getBool("elevation", false);
+            boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
+            boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
+            double pointsEncodedMultiplier = request.getHints().getDouble("points_encoded_multiplier", 1e5);
 
-        double took = sw.stop().getMillisDouble();
-        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
-        String logStr = infoStr + " " + request.getPoints().size() + ", took: "
-                + String.format("%.1f", took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
-                + ", custom_model: " + request.getCustomModel();
+            double took = sw.stop().getMillisDouble();
+            String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+            String logStr = infoStr + " " + request.getPoints().size() + ", took: "
+                    + String.format("%.1f", took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
+                    + ", custom_model: " + request.getCustomModel();
 
-        if (ghResponse.hasErrors()) {
-            throw new MultiException(ghResponse.getErrors());
-        } else {
-            logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
-                    + ", distance0: " + ghResponse.getBest().getDistance()
-                    + ", weight0: " + ghResponse.getBest().getRouteWeight()
-                    + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
-                    + ", points0: " + ghResponse.getBest().getPoints().size()
-                    + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                    header("X-GH-Took", "" + Math.round(took)).
-                    type(MediaType.APPLICATION_JSON).
-                    build();
-        }
+            if (ghResponse.hasErrors()) {
+                throw new MultiException(ghResponse.getErrors());
+            } else {
+                logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                        + ", distance0: " + ghResponse.getBest().getDistance()
+                        + ", weight0: " + ghResponse.getBest().getRouteWeight()
+                        + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                        + ", points0: " + ghResponse.getBest().getPoints().size()
+                        + ", debugInfo: " + ghResponse.getDebugInfo());
+                return Response.ok(ResponsePathSerializer.jsonResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
+                        header("X-GH-Took", "" + Math.round(took)).
+                        type(MediaType.APPLICATION_JSON).
+                        build();
+            }
+        });
+    }
+
+    /**
+     * Flexible requests are much slower than CH requests, so they use a separate lane of the admission control.
+     */
+    private String getLane(GHRequest request) {
+        boolean ch = !request.getHints().getBool(Parameters.CH.DISABLE, false) && request.getCustomModel() == null
+                && graphHopper.getCHGraphs().containsKey(request.getProfile());
+        return ch ? AdmissionControl.ROUTE : AdmissionControl.ROUTE_FLEX;
     }
 
     public static void removeLegacyParameters(PMap hints) {
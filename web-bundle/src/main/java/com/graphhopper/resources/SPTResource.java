@@ -9,7 +9,6 @@ import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EncodingManager;
-import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.NodeAccess;
@@ -27,31 +26,68 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.*;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToIntBiFunction;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
-import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
-import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
 
 /**
- * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577.
+ * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577 or,
+ * with format=binary, in a columnar binary format that avoids formatting and parsing text for big trees:
+ * <pre>
+ * int magic (0x47485350), int version (1), int column count,
+ * for every column: UTF column name, byte column type (see {@link ColumnType})
+ * then the rows in batches: int row count (0 marks the end), for every column the values of all rows of the batch
+ * </pre>
+ * All numbers are big-endian as written by {@link DataOutputStream}. Missing values are Integer.MIN_VALUE for INT,
+ * NaN for DOUBLE, -1 for BOOLEAN and an empty string for STRING.
  */
 @Path("spt")
 public class SPTResource {
 
     private static final Logger logger = LoggerFactory.getLogger(SPTResource.class);
+    static final int BINARY_MAGIC = 0x47485350;
+    static final int BINARY_VERSION = 1;
+    private static final int BATCH_SIZE = 4096;
 
+    /**
+     * @deprecated this resource reads the columns directly from {@link ShortestPathTree.IsoLabel} now, use
+     * {@link #from(NodeAccess, ShortestPathTree.IsoLabel)} if you still need this representation
+     */
+    @Deprecated
     public static class IsoLabelWithCoordinates {
         public int nodeId = -1;
         public int edgeId, prevEdgeId, prevNodeId = -1;
         public int timeMillis, prevTimeMillis;
         public int distance, prevDistance;
         public GHPoint coordinate, prevCoordinate;
+
+        public static IsoLabelWithCoordinates from(NodeAccess na, ShortestPathTree.IsoLabel label) {
+            IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
+            isoLabelWC.nodeId = label.node;
+            isoLabelWC.coordinate = new GHPoint(na.getLat(label.node), na.getLon(label.node));
+            isoLabelWC.timeMillis = Math.round(label.time);
+            isoLabelWC.distance = (int) Math.round(label.distance);
+            isoLabelWC.edgeId = label.edge;
+            if (label.parent != null) {
+                ShortestPathTree.IsoLabel prevLabel = label.parent;
+                isoLabelWC.prevNodeId = prevLabel.node;
+                isoLabelWC.prevEdgeId = prevLabel.edge;
+                isoLabelWC.prevCoordinate = new GHPoint(na.getLat(prevLabel.node), na.getLon(prevLabel.node));
+                isoLabelWC.prevDistance = (int) Math.round(prevLabel.distance);
+                isoLabelWC.prevTimeMillis = Math.round(prevLabel.time);
+            }
+            return isoLabelWC;
+        }
+    }
+
+    public enum ColumnType {
+        INT, DOUBLE, BOOLEAN, STRING
     }
 
     private final GraphHopper graphHopper;
@@ -68,18 +104,20 @@ public class SPTResource {
     // Annotating this as application/json because errors come out as json, and
     // IllegalArgumentExceptions are not mapped to a fixed mediatype, because in RouteResource, it could be GPX.
     @GET
-    @Produces({"text/csv", "application/json"})
+    @Produces({"text/csv", "application/octet-stream", "application/json"})
     public Response doGet(
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
             @QueryParam("point") @NotNull GHPointParam point,
             @QueryParam("columns") String columnsParam,
+            @QueryParam("format") @DefaultValue("csv") String format,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter) {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -88,6 +126,9 @@ public class SPTResource {
         profileName = profileResolver.resolveProfile(profileResolverHints);
         removeLegacyParameters(hintsMap);
 
+        if (!"csv".equals(format) && !"binary".equals(format))
+            throw new IllegalArgumentException("format must be csv or binary but was " + format);
+
         Profile profile = graphHopper.getProfile(profileName);
         if (profile == null)
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
@@ -100,8 +141,7 @@ public class SPTResource {
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
-        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        ShortestPathTree shortestPathTree = IsochroneResource.createShortestPathTree(graphHopper, profile, disableCH, hintsMap, queryGraph, weighting, reverseFlow);
 
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
@@ -110,107 +150,70 @@ public class SPTResource {
             shortestPathTree.setTimeLimit(limit);
         }
 
-        final String COL_SEP = ",", LINE_SEP = "\n";
-        List<String> columns;
+        List<String> columnNames;
         if (!Helper.isEmpty(columnsParam))
-            columns = Arrays.asList(columnsParam.split(","));
+            columnNames = Arrays.asList(columnsParam.split(","));
         else
-            columns = Arrays.asList("longitude", "latitude", "time", "distance");
+            columnNames = Arrays.asList("longitude", "latitude", "time", "distance");
 
-        if (columns.isEmpty())
+        if (columnNames.isEmpty())
             throw new IllegalArgumentException("Either omit the columns parameter or specify the columns via comma separated values");
 
-        Map<String, EncodedValue> pathDetails = new HashMap<>();
-        for (String col : columns) {
-            if (encodingManager.hasEncodedValue(col))
-                pathDetails.put(col, encodingManager.getEncodedValue(col, EncodedValue.class));
+        // resolve the columns once instead of for every row
+        List<Column> columns = new ArrayList<>(columnNames.size());
+        for (String col : columnNames)
+            columns.add(createColumn(col, nodeAccess, reverseFlow));
+        boolean needsEdge = columns.stream().anyMatch(c -> c.needsEdge);
+
+        StreamingOutput out;
+        if ("binary".equals(format)) {
+            out = output -> {
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(output));
+                dos.writeInt(BINARY_MAGIC);
+                dos.writeInt(BINARY_VERSION);
+                dos.writeInt(columns.size());
+                for (Column col : columns) {
+                    dos.writeUTF(col.name);
+                    dos.writeByte(col.type.ordinal());
+                }
+                ShortestPathTree.IsoLabel[] labels = new ShortestPathTree.IsoLabel[BATCH_SIZE];
+                EdgeIteratorState[] edges = new EdgeIteratorState[BATCH_SIZE];
+                int[] batchSize = {0};
+                shortestPathTree.search(snap.getClosestNode(), l -> {
+                    labels[batchSize[0]] = l;
+                    edges[batchSize[0]] = needsEdge ? getEdge(queryGraph, l) : null;
+                    if (++batchSize[0] == BATCH_SIZE) {
+                        writeBatch(dos, columns, labels, edges, batchSize[0]);
+                        batchSize[0] = 0;
+                    }
+                });
+                if (batchSize[0] > 0)
+                    writeBatch(dos, columns, labels, edges, batchSize[0]);
+                dos.writeInt(0);
+                dos.flush();
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+            };
+            return Response.ok(out).type("application/octet-stream").build();
         }
 
-        StreamingOutput out = output -> {
+        final String COL_SEP = ",", LINE_SEP = "\n";
+        out = output -> {
             try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
                 StringBuilder sb = new StringBuilder();
-                for (String col : columns) {
+                for (Column col : columns) {
                     if (sb.length() > 0)
                         sb.append(COL_SEP);
-                    sb.append(col);
+                    sb.append(col.name);
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
                 shortestPathTree.search(snap.getClosestNode(), l -> {
-                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                    EdgeIteratorState edge = needsEdge ? getEdge(queryGraph, l) : null;
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
-                        String col = columns.get(colIndex);
                         if (colIndex > 0)
                             sb.append(COL_SEP);
-
-                        switch (col) {
-                            case "node_id":
-                                sb.append(label.nodeId);
-                                continue;
-                            case "prev_node_id":
-                                sb.append(label.prevNodeId);
-                                continue;
-                            case "edge_id":
-                                sb.append(label.edgeId);
-                                continue;
-                            case "prev_edge_id":
-                                sb.append(label.prevEdgeId);
-                                continue;
-                            case "distance":
-                                sb.append(label.distance);
-                                continue;
-                            case "prev_distance":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevDistance);
-                                continue;
-                            case "time":
-                                sb.append(label.timeMillis);
-                                continue;
-                            case "prev_time":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevTimeMillis);
-                                continue;
-                            case "longitude":
-                                sb.append(Helper.round6(label.coordinate.lon));
-                                continue;
-                            case "prev_longitude":
-                                sb.append(label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lon));
-                                continue;
-                            case "latitude":
-                                sb.append(Helper.round6(label.coordinate.lat));
-                                continue;
-                            case "prev_latitude":
-                                sb.append(label.prevCoordinate == null ? null : Helper.round6(label.prevCoordinate.lat));
-                                continue;
-                        }
-
-                        if (!EdgeIterator.Edge.isValid(label.edgeId))
-                            continue;
-
-                        EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId);
-                        if (edge == null)
-                            continue;
-
-                        if (col.equals(STREET_NAME)) {
-                            sb.append(edge.getName().replaceAll(",", ""));
-                            continue;
-                        }
-
-                        EncodedValue ev = pathDetails.get(col);
-                        if (ev instanceof DecimalEncodedValue) {
-                            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(dev) : edge.get(dev));
-                        } else if (ev instanceof EnumEncodedValue) {
-                            EnumEncodedValue eev = (EnumEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof BooleanEncodedValue) {
-                            BooleanEncodedValue eev = (BooleanEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof IntEncodedValue) {
-                            IntEncodedValue eev = (IntEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else {
-                            throw new IllegalArgumentException("Unknown property " + col);
-                        }
+                        columns.get(colIndex).appendCSV(sb, l, edge);
                     }
                     sb.append(LINE_SEP);
                     try {
@@ -229,26 +232,180 @@ public class SPTResource {
         return Response.ok(out).type("text/csv").build();
     }
 
-    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree.IsoLabel label) {
-        double lat = na.getLat(label.node);
-        double lon = na.getLon(label.node);
-        IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
-        isoLabelWC.nodeId = label.node;
-        isoLabelWC.coordinate = new GHPoint(lat, lon);
-        isoLabelWC.timeMillis = Math.round(label.time);
-        isoLabelWC.distance = (int) Math.round(label.distance);
-        isoLabelWC.edgeId = label.edge;
-        if (label.parent != null) {
-            ShortestPathTree.IsoLabel prevLabel = label.parent;
-            int prevNodeId = prevLabel.node;
-            double prevLat = na.getLat(prevNodeId);
-            double prevLon = na.getLon(prevNodeId);
-            isoLabelWC.prevNodeId = prevNodeId;
-            isoLabelWC.prevEdgeId = prevLabel.edge;
-            isoLabelWC.prevCoordinate = new GHPoint(prevLat, prevLon);
-            isoLabelWC.prevDistance = (int) Math.round(prevLabel.distance);
-            isoLabelWC.prevTimeMillis = Math.round(prevLabel.time);
-        }
-        return isoLabelWC;
+    private static EdgeIteratorState getEdge(QueryGraph queryGraph, ShortestPathTree.IsoLabel label) {
+        return EdgeIterator.Edge.isValid(label.edge) ? queryGraph.getEdgeIteratorState(label.edge, label.node) : null;
+    }
+
+    private static void writeBatch(DataOutputStream dos, List<Column> columns, ShortestPathTree.IsoLabel[] labels,
+                                   EdgeIteratorState[] edges, int size) {
+        try {
+            dos.writeInt(size);
+            for (Column col : columns) {
+                for (int i = 0; i < size; i++) {
+                    col.writeBinary(dos, labels[i], edges[i]);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Column createColumn(String col, NodeAccess na, boolean reverseFlow) {
+        switch (col) {
+            case "node_id":
+                return new IntColumn(col, false, (l, e) -> l.node);
+            case "prev_node_id":
+                return new IntColumn(col, false, (l, e) -> l.parent == null ? -1 : l.parent.node);
+            case "edge_id":
+                return new IntColumn(col, false, (l, e) -> l.edge);
+            case "prev_edge_id":
+                return new IntColumn(col, false, (l, e) -> l.parent == null ? 0 : l.parent.edge);
+            case "distance":
+                return new IntColumn(col, false, (l, e) -> (int) Math.round(l.distance));
+            case "prev_distance":
+                return new IntColumn(col, false, (l, e) -> l.parent == null ? 0 : (int) Math.round(l.parent.distance));
+            case "time":
+                return new IntColumn(col, false, (l, e) -> Math.round(l.time));
+            case "prev_time":
+                return new IntColumn(col, false, (l, e) -> l.parent == null ? 0 : Math.round(l.parent.time));
+            case "longitude":
+                return new DoubleColumn(col, false, true, (l, e) -> na.getLon(l.node));
+            case "prev_longitude":
+                return new DoubleColumn(col, false, true, (l, e) -> l.parent == null ? Double.NaN : na.getLon(l.parent.node));
+            case "latitude":
+                return new DoubleColumn(col, false, true, (l, e) -> na.getLat(l.node));
+            case "prev_latitude":
+                return new DoubleColumn(col, false, true, (l, e) -> l.parent == null ? Double.NaN : na.getLat(l.parent.node));
+            case STREET_NAME:
+                return new StringColumn(col, (l, e) -> e.getName().replaceAll(",", ""));
+        }
+
+        if (!encodingManager.hasEncodedValue(col))
+            throw new IllegalArgumentException("Unknown property " + col);
+        EncodedValue ev = encodingManager.getEncodedValue(col, EncodedValue.class);
+        if (ev instanceof DecimalEncodedValue) {
+            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
+            return new DoubleColumn(col, true, false, (l, e) -> reverseFlow ? e.getReverse(dev) : e.get(dev));
+        } else if (ev instanceof EnumEncodedValue) {
+            EnumEncodedValue<?> eev = (EnumEncodedValue<?>) ev;
+            return new StringColumn(col, (l, e) -> String.valueOf(reverseFlow ? e.getReverse(eev) : e.get(eev)));
+        } else if (ev instanceof BooleanEncodedValue) {
+            BooleanEncodedValue bev = (BooleanEncodedValue) ev;
+            return new BooleanColumn(col, (l, e) -> reverseFlow ? e.getReverse(bev) : e.get(bev));
+        } else if (ev instanceof IntEncodedValue) {
+            IntEncodedValue iev = (IntEncodedValue) ev;
+            return new IntColumn(col, true, (l, e) -> reverseFlow ? e.getReverse(iev) : e.get(iev));
+        } else {
+            throw new IllegalArgumentException("Unknown property " + col);
+        }
+    }
+
+    /**
+     * A column of the shortest path tree. If the column needs the edge its values are missing for labels without
+     * edge, e.g. the root of the tree.
+     */
+    private abstract static class Column {
+        final String name;
+        final ColumnType type;
+        final boolean needsEdge;
+
+        Column(String name, ColumnType type, boolean needsEdge) {
+            this.name = name;
+            this.type = type;
+            this.needsEdge = needsEdge;
+        }
+
+        abstract void appendCSV(StringBuilder sb, ShortestPathTree.IsoLabel label, EdgeIteratorState edge);
+
+        abstract void writeBinary(DataOutputStream dos, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) throws IOException;
+    }
+
+    private static class IntColumn extends Column {
+        private final ToIntBiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState> function;
+
+        IntColumn(String name, boolean needsEdge, ToIntBiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState> function) {
+            super(name, ColumnType.INT, needsEdge);
+            this.function = function;
+        }
+
+        @Override
+        void appendCSV(StringBuilder sb, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) {
+            if (!needsEdge || edge != null)
+                sb.append(function.applyAsInt(label, edge));
+        }
+
+        @Override
+        void writeBinary(DataOutputStream dos, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) throws IOException {
+            dos.writeInt(!needsEdge || edge != null ? function.applyAsInt(label, edge) : Integer.MIN_VALUE);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final boolean coordinate;
+        private final ToDoubleBiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState> function;
+
+        DoubleColumn(String name, boolean needsEdge, boolean coordinate, ToDoubleBiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState> function) {
+            super(name, ColumnType.DOUBLE, needsEdge);
+            this.coordinate = coordinate;
+            this.function = function;
+        }
+
+        @Override
+        void appendCSV(StringBuilder sb, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) {
+            if (needsEdge && edge == null)
+                return;
+            double value = function.applyAsDouble(label, edge);
+            if (!coordinate)
+                sb.append(value);
+            else if (Double.isNaN(value))
+                sb.append((String) null);
+            else
+                sb.append(Helper.round6(value));
+        }
+
+        @Override
+        void writeBinary(DataOutputStream dos, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) throws IOException {
+            dos.writeDouble(!needsEdge || edge != null ? function.applyAsDouble(label, edge) : Double.NaN);
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+        private final BiPredicate<ShortestPathTree.IsoLabel, EdgeIteratorState> function;
+
+        BooleanColumn(String name, BiPredicate<ShortestPathTree.IsoLabel, EdgeIteratorState> function) {
+            super(name, ColumnType.BOOLEAN, true);
+            this.function = function;
+        }
+
+        @Override
+        void appendCSV(StringBuilder sb, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) {
+            if (edge != null)
+                sb.append(function.test(label, edge));
+        }
+
+        @Override
+        void writeBinary(DataOutputStream dos, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) throws IOException {
+            dos.writeByte(edge == null ? -1 : function.test(label, edge) ? 1 : 0);
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private final BiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState, String> function;
+
+        StringColumn(String name, BiFunction<ShortestPathTree.IsoLabel, EdgeIteratorState, String> function) {
+            super(name, ColumnType.STRING, true);
+            this.function = function;
+        }
+
+        @Override
+        void appendCSV(StringBuilder sb, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) {
+            if (edge != null)
+                sb.append(function.apply(label, edge));
+        }
+
+        @Override
+        void writeBinary(DataOutputStream dos, ShortestPathTree.IsoLabel label, EdgeIteratorState edge) throws IOException {
+            dos.writeUTF(edge == null ? "" : function.apply(label, edge));
+        }
     }
 }
@@ -0,0 +1,205 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphhopper.util.Parameters.Routing.TIMEOUT_MS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+    private AdmissionControl admissionControl;
+
+    @AfterEach
+    public void tearDown() {
+        if (admissionControl != null)
+            admissionControl.stop();
+    }
+
+    private static AsyncResponse asyncResponse(CompletableFuture<Object> result) {
+        return (AsyncResponse) Proxy.newProxyInstance(AdmissionControlTest.class.getClassLoader(), new Class[]{AsyncResponse.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("resume"))
+                        return result.complete(args[0]);
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static int status(CompletableFuture<Object> result) throws Exception {
+        return ((Response) result.get(10, TimeUnit.SECONDS)).getStatus();
+    }
+
+    @Test
+    public void withoutThreads() throws Exception {
+        admissionControl = new AdmissionControl(new GraphHopperConfig());
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE, new PMap(), asyncResponse(result), () -> {
+            throw new IllegalArgumentException("invalid");
+        });
+        // without threads the request runs on the calling thread
+        assertTrue(result.isDone());
+        assertTrue(result.get() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        admissionControl = new AdmissionControl(new GraphHopperConfig().
+                putObject("admission.route_flex.threads", 1).
+                putObject("admission.route_flex.max_queue", 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> running = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, new PMap(), asyncResponse(running), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return Response.ok().build();
+        });
+        started.await();
+
+        PMap hints = new PMap().putObject(TIMEOUT_MS, 5_000);
+        CompletableFuture<Object> queued = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, hints, asyncResponse(queued), () -> Response.ok().build());
+
+        CompletableFuture<Object> rejected = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, new PMap(), asyncResponse(rejected), () -> Response.ok().build());
+        assertEquals(503, status(rejected));
+        assertEquals("1", ((Response) rejected.get()).getHeaderString("Retry-After"));
+        assertEquals(1, admissionControl.getRejected(AdmissionControl.ROUTE_FLEX));
+        // other lanes are not affected
+        assertEquals(0, admissionControl.getRejected(AdmissionControl.ROUTE));
+
+        Thread.sleep(20);
+        release.countDown();
+        assertEquals(200, status(running));
+        assertEquals(200, status(queued));
+        // the time spent in the queue is subtracted from the timeout
+        assertTrue(hints.getLong(TIMEOUT_MS, 0) < 5_000, "timeout " + hints.getLong(TIMEOUT_MS, 0));
+    }
+
+    @Test
+    public void rejectWhenExpectedWaitExceedsBudget() throws Exception {
+        admissionControl = new AdmissionControl(new GraphHopperConfig().
+                putObject("admission.isochrone.threads", 1).
+                putObject("admission.isochrone.max_wait_ms", 50));
+        CompletableFuture<Object> slow = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ISOCHRONE, new PMap(), asyncResponse(slow), () -> {
+            sleep(100);
+            return Response.ok().build();
+        });
+        assertEquals(200, status(slow));
+        // wait until the duration of the first request was recorded
+        Thread.sleep(50);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> running = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ISOCHRONE, new PMap(), asyncResponse(running), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return Response.ok().build();
+        });
+        started.await();
+
+        // the expected wait of ~100ms exceeds the budget of 50ms
+        CompletableFuture<Object> rejected = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ISOCHRONE, new PMap(), asyncResponse(rejected), () -> Response.ok().build());
+        assertEquals(503, status(rejected));
+        release.countDown();
+        assertEquals(200, status(running));
+    }
+
+    @Test
+    public void concurrentRequestsDoNotExceedQueue() throws Exception {
+        admissionControl = new AdmissionControl(new GraphHopperConfig().
+                putObject("admission.match.threads", 1).
+                putObject("admission.match.max_queue", 3));
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            results.add(new CompletableFuture<>());
+        GHUtility.runConcurrently(results.stream().map(result -> () ->
+                admissionControl.submit(AdmissionControl.MATCH, new PMap(), asyncResponse(result), () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return Response.ok().build();
+                })), 8);
+        // one running and three queued requests
+        assertEquals(46, admissionControl.getRejected(AdmissionControl.MATCH));
+        release.countDown();
+        int ok = 0;
+        for (CompletableFuture<Object> result : results)
+            if (status(result) == 200)
+                ok++;
+        assertEquals(4, ok);
+    }
+
+    @Test
+    public void stopResumesQueuedRequests() throws Exception {
+        admissionControl = new AdmissionControl(new GraphHopperConfig().
+                putObject("admission.route_flex.threads", 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> running = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, new PMap(), asyncResponse(running), () -> {
+            started.countDown();
+            sleep(100);
+            return Response.ok().build();
+        });
+        started.await();
+        CompletableFuture<Object> queued = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, new PMap(), asyncResponse(queued), () -> Response.ok().build());
+
+        admissionControl.stop();
+        assertEquals(503, status(queued));
+        // requests after stop are rejected as well
+        CompletableFuture<Object> late = new CompletableFuture<>();
+        admissionControl.submit(AdmissionControl.ROUTE_FLEX, new PMap(), asyncResponse(late), () -> Response.ok().build());
+        assertEquals(503, status(late));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
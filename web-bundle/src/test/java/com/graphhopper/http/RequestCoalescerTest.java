@@ -0,0 +1,115 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.util.CustomModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.util.Parameters.Routing.TIMEOUT_MS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void concurrentDuplicatesShareResult() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        AtomicInteger calculations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> coalescer.execute("a", () -> {
+                calculations.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return new Object();
+            }));
+            started.await();
+            Future<Object> second = executor.submit(() -> coalescer.execute("a", () -> {
+                calculations.incrementAndGet();
+                return new Object();
+            }));
+            // a different key is calculated immediately
+            assertEquals("b", coalescer.execute("b", () -> "b"));
+            while (coalescer.getCoalesced() == 0)
+                Thread.sleep(1);
+            release.countDown();
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, calculations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the result is not cached
+        assertEquals("c", coalescer.execute("a", () -> "c"));
+    }
+
+    @Test
+    public void exceptionIsSharedToo() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> coalescer.execute("a", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                throw new IllegalArgumentException("Point not found");
+            }));
+            started.await();
+            Future<Object> second = executor.submit(() -> coalescer.execute("a", Object::new));
+            while (coalescer.getCoalesced() == 0)
+                Thread.sleep(1);
+            release.countDown();
+            for (Future<Object> future : new Future[]{first, second}) {
+                ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void createKey() {
+        GHRequest request = new GHRequest(42.5, 1.5, 42.6, 1.6).setProfile("car");
+        String key = RequestCoalescer.createKey(request);
+        assertEquals(key, RequestCoalescer.createKey(new GHRequest(42.5, 1.5, 42.6, 1.6).setProfile("car")));
+        request.getHints().putObject(TIMEOUT_MS, 100);
+        assertEquals(key, RequestCoalescer.createKey(request));
+        request.getHints().putObject("instructions", false);
+        assertNotEquals(key, RequestCoalescer.createKey(request));
+
+        GHRequest customRequest = new GHRequest(42.5, 1.5, 42.6, 1.6).setProfile("car").setCustomModel(new CustomModel().setDistanceInfluence(10d));
+        assertNotEquals(key, RequestCoalescer.createKey(customRequest));
+        assertEquals(RequestCoalescer.createKey(customRequest), RequestCoalescer.createKey(
+                new GHRequest(42.5, 1.5, 42.6, 1.6).setProfile("car").setCustomModel(new CustomModel().setDistanceInfluence(10d))));
+    }
+}
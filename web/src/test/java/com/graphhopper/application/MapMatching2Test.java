@@ -17,6 +17,7 @@
  */
 package com.graphhopper.application;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.LMProfile;
@@ -27,16 +28,18 @@ import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
 import com.graphhopper.matching.State;
 import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
-import com.graphhopper.util.Helper;
-import com.graphhopper.util.PMap;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.application.MapMatchingTest.fetchStreets;
 import static org.junit.jupiter.api.Assertions.*;
@@ -127,6 +130,70 @@ public class MapMatching2Test {
         assertEquals(0, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testCandidateSnapsLikeGrowingSquares() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.importOrLoad();
+
+        MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"));
+        double sigma = 20;
+        mapMatching.setMeasurementErrorSigma(sigma);
+        LocationIndexTree locationIndex = (LocationIndexTree) hopper.getLocationIndex();
+        BBox bounds = hopper.getBaseGraph().getBounds();
+        Random rnd = new Random(123);
+        for (int i = 0; i < 200; i++) {
+            double lat = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+            // the candidates used to be found by querying growing squares until one contained a snap
+            List<Snap> expected = Collections.emptyList();
+            double rLon = sigma * 360.0 / DistanceCalcEarth.DIST_EARTH.calcCircumference(lat);
+            double rLat = sigma / DistanceCalcEarth.METERS_PER_DEGREE;
+            for (int step = 1; step <= 50 && expected.isEmpty(); step++) {
+                BBox square = new BBox(lon - step * rLon, lon + step * rLon, lat - step * rLat, lat + step * rLat);
+                expected = findSnapsInSquare(hopper, locationIndex, lat, lon, square);
+            }
+            assertEquals(toString(expected), toString(mapMatching.findCandidateSnaps(lat, lon)), "query point: " + lat + "," + lon);
+        }
+    }
+
+    private static List<Snap> findSnapsInSquare(GraphHopper hopper, LocationIndexTree locationIndex, double lat, double lon, BBox square) {
+        List<Snap> snaps = new ArrayList<>();
+        IntHashSet seenEdges = new IntHashSet();
+        IntHashSet seenNodes = new IntHashSet();
+        locationIndex.query(square, edgeId -> {
+            EdgeIteratorState edge = hopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
+            if (!seenEdges.add(edgeId))
+                return;
+            Snap snap = new Snap(lat, lon);
+            locationIndex.traverseEdge(lat, lon, edge, (node, normedDist, wayIndex, pos) -> {
+                if (normedDist < snap.getQueryDistance()) {
+                    snap.setQueryDistance(normedDist);
+                    snap.setClosestNode(node);
+                    snap.setWayIndex(wayIndex);
+                    snap.setSnappedPosition(pos);
+                }
+            });
+            snap.setClosestEdge(edge);
+            snap.setQueryDistance(DistancePlaneProjection.DIST_PLANE.calcDenormalizedDist(snap.getQueryDistance()));
+            if (snap.isValid() && (snap.getSnappedPosition() != Snap.Position.TOWER || seenNodes.add(snap.getClosestNode()))) {
+                snap.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
+                if (square.contains(snap.getSnappedPoint().lat, snap.getSnappedPoint().lon))
+                    snaps.add(snap);
+            }
+        });
+        snaps.sort(Comparator.comparingDouble(Snap::getQueryDistance));
+        return snaps;
+    }
+
+    private static Set<String> toString(List<Snap> snaps) {
+        return snaps.stream().map(s -> s.getClosestNode() + " " + s.getSnappedPosition() + " " + s.getSnappedPoint() + " "
+                + Math.round(s.getQueryDistance() * 1000)).collect(Collectors.toSet());
+    }
+
     private void validateEdgeMatch(EdgeMatch edgeMatch) {
         for (State state : edgeMatch.getStates()) {
             if (state.getSnap().getSnappedPosition() == Snap.Position.TOWER) {
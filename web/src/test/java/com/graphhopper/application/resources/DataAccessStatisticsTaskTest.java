@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class DataAccessStatisticsTaskTest {
+    private static final String dir = "./target/andorra-gh-statistics/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", dir).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.dataaccess.statistics.edges|geometry", true).
+                setProfiles(List.of(TestProfiles.constantSpeed("car")));
+        return config;
+    }
+
+    // not @BeforeAll, because the app is started before and we need the graph folder to store the access counts
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testStatistics() {
+        assertEquals(200, clientTarget(app, "/route?profile=car&point=42.554851,1.536198&point=42.510071,1.548128").request().get().getStatus());
+        JsonNode json = app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/dataaccess-statistics?store=true").
+                request().post(Entity.text(""), JsonNode.class);
+        assertEquals(2, json.size(), json.toString());
+        JsonNode edges = json.get("edges");
+        assertTrue(edges.get("accesses").asLong() > 0, json.toString());
+        assertTrue(edges.get("hot_segments").asInt() > 0, json.toString());
+        assertTrue(app.getEnvironment().metrics().getGauges().containsKey("graphhopper.dataaccess.geometry.accesses"));
+        assertTrue(new File(dir, "edges.access").exists());
+    }
+}
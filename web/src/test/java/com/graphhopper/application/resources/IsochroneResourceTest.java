@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.BodyAndStatus;
 import com.graphhopper.util.Helper;
@@ -42,6 +43,7 @@ import org.locationtech.jts.geom.Polygon;
 import javax.ws.rs.client.WebTarget;
 import java.io.File;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
 import static com.graphhopper.application.util.TestUtils.clientTarget;
@@ -59,11 +61,15 @@ public class IsochroneResourceTest {
                 putObject("import.osm.ignored_highways", "").
                 putObject("graph.location", DIR).
                 putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("admission.isochrone.threads", 2).
+                putObject("routing.coalesce_requests", true).
+                putObject("routing.phast", true).
                 setProfiles(Arrays.asList(
                         TestProfiles.accessAndSpeed("fast_car", "car").setTurnCostsConfig(TurnCostsConfig.car()),
                         TestProfiles.constantSpeed("short_car", 35).setTurnCostsConfig(TurnCostsConfig.car()),
                         TestProfiles.accessAndSpeed("fast_car_no_turn_restrictions", "car")
-                ));
+                )).
+                setCHProfiles(List.of(new CHProfile("fast_car_no_turn_restrictions")));
         return config;
     }
 
@@ -96,6 +102,51 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestWithRasterPolygonBuilder() {
+        JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("buckets", 2)
+                .queryParam("polygon_builder", "raster")
+                .queryParam("type", "geojson")
+                .request().get(JsonFeatureCollection.class);
+
+        assertEquals(2, featureCollection.getFeatures().size());
+        Geometry polygon0 = featureCollection.getFeatures().get(0).getGeometry();
+        Geometry polygon1 = featureCollection.getFeatures().get(1).getGeometry();
+        assertTrue(polygon0.isValid());
+        assertTrue(polygon1.isValid());
+
+        assertTrue(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.587224, 42.5386))));
+        assertFalse(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+
+        assertTrue(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+        assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
+    }
+
+    @Test
+    public void requestWithAndWithoutPhast() {
+        // the CH preparation is only used via PHAST if it is requested explicitly
+        Geometry[] polygons = new Geometry[2];
+        for (boolean phast : new boolean[]{true, false}) {
+            WebTarget target = clientTarget(app, "/isochrone")
+                    .queryParam("profile", "fast_car_no_turn_restrictions")
+                    .queryParam("point", "42.531073,1.573792")
+                    .queryParam("time_limit", 15 * 60)
+                    .queryParam("type", "geojson");
+            if (phast)
+                target = target.queryParam("algorithm", "phast");
+            JsonFeatureCollection featureCollection = target.request().get(JsonFeatureCollection.class);
+            assertEquals(1, featureCollection.getFeatures().size());
+            polygons[phast ? 0 : 1] = featureCollection.getFeatures().get(0).getGeometry();
+        }
+        double area = polygons[1].getArea();
+        assertEquals(area, polygons[0].getArea(), area * 0.01);
+        assertEquals(area, polygons[0].intersection(polygons[1]).getArea(), area * 0.01);
+    }
+
     @Test
     public void requestByTimeLimitNoTurnRestrictions() {
         JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
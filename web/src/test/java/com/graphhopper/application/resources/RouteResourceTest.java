@@ -93,6 +93,9 @@ public class RouteResourceTest {
                 // adding this so the corresponding check is not just skipped...
                 putObject(MAX_NON_CH_POINT_DISTANCE, 10e6).
                 putObject("routing.snap_preventions_default", "tunnel, bridge, ferry").
+                putObject("admission.route.threads", 2).
+                putObject("admission.route_flex.threads", 2).
+                putObject("routing.coalesce_requests", true).
                 putObject("graph.encoded_values", "road_class, surface, road_environment, max_speed, country, " +
                         "car_access, car_average_speed, " +
                         "foot_access, foot_priority, foot_average_speed").
@@ -33,7 +33,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -117,6 +121,74 @@ public class SPTResourceTest {
         assertEquals(Double.POSITIVE_INFINITY, Double.parseDouble(row[2]), .1);
     }
 
+    @Test
+    public void requestBinary() throws IOException {
+        String query = "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=node_id,prev_node_id,time,longitude,prev_latitude,street_name,road_class,max_speed";
+        String[] lines = clientTarget(app, query).request().get(String.class).split("\n");
+        byte[] bytes = clientTarget(app, query + "&format=binary").request().get(byte[].class);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertEquals(0x47485350, dis.readInt());
+        assertEquals(1, dis.readInt());
+        assertEquals(8, dis.readInt());
+        List<String> names = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            names.add(dis.readUTF());
+            types.add((int) dis.readByte());
+        }
+        assertEquals(lines[0], String.join(",", names));
+        assertEquals(List.of(0, 0, 0, 1, 1, 3, 3, 1), types);
+
+        List<String[]> rows = new ArrayList<>();
+        int batchSize;
+        while ((batchSize = dis.readInt()) > 0) {
+            String[][] batch = new String[batchSize][8];
+            for (int col = 0; col < 8; col++) {
+                for (int row = 0; row < batchSize; row++) {
+                    switch (types.get(col)) {
+                        case 0:
+                            batch[row][col] = String.valueOf(dis.readInt());
+                            break;
+                        case 1:
+                            batch[row][col] = String.valueOf(dis.readDouble());
+                            break;
+                        default:
+                            batch[row][col] = dis.readUTF();
+                    }
+                }
+            }
+            rows.addAll(Arrays.asList(batch));
+        }
+        assertEquals(0, dis.available());
+        assertEquals(lines.length - 1, rows.size());
+
+        // the root has no edge and no parent
+        assertEquals("-1", rows.get(0)[1]);
+        assertEquals("NaN", rows.get(0)[4]);
+        assertEquals("", rows.get(0)[5]);
+        assertEquals("NaN", rows.get(0)[7]);
+        for (int i = 1; i < rows.size(); i++) {
+            String[] csvRow = lines[i + 1].split(",", -1);
+            String[] binaryRow = rows.get(i);
+            assertEquals(csvRow[0], binaryRow[0]);
+            assertEquals(csvRow[1], binaryRow[1]);
+            assertEquals(csvRow[2], binaryRow[2]);
+            assertEquals(Double.parseDouble(csvRow[3]), Double.parseDouble(binaryRow[3]), 1.e-6);
+            assertEquals(Double.parseDouble(csvRow[4]), Double.parseDouble(binaryRow[4]), 1.e-6);
+            assertEquals(csvRow[5], binaryRow[5]);
+            assertEquals(csvRow[6], binaryRow[6]);
+            assertEquals(Double.parseDouble(csvRow[7]), Double.parseDouble(binaryRow[7]), 1.e-6);
+        }
+    }
+
+    @Test
+    public void unknownColumn() {
+        BodyAndStatus rsp = getWithStatus(clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&columns=time,abc"));
+        assertEquals(400, rsp.getStatus());
+        assertTrue(rsp.getBody().get("message").toString().contains("Unknown property abc"), rsp.getBody().toString());
+    }
+
     @Test
     public void missingPoint() {
         BodyAndStatus rsp = getWithStatus(clientTarget(app, "/spt"));
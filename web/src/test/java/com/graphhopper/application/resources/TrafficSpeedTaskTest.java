@@ -0,0 +1,92 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.Profile;
+import com.graphhopper.json.Statement;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.ev.TrafficSpeedOverlay;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static com.graphhopper.json.Statement.If;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class TrafficSpeedTaskTest {
+    private static final String dir = "./target/andorra-gh-traffic/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        Profile profile = TestProfiles.constantSpeed("car");
+        profile.getCustomModel().addToSpeed(If("true", Statement.Op.LIMIT, TrafficSpeedOverlay.KEY));
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", dir).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.traffic_speed.enabled", true).
+                setProfiles(List.of(profile));
+        return config;
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testUpdateSpeeds() {
+        String url = "/route?profile=car&point=42.554851,1.536198&point=42.510071,1.548128&details=edge_id";
+        JsonNode path = clientTarget(app, url).request().get(JsonNode.class).get("paths").get(0);
+        long time = path.get("time").asLong();
+
+        StringBuilder body = new StringBuilder();
+        for (JsonNode detail : path.get("details").get("edge_id"))
+            body.append(detail.get(2).asInt()).append(",30\n");
+        assertEquals(200, postSpeeds("", body.toString()));
+        long slowTime = clientTarget(app, url).request().get(JsonNode.class).get("paths").get(0).get("time").asLong();
+        assertTrue(slowTime > time, time + " vs. " + slowTime);
+
+        // an invalid line does not change anything
+        assertEquals(500, postSpeeds("?replace=true", "1,30\n-1,20"));
+        assertEquals(slowTime, clientTarget(app, url).request().get(JsonNode.class).get("paths").get(0).get("time").asLong());
+
+        assertEquals(200, postSpeeds("?replace=true", ""));
+        assertEquals(time, clientTarget(app, url).request().get(JsonNode.class).get("paths").get(0).get("time").asLong());
+    }
+
+    private int postSpeeds(String params, String body) {
+        return app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/traffic-speeds" + params).
+                request().post(Entity.text(body)).getStatus();
+    }
+}